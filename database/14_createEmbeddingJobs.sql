@@ -0,0 +1,22 @@
+-- Table: public.embeddingjobs
+-- The queue of documents whose chunk and document embeddings still have to be calculated.
+-- The importer only enqueues a document, the embedding workers claim and delete the jobs.
+
+-- DROP TABLE IF EXISTS public.embeddingjobs;
+
+CREATE TABLE IF NOT EXISTS public.embeddingjobs
+(
+    document_id bigint NOT NULL PRIMARY KEY,
+    status text NOT NULL DEFAULT 'pending',
+    attempts integer NOT NULL DEFAULT 0,
+    error text COLLATE pg_catalog."default",
+    created timestamp NOT NULL DEFAULT now(),
+    claimed timestamp
+)
+
+TABLESPACE pg_default;
+
+CREATE INDEX IF NOT EXISTS idx_embeddingjobs_status ON public.embeddingjobs (status, document_id);
+
+ALTER TABLE IF EXISTS public.embeddingjobs
+    OWNER to postgres;
@@ -0,0 +1,27 @@
+-- The document reader fetches the annotations of a document only for the window of pages it shows,
+-- i.e. by document_id and a begin/end range. These indexes keep that independent of the size of the document.
+CREATE INDEX IF NOT EXISTS idx_namedentity_document_range ON namedentity (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_geoname_document_range ON geoname (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_time_document_range ON time (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_lemma_document_range ON lemma (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_sentiment_document_range ON sentiment (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_emotion_document_range ON emotion (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_wikipedialink_document_range ON wikipedialink (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_gazetteertaxon_document_range ON gazetteertaxon (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_gnfindertaxon_document_range ON gnfindertaxon (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_image_document_range ON image (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_unifiedtopic_document_range ON unifiedtopic (document_id, beginn, endd);
+
+-- Negations
+CREATE INDEX IF NOT EXISTS idx_completenegation_document_range ON completenegation (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_cue_document_range ON cue (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_event_document_range ON event (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_focus_document_range ON focus (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_scope_document_range ON scope (document_id, beginn, endd);
+CREATE INDEX IF NOT EXISTS idx_xscope_document_range ON xscope (document_id, beginn, endd);
+
+-- The reader fetches the pages of that window by their number.
+CREATE INDEX IF NOT EXISTS idx_page_document_pagenumber ON page (document_id, pagenumber);
+
+-- The search snippets fetch the sentences of their pages the same way.
+CREATE INDEX IF NOT EXISTS idx_sentence_document_range ON sentence (document_id, beginn, endd);
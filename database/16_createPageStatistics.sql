@@ -0,0 +1,34 @@
+-- Table: public.pagestatistics
+-- The per-page counts of the annotations the document analytics show (taxa, named entities, lemmas, geonames, topics).
+-- They are aggregated once when a document is postprocessed, so the analytics don't scan the annotation tables.
+
+-- DROP TABLE IF EXISTS public.pagestatistics;
+
+CREATE TABLE IF NOT EXISTS public.pagestatistics
+(
+    document_id bigint NOT NULL,
+    page_id bigint,
+    kind text COLLATE pg_catalog."default" NOT NULL,
+    value text COLLATE pg_catalog."default",
+    category text COLLATE pg_catalog."default",
+    count integer NOT NULL
+)
+
+TABLESPACE pg_default;
+
+CREATE INDEX IF NOT EXISTS idx_pagestatistics_document_kind ON public.pagestatistics (document_id, kind);
+
+ALTER TABLE IF EXISTS public.pagestatistics
+    OWNER to postgres;
+
+-- The documents whose page statistics were aggregated. The statistics of all other documents are aggregated on demand.
+CREATE TABLE IF NOT EXISTS public.pagestatisticsdocuments
+(
+    document_id bigint NOT NULL PRIMARY KEY,
+    created timestamp NOT NULL DEFAULT now()
+)
+
+TABLESPACE pg_default;
+
+ALTER TABLE IF EXISTS public.pagestatisticsdocuments
+    OWNER to postgres;
@@ -0,0 +1,6 @@
+-- The topic tables are maintained per document and per corpus, which deletes and reads their rows by these ids.
+CREATE INDEX IF NOT EXISTS idx_sentencetopics_document_id ON sentencetopics (document_id);
+CREATE INDEX IF NOT EXISTS idx_sentencetopics_sentence_id ON sentencetopics (sentence_id);
+CREATE INDEX IF NOT EXISTS idx_documenttopicsraw_document_id ON documenttopicsraw (document_id);
+CREATE INDEX IF NOT EXISTS idx_documenttopicwords_document_id ON documenttopicwords (document_id);
+CREATE INDEX IF NOT EXISTS idx_corpustopicwords_corpus_id ON corpustopicwords (corpus_id);
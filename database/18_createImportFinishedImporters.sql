@@ -0,0 +1,20 @@
+-- Table: public.uceimportfinishedimporter
+-- The importer instances of an import that are done with their partition, one row per importer number. An importer
+-- removes its row when it starts or resumes and adds it again once its partition is done, so a finish is never
+-- counted twice and a resumed run doesn't count the finishes of the run before.
+
+-- DROP TABLE IF EXISTS public.uceimportfinishedimporter;
+
+CREATE TABLE IF NOT EXISTS public.uceimportfinishedimporter
+(
+    importid text COLLATE pg_catalog."default" NOT NULL,
+    basepath text COLLATE pg_catalog."default" NOT NULL,
+    importernumber integer NOT NULL,
+    finished timestamp NOT NULL DEFAULT now(),
+    PRIMARY KEY (importid, basepath, importernumber)
+)
+
+TABLESPACE pg_default;
+
+ALTER TABLE IF EXISTS public.uceimportfinishedimporter
+    OWNER to postgres;
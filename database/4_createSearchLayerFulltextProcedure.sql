@@ -1,3 +1,19 @@
+-- New arguments change the signature. Drop the old ones so that calls with the default arguments don't become
+-- ambiguous.
+DROP FUNCTION IF EXISTS uce_search_layer_fulltext(bigint, text[], text, integer, integer, boolean, text, text, jsonb, boolean, text, text);
+DROP FUNCTION IF EXISTS uce_search_layer_fulltext(bigint, text[], text, integer, integer, boolean, text, text, jsonb, boolean, text, text, boolean);
+DROP FUNCTION IF EXISTS uce_search_layer_fulltext(bigint, text[], text, integer, integer, boolean, text, text, jsonb, boolean, text, text, boolean, integer);
+
+-- The search runs in two phases:
+--   1. The matching documents are collected through the GIN index of the pages, without ranking a single page. This
+--      also is the exact count of all hits. Each document gets an upper bound of its rank from the term frequencies of
+--      its pages, see uce_textsearch_tf_bounds.
+--   2. The documents are ranked with ts_rank_cd in the order of their bounds, batch by batch, until the documents that
+--      are left can't reach the top ranking_depth anymore. The result is the exact top of the ranking, but only a
+--      fraction of the pages is ranked.
+-- Without a ranking_depth, or ordered by the rank ascending, all documents are ranked. Ordered by the title, only the
+-- documents within the depth are.
+-- Without build_snippets, the snippets are left to the caller, e.g. the snippet engine of the portal.
 CREATE OR REPLACE FUNCTION uce_search_layer_fulltext(
     IN corpus_id bigint,
     IN input1 text[], 
@@ -11,31 +27,46 @@ CREATE OR REPLACE FUNCTION uce_search_layer_fulltext(
     IN useTsVector boolean DEFAULT true,
     IN source_table text DEFAULT 'page',
     IN schema_name text DEFAULT 'public',
+    IN return_ranking boolean DEFAULT false,
+    IN ranking_depth integer DEFAULT NULL,
+    IN build_snippets boolean DEFAULT true,
     OUT total_count_out integer,
     OUT document_ids integer[],
     OUT named_entities_found text[][],
     OUT time_found text[][],
     OUT taxons_found text[][],
     OUT snippets_found text[],
-    OUT document_ranks float[]
+    OUT document_ranks float[],
+    OUT ranked_document_ids integer[],
+    OUT ranked_document_ranks float[]
 )
 RETURNS record AS $$
 DECLARE
-    query TEXT;
-    total_count_temp integer;
-    document_ids_temp integer[];
-    document_ranks_temp float[];
-    named_entities_temp text[][];
-    time_temp text[][];
-    taxons_temp text[][];
-    snippets_temp text[];
     additional_join_1 TEXT := '';
     additional_join_2 TEXT := '';
-    order_by_clause TEXT := '';
-    ts_function TEXT;
-    ts_condition TEXT;
-    snippet_query TEXT;
-	ranked_pages_cte TEXT;
+    filters_cte TEXT;
+    candidates_query TEXT;
+    candidate_order TEXT;
+    bound_expression TEXT := '0::float';
+    rank_query TEXT;
+    ts_query tsquery;
+    query_lexemes text[];
+    order_by_rank boolean;
+    prune boolean := false;
+    ranking_size integer;
+    candidate_ids integer[];
+    candidate_bounds float[];
+    candidate_count integer;
+    scored_ids integer[] := '{}';
+    scored_ranks float[] := '{}';
+    batch_ids integer[];
+    batch_ranks float[];
+    batch_size integer;
+    batch_end integer;
+    pos integer := 1;
+    threshold float;
+    ranking_ids integer[];
+    ranking_ranks float[];
 BEGIN
     -- Ensure PostgreSQL uses indexes and has enough memory
     --SET enable_seqscan = OFF;
@@ -51,90 +82,25 @@ BEGIN
         RAISE EXCEPTION 'Invalid order_direction: %', order_direction;
     END IF;
 
-    -- Construct ORDER BY clause dynamically
-    IF order_by_column = 'rank' THEN
-        order_by_clause := FORMAT('ORDER BY pr.rank %s', order_direction);
-    ELSIF order_by_column = 'documenttitle' THEN
-        order_by_clause := FORMAT('ORDER BY pr.documenttitle %s', order_direction);
-    ELSE
-        order_by_clause := 'ORDER BY pr.rank DESC';  -- Default ordering
+    -- Any other column falls back to the default ordering by the rank, descending.
+    order_by_rank := order_by_column <> 'documenttitle';
+    IF order_by_rank AND order_by_column <> 'rank' THEN
+        order_direction := 'DESC';
     END IF;
 
-    -- Determine the appropriate search function
-    IF useTsVector THEN
-        ts_function := 'to_tsquery(''simple'', $4)';
-    ELSE
-        ts_function := 'websearch_to_tsquery(''simple'', $4)';
+    -- The ranking must at least reach to the end of the requested page.
+    IF ranking_depth IS NOT NULL THEN
+        ranking_size := GREATEST(ranking_depth, offset_count + take_count);
     END IF;
-	
+
     -- Check source table
     IF source_table != 'page' THEN
         additional_join_1 := FORMAT('INNER JOIN %I.%I t ON um.document_id = t.document_id', schema_name, source_table);
         additional_join_2 := FORMAT('INNER JOIN %I.%I t ON p.id = t.id', schema_name, source_table);
     END IF;
 
-    -- Define snippet selection logic
-	IF input2 IS NULL OR input2 = '' THEN
-		snippet_query := 'SELECT jsonb_agg(jsonb_build_object(
-							''snippet'', LEFT(p.coveredtext, 400),
-							''pageId'', p.id
-						  ) ORDER BY p.id ASC)
-						  FROM (SELECT p.id, p.coveredtext 
-								FROM page p 
-								WHERE p.document_id = lp.doc_id
-								ORDER BY p.id ASC
-								LIMIT 1) p';
-								
-		-- If we dont search for any string, we dont need to fulltext search all documents
-		ranked_pages_cte := 'WITH limited_docs AS NOT MATERIALIZED (
-				SELECT id, documenttitle from document WHERE corpusid = $2 LIMIT 999
-			)
-			SELECT 
-                p.document_id AS doc_id, 
-                0 AS rank,
-				-- %s
-                d.documenttitle
-            FROM limited_docs d
-            JOIN page p ON d.id = p.document_id
-            %s
-			-- %s
-            AND ($5 IS NULL OR p.document_id IN (SELECT document_id FROM filter_matches))';
-	ELSE
-		snippet_query := 'SELECT jsonb_agg(jsonb_build_object(
-							''snippet'', ts_headline(
-								''simple'',
-								p.coveredtext, 
-								' || ts_function || ',
-								''StartSel=<b>, StopSel=</b>, MaxWords=60, MinWords=35, MaxFragments=3, FragmentDelimiter=" [...] "''
-							),
-							''pageId'', p.id
-						  ) ORDER BY rank_score DESC)
-						  FROM (SELECT p.id, p.coveredtext, ts_rank_cd(p.textsearch, ' || ts_function || ') AS rank_score
-								FROM page p
-								WHERE p.document_id = lp.doc_id 
-								AND p.textsearch @@ ' || ts_function || '
-								ORDER BY rank_score DESC
-								LIMIT 5) p';
-
-		ranked_pages_cte := 'SELECT
-                p.document_id AS doc_id, 
-                ts_rank_cd(p.textsearch, %s) AS rank,
-                d.documenttitle
-            FROM page p
-            %s
-            JOIN document d ON d.id = p.document_id
-            WHERE (
-                ($4 IS NOT NULL AND $4 <> '''' AND p.textsearch @@ %s)
-                OR ($4 IS NULL OR $4 = '''')
-            )
-            AND ($5 IS NULL OR p.document_id IN (SELECT document_id FROM filter_matches))
-            AND d.corpusid = $2
-			LIMIT 20000'; -- Put a Limit here, it will increase perfomance and we dont need to show millions of hits. But I know, it's a hack...
-	END IF;
-
-    -- Construct the full query dynamically
-    query := FORMAT('
-		WITH expanded_filters AS NOT MATERIALIZED (
+    filters_cte := FORMAT('
+		expanded_filters AS NOT MATERIALIZED (
 			SELECT 
 				(filter->>''key'')::text AS key,
 				(filter->>''value'')::text AS value,
@@ -170,76 +136,225 @@ BEGIN
 			%s
 			GROUP BY um.document_id
 			HAVING COUNT(ef.key) = (SELECT COUNT(*) FROM expanded_filters)
-		),
-        ranked_pages AS NOT MATERIALIZED ( ' || ranked_pages_cte || '),
-        page_ranked AS NOT MATERIALIZED (
-            SELECT 
-                doc_id,
-                AVG(rank) AS rank, -- Get highest rank per document
-                documenttitle
-            FROM ranked_pages
-            GROUP BY doc_id, documenttitle
-        ),
-        limited_pages AS NOT MATERIALIZED (
-            SELECT 
-                pr.doc_id,
-                pr.rank,
-                pr.documenttitle
-            FROM page_ranked pr
-            %s
-            LIMIT $6 OFFSET $7
-        ),
-        counted_documents AS NOT MATERIALIZED (
-            SELECT COUNT(*) AS total_count FROM page_ranked
-        ),
-        ranked_documents AS NOT MATERIALIZED (
-            SELECT 
-                d.id,
-                lp.rank,
-                JSONB_AGG((' || snippet_query || ')) AS snippets
-            FROM limited_pages lp
-            JOIN document d ON d.id = lp.doc_id
-            GROUP BY d.id, lp.rank
-            ORDER BY lp.rank DESC
-        ),
-        extracted_entities AS NOT MATERIALIZED (
-            SELECT ARRAY[ne.id::text, ne.coveredtext, COUNT(ne.id)::text, ne.typee, ne.document_id::text] 
-            FROM ranked_documents rd
+		)', additional_join_1);
+
+    IF input2 IS NULL OR input2 = '' THEN
+        -- If we dont search for any string, we dont need to fulltext search all documents. Every document ranks 0.
+        IF order_by_rank THEN
+            candidate_order := 'c.doc_id';
+        ELSE
+            candidate_order := FORMAT('c.documenttitle %s, c.doc_id', order_direction);
+        END IF;
+        candidates_query := FORMAT('
+            WITH %s
+            SELECT ARRAY_AGG(c.doc_id ORDER BY %s), ARRAY_AGG(c.doc_bound ORDER BY %s)
+            FROM (
+                SELECT d.id::integer AS doc_id, d.documenttitle, 0::float AS doc_bound
+                FROM document d
+                WHERE d.corpusid = $2
+                AND EXISTS (SELECT 1 FROM page p %s WHERE p.document_id = d.id)
+                AND ($1 IS NULL OR d.id IN (SELECT document_id FROM filter_matches))
+            ) c', filters_cte, candidate_order, candidate_order, additional_join_2);
+
+        EXECUTE candidates_query USING uce_metadata_filters, corpus_id INTO candidate_ids, candidate_bounds;
+        candidate_ids := COALESCE(candidate_ids, '{}');
+        candidate_count := cardinality(candidate_ids);
+        ranking_ids := candidate_ids[1:COALESCE(ranking_size, candidate_count)];
+        ranking_ranks := array_fill(0::float, ARRAY[cardinality(ranking_ids)]);
+    ELSE
+        -- Determine the appropriate search function
+        IF useTsVector THEN
+            ts_query := to_tsquery('simple', input2);
+        ELSE
+            ts_query := websearch_to_tsquery('simple', input2);
+        END IF;
+
+        -- The bounds only hold for the lexemes of the query, which a prefix doesn't name.
+        prune := order_by_rank AND order_direction = 'DESC' AND ranking_size IS NOT NULL
+                 AND NOT (useTsVector AND input2 LIKE '%:*%');
+        IF prune THEN
+            -- The lexemes are taken from the phrase like the query takes them. Words of the operators, e.g. the
+            -- distance of <2>, only add lexemes, which loosens the bound but keeps it an upper one.
+            query_lexemes := tsvector_to_array(to_tsvector('simple', input2));
+            -- Each cover of ts_rank_cd adds at most the weight of its lexemes, 0.1 for the unweighted textsearch, and
+            -- a page has at most as many covers as occurrences of the query's lexemes. The factor is a little above
+            -- 0.1, so the float arithmetic of the rank can't exceed the bound. Pages without bounds are never pruned.
+            bound_expression := 'CASE WHEN p.textsearchtoptf IS NULL THEN ''Infinity''::float
+                ELSE 0.1001 * (SELECT SUM(COALESCE((p.textsearchtoptf->>l.lexeme)::int, p.textsearchtfcutoff))
+                               FROM unnest($4) AS l(lexeme)) END';
+            candidate_order := 'c.doc_bound DESC, c.doc_id';
+        ELSIF order_by_rank THEN
+            candidate_order := 'c.doc_id';
+        ELSE
+            candidate_order := FORMAT('c.documenttitle %s, c.doc_id', order_direction);
+        END IF;
+
+        -- Phase 1: the matching documents and their bounds, no page is ranked.
+        candidates_query := FORMAT('
+            WITH %s
+            SELECT ARRAY_AGG(c.doc_id ORDER BY %s), ARRAY_AGG(c.doc_bound ORDER BY %s)
+            FROM (
+                SELECT p.document_id::integer AS doc_id, d.documenttitle, COALESCE(MAX(%s), 0)::float AS doc_bound
+                FROM page p
+                %s
+                JOIN document d ON d.id = p.document_id
+                WHERE p.textsearch @@ $3
+                AND d.corpusid = $2
+                AND ($1 IS NULL OR p.document_id IN (SELECT document_id FROM filter_matches))
+                GROUP BY p.document_id, d.documenttitle
+            ) c', filters_cte, candidate_order, candidate_order, bound_expression, additional_join_2);
+
+        EXECUTE candidates_query USING uce_metadata_filters, corpus_id, ts_query, query_lexemes
+        INTO candidate_ids, candidate_bounds;
+        candidate_ids := COALESCE(candidate_ids, '{}');
+        candidate_count := cardinality(candidate_ids);
+
+        -- A document ranks by the average rank of its matching pages.
+        rank_query := FORMAT('
+            SELECT ARRAY_AGG(s.doc_id), ARRAY_AGG(s.rank)
+            FROM (
+                SELECT p.document_id::integer AS doc_id, AVG(ts_rank_cd(p.textsearch, $1))::float AS rank
+                FROM page p
+                %s
+                WHERE p.document_id = ANY($2)
+                AND p.textsearch @@ $1
+                GROUP BY p.document_id
+            ) s', additional_join_2);
+
+        IF order_by_rank THEN
+            -- Phase 2: rank the documents in the order of their bounds. The batches grow, so that a loose bound
+            -- doesn't cost too many rounds.
+            batch_size := GREATEST(COALESCE(ranking_size, 0), 256);
+            WHILE pos <= candidate_count LOOP
+                batch_end := LEAST(pos + batch_size - 1, candidate_count);
+                EXECUTE rank_query USING ts_query, candidate_ids[pos:batch_end] INTO batch_ids, batch_ranks;
+                scored_ids := scored_ids || COALESCE(batch_ids, '{}');
+                scored_ranks := scored_ranks || COALESCE(batch_ranks, '{}');
+                pos := batch_end + 1;
+                batch_size := LEAST(batch_size * 2, 65536);
+
+                IF prune AND pos <= candidate_count AND cardinality(scored_ids) >= ranking_size THEN
+                    SELECT r INTO threshold FROM unnest(scored_ranks) AS r ORDER BY r DESC OFFSET ranking_size - 1 LIMIT 1;
+                    -- The next bound is the highest of all documents that are left. Ties are ranked as well, since
+                    -- the document id decides between them.
+                    EXIT WHEN threshold > candidate_bounds[pos];
+                END IF;
+            END LOOP;
+
+            EXECUTE FORMAT('
+                SELECT ARRAY_AGG(s.id ORDER BY s.rank %s, s.id), ARRAY_AGG(s.rank ORDER BY s.rank %s, s.id)
+                FROM (SELECT * FROM unnest($1, $2) AS s(id, rank) ORDER BY s.rank %s, s.id LIMIT $3) s',
+                order_direction, order_direction, order_direction)
+            USING scored_ids, scored_ranks, ranking_size
+            INTO ranking_ids, ranking_ranks;
+        ELSE
+            -- Ordered by the title, the documents within the depth only need their ranks for display.
+            ranking_ids := candidate_ids[1:COALESCE(ranking_size, candidate_count)];
+            EXECUTE rank_query USING ts_query, ranking_ids INTO batch_ids, batch_ranks;
+            SELECT ARRAY_AGG(COALESCE(r.rank, 0) ORDER BY o.idx) INTO ranking_ranks
+            FROM unnest(ranking_ids) WITH ORDINALITY AS o(id, idx)
+            LEFT JOIN unnest(batch_ids, batch_ranks) AS r(id, rank) ON r.id = o.id;
+        END IF;
+    END IF;
+
+    ranking_ids := COALESCE(ranking_ids, '{}');
+    ranking_ranks := COALESCE(ranking_ranks, '{}');
+
+    -- The requested page of the ranking.
+    document_ids := ranking_ids[offset_count + 1:offset_count + take_count];
+    document_ranks := ranking_ranks[offset_count + 1:offset_count + take_count];
+
+    IF count_all THEN
+        total_count_out := candidate_count;
+
+        named_entities_found := ARRAY(
+            SELECT ARRAY[ne.id::text, ne.coveredtext, COUNT(ne.id)::text, ne.typee, ne.document_id::text]
+            FROM unnest(document_ids) AS rd(id)
             JOIN namedentity ne ON rd.id = ne.document_id
-            GROUP BY ne.id, ne.coveredtext, ne.typee, ne.document_id
-        ),
-        extracted_times AS NOT MATERIALIZED (
-            SELECT ARRAY[t.id::text, t.coveredtext, COUNT(t.id)::text, t.valuee, t.document_id::text] 
-            FROM ranked_documents rd
+            GROUP BY ne.id, ne.coveredtext, ne.typee, ne.document_id);
+        time_found := ARRAY(
+            SELECT ARRAY[t.id::text, t.coveredtext, COUNT(t.id)::text, t.valuee, t.document_id::text]
+            FROM unnest(document_ids) AS rd(id)
             JOIN time t ON rd.id = t.document_id
-            GROUP BY t.id, t.coveredtext, t.valuee, t.document_id
-        ),
-        extracted_taxons AS NOT MATERIALIZED (
-            SELECT ARRAY[ta.id::text, ta.coveredtext, COUNT(ta.id)::text, ta.primaryname, ta.document_id::text] 
-            FROM ranked_documents rd
+            GROUP BY t.id, t.coveredtext, t.valuee, t.document_id);
+        taxons_found := ARRAY(
+            SELECT ARRAY[ta.id::text, ta.coveredtext, COUNT(ta.id)::text, ta.primaryname, ta.document_id::text]
+            FROM unnest(document_ids) AS rd(id)
             JOIN biofidtaxon ta ON rd.id = ta.document_id
-            GROUP BY ta.id, ta.coveredtext, ta.primaryname, ta.document_id
-        )
-        SELECT 
-            CASE WHEN $8 THEN (SELECT total_count FROM counted_documents) ELSE NULL END,
-            ARRAY(SELECT id FROM ranked_documents),
-            ARRAY(SELECT rank FROM ranked_documents),
-            CASE WHEN $8 THEN ARRAY(SELECT * FROM extracted_entities) ELSE ARRAY[]::text[][] END,
-            CASE WHEN $8 THEN ARRAY(SELECT * FROM extracted_times) ELSE ARRAY[]::text[][] END,
-            CASE WHEN $8 THEN ARRAY(SELECT * FROM extracted_taxons) ELSE ARRAY[]::text[][] END,
-            ARRAY(SELECT snippets FROM ranked_documents)
-    ', additional_join_1, ts_function, additional_join_2, ts_function, order_by_clause);
-
-    EXECUTE query
-    USING uce_metadata_filters, corpus_id, useTsVector, input2, uce_metadata_filters, take_count, offset_count, count_all
-    INTO total_count_temp, document_ids_temp, document_ranks_temp, named_entities_temp, time_temp, taxons_temp, snippets_temp;
-
-    total_count_out := total_count_temp;
-    document_ids := document_ids_temp;
-    document_ranks := document_ranks_temp;
-    named_entities_found := named_entities_temp;
-    time_found := time_temp;
-    taxons_found := taxons_temp;
-    snippets_found := snippets_temp;
+            GROUP BY ta.id, ta.coveredtext, ta.primaryname, ta.document_id);
+    ELSE
+        named_entities_found := ARRAY[]::text[][];
+        time_found := ARRAY[]::text[][];
+        taxons_found := ARRAY[]::text[][];
+    END IF;
+
+    -- The headlines are only built for the documents of the page. Each element wraps the snippets of a document in
+    -- an array, as the callers expect them.
+    IF build_snippets THEN
+        snippets_found := ARRAY(
+            SELECT jsonb_build_array(s.snippets)::text
+            FROM uce_search_fulltext_snippets(document_ids, input2, useTsVector) s
+            ORDER BY s.document_idx);
+    ELSE
+        snippets_found := ARRAY[]::text[];
+    END IF;
+
+    -- The ids and ranks of the hits in order, so the following pages can be served without searching again.
+    IF return_ranking THEN
+        ranked_document_ids := ranking_ids;
+        ranked_document_ranks := ranking_ranks;
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+-- The snippets of the given documents, for a page of hits that is served from the ranking of an earlier search.
+-- uce_search_layer_fulltext builds the snippets of its page with it as well. They are indexed by the 1-based position
+-- of each document.
+CREATE OR REPLACE FUNCTION uce_search_fulltext_snippets(
+    IN document_ids integer[],
+    IN input2 text,
+    IN useTsVector boolean DEFAULT true
+)
+RETURNS TABLE(document_idx integer, snippets jsonb) AS $$
+DECLARE
+    ts_query tsquery;
+BEGIN
+    IF input2 IS NULL OR input2 = '' THEN
+        RETURN QUERY
+        SELECT d.idx::integer,
+               (SELECT jsonb_agg(jsonb_build_object('snippet', LEFT(p.coveredtext, 400), 'pageId', p.id) ORDER BY p.id ASC)
+                FROM (SELECT p.id, p.coveredtext
+                      FROM page p
+                      WHERE p.document_id = d.id
+                      ORDER BY p.id ASC
+                      LIMIT 1) p)
+        FROM unnest(document_ids) WITH ORDINALITY AS d(id, idx);
+        RETURN;
+    END IF;
+
+    IF useTsVector THEN
+        ts_query := to_tsquery('simple', input2);
+    ELSE
+        ts_query := websearch_to_tsquery('simple', input2);
+    END IF;
+
+    RETURN QUERY
+    SELECT d.idx::integer,
+           (SELECT jsonb_agg(jsonb_build_object(
+                       'snippet', ts_headline(
+                           'simple',
+                           p.coveredtext,
+                           ts_query,
+                           'StartSel=<b>, StopSel=</b>, MaxWords=60, MinWords=35, MaxFragments=3, FragmentDelimiter=" [...] "'
+                       ),
+                       'pageId', p.id
+                   ) ORDER BY p.rank_score DESC)
+            FROM (SELECT p.id, p.coveredtext, ts_rank_cd(p.textsearch, ts_query) AS rank_score
+                  FROM page p
+                  WHERE p.document_id = d.id
+                  AND p.textsearch @@ ts_query
+                  ORDER BY rank_score DESC
+                  LIMIT 5) p)
+    FROM unnest(document_ids) WITH ORDINALITY AS d(id, idx);
 END;
 $$ LANGUAGE plpgsql;
@@ -20,8 +20,12 @@ BEGIN
 END $$;
 
 
+-- The function used to take no arguments; a second overload would make calls without one ambiguous.
+DROP FUNCTION IF EXISTS update_geoname_locations();
+
 -- Create or replace the function to update the geoname.location column
-CREATE OR REPLACE FUNCTION update_geoname_locations()
+-- max_document_id limits the update to the geonames of the documents up to that id, NULL updates all of them.
+CREATE OR REPLACE FUNCTION update_geoname_locations(max_document_id bigint DEFAULT NULL)
 RETURNS integer AS $$
 DECLARE
     updated_count integer;
@@ -33,7 +37,8 @@ BEGIN
         location_geom = ST_SetSRID(ST_MakePoint(longitude, latitude), 4326)::geometry
     WHERE location_geog IS NULL
       AND latitude IS NOT NULL
-      AND longitude IS NOT NULL;
+      AND longitude IS NOT NULL
+      AND (max_document_id IS NULL OR document_id <= max_document_id);
 
     GET DIAGNOSTICS updated_count = ROW_COUNT;
 
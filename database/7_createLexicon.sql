@@ -1,4 +1,7 @@
--- Now create the refresh_lexicon stored procedure
+-- Now create the refresh_lexicon stored procedure.
+-- The importer adds the counts of each document to the lexicon when it stores the document, and its annotations are
+-- stored as lexicalized already. This procedure only catches up with annotations that aren't lexicalized yet, e.g. of
+-- older imports, and with force, recounts the whole lexicon.
 CREATE OR REPLACE FUNCTION refresh_lexicon(tables TEXT[], force BOOLEAN DEFAULT FALSE)
 RETURNS INTEGER
 LANGUAGE plpgsql AS $$
@@ -9,55 +12,73 @@ DECLARE
     inserted_count INTEGER;
 BEGIN
 
-    -- If we force, delete all entries from the lexicon
+    -- If we force, delete all entries from the lexicon. Don't force while an import is running, its documents
+    -- would be counted twice.
     IF force THEN
         EXECUTE 'DELETE FROM lexicon';
     END IF;
 
     FOREACH table_name IN ARRAY tables
     LOOP
-        -- Dynamically build SQL based on the value of 'force'
-        dyn_sql := format($f$
-            WITH new_lex AS (
-                SELECT
-                    coveredtext,
-                    COUNT(*) AS cnt,
-                    LEFT(coveredtext, 1) AS startchar
-                FROM %I
-                WHERE coveredtext IS NOT NULL
-                %s
-                GROUP BY coveredtext
-            ),
-            inserted AS (
-                INSERT INTO lexicon (coveredtext, typee, count, startcharacter)
-                SELECT nl.coveredtext, %L, nl.cnt, LOWER(nl.startchar)
-                FROM new_lex nl
-                ON CONFLICT (coveredtext, typee) DO NOTHING
-                RETURNING 1
-            )
-            SELECT COUNT(*) FROM inserted;
-        $f$,
-        table_name,
-        CASE WHEN force THEN '' ELSE 'AND (NOT isLexicalized OR isLexicalized IS NULL)' END,
-        table_name);
-
-        EXECUTE dyn_sql INTO inserted_count;
-        total_new_entries := total_new_entries + COALESCE(inserted_count, 0);
-
-        -- Update isLexicalized flag if not in force mode
-        IF NOT force THEN
-            dyn_sql := format($f$
-                UPDATE %I
-                SET isLexicalized = TRUE
-                WHERE coveredtext IS NOT NULL AND NOT isLexicalized;
+        IF force THEN
+            -- Only the rows that aren't lexicalized yet are written, then everything is counted anew.
+            EXECUTE format($f$
+                UPDATE %I SET isLexicalized = TRUE
+                WHERE coveredtext IS NOT NULL AND isLexicalized IS NOT TRUE;
             $f$, table_name);
 
-            EXECUTE dyn_sql;
+            dyn_sql := format($f$
+                WITH inserted AS (
+                    INSERT INTO lexicon (coveredtext, typee, count, startcharacter)
+                    SELECT coveredtext, %L, COUNT(*), LOWER(LEFT(coveredtext, 1))
+                    FROM %I
+                    WHERE coveredtext IS NOT NULL
+                    GROUP BY coveredtext
+                    RETURNING 1
+                )
+                SELECT COUNT(*) FROM inserted;
+            $f$, table_name, table_name);
+        ELSE
+            -- Marking and counting is one statement, so rows inserted in between can't be marked without being
+            -- counted. Existing entries get the new occurrences added to their count.
+            dyn_sql := format($f$
+                WITH marked AS (
+                    UPDATE %I SET isLexicalized = TRUE
+                    WHERE coveredtext IS NOT NULL AND isLexicalized IS NOT TRUE
+                    RETURNING coveredtext
+                ),
+                inserted AS (
+                    INSERT INTO lexicon AS l (coveredtext, typee, count, startcharacter)
+                    SELECT coveredtext, %L, COUNT(*), LOWER(LEFT(coveredtext, 1))
+                    FROM marked
+                    GROUP BY coveredtext
+                    ORDER BY coveredtext
+                    ON CONFLICT (coveredtext, typee) DO UPDATE SET count = l.count + EXCLUDED.count
+                    RETURNING (xmax = 0) AS is_new
+                )
+                SELECT COUNT(*) FROM inserted WHERE is_new;
+            $f$, table_name, table_name);
         END IF;
+
+        EXECUTE dyn_sql INTO inserted_count;
+        total_new_entries := total_new_entries + COALESCE(inserted_count, 0);
     END LOOP;
 
     RETURN total_new_entries;
 END;
 $$;
 
-
+-- Finding the annotations that aren't lexicalized yet mustn't scan the whole tables, once nearly all rows are.
+DO $$
+DECLARE
+    table_name TEXT;
+BEGIN
+    FOREACH table_name IN ARRAY ARRAY['namedentity', 'geoname', 'lemma', 'time', 'gazetteertaxon', 'gnfindertaxon',
+                                      'completenegation', 'focus', 'cue', 'scope', 'xscope', 'unifiedtopic']
+    LOOP
+        IF to_regclass(table_name) IS NOT NULL THEN
+            EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON %I (id) WHERE coveredtext IS NOT NULL AND isLexicalized IS NOT TRUE',
+                           'idx_' || table_name || '_not_lexicalized', table_name);
+        END IF;
+    END LOOP;
+END $$;
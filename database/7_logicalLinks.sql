@@ -1,12 +1,13 @@
+-- Resolves the fromId and toId of all logical links that aren't resolved yet. The importer resolves the links of a
+-- document as soon as it is stored, so this only catches up with links whose other end was missing back then.
+-- Each annotation table is resolved with a single join instead of a lookup per link.
 CREATE OR REPLACE FUNCTION refresh_links()
 RETURNS INTEGER
 LANGUAGE plpgsql AS $$
 DECLARE
     updated_count INTEGER := 0;
     temp_count INTEGER := 0;
-    rec RECORD;
-    annotation_id INTEGER;
-    doc_internal_id INTEGER;
+    table_name TEXT;
 BEGIN
     ------------------------ FROM IDS ------------------------
     ----------- Update fromId if null or 0 in documentlink
@@ -31,40 +32,35 @@ BEGIN
     GET DIAGNOSTICS temp_count = ROW_COUNT;
     updated_count := updated_count + temp_count;
 
-    ----------- Update fromId in annotationtodocumentlink using dynamic table lookup
-    FOR rec IN
-        SELECT id, corpusid, fromannotationtypetable, frombegin, fromend, fromm
+    ----------- Update fromId in annotationtodocumentlink, one join per annotation table
+    FOR table_name IN
+        SELECT DISTINCT fromannotationtypetable
         FROM annotationtodocumentlink
         WHERE (fromId IS NULL OR fromId = 0)
     LOOP
-        -- First, try to get the internal document ID
-        SELECT id INTO doc_internal_id
-        FROM document
-        WHERE corpusid = rec.corpusid AND documentid = rec.fromm;
-
-        IF doc_internal_id IS NOT NULL THEN
-            BEGIN
-                -- Now fetch the annotation ID using dynamic SQL
-                EXECUTE format(
-                    'SELECT id FROM %I WHERE document_id = $1 AND beginn = $2 AND endd = $3 LIMIT 1',
-                    rec.fromannotationtypetable
-                )
-                INTO annotation_id
-                USING doc_internal_id, rec.frombegin, rec.fromend;
-
-                IF annotation_id IS NOT NULL THEN
-                    UPDATE annotationtodocumentlink
-                    SET fromId = annotation_id
-                    WHERE id = rec.id;
-
-                    updated_count := updated_count + 1;
-                END IF;
-            EXCEPTION WHEN OTHERS THEN
-                RAISE NOTICE 'Failed dynamic annotation lookup for rec.id=%, table=%.', rec.id, rec.fromannotationtypetable;
-            END;
-        ELSE
-            RAISE NOTICE 'Document not found for corpusid=%, documentid=%', rec.corpusid, rec.fromm;
+        IF to_regclass(table_name) IS NULL THEN
+            RAISE NOTICE 'Skipping the links of the unknown annotation table %.', table_name;
+            CONTINUE;
         END IF;
+
+        EXECUTE format($f$
+            WITH resolved AS (
+                SELECT DISTINCT ON (dl.id) dl.id AS link_id, a.id AS annotation_id
+                FROM annotationtodocumentlink dl
+                         JOIN document d ON d.corpusid = dl.corpusid AND d.documentid = dl.fromm
+                         JOIN %I a ON a.document_id = d.id AND a.beginn = dl.frombegin AND a.endd = dl.fromend
+                WHERE (dl.fromId IS NULL OR dl.fromId = 0)
+                  AND dl.fromannotationtypetable = %L
+                ORDER BY dl.id, a.id
+            )
+            UPDATE annotationtodocumentlink dl
+            SET fromId = r.annotation_id
+            FROM resolved r
+            WHERE dl.id = r.link_id;
+        $f$, table_name, table_name);
+
+        GET DIAGNOSTICS temp_count = ROW_COUNT;
+        updated_count := updated_count + temp_count;
     END LOOP;
 
     ------------------------ TO IDS ------------------------
@@ -90,42 +86,54 @@ BEGIN
     GET DIAGNOSTICS temp_count = ROW_COUNT;
     updated_count := updated_count + temp_count;
 
-    ----------- Update toId in documenttoannotationlink using dynamic table lookup
-    FOR rec IN
-        SELECT id, corpusid, toannotationtypetable, tobegin, toend, too
+    ----------- Update toId in documenttoannotationlink, one join per annotation table
+    FOR table_name IN
+        SELECT DISTINCT toannotationtypetable
         FROM documenttoannotationlink
         WHERE (toId IS NULL OR toId = 0)
     LOOP
-        -- First, try to get the internal document ID
-        SELECT id INTO doc_internal_id
-        FROM document
-        WHERE corpusid = rec.corpusid AND documentid = rec.too;
-
-        IF doc_internal_id IS NOT NULL THEN
-            BEGIN
-                -- Now fetch the annotation ID using dynamic SQL
-                EXECUTE format(
-                    'SELECT id FROM %I WHERE document_id = $1 AND beginn = $2 AND endd = $3 LIMIT 1',
-                    rec.toannotationtypetable
-                )
-                INTO annotation_id
-                USING doc_internal_id, rec.tobegin, rec.toend;
-
-                IF annotation_id IS NOT NULL THEN
-                    UPDATE documenttoannotationlink
-                    SET toId = annotation_id
-                    WHERE id = rec.id;
-
-                    updated_count := updated_count + 1;
-                END IF;
-            EXCEPTION WHEN OTHERS THEN
-                RAISE NOTICE 'Failed dynamic annotation lookup for rec.id=%, table=%.', rec.id, rec.toannotationtypetable;
-            END;
-        ELSE
-            RAISE NOTICE 'Document not found for corpusid=%, documentid=%', rec.corpusid, rec.too;
+        IF to_regclass(table_name) IS NULL THEN
+            RAISE NOTICE 'Skipping the links of the unknown annotation table %.', table_name;
+            CONTINUE;
         END IF;
+
+        EXECUTE format($f$
+            WITH resolved AS (
+                SELECT DISTINCT ON (dl.id) dl.id AS link_id, a.id AS annotation_id
+                FROM documenttoannotationlink dl
+                         JOIN document d ON d.corpusid = dl.corpusid AND d.documentid = dl.too
+                         JOIN %I a ON a.document_id = d.id AND a.beginn = dl.tobegin AND a.endd = dl.toend
+                WHERE (dl.toId IS NULL OR dl.toId = 0)
+                  AND dl.toannotationtypetable = %L
+                ORDER BY dl.id, a.id
+            )
+            UPDATE documenttoannotationlink dl
+            SET toId = r.annotation_id
+            FROM resolved r
+            WHERE dl.id = r.link_id;
+        $f$, table_name, table_name);
+
+        GET DIAGNOSTICS temp_count = ROW_COUNT;
+        updated_count := updated_count + temp_count;
     END LOOP;
 
     RETURN updated_count;
 END;
 $$;
+
+-- Only the unresolved links are ever looked up by their document, so these partial indexes stay small.
+DO $$
+DECLARE
+    table_name TEXT;
+BEGIN
+    FOREACH table_name IN ARRAY ARRAY['documentlink', 'documenttoannotationlink', 'annotationtodocumentlink']
+    LOOP
+        IF to_regclass(table_name) IS NOT NULL THEN
+            EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON %I (corpusid, fromm) WHERE (fromid IS NULL OR fromid = 0)',
+                           'idx_' || table_name || '_unresolved_from', table_name);
+            EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON %I (corpusid, too) WHERE (toid IS NULL OR toid = 0)',
+                           'idx_' || table_name || '_unresolved_to', table_name);
+        END IF;
+    END LOOP;
+END $$;
+CREATE INDEX IF NOT EXISTS idx_document_corpusid_documentid ON document (corpusid, documentid);
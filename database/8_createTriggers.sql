@@ -1,5 +1,23 @@
 -- Whenever a new page entity is added. We need that column for faster fulltext searches.
 ALTER TABLE page ADD COLUMN IF NOT EXISTS textsearch tsvector;
+
+-- The bounds of the term frequencies in the textsearch of a page: the frequencies of its most frequent lexemes and,
+-- for every other lexeme, the highest frequency among them. The fulltext search bounds the rank of a page with them,
+-- without reading its tsvector, see uce_search_layer_fulltext.
+ALTER TABLE page ADD COLUMN IF NOT EXISTS textsearchtoptf jsonb;
+ALTER TABLE page ADD COLUMN IF NOT EXISTS textsearchtfcutoff smallint;
+
+CREATE OR REPLACE FUNCTION uce_textsearch_tf_bounds(IN vector tsvector, OUT top_tf jsonb, OUT tf_cutoff smallint) AS $$
+    WITH tf AS (
+        SELECT lexeme,
+               COALESCE(array_length(positions, 1), 1) AS tf,
+               ROW_NUMBER() OVER (ORDER BY COALESCE(array_length(positions, 1), 1) DESC, lexeme) AS position
+        FROM unnest(vector)
+    )
+    SELECT COALESCE((SELECT jsonb_object_agg(tf.lexeme, tf.tf) FROM tf WHERE tf.position <= 16), '{}'::jsonb),
+           COALESCE((SELECT tf.tf FROM tf WHERE tf.position = 17), 0)::smallint;
+$$ LANGUAGE sql IMMUTABLE;
+
 CREATE OR REPLACE FUNCTION update_textsearch()
 RETURNS TRIGGER AS $$
 BEGIN
@@ -7,6 +25,8 @@ BEGIN
         'simple',
         (SELECT documenttitle FROM document WHERE id = NEW.document_id) || ' ' || NEW.coveredtext
     );
+    SELECT b.top_tf, b.tf_cutoff INTO NEW.textsearchtoptf, NEW.textsearchtfcutoff
+    FROM uce_textsearch_tf_bounds(NEW.textsearch) b;
     RETURN NEW;
 END;
 $$ LANGUAGE plpgsql;
@@ -23,3 +43,19 @@ BEGIN
                  EXECUTE FUNCTION update_textsearch();';
     END IF;
 END $$;
+
+-- Pages that were stored before the bounds existed are searched as well, they just aren't pruned. This fills in the
+-- bounds of up to batch_size of them and returns how many it did, so it can be called until it returns 0:
+-- SELECT uce_backfill_textsearch_tf_bounds();
+CREATE OR REPLACE FUNCTION uce_backfill_textsearch_tf_bounds(batch_size integer DEFAULT 10000)
+RETURNS integer AS $$
+DECLARE
+    updated integer;
+BEGIN
+    UPDATE page p
+    SET (textsearchtoptf, textsearchtfcutoff) = (SELECT b.top_tf, b.tf_cutoff FROM uce_textsearch_tf_bounds(p.textsearch) b)
+    WHERE p.id IN (SELECT id FROM page WHERE textsearchtoptf IS NULL AND textsearch IS NOT NULL LIMIT batch_size);
+    GET DIAGNOSTICS updated = ROW_COUNT;
+    RETURN updated;
+END;
+$$ LANGUAGE plpgsql;
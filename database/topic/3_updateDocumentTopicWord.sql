@@ -1,3 +1,4 @@
+TRUNCATE TABLE documenttopicwords;
 INSERT INTO documenttopicwords
 SELECT
     st.document_id,
@@ -1,3 +1,4 @@
+TRUNCATE TABLE corpustopicwords;
 INSERT INTO corpustopicwords
 SELECT
     d.corpusid,
@@ -6,6 +7,6 @@ SELECT
     SUM(dtw.probability)
         / SUM(SUM(dtw.probability)) OVER (PARTITION BY d.corpusid, dtw.topiclabel) AS probability
 FROM documenttopicwords dtw
-         JOIN document d ON dtw.document_id = d.document_id
+         JOIN document d ON dtw.document_id = d.id
 GROUP BY d.corpusid, dtw.topiclabel, dtw.word
 ORDER BY d.corpusid, dtw.topiclabel, probability DESC;
\ No newline at end of file
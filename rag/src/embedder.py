@@ -44,6 +44,19 @@ class Embedder:
 
         raise NotImplementedError(f"Backend \"{self.backend}\" is not implemented.")
 
+    def embed_many(self, texts: List[str]) -> List[List[float]]:
+        # Same as embed, but encodes all texts within a single model call.
+        queries = ['Represent this sentence for searching relevant passages: ' + text for text in texts]
+
+        if self.backend == self.BACKEND_SENTENCE_TRANSFORMERS:
+            with torch.no_grad():
+                embeddings = self.model.encode(queries)
+            return [embedding.tolist() for embedding in embeddings]
+        elif self.backend == self.BACKEND_OLLAMA:
+            return self.model.embed_documents(queries)
+
+        raise NotImplementedError(f"Backend \"{self.backend}\" is not implemented.")
+
 if __name__ == "__main__":
     # You can specify the device here, e.g., torch.device('cuda') for GPU or torch.device('cpu') for CPU
     # embedder = Embedder()
@@ -254,6 +254,24 @@ def embed():
         print(ex)
     return jsonify(result)
 
+@app.route('/embed/batch', methods=['POST'])
+def embed_batch():
+    result = {
+        "status": 400
+    }
+    try:
+        data = request.get_json()
+        texts = data['texts']
+        config = data['config'] if "config" in data else None
+        backend = data['backend'] if "backend" in data else None
+        result['status'] = 200
+        result['message'] = get_embedding_model(backend, config).embed_many(texts)
+    except Exception as ex:
+        result['message'] = "There was an exception caught while trying to embed a batch: " + str(ex)
+        print("Exception while trying to get embeddings of a batch: ")
+        print(ex)
+    return jsonify(result)
+
 @app.route('/rag/context', methods=['POST'])
 def context():
     result = {
@@ -1228,7 +1228,7 @@ function renderTopicEntityChordDiagram(containerId) {
                 // Step 2: count link frequency as weight
                 if (topic && entityType) {
                     const linkKey = topic + '___' + entityType;
-                    linkCounts.set(linkKey, (linkCounts.get(linkKey) || 0) + 1);
+                    linkCounts.set(linkKey, (linkCounts.get(linkKey) || 0) + (item.count || 1));
                 }
             });
 
@@ -1279,7 +1279,7 @@ function renderTopicEntityChordDiagram(containerId) {
                     // The other side of the relation
                     const key = isEntity ? item.topicLabel : item.entityType;
                     if (key) {
-                        aggMap.set(key, (aggMap.get(key) || 0) + 1);
+                        aggMap.set(key, (aggMap.get(key) || 0) + (item.count || 1));
                     }
                 });
 
@@ -1520,17 +1520,20 @@ function renderTemporalExplorer(containerId) {
                 if (!dataMap.has(page)) {
                     dataMap.set(page, {
                         page,
-                        Taxon: [],
-                        Topics: [],
-                        "Named Entities": [],
-                        Lemmas: [],
-                        Geonames: []
+                        Taxon: {},
+                        Topics: {},
+                        "Named Entities": {},
+                        Lemmas: {},
+                        Geonames: {}
                     });
                 }
 
+                // The rows come aggregated per page and value, with their count.
                 const value = item[valueField];
                 if (value) {
-                    dataMap.get(page)[key].push(transformValue ? transformValue(value) : value);
+                    const freq = dataMap.get(page)[key];
+                    const label = transformValue ? transformValue(value) : value;
+                    freq[label] = (freq[label] || 0) + (item.count || 1);
                 }
             });
         });
@@ -1540,7 +1543,7 @@ function renderTemporalExplorer(containerId) {
 
         const seriesData = annotationSources
             .map(({ key, label, color }) => {
-                const data = sorted.map(row => row[key]?.length || 0);
+                const data = sorted.map(row => Object.values(row[key] || {}).reduce((sum, count) => sum + count, 0));
                 const hasNonZero = data.some(count => count > 0);
                 return hasNonZero ? { name: label, data, color } : null;
             })
@@ -1565,13 +1568,8 @@ function renderTemporalExplorer(containerId) {
 
             annotationSources.forEach(({ key, label, color }) => {
                 if (!seriesNames.has(label)) return;
-                const items = record[key];
-                if (!items || items.length === 0) return;
-
-                const freq = {};
-                items.forEach(item => {
-                    freq[item] = (freq[item] || 0) + 1;
-                });
+                const freq = record[key];
+                if (!freq || Object.keys(freq).length === 0) return;
 
                 const topN = Object.entries(freq)
                     .sort((a, b) => b[1] - a[1])
@@ -96,7 +96,7 @@
         <div class="flexed align-items-center justify-content-center h-100 w-100">
             <p class="mb-0 text">
                 <i class="rotate fas fa-circle-notch mr-1"></i> ${languageResource.get("loadingPages")} <span
-                        class="color-prime loaded-pages-count">0</span>/${document.getPages()?size}</p>
+                        class="color-prime loaded-pages-count">0</span>/${document.getPageCount()}</p>
         </div>
     </div>
 
@@ -115,7 +115,7 @@
             <div class="w-100">
                 <div class="position-relative reader-container container"
                      data-id="${document.getId()?string?replace('.', '')?replace(',', '')}"
-                     data-pagescount="${document.getPages()?size?string?replace('.', '')?replace(',', '')}" data-searchtokens="${(searchTokens)!''}">
+                     data-pagescount="${document.getPageCount()?string?replace('.', '')?replace(',', '')}" data-searchtokens="${(searchTokens)!''}">
 
                     <!-- Topic navigation buttons (hidden by default) -->
                     <div class="topic-navigation-buttons">
@@ -68,8 +68,145 @@ public class CommonConfig {
     public String getPostgresqlProperty(String prop) {
         return getProperty("postgresql." + prop);
     }
+
+    /**
+     * A numeric setting of the connection pool (postgresql.pool.*) or the given default, if it isn't set.
+     */
+    public int getPostgresqlPoolProperty(String prop, int defaultValue) {
+        var value = getPostgresqlProperty("pool." + prop);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * How long corpora, their configs and metadata filters are served from memory before they are read again.
+     * Writes through the data interface invalidate them right away, this only bounds changes of other processes.
+     */
+    public long getCorpusCacheTimeToLiveMs() {
+        var seconds = getProperty("corpus.cache.ttl.seconds");
+        return (seconds == null || seconds.isBlank() ? 60 : Long.parseLong(seconds.trim())) * 1000;
+    }
+
+    /**
+     * The most contextual annotation links (annotation to location or time) that are created for a single page.
+     * They are a cross product, which can explode for dense pages. 0 disables the limit.
+     */
+    public int getContextLinksMaxPerPage() {
+        var max = getProperty("import.context.links.max.per.page");
+        return max == null || max.isBlank() ? 10000 : Integer.parseInt(max.trim());
+    }
+
+    /**
+     * How the hits of several search layers, e.g. the fulltext and the embeddings, are merged into one ranking:
+     * rrf, weighted or none, which shows the layers separately. The hits are only merged when ordered by their rank.
+     */
+    public String getSearchHybridFusion() {
+        var fusion = getProperty("search.hybrid.fusion");
+        return fusion == null || fusion.isBlank() ? "none" : fusion.trim();
+    }
+
+    public int getSearchHybridRrfK() {
+        var k = getProperty("search.hybrid.rrf.k");
+        return k == null || k.isBlank() ? 60 : Integer.parseInt(k.trim());
+    }
+
+    /**
+     * The weight of a search layer within the hybrid ranking, e.g. of "fulltext" or "embeddings".
+     */
+    public double getSearchHybridWeight(String layer) {
+        var weight = getProperty("search.hybrid.weight." + layer);
+        return weight == null || weight.isBlank() ? 1.0 : Double.parseDouble(weight.trim());
+    }
+
+    /**
+     * How long the hybrid search waits for its layers. The layers that haven't answered by then are left out.
+     */
+    public long getSearchHybridLayerTimeoutMs() {
+        var timeout = getProperty("search.hybrid.layer.timeout.ms");
+        return timeout == null || timeout.isBlank() ? 5000 : Long.parseLong(timeout.trim());
+    }
+
+    /**
+     * How many threads run the layers of the hybrid searches, across all searches.
+     */
+    public int getSearchHybridLayerThreads() {
+        var threads = getProperty("search.hybrid.layer.threads");
+        return threads == null || threads.isBlank() ? 16 : Integer.parseInt(threads.trim());
+    }
+
+    public int getSearchHybridEmbeddingCandidates() {
+        var candidates = getProperty("search.hybrid.embedding.candidates");
+        return candidates == null || candidates.isBlank() ? 100 : Integer.parseInt(candidates.trim());
+    }
+
+    /**
+     * How many documents beyond the requested page the postgres fulltext search ranks exactly. The following pages are
+     * served from this ranking; only the pages behind it search again.
+     */
+    public int getSearchFulltextRankingDepth() {
+        var depth = getProperty("search.fulltext.ranking.depth");
+        return depth == null || depth.isBlank() ? 200 : Integer.parseInt(depth.trim());
+    }
+
+    /**
+     * Who builds the snippets of the fulltext hits: postgres with ts_headline, or java, which highlights the visible
+     * hits in the portal and caches them.
+     */
+    public String getSearchSnippetsEngine() {
+        var engine = getProperty("search.snippets.engine");
+        return engine == null || engine.isBlank() ? "postgres" : engine.trim();
+    }
+
+    /**
+     * Whether the fulltext search procedure builds the snippets with ts_headline, see {@link #getSearchSnippetsEngine()}.
+     */
+    public boolean isSearchSnippetsBuiltInDatabase() {
+        return "postgres".equalsIgnoreCase(getSearchSnippetsEngine());
+    }
+
+    /**
+     * How many documents the java snippet engine keeps the snippets of, per search query.
+     */
+    public int getSearchSnippetsCacheSize() {
+        var size = getProperty("search.snippets.cache.size");
+        return size == null || size.isBlank() ? 5000 : Integer.parseInt(size.trim());
+    }
+
+    /**
+     * Which backend runs the fulltext search: postgres or index, the inverted index the importer builds.
+     */
+    public String getSearchBackend() {
+        var backend = getProperty("search.backend");
+        return backend == null || backend.isBlank() ? "postgres" : backend.trim();
+    }
+
+    /**
+     * Whether the importer writes the imported documents into the inverted search index.
+     */
+    public boolean getSearchIndexBuild() {
+        return Boolean.parseBoolean(getProperty("search.index.build"));
+    }
+
+    public String getSearchIndexLocation() {
+        var location = getProperty("search.index.location");
+        return location == null || location.isBlank() ? "../index/" : location.trim();
+    }
+
+    public int getSearchIndexMaxHits() {
+        var maxHits = getProperty("search.index.max.hits");
+        return maxHits == null || maxHits.isBlank() ? 20000 : Integer.parseInt(maxHits.trim());
+    }
+
+    public int getSearchIndexCommitInterval() {
+        var interval = getProperty("search.index.commit.interval");
+        return interval == null || interval.isBlank() ? 500 : Integer.parseInt(interval.trim());
+    }
+
     public int getLocationEnrichmentLimit() {return Integer.parseInt(getPostgresqlProperty("enrichment.location.max"));}
 
+    public boolean useBulkDocumentInsert() {
+        return Boolean.parseBoolean(getPostgresqlProperty("bulk.insert.documents"));
+    }
+
     public String getGbifOccurrencesSearchUrl() {
         return getProperty("gbif.occurrences.search.url");
     }
@@ -96,6 +233,32 @@ public class CommonConfig {
         return getProperty("rag.webserver.base.url");
     }
 
+    /**
+     * Amount of workers that calculate the embeddings of imported documents from the embedding job queue.
+     * With 0, the embeddings are calculated synchronously while postprocessing each document.
+     */
+    public int getEmbeddingJobWorkers() {
+        var workers = getProperty("rag.embedding.job.workers");
+        return workers == null ? 0 : Integer.parseInt(workers.trim());
+    }
+
+    /**
+     * How long an importer waits for the embedding jobs of its corpus before it postprocesses the corpus anyway.
+     * The jobs left over stay in the queue for the next import.
+     */
+    public int getEmbeddingJobDrainTimeoutMinutes() {
+        var minutes = getProperty("rag.embedding.job.drain.timeout.minutes");
+        return minutes == null || minutes.isBlank() ? 240 : Integer.parseInt(minutes.trim());
+    }
+
+    /**
+     * Amount of texts that are sent to the embedder with a single request.
+     */
+    public int getEmbeddingBatchSize() {
+        var batchSize = getProperty("rag.embedding.batch.size");
+        return batchSize == null ? 32 : Integer.parseInt(batchSize.trim());
+    }
+
     public Configuration getKeyCloakConfiguration() {
         return new Configuration(
                 getProperty("keycloak.auth_server_url"),
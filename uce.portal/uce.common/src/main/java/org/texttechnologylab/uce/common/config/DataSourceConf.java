@@ -0,0 +1,162 @@
+package org.texttechnologylab.uce.common.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The single connection pool of the postgresql database. Hibernate and the plain jdbc access of the RAGService
+ * both borrow their connections from here, so the amount of open connections is bounded per process.
+ * The pool is configured through the postgresql.pool.* properties of the common.conf.
+ * <p>
+ * Optionally, read-only operations are routed to the replicas of postgresql.replica.urls, each with a pool of its own.
+ * They are picked round robin; a replica that can't hand out a connection is skipped for a while and if none is
+ * available, the reads go to the primary again.
+ */
+public class DataSourceConf {
+    private static final Logger logger = LogManager.getLogger(DataSourceConf.class);
+    private static final long REPLICA_BACKOFF_MS = 30_000;
+
+    private static volatile HikariDataSource dataSource;
+    private static volatile List<Replica> replicas;
+    private static final AtomicInteger nextReplica = new AtomicInteger(0);
+    private static final AtomicLong replicaReads = new AtomicLong(0);
+    private static final AtomicLong replicaFallbacks = new AtomicLong(0);
+
+    public static DataSource getDataSource() {
+        if (dataSource == null) {
+            synchronized (DataSourceConf.class) {
+                if (dataSource == null) dataSource = buildDataSource(new CommonConfig());
+            }
+        }
+        return dataSource;
+    }
+
+    /**
+     * A read-only connection of the next available replica or null, if there are no replicas configured or none of
+     * them is reachable right now. Callers then read from the primary.
+     */
+    public static Connection getReplicaConnection() {
+        var available = getReplicas();
+        if (available.isEmpty()) return null;
+
+        var start = Math.floorMod(nextReplica.getAndIncrement(), available.size());
+        for (var i = 0; i < available.size(); i++) {
+            var replica = available.get((start + i) % available.size());
+            if (replica.unavailableUntil > System.currentTimeMillis()) continue;
+            try {
+                var connection = replica.dataSource.getConnection();
+                replicaReads.incrementAndGet();
+                return connection;
+            } catch (SQLException ex) {
+                replica.unavailableUntil = System.currentTimeMillis() + REPLICA_BACKOFF_MS;
+                logger.warn("The replica " + replica.dataSource.getJdbcUrl() + " is unavailable, skipping it for "
+                        + REPLICA_BACKOFF_MS / 1000 + "s.", ex);
+            }
+        }
+        replicaFallbacks.incrementAndGet();
+        return null;
+    }
+
+    public static boolean hasReplicas() {
+        return !getReplicas().isEmpty();
+    }
+
+    /**
+     * The current usage of the pool for the logs and the system status, e.g. to see if requests wait for connections.
+     */
+    public static String getPoolStatus() {
+        if (dataSource == null) return "not initialized";
+        var pool = dataSource.getHikariPoolMXBean();
+        if (pool == null) return "starting";
+        var status = "active=" + pool.getActiveConnections() + ", idle=" + pool.getIdleConnections()
+                + ", total=" + pool.getTotalConnections() + "/" + dataSource.getMaximumPoolSize()
+                + ", awaiting=" + pool.getThreadsAwaitingConnection();
+        if (replicas != null && !replicas.isEmpty()) {
+            status += ", replicas=" + replicas.size() + ", replicaReads=" + replicaReads.get()
+                    + ", replicaFallbacks=" + replicaFallbacks.get();
+        }
+        return status;
+    }
+
+    private static List<Replica> getReplicas() {
+        if (replicas == null) {
+            synchronized (DataSourceConf.class) {
+                if (replicas == null) replicas = buildReplicas(new CommonConfig());
+            }
+        }
+        return replicas;
+    }
+
+    private static List<Replica> buildReplicas(CommonConfig config) {
+        var urls = config.getPostgresqlProperty("replica.urls");
+        var result = new ArrayList<Replica>();
+        if (urls == null || urls.isBlank()) return result;
+
+        var urlList = Arrays.stream(urls.split(",")).map(String::trim).filter(url -> !url.isEmpty()).toList();
+        for (var i = 0; i < urlList.size(); i++) {
+            // A replica that is down shouldn't stall the reads for long, they fall back to the primary instead.
+            result.add(new Replica(buildDataSource(config, "uce-postgresql-replica-" + (i + 1), urlList.get(i),
+                    config.getPostgresqlPoolProperty("replica.connection.timeout.ms", 2_000), true)));
+        }
+        logger.info("Routing read-only operations to " + result.size() + " replicas.");
+        return result;
+    }
+
+    private static HikariDataSource buildDataSource(CommonConfig config) {
+        return buildDataSource(config, "uce-postgresql", config.getPostgresqlProperty("hibernate.connection.url"),
+                config.getPostgresqlPoolProperty("connection.timeout.ms", 30_000), false);
+    }
+
+    private static HikariDataSource buildDataSource(CommonConfig config, String poolName, String jdbcUrl,
+                                                    int connectionTimeout, boolean readOnly) {
+        var hikariConfig = new HikariConfig();
+        hikariConfig.setPoolName(poolName);
+        hikariConfig.setDriverClassName(config.getPostgresqlProperty("connection.driver_class"));
+        hikariConfig.setJdbcUrl(jdbcUrl);
+        hikariConfig.setUsername(config.getPostgresqlProperty("hibernate.connection.username"));
+        hikariConfig.setPassword(config.getPostgresqlProperty("hibernate.connection.password"));
+
+        hikariConfig.setMaximumPoolSize(config.getPostgresqlPoolProperty("maximum.size", 20));
+        hikariConfig.setMinimumIdle(config.getPostgresqlPoolProperty("minimum.idle", 2));
+        hikariConfig.setConnectionTimeout(connectionTimeout);
+        hikariConfig.setReadOnly(readOnly);
+        hikariConfig.setIdleTimeout(config.getPostgresqlPoolProperty("idle.timeout.ms", 600_000));
+        hikariConfig.setMaxLifetime(config.getPostgresqlPoolProperty("max.lifetime.ms", 1_800_000));
+        // 0 disables the leak detection. Otherwise, a connection held longer than this is logged with its stacktrace.
+        hikariConfig.setLeakDetectionThreshold(config.getPostgresqlPoolProperty("leak.detection.ms", 0));
+        // Don't fail the startup if the database isn't up yet - the SystemJob keeps testing the connection.
+        hikariConfig.setInitializationFailTimeout(-1);
+        // Exposes the pool metrics as JMX beans as well.
+        hikariConfig.setRegisterMbeans(true);
+
+        // The statement cache lives in the pgjdbc driver, per pooled connection.
+        hikariConfig.addDataSourceProperty("preparedStatementCacheQueries",
+                config.getPostgresqlPoolProperty("statement.cache.queries", 256));
+        hikariConfig.addDataSourceProperty("preparedStatementCacheSizeMiB",
+                config.getPostgresqlPoolProperty("statement.cache.size.mib", 5));
+        hikariConfig.addDataSourceProperty("prepareThreshold",
+                config.getPostgresqlPoolProperty("statement.prepare.threshold", 5));
+
+        return new HikariDataSource(hikariConfig);
+    }
+
+    private static class Replica {
+        private final HikariDataSource dataSource;
+        private volatile long unavailableUntil = 0;
+
+        private Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
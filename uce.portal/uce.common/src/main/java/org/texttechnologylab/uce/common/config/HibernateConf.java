@@ -16,6 +16,7 @@ import org.texttechnologylab.uce.common.models.corpus.links.AnnotationToDocument
 import org.texttechnologylab.uce.common.models.corpus.links.DocumentLink;
 import org.texttechnologylab.uce.common.models.corpus.links.DocumentToAnnotationLink;
 import org.texttechnologylab.uce.common.models.gbif.GbifOccurrence;
+import org.texttechnologylab.uce.common.models.imp.ImportFile;
 import org.texttechnologylab.uce.common.models.imp.ImportLog;
 import org.texttechnologylab.uce.common.models.imp.UCEImport;
 import org.texttechnologylab.uce.common.models.negation.*;
@@ -73,6 +74,7 @@ public class HibernateConf {
         metadataSources.addAnnotatedClass(UCELog.class);
         metadataSources.addAnnotatedClass(UCEImport.class);
         metadataSources.addAnnotatedClass(ImportLog.class);
+        metadataSources.addAnnotatedClass(ImportFile.class);
         metadataSources.addAnnotatedClass(Image.class);
         //negations
         metadataSources.addAnnotatedClass(CompleteNegation.class);
@@ -98,9 +100,8 @@ public class HibernateConf {
         var config = new CommonConfig();
         settings.put("connection.driver_class", config.getPostgresqlProperty("connection.driver_class"));
         settings.put("dialect", config.getPostgresqlProperty("dialect"));
-        settings.put("hibernate.connection.url",config.getPostgresqlProperty("hibernate.connection.url"));
-        settings.put("hibernate.connection.username", config.getPostgresqlProperty("hibernate.connection.username"));
-        settings.put("hibernate.connection.password", config.getPostgresqlProperty("hibernate.connection.password"));
+        // The connections come from the shared pool, which knows the url and credentials.
+        settings.put("hibernate.connection.datasource", DataSourceConf.getDataSource());
         settings.put("hibernate.current_session_context_class", config.getPostgresqlProperty("hibernate.current_session_context_class"));
         settings.put("hibernate.show_sql", config.getPostgresqlProperty("hibernate.show_sql"));
         settings.put("hibernate.format_sql", config.getPostgresqlProperty("hibernate.format_sql"));
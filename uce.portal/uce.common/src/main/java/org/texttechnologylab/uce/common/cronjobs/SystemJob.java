@@ -3,6 +3,7 @@ package org.texttechnologylab.uce.common.cronjobs;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.context.ApplicationContext;
+import org.texttechnologylab.uce.common.config.DataSourceConf;
 import org.texttechnologylab.uce.common.services.*;
 
 public class SystemJob implements Runnable {
@@ -24,7 +25,8 @@ public class SystemJob implements Runnable {
             try {
                 // First, check all service connections - maybe a new one has connected
                 // DB
-                this.serviceContext.getBean(PostgresqlDataInterface_Impl.class).TestConnection();
+                var db = this.serviceContext.getBean(PostgresqlDataInterface_Impl.class);
+                db.TestConnection();
 
                 // Jena sparql
                 this.serviceContext.getBean(JenaSparqlService.class).TestConnection();
@@ -38,7 +40,8 @@ public class SystemJob implements Runnable {
                 // Authentication Server
                 this.serviceContext.getBean(AuthenticationService.class).TestConnection();
 
-                logger.info("System CronJob is still running and has finished a cycle.");
+                logger.info("System CronJob is still running and has finished a cycle. Connection pool: " + DataSourceConf.getPoolStatus()
+                        + " | Corpus cache: " + db.getCorpusCacheStatus());
                 Thread.sleep(this.interval * 1000);
             } catch (Exception ex) {
                 logger.error("System CronJob ran into an error. Continuing within the next cycle.", ex);
@@ -15,8 +15,16 @@ public interface Linkable {
 
     long getPrimaryDbIdentifier();
 
+    /**
+     * The type under which this object is linked. Usually its own class, but projections of an entity
+     * are linked as the entity they represent.
+     */
+    default Class<? extends Linkable> getLinkableType() {
+        return this.getClass();
+    }
+
     default String getClassName() {
-        var clazz = this.getClass();
+        var clazz = this.getLinkableType();
         return clazz.getName();
     }
 
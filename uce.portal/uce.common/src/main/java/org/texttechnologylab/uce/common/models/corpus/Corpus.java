@@ -37,7 +37,9 @@ public class Corpus extends ModelBase implements WikiModel {
 
     public List<UCEMetadataFilter> getUceMetadataFilters() {
         if(uceMetadataFilters == null) return new ArrayList<>();
-        uceMetadataFilters.sort(
+        // Sorted as a copy, since the corpus may be cached and shared between requests.
+        var sortedFilters = new ArrayList<>(uceMetadataFilters);
+        sortedFilters.sort(
                 Comparator
                         .comparing(UCEMetadataFilter::getValueType)
                         .thenComparing(filter -> {
@@ -61,7 +63,7 @@ public class Corpus extends ModelBase implements WikiModel {
                             return key;
                         })
         );
-        return uceMetadataFilters;
+        return sortedFilters;
     }
 
     public void setUceMetadataFilters(List<UCEMetadataFilter> uceMetadataFilters) {
@@ -21,6 +21,7 @@ import org.texttechnologylab.uce.common.models.corpus.links.AnnotationToDocument
 import org.texttechnologylab.uce.common.models.corpus.links.DocumentLink;
 import org.texttechnologylab.uce.common.models.corpus.links.DocumentToAnnotationLink;
 import org.texttechnologylab.uce.common.models.negation.*;
+import org.texttechnologylab.uce.common.models.search.SearchResultDocument;
 import org.texttechnologylab.uce.common.models.topic.TopicValueBase;
 import org.texttechnologylab.uce.common.models.topic.TopicValueBaseWithScore;
 import org.texttechnologylab.uce.common.models.topic.UnifiedTopic;
@@ -37,15 +38,18 @@ import java.util.stream.Stream;
 /*
 The documents should be scanned and extracted via OCR. This is a base class for that.
  */
-public class Document extends ModelBase implements WikiModel, Linkable {
+public class Document extends ModelBase implements WikiModel, Linkable, SearchResultDocument {
     @Override
     public String getWikiId() {
         return "D" + "-" + this.getId();
     }
 
+    public static final List<Class<? extends ModelBase>> COMPATIBLE_LINK_TYPES =
+            List.of(DocumentLink.class, DocumentToAnnotationLink.class, AnnotationToDocumentLink.class);
+
     @Override
     public List<Class<? extends ModelBase>> getCompatibleLinkTypes() {
-        return List.of(DocumentLink.class, DocumentToAnnotationLink.class, AnnotationToDocumentLink.class);
+        return COMPATIBLE_LINK_TYPES;
     }
 
     @Override
@@ -266,29 +270,7 @@ public class Document extends ModelBase implements WikiModel, Linkable {
         return getUceMetadata()
                 .stream()
                 .filter(u -> u.getValueType() != UCEMetadataValueType.JSON)
-                .sorted(Comparator
-                        .comparing(UCEMetadata::getValueType)
-                        .thenComparing(filter -> {
-                            // Try to extract a number in the beginning of the key
-                            String key = filter.getKey();
-
-                            // TODO this is a special case for Coh-Metrix, should be generalized
-                            // TODO duplicated in "Corpus getUceMetadataFilters"
-                            if (key.contains(":")) {
-                                String[] parts = key.split(":");
-                                if (parts.length > 1) {
-                                    try {
-                                        int number = Integer.parseInt(parts[0].trim());
-                                        return String.format("%05d", number);
-                                    } catch (NumberFormatException e) {
-                                        // return the original key on error
-                                    }
-                                }
-                            }
-
-                            return key;
-                        })
-                )
+                .sorted(UCEMetadata.displayOrder())
                 .toList();
     }
 
@@ -427,6 +409,14 @@ public class Document extends ModelBase implements WikiModel, Linkable {
                 .toList();
     }
 
+    public int getPageCount() {
+        return pages == null ? 0 : pages.size();
+    }
+
+    public int getFullTextLength() {
+        return fullText == null ? 0 : fullText.length();
+    }
+
     public List<Page> getPages(int take, int skip) {
         return pages.stream()
                 .sorted(Comparator.comparingInt(Page::getPageNumber))
@@ -0,0 +1,27 @@
+package org.texttechnologylab.uce.common.models.corpus;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * A window of the pages of a {@link Document}, as the reader lazy loads them. It is queried without the document
+ * entity, whose pages would otherwise all be fetched with their texts.
+ */
+@Getter
+public class DocumentPageWindow {
+    private final long documentId;
+    /**
+     * The pages are rendered by their offsets into the full text of the document.
+     */
+    private final String fullText;
+    private final int pageCount;
+    private final List<Page> pages;
+
+    public DocumentPageWindow(long documentId, String fullText, int pageCount, List<Page> pages) {
+        this.documentId = documentId;
+        this.fullText = fullText;
+        this.pageCount = pageCount;
+        this.pages = pages;
+    }
+}
@@ -106,4 +106,32 @@ public class UCEMetadata extends ModelBase {
     public void setComment(String comment) {
         this.comment = comment;
     }
+
+    /**
+     * The order in which the metadata of a document is shown: by type, then by key.
+     */
+    public static Comparator<UCEMetadata> displayOrder() {
+        return Comparator
+                .comparing(UCEMetadata::getValueType)
+                .thenComparing(filter -> {
+                    // Try to extract a number in the beginning of the key
+                    String key = filter.getKey();
+
+                    // TODO this is a special case for Coh-Metrix, should be generalized
+                    // TODO duplicated in "Corpus getUceMetadataFilters"
+                    if (key.contains(":")) {
+                        String[] parts = key.split(":");
+                        if (parts.length > 1) {
+                            try {
+                                int number = Integer.parseInt(parts[0].trim());
+                                return String.format("%05d", number);
+                            } catch (NumberFormatException e) {
+                                // return the original key on error
+                            }
+                        }
+                    }
+
+                    return key;
+                });
+    }
 }
@@ -23,7 +23,7 @@ public class LinkableNodeDto {
     public List<LinkableNodeDto> fromNodes;
 
     public LinkableNodeDto(Linkable linkable) {
-        this.type = linkable.getClass().getSimpleName();
+        this.type = linkable.getLinkableType().getSimpleName();
         this.unique = linkable.getUnique().toString();
     }
 
@@ -0,0 +1,26 @@
+package org.texttechnologylab.uce.common.models.dto;
+
+public class RAGEmbedBatchDto {
+    private int status;
+    private float[][] message;
+
+    public RAGEmbedBatchDto(){
+
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public float[][] getMessage() {
+        return message;
+    }
+
+    public void setMessage(float[][] message) {
+        this.message = message;
+    }
+}
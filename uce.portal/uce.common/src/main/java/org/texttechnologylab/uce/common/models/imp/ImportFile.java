@@ -0,0 +1,118 @@
+package org.texttechnologylab.uce.common.models.imp;
+
+import org.texttechnologylab.uce.common.models.ModelBase;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * An entry of the import manifest: one input file of a UCEImport with the state it has reached.
+ * A restarted import continues from these entries instead of walking the input folder again.
+ */
+@Entity
+@Table(name = "importfile", indexes = {@Index(name = "idx_importfile_importid", columnList = "importId")})
+public class ImportFile extends ModelBase {
+    private String importId;
+    @Column(columnDefinition = "TEXT")
+    private String path;
+    // Only hashed once the size or modification time of the file differ from a previous run.
+    private String contentHash;
+    private Long size;
+    private Long modified;
+    private ImportFileState state;
+    private int attempts;
+    private long updated;
+    @Column(columnDefinition = "TEXT")
+    private String message;
+
+    public ImportFile(String importId, String path, Long size, Long modified) {
+        this.importId = importId;
+        this.path = path;
+        this.size = size;
+        this.modified = modified;
+        this.state = ImportFileState.DISCOVERED;
+        this.updated = System.currentTimeMillis();
+    }
+
+    public ImportFile() {
+        this.updated = System.currentTimeMillis();
+    }
+
+    public String getImportId() {
+        return importId;
+    }
+
+    public void setImportId(String importId) {
+        this.importId = importId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    /**
+     * The last modification time of the file in milliseconds.
+     */
+    public Long getModified() {
+        return modified;
+    }
+
+    public void setModified(Long modified) {
+        this.modified = modified;
+    }
+
+    public ImportFileState getState() {
+        return state;
+    }
+
+    public void setState(ImportFileState state) {
+        this.state = state;
+        this.updated = System.currentTimeMillis();
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(long updated) {
+        this.updated = updated;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,12 @@
+package org.texttechnologylab.uce.common.models.imp;
+
+/**
+ * The state of a single input file within an import, in the order they are reached.
+ */
+public enum ImportFileState {
+    DISCOVERED,
+    PARSED,
+    PERSISTED,
+    POSTPROCESSED,
+    FAILED
+}
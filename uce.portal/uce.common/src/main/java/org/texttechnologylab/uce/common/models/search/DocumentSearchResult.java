@@ -11,6 +11,8 @@ public class DocumentSearchResult {
     private HashMap<Integer, ArrayList<PageSnippet>> searchSnippets;
     private HashMap<Long, ArrayList<PageSnippet>> searchSnippetsDocIdToSnippet;
     private HashMap<Integer, Float> searchRanks;
+    private ArrayList<Integer> rankedDocumentIds;
+    private ArrayList<Float> rankedDocumentRanks;
 
     private ArrayList<AnnotationSearchResult> foundNamedEntities = new ArrayList<>();
     private ArrayList<AnnotationSearchResult> foundTimes = new ArrayList<>();
@@ -77,6 +79,26 @@ public class DocumentSearchResult {
         this.foundCues = foundCues;
     }
 
+    /**
+     * The ids of all hits in the order of the search, not only those of the requested page. Null if the search
+     * layer doesn't return a ranking.
+     */
+    public ArrayList<Integer> getRankedDocumentIds() {
+        return rankedDocumentIds;
+    }
+
+    public void setRankedDocumentIds(ArrayList<Integer> rankedDocumentIds) {
+        this.rankedDocumentIds = rankedDocumentIds;
+    }
+
+    public ArrayList<Float> getRankedDocumentRanks() {
+        return rankedDocumentRanks;
+    }
+
+    public void setRankedDocumentRanks(ArrayList<Float> rankedDocumentRanks) {
+        this.rankedDocumentRanks = rankedDocumentRanks;
+    }
+
     public HashMap<Integer, Float> getSearchRanks() {
         return searchRanks;
     }
@@ -0,0 +1,82 @@
+package org.texttechnologylab.uce.common.models.search;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.texttechnologylab.uce.common.models.Linkable;
+import org.texttechnologylab.uce.common.models.ModelBase;
+import org.texttechnologylab.uce.common.models.corpus.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A read-only projection of a {@link Document} with just what a card in the search result list shows. It is loaded
+ * with a single query and without the full text, pages and the eagerly fetched annotations of the entity.
+ * For the links and the wiki, it poses as the document it summarizes.
+ */
+@Getter
+@Setter
+public class DocumentSummary implements SearchResultDocument {
+    private long id;
+    private String documentId;
+    private long corpusId;
+    private String documentTitle;
+    private String language;
+    private String mimeType;
+    private int pageCount;
+    private int fullTextLength;
+    /**
+     * A cut from the full text, starting after its first third, since that's usually the table of contents.
+     */
+    private String fullTextExcerpt;
+    private MetadataTitleInfo metadataTitleInfo = new MetadataTitleInfo();
+    private DocumentKeywordDistribution documentKeywordDistribution;
+    private DocumentTopThreeTopics documentTopThreeTopics;
+    private List<UCEMetadata> uceMetadata = new ArrayList<>();
+
+    public String getDocumentTitle() {
+        var title = metadataTitleInfo.getTitle() == null ? documentTitle : metadataTitleInfo.getTitle();
+        return title == null ? "(Unbekannt)" : title;
+    }
+
+    public String getLanguage() {
+        return language == null ? "-" : language;
+    }
+
+    public String getWikiId() {
+        return "D" + "-" + this.getId();
+    }
+
+    public List<UCEMetadata> getUceMetadataWithoutJson() {
+        return uceMetadata.stream()
+                .filter(u -> u.getValueType() != UCEMetadataValueType.JSON)
+                .sorted(UCEMetadata.displayOrder())
+                .toList();
+    }
+
+    public String getFullTextSnippet(int take) {
+        if (fullTextExcerpt == null || fullTextExcerpt.isEmpty()) {
+            return "";
+        }
+        // Opening HTML Tags may cause the UI HTML to break!
+        var words = Arrays.stream(fullTextExcerpt.replace("<", "").trim().split("\\s+")).toList();
+        // The excerpt most likely starts within a word, so we skip that one.
+        return String.join(" ", words.stream().skip(words.size() > take ? 1 : 0).limit(take).toList());
+    }
+
+    @Override
+    public Class<? extends Linkable> getLinkableType() {
+        return Document.class;
+    }
+
+    @Override
+    public List<Class<? extends ModelBase>> getCompatibleLinkTypes() {
+        return Document.COMPATIBLE_LINK_TYPES;
+    }
+
+    @Override
+    public long getPrimaryDbIdentifier() {
+        return this.getId();
+    }
+}
@@ -78,7 +78,7 @@ public class EnrichedSearchQuery {
     }
 
     public EnrichedSearchQuery parse(boolean proModeEnabled, long corpusId) throws DatabaseOperationException, IOException {
-        var corpusVm = db.getCorpusById(corpusId).getViewModel();
+        var corpusVm = db.getCorpusViewModelById(corpusId);
         var searchQuery = StringUtils.replaceSpacesInQuotes(this.originalQuery);
         var tokens = searchQuery.split(" ");
         var delimiter = proModeEnabled ? "'" : "\"";
@@ -0,0 +1,26 @@
+package org.texttechnologylab.uce.common.models.search;
+
+import org.texttechnologylab.uce.common.models.Linkable;
+import org.texttechnologylab.uce.common.models.corpus.DocumentKeywordDistribution;
+import org.texttechnologylab.uce.common.models.corpus.UCEMetadata;
+
+import java.util.List;
+
+/**
+ * What the search result list needs of a document. Implemented by the full Document entity and by the
+ * lightweight {@link DocumentSummary}, so the result list can be rendered from either.
+ */
+public interface SearchResultDocument extends Linkable {
+
+    long getId();
+
+    String getDocumentTitle();
+
+    DocumentKeywordDistribution getDocumentKeywordDistribution();
+
+    List<UCEMetadata> getUceMetadataWithoutJson();
+
+    int getPageCount();
+
+    int getFullTextLength();
+}
@@ -0,0 +1,51 @@
+package org.texttechnologylab.uce.common.models.search;
+
+/**
+ * A page of a search hit from which the snippets are built: its text and the sentences on it, with their offsets
+ * relative to the beginning of the page.
+ */
+public class SnippetPage {
+
+    private final int documentIdx;
+    private final long documentId;
+    private final int pageId;
+    private final String coveredText;
+    private final int[] sentenceBegins;
+    private final int[] sentenceEnds;
+
+    public SnippetPage(int documentIdx, long documentId, int pageId, String coveredText, int[] sentenceBegins, int[] sentenceEnds) {
+        this.documentIdx = documentIdx;
+        this.documentId = documentId;
+        this.pageId = pageId;
+        this.coveredText = coveredText;
+        this.sentenceBegins = sentenceBegins;
+        this.sentenceEnds = sentenceEnds;
+    }
+
+    /**
+     * The index of the document within the documents the pages were requested for.
+     */
+    public int getDocumentIdx() {
+        return documentIdx;
+    }
+
+    public long getDocumentId() {
+        return documentId;
+    }
+
+    public int getPageId() {
+        return pageId;
+    }
+
+    public String getCoveredText() {
+        return coveredText;
+    }
+
+    public int[] getSentenceBegins() {
+        return sentenceBegins;
+    }
+
+    public int[] getSentenceEnds() {
+        return sentenceEnds;
+    }
+}
@@ -16,6 +16,11 @@ public class CorpusViewModel {
         this.corpusConfig = CorpusConfig.fromJson(corpusConfig);
     }
 
+    public CorpusViewModel(Corpus corpus, CorpusConfig corpusConfig){
+        this.corpus = corpus;
+        this.corpusConfig = corpusConfig;
+    }
+
     public Corpus getCorpus() {
         return corpus;
     }
@@ -30,7 +30,7 @@ public class LinkableViewModel {
      */
     private void fetchLinks(){
         var allLinks = ExceptionUtils.tryCatchLog(
-                () ->db.getAllLinksOfLinkable(baseModel.getPrimaryDbIdentifier(), baseModel.getClass(), baseModel.getCompatibleLinkTypes()),
+                () ->db.getAllLinksOfLinkable(baseModel.getPrimaryDbIdentifier(), baseModel.getLinkableType(), baseModel.getCompatibleLinkTypes()),
                 (ex) -> logger.error("Error fetching all links connected to Linkable " + baseModel.getUnique(), ex));
         if(allLinks == null) return;
         this.incomingLinks = allLinks.stream().filter(l -> l.getToId() == baseModel.getPrimaryDbIdentifier())
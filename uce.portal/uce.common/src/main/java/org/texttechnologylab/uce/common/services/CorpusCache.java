@@ -0,0 +1,125 @@
+package org.texttechnologylab.uce.common.services;
+
+import org.texttechnologylab.uce.common.config.CorpusConfig;
+import org.texttechnologylab.uce.common.exceptions.DatabaseOperationException;
+import org.texttechnologylab.uce.common.models.corpus.Corpus;
+import org.texttechnologylab.uce.common.models.corpus.UCEMetadataFilter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the corpora, their parsed configs and their metadata filters in memory. They are read on nearly every request,
+ * but only change when something is imported into a corpus. Writes through the {@link PostgresqlDataInterface_Impl}
+ * invalidate the corpus right away; changes of another process, e.g. a separately running importer, show up after
+ * the time to live at the latest.
+ * <p>
+ * The cached objects are shared between all callers, so they must be treated as read-only.
+ */
+public class CorpusCache {
+
+    private final long timeToLiveMs;
+    private final Map<Long, Entry<Corpus>> corpora = new ConcurrentHashMap<>();
+    private final Map<Long, Entry<CorpusConfig>> corpusConfigs = new ConcurrentHashMap<>();
+    private final Map<Long, Entry<List<UCEMetadataFilter>>> metadataFilters = new ConcurrentHashMap<>();
+    private volatile Entry<List<Corpus>> allCorpora;
+
+    // Loads that started before an invalidation mustn't put their then outdated value into the cache.
+    private final AtomicLong generation = new AtomicLong(0);
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong invalidations = new AtomicLong(0);
+
+    /**
+     * @param timeToLiveMs How long an entry is served from the cache. With 0, nothing is cached at all.
+     */
+    public CorpusCache(long timeToLiveMs) {
+        this.timeToLiveMs = timeToLiveMs;
+    }
+
+    public Corpus getCorpus(long corpusId, Loader<Corpus> loader) throws DatabaseOperationException {
+        return get(corpora, corpusId, loader);
+    }
+
+    public CorpusConfig getCorpusConfig(long corpusId, Loader<CorpusConfig> loader) throws DatabaseOperationException {
+        return get(corpusConfigs, corpusId, loader);
+    }
+
+    public List<UCEMetadataFilter> getMetadataFilters(long corpusId, Loader<List<UCEMetadataFilter>> loader) throws DatabaseOperationException {
+        return get(metadataFilters, corpusId, loader);
+    }
+
+    public List<Corpus> getAllCorpora(Loader<List<Corpus>> loader) throws DatabaseOperationException {
+        var entry = allCorpora;
+        if (entry != null && entry.isValid()) {
+            hits.incrementAndGet();
+            return entry.value();
+        }
+        misses.incrementAndGet();
+        var currentGeneration = generation.get();
+        var value = loader.load();
+        if (value != null && timeToLiveMs > 0 && generation.get() == currentGeneration)
+            allCorpora = new Entry<>(value, System.currentTimeMillis() + timeToLiveMs);
+        return value;
+    }
+
+    /**
+     * Drops everything cached of the given corpus, e.g. after it has been written to.
+     */
+    public void invalidate(long corpusId) {
+        generation.incrementAndGet();
+        invalidations.incrementAndGet();
+        corpora.remove(corpusId);
+        corpusConfigs.remove(corpusId);
+        metadataFilters.remove(corpusId);
+        allCorpora = null;
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.incrementAndGet();
+        corpora.clear();
+        corpusConfigs.clear();
+        metadataFilters.clear();
+        allCorpora = null;
+    }
+
+    /**
+     * The hit and miss counters for the logs and the system status.
+     */
+    public String getStatus() {
+        var total = hits.get() + misses.get();
+        return "hits=" + hits.get() + ", misses=" + misses.get()
+                + ", hitRate=" + (total == 0 ? "-" : String.format("%.1f%%", hits.get() * 100.0 / total))
+                + ", invalidations=" + invalidations.get()
+                + ", corpora=" + corpora.size() + ", configs=" + corpusConfigs.size() + ", filters=" + metadataFilters.size();
+    }
+
+    private <T> T get(Map<Long, Entry<T>> cache, long corpusId, Loader<T> loader) throws DatabaseOperationException {
+        var entry = cache.get(corpusId);
+        if (entry != null && entry.isValid()) {
+            hits.incrementAndGet();
+            return entry.value();
+        }
+        misses.incrementAndGet();
+        var currentGeneration = generation.get();
+        var value = loader.load();
+        // Corpora that don't exist (yet) aren't cached, they may be created any moment.
+        if (value != null && timeToLiveMs > 0 && generation.get() == currentGeneration)
+            cache.put(corpusId, new Entry<>(value, System.currentTimeMillis() + timeToLiveMs));
+        return value;
+    }
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws DatabaseOperationException;
+    }
+
+    private record Entry<T>(T value, long expiresAt) {
+        private boolean isValid() {
+            return expiresAt > System.currentTimeMillis();
+        }
+    }
+}
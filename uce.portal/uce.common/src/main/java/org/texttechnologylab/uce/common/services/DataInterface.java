@@ -1,6 +1,7 @@
 package org.texttechnologylab.uce.common.services;
 
 import org.texttechnologylab.uce.common.exceptions.DatabaseOperationException;
+import org.texttechnologylab.uce.common.models.UIMAAnnotation;
 import org.texttechnologylab.uce.common.models.biofid.BiofidTaxon;
 import org.texttechnologylab.uce.common.models.biofid.GazetteerTaxon;
 import org.texttechnologylab.uce.common.models.biofid.GnFinderTaxon;
@@ -12,11 +13,14 @@ import org.texttechnologylab.uce.common.models.corpus.links.DocumentToAnnotation
 import org.texttechnologylab.uce.common.models.dto.UCEMetadataFilterDto;
 import org.texttechnologylab.uce.common.models.gbif.GbifOccurrence;
 import org.texttechnologylab.uce.common.models.globe.GlobeTaxon;
+import org.texttechnologylab.uce.common.models.imp.ImportFile;
 import org.texttechnologylab.uce.common.models.imp.ImportLog;
 import org.texttechnologylab.uce.common.models.imp.UCEImport;
 import org.texttechnologylab.uce.common.models.search.*;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 public interface DataInterface {
 
@@ -41,6 +45,12 @@ public interface DataInterface {
      */
     public boolean documentExists(long corpusId, String documentId) throws DatabaseOperationException;
 
+    /**
+     * Of the given documentIds, returns those that already exist in the given corpus and are post-processed.
+     * Checks all ids with a single query.
+     */
+    public Set<String> getFinishedDocumentIds(long corpusId, Collection<String> documentIds) throws DatabaseOperationException;
+
     /**
      * Gets a single corpus by its id.
      */
@@ -108,6 +118,12 @@ public interface DataInterface {
      */
     public List<Document> getManyDocumentsByIds(List<Integer> documentIds) throws DatabaseOperationException;
 
+    /**
+     * Gets the lightweight summaries of many documents by their ids, in the order of the given ids.
+     * Meant for result lists, as it skips the full text and the annotations of the documents.
+     */
+    public List<DocumentSummary> getManyDocumentSummariesByIds(List<Integer> documentIds) throws DatabaseOperationException;
+
     /**
      * Returns a list of lexicon entries depending on the parameters.
      */
@@ -204,6 +220,23 @@ public interface DataInterface {
      */
     public UCEImport getUceImportByImportId(String importId) throws DatabaseOperationException;
 
+    /**
+     * Gets the UCEImport of the given import and source path, or null if there is none (yet).
+     */
+    public UCEImport getUceImportByImportIdAndBasePath(String importId, String basePath) throws DatabaseOperationException;
+
+    /**
+     * Withdraws the finish of an importer instance of a UCEImport, e.g. because it starts or resumes its partition.
+     */
+    public void removeFinishedImporter(String importId, String basePath, int importerNumber) throws DatabaseOperationException;
+
+    /**
+     * Records that an importer instance of a UCEImport is done with its partition.
+     *
+     * @return The amount of distinct importer instances that are done, or -1 if this one was recorded before.
+     */
+    public int addFinishedImporter(String importId, String basePath, int importerNumber) throws DatabaseOperationException;
+
     /**
      * Generic operation that fetches documents given the parameters
      */
@@ -214,6 +247,11 @@ public interface DataInterface {
      */
     public Page getPageById(long id) throws DatabaseOperationException;
 
+    /**
+     * Gets many pages by their ids, without their blocks, lines and paragraphs.
+     */
+    public List<Page> getManyPagesByIds(Collection<Long> pageIds) throws DatabaseOperationException;
+
     /**
      * Gets a page by its documentid and whether the begin and end is in the page's begin and end.
      */
@@ -292,11 +330,46 @@ public interface DataInterface {
      */
     public Document getCompleteDocumentById(long id, int skipPages, int pageLimit) throws DatabaseOperationException;
 
+    /**
+     * Gets a document with what the reader shows around its pages. None of its annotation lists and none of the
+     * structure of its pages are loaded, fetch those through {@link #getPageWindowOfDocument} and
+     * {@link #getAnnotationsOfDocumentInRange}.
+     */
+    public Document getDocumentForReaderById(long id) throws DatabaseOperationException;
+
+    /**
+     * Gets the given window of pages of a document, ordered by their page number and with their structure (blocks,
+     * paragraphs, lines) initialized, together with the full text and the amount of pages of the document.
+     * Returns null if the document doesn't exist.
+     */
+    public DocumentPageWindow getPageWindowOfDocument(long documentId, int skipPages, int pageLimit) throws DatabaseOperationException;
+
+    /**
+     * Gets all annotations of a document that lie within the given character range, e.g. of a window of pages,
+     * sorted by their begin.
+     */
+    public List<UIMAAnnotation> getAnnotationsOfDocumentInRange(long documentId, int begin, int end) throws DatabaseOperationException;
+
     /**
      * Saves or updates an ImportLog belonging to a UCEImport.
      */
     public void saveOrUpdateImportLog(ImportLog importLog) throws DatabaseOperationException;
 
+    /**
+     * Saves many ImportLogs within a single transaction.
+     */
+    public void saveManyImportLogs(List<ImportLog> importLogs) throws DatabaseOperationException;
+
+    /**
+     * Gets the manifest of an import, that is every input file registered with the given importId.
+     */
+    public List<ImportFile> getImportFilesByImportId(String importId) throws DatabaseOperationException;
+
+    /**
+     * Saves or updates many manifest entries of an import within a single transaction.
+     */
+    public void saveOrUpdateManyImportFiles(List<ImportFile> importFiles) throws DatabaseOperationException;
+
     /**
      * Saves or updates a UCEImport object.
      */
@@ -0,0 +1,203 @@
+package org.texttechnologylab.uce.common.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+import org.texttechnologylab.uce.common.models.ModelBase;
+import org.texttechnologylab.uce.common.models.corpus.Document;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Writes a whole {@link Document} aggregate with batched JDBC inserts instead of cascading a session.save through
+ * every annotation. Since {@link ModelBase} uses IDENTITY ids, Hibernate has to insert these row by row. Here we
+ * preallocate the ids from the table sequences and send the rows of each annotation table in batches.
+ * <p>
+ * Only flat annotation tables are written this way, meaning entities without collections of their own. Everything
+ * else (the document itself, pages with their blocks and lines, negations, topics, ...) is still saved by Hibernate.
+ * The table and column mapping is taken from the Hibernate metamodel, so the schema stays exactly the same.
+ */
+class DocumentBulkWriter {
+    private static final Logger logger = LogManager.getLogger(DocumentBulkWriter.class);
+    private static final int JDBC_BATCH_SIZE = 1000;
+
+    /**
+     * The bulk writable collections of a document, in insert order: geonames are referenced by named entities,
+     * hence they come first.
+     */
+    private static final List<BulkCollection> BULK_COLLECTIONS = List.of(
+            new BulkCollection(Document::getGeoNames, (d, l) -> d.setGeoNames(cast(l))),
+            new BulkCollection(Document::getNamedEntities, (d, l) -> d.setNamedEntities(cast(l))),
+            new BulkCollection(Document::getSentences, (d, l) -> d.setSentences(cast(l))),
+            new BulkCollection(Document::getLemmas, (d, l) -> d.setLemmas(cast(l))),
+            new BulkCollection(Document::getTimes, (d, l) -> d.setTimes(cast(l))),
+            new BulkCollection(Document::getSentiments, (d, l) -> d.setSentiments(cast(l))),
+            new BulkCollection(Document::getSrLinks, (d, l) -> d.setSrLinks(cast(l))),
+            new BulkCollection(Document::getGazetteerTaxons, (d, l) -> d.setGazetteerTaxons(cast(l))),
+            new BulkCollection(Document::getGnFinderTaxons, (d, l) -> d.setGnFinderTaxons(cast(l))),
+            new BulkCollection(Document::getBiofidTaxons, (d, l) -> d.setBiofidTaxons(cast(l)))
+    );
+
+    private final SessionImplementor session;
+
+    DocumentBulkWriter(Session session) {
+        this.session = (SessionImplementor) session;
+    }
+
+    /**
+     * Saves the document within the session's transaction. The ids of all written annotations are set on the
+     * objects afterwards, just like a session.save would do. The document is evicted from the session afterwards,
+     * since everything of it is written already.
+     */
+    void save(Document document) {
+        // Detach the flat annotation lists so the cascade of session.save doesn't touch them.
+        var detached = new ArrayList<List<? extends ModelBase>>();
+        for (var collection : BULK_COLLECTIONS) {
+            var entities = collection.getter.apply(document);
+            if (entities != null && !entities.isEmpty() && isBulkWritable(entities.getFirst().getClass())) {
+                detached.add(entities);
+                collection.setter.accept(document, null);
+            } else {
+                detached.add(null);
+            }
+        }
+
+        try {
+            session.save(document);
+            // Pages have to be in the database before the annotations can reference them.
+            session.flush();
+
+            session.doWork(connection -> {
+                for (var entities : detached) {
+                    if (entities == null) continue;
+                    insertAll(connection, document.getId(), entities);
+                }
+            });
+            // The lists are put back below. While the document is still managed, the flush of the commit would
+            // cascade over their entities: with their preassigned ids, each would be updated row by row and each
+            // collection recreated with an update of its document_Id per element.
+            session.evict(document);
+        } finally {
+            for (var i = 0; i < BULK_COLLECTIONS.size(); i++) {
+                if (detached.get(i) != null) BULK_COLLECTIONS.get(i).setter.accept(document, detached.get(i));
+            }
+        }
+    }
+
+    /**
+     * An entity is bulk writable if it maps to a single table and has no collections that would need a cascade.
+     */
+    private boolean isBulkWritable(Class<?> entityClass) {
+        var persister = getPersister(entityClass);
+        if (persister.getEntityMetamodel().getSubclassEntityNames().size() > 1) return false;
+        return Arrays.stream(persister.getPropertyTypes()).noneMatch(Type::isCollectionType);
+    }
+
+    private AbstractEntityPersister getPersister(Class<?> entityClass) {
+        return (AbstractEntityPersister) session.getFactory().getMetamodel().entityPersister(entityClass);
+    }
+
+    private void insertAll(Connection connection, long documentId, List<? extends ModelBase> entities) throws SQLException {
+        var persister = getPersister(entities.getFirst().getClass());
+        var factory = session.getFactory();
+        var propertyTypes = persister.getPropertyTypes();
+        var insertable = persister.getPropertyInsertability();
+
+        // Collect the insertable properties with columns. The document reference is always written by us,
+        // since many annotations are only joined through the document's collection and don't set it themselves.
+        var properties = new ArrayList<Integer>();
+        var columns = new ArrayList<String>();
+        columns.add(persister.getIdentifierColumnNames()[0]);
+        for (var i = 0; i < propertyTypes.length; i++) {
+            var propertyColumns = persister.getPropertyColumnNames(i);
+            if (!insertable[i] || propertyColumns.length == 0) continue;
+            if (propertyColumns.length == 1 && isDocumentColumn(propertyColumns[0])) continue;
+            properties.add(i);
+            columns.addAll(Arrays.asList(propertyColumns));
+        }
+        columns.add("document_id");
+
+        var sql = "INSERT INTO " + persister.getTableName() + " (" + String.join(", ", columns) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        var ids = preallocateIds(connection, persister.getTableName(), persister.getIdentifierColumnNames()[0], entities.size());
+
+        try (var statement = connection.prepareStatement(sql)) {
+            var pending = 0;
+            for (var e = 0; e < entities.size(); e++) {
+                var entity = entities.get(e);
+                entity.setId(ids[e]);
+
+                var index = 1;
+                statement.setLong(index++, ids[e]);
+                for (var property : properties) {
+                    var type = propertyTypes[property];
+                    var value = persister.getPropertyValue(entity, property);
+                    if (type.isEntityType()) {
+                        // References (page, geoname) are written by their already assigned id.
+                        if (value instanceof ModelBase reference && reference.getId() != 0) statement.setLong(index, reference.getId());
+                        else statement.setNull(index, Types.BIGINT);
+                        index++;
+                    } else {
+                        var span = type.getColumnSpan(factory);
+                        var settable = new boolean[span];
+                        Arrays.fill(settable, true);
+                        type.nullSafeSet(statement, value, index, settable, session);
+                        index += span;
+                    }
+                }
+                statement.setLong(index, documentId);
+                statement.addBatch();
+
+                if (++pending == JDBC_BATCH_SIZE) {
+                    statement.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) statement.executeBatch();
+        }
+        logger.debug("Bulk inserted " + entities.size() + " rows into " + persister.getTableName());
+    }
+
+    /**
+     * Reserves the given amount of ids from the sequence behind the identity column in a single round trip.
+     */
+    private long[] preallocateIds(Connection connection, String table, String idColumn, int count) throws SQLException {
+        var ids = new long[count];
+        try (var statement = connection.prepareStatement(
+                "SELECT nextval(pg_get_serial_sequence(?, ?)) FROM generate_series(1, ?)")) {
+            statement.setString(1, table);
+            statement.setString(2, idColumn.replace("\"", ""));
+            statement.setInt(3, count);
+            try (var result = statement.executeQuery()) {
+                var i = 0;
+                while (result.next()) ids[i++] = result.getLong(1);
+                if (i != count) throw new SQLException("Could only preallocate " + i + " of " + count + " ids for " + table);
+            }
+        }
+        return ids;
+    }
+
+    private static boolean isDocumentColumn(String column) {
+        return column.replace("\"", "").equalsIgnoreCase("document_id");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> cast(List<? extends ModelBase> list) {
+        return (List<T>) list;
+    }
+
+    private record BulkCollection(Function<Document, List<? extends ModelBase>> getter,
+                                  BiConsumer<Document, List<? extends ModelBase>> setter) {
+    }
+}
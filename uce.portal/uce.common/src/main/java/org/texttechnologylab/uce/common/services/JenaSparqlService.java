@@ -9,6 +9,7 @@ import org.texttechnologylab.uce.common.models.dto.rdf.RDFNodeDto;
 import org.texttechnologylab.uce.common.models.dto.rdf.RDFRequestDto;
 import org.texttechnologylab.uce.common.models.dto.rdf.RDFSelectQueryDto;
 import org.texttechnologylab.uce.common.models.util.HealthStatus;
+import org.texttechnologylab.uce.common.utils.ListUtils;
 import org.texttechnologylab.uce.common.utils.RDFNodeDtoJsonDeserializer;
 import org.texttechnologylab.uce.common.utils.StringUtils;
 import org.texttechnologylab.uce.common.utils.SystemStatus;
@@ -20,10 +21,8 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * UPDATE 12-2024: I completely replaced the org.apache.jena.rdfconnection imports and libraries as they were
@@ -33,8 +32,26 @@ import java.util.List;
  */
 public class JenaSparqlService {
 
+    private static final int TAXON_CACHE_SIZE = 50_000;
+    private static final int TAXON_BATCH_SIZE = 50;
+
     private final CommonConfig config = new CommonConfig();
 
+    /**
+     * The same few thousand taxa occur over and over again within a corpus, so we keep the fetched triplets of each
+     * biofid url. An empty list means the url is unknown to the sparql database, which we cache as well.
+     * Bounded and least-recently-used, shared by all threads of the importer.
+     */
+    private final Map<String, List<RDFNodeDto>> taxonNodeCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, List<RDFNodeDto>>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<RDFNodeDto>> eldest) {
+                    return size() > TAXON_CACHE_SIZE;
+                }
+            });
+    private final AtomicLong taxonCacheHits = new AtomicLong();
+    private final AtomicLong taxonCacheMisses = new AtomicLong();
+
     /**
      * Initializes the service like setting the default connection url. Service has to be initialized before it can be used.
      *
@@ -65,8 +82,51 @@ public class JenaSparqlService {
             return null;
         }
 
-        var nodes = queryBySubject(biofidUrl);
-        return BiofidTaxon.createFromRdfNodes(nodes);
+        return queryBiofidTaxa(List.of(biofidUrl)).get(biofidUrl);
+    }
+
+    /**
+     * Given many biofidUrls, returns new BiofidTaxon objects per url. Known urls are served from the cache,
+     * the unknown ones are fetched with a single VALUES query per chunk instead of one request per url.
+     */
+    public Map<String, List<BiofidTaxon>> queryBiofidTaxa(Collection<String> biofidUrls) throws IOException, CloneNotSupportedException {
+        var taxa = new HashMap<String, List<BiofidTaxon>>();
+        if (!SystemStatus.JenaSparqlStatus.isAlive()) {
+            return taxa;
+        }
+
+        var nodesByUrl = new HashMap<String, List<RDFNodeDto>>();
+        var missing = new ArrayList<String>();
+        for (var url : new LinkedHashSet<>(biofidUrls)) {
+            var cached = taxonNodeCache.get(url);
+            if (cached != null) {
+                taxonCacheHits.incrementAndGet();
+                nodesByUrl.put(url, cached);
+            } else {
+                taxonCacheMisses.incrementAndGet();
+                missing.add(url);
+            }
+        }
+
+        for (var chunk : ListUtils.partitionList(missing, TAXON_BATCH_SIZE)) {
+            var fetched = queryBySubjects(chunk);
+            for (var url : chunk) {
+                // Urls without any triplets are cached as empty, so we don't ask for them again.
+                var nodes = List.copyOf(fetched.getOrDefault(url, List.of()));
+                taxonNodeCache.put(url, nodes);
+                nodesByUrl.put(url, nodes);
+            }
+        }
+
+        // The taxa are entities that get their own position and document, so they are always built new.
+        for (var entry : nodesByUrl.entrySet()) {
+            taxa.put(entry.getKey(), BiofidTaxon.createFromRdfNodes(entry.getValue()));
+        }
+        return taxa;
+    }
+
+    public String getTaxonCacheStatus() {
+        return "size=" + taxonNodeCache.size() + ", hits=" + taxonCacheHits.get() + ", misses=" + taxonCacheMisses.get();
     }
 
     /**
@@ -92,6 +152,32 @@ public class JenaSparqlService {
                 .toList();
     }
 
+    /**
+     * Like {@link #queryBySubject(String)}, but for many subjects at once through a VALUES clause.
+     * Returns the triplets grouped by their subject.
+     */
+    public Map<String, List<RDFNodeDto>> queryBySubjects(List<String> subs) throws IOException {
+        var nodesBySubject = new HashMap<String, List<RDFNodeDto>>();
+        if (!SystemStatus.JenaSparqlStatus.isAlive() || subs.isEmpty()) {
+            return nodesBySubject;
+        }
+
+        var command = "SELECT ?subject ?predicate ?object WHERE { " +
+                "   VALUES ?subject { {SUBS} } " +
+                "   ?subject ?predicate ?object . " +
+                "} ";
+        command = command.replace("{SUBS}", String.join("\n", subs.stream().map(s -> "<" + s + ">").toList()));
+        var result = executeCommand(command, RDFSelectQueryDto.class);
+        if (result == null || result.getResults() == null || result.getResults().getBindings() == null)
+            return nodesBySubject;
+
+        for (var node : result.getResults().getBindings()) {
+            if (node.getSubject() == null || node.getPredicate().getValue().contains("www.w3.org")) continue;
+            nodesBySubject.computeIfAbsent(node.getSubject().getValue(), k -> new ArrayList<>()).add(node);
+        }
+        return nodesBySubject;
+    }
+
     /**
      * Given an upper taxonomic rank such as class, genus, phylum etc., fetches all species of that and returns their names.
      */
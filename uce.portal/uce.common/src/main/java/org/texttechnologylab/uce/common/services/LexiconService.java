@@ -17,6 +17,8 @@ import org.texttechnologylab.uce.common.models.viewModels.lexicon.LexiconOccurre
 import javax.persistence.Table;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 @Service
 public class LexiconService {
@@ -44,6 +46,34 @@ public class LexiconService {
                     XScope.class,
                     UnifiedTopic.class));
 
+    /**
+     * The table names of the lexiconizable annotations, which are also the types of their lexicon entries.
+     */
+    public static List<String> getLexiconizableTables() {
+        var tables = new ArrayList<String>();
+        for (var annotation : lexiconizableAnnotations) {
+            if (annotation.isAnnotationPresent(Table.class)) {
+                tables.add(annotation.getAnnotation(Table.class).name().toLowerCase());
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Flags the lexiconizable annotations of a document that is about to be stored as lexicalized, since their
+     * counts are added to the lexicon together with the document.
+     */
+    public static void markAsLexicalized(Document document) {
+        Stream.<List<? extends UIMAAnnotation>>of(document.getNamedEntities(), document.getGeoNames(), document.getLemmas(), document.getTimes(),
+                        document.getGazetteerTaxons(), document.getGnFinderTaxons(), document.getCompleteNegations(),
+                        document.getFocuses(), document.getCues(), document.getScopes(), document.getXscopes(),
+                        document.getUnifiedTopics())
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .filter(annotation -> lexiconizableAnnotations.contains(annotation.getClass()))
+                .forEach(annotation -> annotation.setLexicalized(true));
+    }
+
     public LexiconService(PostgresqlDataInterface_Impl db) {
         this.db = db;
         this.commonConfig = new CommonConfig();
@@ -72,18 +102,11 @@ public class LexiconService {
     }
 
     /**
-     * Checks and updates the 'lexicon' for new entries or annotations that we can cache.
+     * Checks and updates the 'lexicon' for annotations that weren't lexicalized when they were stored, e.g. of older
+     * imports. Documents stored through the importer are counted right away and don't need this.
      */
     public int updateLexicon(boolean forceRecalculate) {
-        var tables = new ArrayList<String>();
-
-        // Here we gather all table names of the annotations we have lexiconized.
-        for (var annotation : lexiconizableAnnotations) {
-            if (annotation.isAnnotationPresent(Table.class)) {
-                tables.add(annotation.getAnnotation(Table.class).name().toLowerCase());
-            }
-        }
-
+        var tables = new ArrayList<>(getLexiconizableTables());
         var insertedLex = ExceptionUtils.tryCatchLog(()->db.callLexiconRefresh(tables, forceRecalculate),
                 (ex) -> logger.error("Error updating the lexicon: ", ex));
         return insertedLex == null ? -1 : insertedLex;
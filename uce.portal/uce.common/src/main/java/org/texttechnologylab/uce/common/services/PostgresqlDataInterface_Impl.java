@@ -3,6 +3,8 @@ package org.texttechnologylab.uce.common.services;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.hibernate.*;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
@@ -10,6 +12,9 @@ import org.hibernate.type.LongType;
 import org.hibernate.type.StandardBasicTypes;
 import org.springframework.stereotype.Service;
 import org.texttechnologylab.uce.common.annotations.Searchable;
+import org.texttechnologylab.uce.common.config.CommonConfig;
+import org.texttechnologylab.uce.common.config.CorpusConfig;
+import org.texttechnologylab.uce.common.config.DataSourceConf;
 import org.texttechnologylab.uce.common.config.HibernateConf;
 import org.texttechnologylab.uce.common.exceptions.DatabaseOperationException;
 import org.texttechnologylab.uce.common.exceptions.ExceptionUtils;
@@ -26,14 +31,17 @@ import org.texttechnologylab.uce.common.models.dto.map.MapClusterDto;
 import org.texttechnologylab.uce.common.models.dto.map.PointDto;
 import org.texttechnologylab.uce.common.models.gbif.GbifOccurrence;
 import org.texttechnologylab.uce.common.models.globe.GlobeTaxon;
+import org.texttechnologylab.uce.common.models.imp.ImportFile;
 import org.texttechnologylab.uce.common.models.imp.ImportLog;
 import org.texttechnologylab.uce.common.models.imp.UCEImport;
-import org.texttechnologylab.uce.common.models.negation.CompleteNegation;
+import org.texttechnologylab.uce.common.models.corpus.emotion.Emotion;
+import org.texttechnologylab.uce.common.models.negation.*;
 import org.texttechnologylab.uce.common.models.search.*;
 import org.texttechnologylab.uce.common.models.topic.TopicValueBase;
 import org.texttechnologylab.uce.common.models.topic.TopicWord;
 import org.texttechnologylab.uce.common.models.topic.UnifiedTopic;
 import org.texttechnologylab.uce.common.models.util.HealthStatus;
+import org.texttechnologylab.uce.common.models.viewModels.CorpusViewModel;
 import org.texttechnologylab.uce.common.utils.ReflectionUtils;
 import org.texttechnologylab.uce.common.utils.StringUtils;
 import org.texttechnologylab.uce.common.utils.SystemStatus;
@@ -43,16 +51,29 @@ import javax.persistence.criteria.Order;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import java.sql.Array;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.*;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class PostgresqlDataInterface_Impl implements DataInterface {
+    private static final Logger logger = LogManager.getLogger(PostgresqlDataInterface_Impl.class);
 
     private final SessionFactory sessionFactory;
+    private final boolean bulkInsertDocuments = new CommonConfig().useBulkDocumentInsert();
+    private final CorpusCache corpusCache = new CorpusCache(new CommonConfig().getCorpusCacheTimeToLiveMs());
+    private final int fulltextRankingDepth = new CommonConfig().getSearchFulltextRankingDepth();
+    private final boolean buildSnippetsInDatabase = new CommonConfig().isSearchSnippetsBuiltInDatabase();
+    // The amount of characters of the full text a DocumentSummary brings along for its snippet.
+    private static final int DOCUMENT_SUMMARY_EXCERPT_LENGTH = 2000;
+    // Sentiments and emotions span whole sentences or paragraphs, so they may reach this many characters over into
+    // a range of annotations.
+    private static final int ANNOTATION_RANGE_OVERLAP = 40000;
 
     private final Gson gson = new GsonBuilder()
             .registerTypeAdapter(UCEMetadataValueType.class, new UCEMetadataValueTypeOrdinalAdapter())
@@ -93,7 +114,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public ArrayList<AnnotationSearchResult> getAnnotationsOfCorpus(long corpusId, int skip, int take) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> session.doReturningWork((connection) -> {
+        return executeReadOnlySafely((session) -> session.doReturningWork((connection) -> {
 
             DocumentSearchResult search = null;
             try (var storedProcedure = connection.prepareCall("{call get_corpus_annotations" + "(?, ?, ?)}")) {
@@ -125,7 +146,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
                                                        int skip,
                                                        int take,
                                                        String fromAnnotationTypeTable) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> session.doReturningWork((connection) -> {
+        return executeReadOnlySafely((session) -> session.doReturningWork((connection) -> {
             try (var storedProcedure = connection.prepareCall("{call uce_query_geoname_timeline_links" + "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)}")) {
                 storedProcedure.setDouble(1, minLng);
                 storedProcedure.setDouble(2, minLat);
@@ -168,7 +189,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
                                                                       java.sql.Date fromDate,
                                                                       java.sql.Date toDate,
                                                                       long corpusId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> session.doReturningWork((connection) -> {
+        return executeReadOnlySafely((session) -> session.doReturningWork((connection) -> {
             try (var storedProcedure = connection.prepareCall("{call uce_query_clustered_geoname_timeline_cache" + "(?, ?, ?, ?, ?, ?, ?, ?)}")) {
                 storedProcedure.setDouble(1, minLng);
                 storedProcedure.setDouble(2, minLat);
@@ -194,7 +215,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<String> getIdentifiableTaxonsByValue(String token) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             String sql = "SELECT DISTINCT biofidurl FROM biofidtaxon WHERE primaryname ILIKE :token LIMIT 100";
 
             var query = session.createNativeQuery(sql); // No type/class here
@@ -209,7 +230,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public int countDocumentsInCorpus(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var criteria = session.createCriteria(Document.class);
             criteria.add(Restrictions.eq("corpusId", id));
             criteria.setProjection(Projections.rowCount());
@@ -219,7 +240,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
 
     @SuppressWarnings("deprecation")
     public int countPagesInCorpus(long corpusId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var criteria = session.createCriteria(Page.class, "page");
             criteria.createAlias("page.document", "document");
             criteria.add(Restrictions.eq("document.corpusId", corpusId));
@@ -243,8 +264,24 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
         });
     }
 
-    public CorpusTsnePlot getCorpusTsnePlotByCorpusId(long corpusId) throws DatabaseOperationException {
+    public Set<String> getFinishedDocumentIds(long corpusId, Collection<String> documentIds) throws DatabaseOperationException {
+        if (documentIds.isEmpty()) return new HashSet<>();
         return executeOperationSafely((session) -> {
+            var criteriaBuilder = session.getCriteriaBuilder();
+            var criteriaQuery = criteriaBuilder.createQuery(String.class);
+            var root = criteriaQuery.from(Document.class);
+
+            criteriaQuery.select(root.<String>get("documentId")).where(criteriaBuilder.and(
+                    criteriaBuilder.equal(root.get("corpusId"), corpusId),
+                    criteriaBuilder.isTrue(root.<Boolean>get("postProcessed")),
+                    root.get("documentId").in(documentIds)));
+
+            return new HashSet<>(session.createQuery(criteriaQuery).getResultList());
+        });
+    }
+
+    public CorpusTsnePlot getCorpusTsnePlotByCorpusId(long corpusId) throws DatabaseOperationException {
+        return executeReadOnlySafely((session) -> {
             var cb = session.getCriteriaBuilder();
             var query = cb.createQuery(CorpusTsnePlot.class);
             var root = query.from(CorpusTsnePlot.class);
@@ -255,15 +292,17 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<UCEMetadataFilter> getUCEMetadataFiltersByCorpusId(long corpusId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        var filters = corpusCache.getMetadataFilters(corpusId, () -> executeOperationSafely((session) -> {
             Criteria criteria = session.createCriteria(UCEMetadataFilter.class);
             criteria.add(Restrictions.eq("corpusId", corpusId));
             return (List<UCEMetadataFilter>) criteria.list();
-        });
+        }));
+        // The importer adds to the list it gets, which mustn't change the cached one.
+        return new ArrayList<>(filters);
     }
 
     public List<UCEMetadata> getUCEMetadataByDocumentId(long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             Criteria criteria = session.createCriteria(UCEMetadata.class);
             criteria.add(Restrictions.eq("documentId", documentId));
             // I want the JSON value types to be last in list.
@@ -276,7 +315,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<Document> getDocumentsByCorpusId(long corpusId, int skip, int take) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             // TODO: Hardcoded sql, but another instance where hibernate is fucking unusable. This SQL in HQL or whatever
             // crooked syntax is a million times slower. I'll just leave the raw sql here then.
             var sql = "SELECT * FROM document WHERE corpusid = :corpusId ORDER BY id LIMIT :take OFFSET :skip";
@@ -299,7 +338,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<DocumentLink> getManyDocumentLinksOfDocument(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var criteria = session.createCriteria(DocumentLink.class);
             criteria.add(Restrictions.or(
                     Restrictions.eq("fromId", id),
@@ -310,7 +349,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<DocumentLink> getManyDocumentLinksByDocumentId(String documentId, long corpusId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var criteria = session.createCriteria(DocumentLink.class);
             criteria.add(Restrictions.eq("corpusId", corpusId));
             criteria.add(Restrictions.or(
@@ -322,10 +361,18 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<Document> getNonePostprocessedDocumentsByCorpusId(long corpusId) throws DatabaseOperationException {
+        return getNonePostprocessedDocumentsByCorpusId(corpusId, null);
+    }
+
+    /**
+     * @param maxDocumentId Only the documents up to this id are returned, null returns all of them.
+     */
+    public List<Document> getNonePostprocessedDocumentsByCorpusId(long corpusId, Long maxDocumentId) throws DatabaseOperationException {
         return executeOperationSafely((session) -> {
             var criteria = session.createCriteria(Document.class);
             criteria.add(Restrictions.eq("corpusId", corpusId));
             criteria.add(Restrictions.eq("postProcessed", false));
+            if (maxDocumentId != null) criteria.add(Restrictions.le("id", maxDocumentId));
             return criteria.list();
         });
     }
@@ -341,7 +388,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<Link> getLinksOfLinkableByType(long id, Class<? extends Linkable> linkableType, Class<? extends ModelBase> type) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var criteria = session.createCriteria(type);
             criteria.add(Restrictions.or(
                     Restrictions.and(
@@ -358,7 +405,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public Linkable getLinkableById(long id, Class<? extends Linkable> clazz) throws DatabaseOperationException {
-        return executeOperationSafely(session -> {
+        return executeReadOnlySafely(session -> {
             var linkable = session.get(clazz, id);
             if (linkable instanceof Document doc) Hibernate.initialize(doc.getPages());
             if (clazz != Document.class && clazz != Page.class && linkable instanceof UIMAAnnotation anno)
@@ -381,7 +428,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
 
     @SuppressWarnings("unchecked")
     public List<UIMAAnnotation> getManyUIMAAnnotationsByCoveredText(String coveredText, Class<? extends UIMAAnnotation> clazz, int skip, int take) throws DatabaseOperationException {
-        return (List<UIMAAnnotation>) executeOperationSafely((session -> {
+        return (List<UIMAAnnotation>) executeReadOnlySafely((session -> {
             String sql = String.format(
                     "SELECT * FROM %s WHERE coveredtext = :coveredText ORDER BY id LIMIT :take OFFSET :skip",
                     clazz.getSimpleName().toLowerCase()
@@ -396,11 +443,43 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public Corpus getCorpusById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return corpusCache.getCorpus(id, () -> executeOperationSafely((session) -> {
             return session.get(Corpus.class, id);
+        }));
+    }
+
+    public CorpusConfig getCorpusConfigById(long corpusId) throws DatabaseOperationException {
+        return corpusCache.getCorpusConfig(corpusId, () -> {
+            var corpus = getCorpusById(corpusId);
+            return corpus == null ? null : CorpusConfig.fromJson(corpus.getCorpusJsonConfig());
         });
     }
 
+    public CorpusViewModel getCorpusViewModelById(long corpusId) throws DatabaseOperationException {
+        var corpus = getCorpusById(corpusId);
+        if (corpus == null) return null;
+        return new CorpusViewModel(corpus, getCorpusConfigById(corpusId));
+    }
+
+    public List<CorpusViewModel> getAllCorpusViewModels() throws DatabaseOperationException {
+        var corpusViewModels = new ArrayList<CorpusViewModel>();
+        for (var corpus : getAllCorpora()) {
+            corpusViewModels.add(new CorpusViewModel(corpus, getCorpusConfigById(corpus.getId())));
+        }
+        return corpusViewModels;
+    }
+
+    /**
+     * Drops the cached corpus, its config and filters, e.g. when another process changed it.
+     */
+    public void invalidateCorpusCache(long corpusId) {
+        corpusCache.invalidate(corpusId);
+    }
+
+    public String getCorpusCacheStatus() {
+        return corpusCache.getStatus();
+    }
+
     public Corpus getCorpusByName(String name) throws DatabaseOperationException {
         return executeOperationSafely((session) -> {
             var criteriaBuilder = session.getCriteriaBuilder();
@@ -413,7 +492,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<Corpus> getAllCorpora() throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return corpusCache.getAllCorpora(() -> executeReadOnlySafely((session) -> {
             var criteriaQuery = session.getCriteriaBuilder().createQuery(Corpus.class);
             criteriaQuery.from(Corpus.class);
             var corpora = session.createQuery(criteriaQuery).getResultList();
@@ -421,11 +500,11 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
                 Hibernate.initialize(corpus.getUceMetadataFilters());
             }
             return corpora;
-        });
+        }));
     }
 
     public List<GlobeTaxon> getGlobeDataForDocument(long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var doc = session.get(Document.class, documentId);
             Hibernate.initialize(doc.getPages());
             Hibernate.initialize(doc.getAllTaxa());
@@ -528,7 +607,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<Document> getManyDocumentsByIds(List<Integer> documentIds, Set<String> hibernateInit) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var builder = session.getCriteriaBuilder();
             var query = builder.createQuery(Document.class);
             var root = query.from(Document.class);
@@ -558,11 +637,115 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
         });
     }
 
+    public List<DocumentSummary> getManyDocumentSummariesByIds(List<Integer> documentIds) throws DatabaseOperationException {
+        if (documentIds.isEmpty()) return new ArrayList<>();
+        return executeReadOnlySafely((session) -> session.doReturningWork((connection) -> {
+            // Everything a result card shows in one round trip. Of the full text, we only transfer its length
+            // and a cut after its first third for the snippet, the metadata comes aggregated as json.
+            var sql = """
+                    SELECT d.id, d.documentid, d.corpusid, d.documenttitle, d.language, d.mimetype,
+                           length(d.fulltext) AS fulltextlength,
+                           substring(d.fulltext FROM greatest(length(d.fulltext) / 3, 1) FOR ?) AS fulltextexcerpt,
+                           (SELECT count(*) FROM page p WHERE p.document_id = d.id) AS pagecount,
+                           mti.title, mti.published, mti.author,
+                           dkd.id AS dkdid, dkd.yaketopicone, dkd.yaketopictwo, dkd.yaketopicthree,
+                           dtt.id AS dttid, dtt.topicone, dtt.topictwo, dtt.topicthree,
+                           (SELECT json_agg(json_build_object('id', m.id, 'key', m.key, 'value', m.value,
+                                                              'valueType', m.valuetype, 'comment', m.comment))
+                            FROM ucemetadata m WHERE m.document_id = d.id AND m.valuetype != 2) AS ucemetadata
+                    FROM document d
+                    LEFT JOIN metadatatitleinfo mti ON mti.id = d.document_id
+                    LEFT JOIN documentkeyworddistribution dkd ON dkd.document_id = d.id
+                    LEFT JOIN documenttopthreetopics dtt ON dtt.document_id = d.id
+                    WHERE d.id = ANY(?)
+                    """;
+            var summaries = new HashMap<Long, DocumentSummary>();
+            try (var statement = connection.prepareStatement(sql)) {
+                statement.setInt(1, DOCUMENT_SUMMARY_EXCERPT_LENGTH);
+                statement.setArray(2, connection.createArrayOf("bigint", documentIds.stream().map(Integer::longValue).toArray()));
+                try (var result = statement.executeQuery()) {
+                    while (result.next()) {
+                        var summary = buildDocumentSummary(result);
+                        summaries.put(summary.getId(), summary);
+                    }
+                }
+            }
+
+            // Keep the order of the given ids, they could have been sorted.
+            var sortedSummaries = new ArrayList<DocumentSummary>();
+            for (var id : documentIds) {
+                var summary = summaries.get(id.longValue());
+                if (summary == null) continue;
+                summary.initLinkableViewModel(this);
+                sortedSummaries.add(summary);
+            }
+            return sortedSummaries;
+        }));
+    }
+
+    private DocumentSummary buildDocumentSummary(ResultSet result) throws SQLException {
+        var summary = new DocumentSummary();
+        summary.setId(result.getLong("id"));
+        summary.setDocumentId(result.getString("documentid"));
+        summary.setCorpusId(result.getLong("corpusid"));
+        summary.setDocumentTitle(result.getString("documenttitle"));
+        summary.setLanguage(result.getString("language"));
+        summary.setMimeType(result.getString("mimetype"));
+        summary.setFullTextLength(result.getInt("fulltextlength"));
+        summary.setFullTextExcerpt(result.getString("fulltextexcerpt"));
+        summary.setPageCount(result.getInt("pagecount"));
+
+        summary.getMetadataTitleInfo().setTitle(result.getString("title"));
+        summary.getMetadataTitleInfo().setPublished(result.getString("published"));
+        summary.getMetadataTitleInfo().setAuthor(result.getString("author"));
+
+        var keywordDistributionId = result.getLong("dkdid");
+        if (!result.wasNull()) {
+            var keywordDistribution = new DocumentKeywordDistribution();
+            keywordDistribution.setId(keywordDistributionId);
+            keywordDistribution.setDocumentId(summary.getId());
+            keywordDistribution.setYakeTopicOne(result.getString("yaketopicone"));
+            keywordDistribution.setYakeTopicTwo(result.getString("yaketopictwo"));
+            keywordDistribution.setYakeTopicThree(result.getString("yaketopicthree"));
+            summary.setDocumentKeywordDistribution(keywordDistribution);
+        }
+
+        var topThreeTopicsId = result.getLong("dttid");
+        if (!result.wasNull()) {
+            var topThreeTopics = new DocumentTopThreeTopics();
+            topThreeTopics.setId(topThreeTopicsId);
+            topThreeTopics.setDocumentId(summary.getId());
+            topThreeTopics.setTopicOne(result.getString("topicone"));
+            topThreeTopics.setTopicTwo(result.getString("topictwo"));
+            topThreeTopics.setTopicThree(result.getString("topicthree"));
+            summary.setDocumentTopThreeTopics(topThreeTopics);
+        }
+
+        var uceMetadata = result.getString("ucemetadata");
+        if (uceMetadata != null) {
+            List<UCEMetadata> metadata = gson.fromJson(uceMetadata, new TypeToken<ArrayList<UCEMetadata>>() {
+            }.getType());
+            summary.setUceMetadata(metadata);
+        }
+        return summary;
+    }
+
+    public List<Page> getManyPagesByIds(Collection<Long> pageIds) throws DatabaseOperationException {
+        if (pageIds.isEmpty()) return new ArrayList<>();
+        return executeReadOnlySafely((session) -> {
+            var builder = session.getCriteriaBuilder();
+            var query = builder.createQuery(Page.class);
+            var root = query.from(Page.class);
+            query.select(root).where(root.get("id").in(pageIds));
+            return session.createQuery(query).getResultList();
+        });
+    }
+
     public List<LexiconEntry> getManyLexiconEntries(int skip, int take, List<String> alphabet,
                                                     List<String> annotationFilters, String sortColumn,
                                                     String sortOrder, String searchInput)
             throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var builder = session.getCriteriaBuilder();
             var criteriaQuery = builder.createQuery(LexiconEntry.class);
             var root = criteriaQuery.from(LexiconEntry.class);
@@ -645,10 +828,142 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
         }));
     }
 
+    /**
+     * Resolves the fromId and toId of the logical links of the given, just stored document, through the document's
+     * ids and not through a scan of all unresolved links like refresh_links: the ends that point to the document or
+     * its annotations, and the other ends of these links, if they point to a document stored before or to one of its
+     * annotations. Ends pointing to a document that isn't stored yet are resolved once that document is.
+     *
+     * @return The amount of resolved link ends.
+     */
+    public int resolveLogicalLinksOfDocument(Document document) throws DatabaseOperationException {
+        return executeOperationSafely((session) -> {
+            var resolved = 0;
+            // First the other ends, found through the ends naming the document while these are still unresolved.
+            for (var linkEnd : LinkEnd.values()) {
+                var namingEnd = linkEnd.getOtherEnd();
+                resolved += resolveLinkEnds(session, document, linkEnd,
+                        namesDocument(namingEnd) + " AND " + isUnresolved(linkEnd));
+            }
+            // Then the ends naming the document, of its own links and of the links stored with other documents.
+            for (var linkEnd : LinkEnd.values()) {
+                resolved += resolveLinkEnds(session, document, linkEnd, namesDocument(linkEnd));
+            }
+            return resolved;
+        });
+    }
+
+    /**
+     * Sets the id of the document or annotation the given end points to, on the links matching the condition.
+     * Ends whose document isn't stored are left as they are.
+     */
+    private int resolveLinkEnds(Session session, Document document, LinkEnd linkEnd, String condition) {
+        var linkedDocument = "FROM " + linkEnd.linkTable + " u " +
+                             "JOIN document d ON d.corpusid = u.corpusid AND d.documentid = u." + linkEnd.documentColumn + " ";
+        if (linkEnd.typeTableColumn == null) {
+            return session.createNativeQuery(
+                            "UPDATE " + linkEnd.linkTable + " l SET " + linkEnd.idColumn + " = r.target_id FROM (" +
+                            "SELECT DISTINCT ON (u.id) u.id AS link_id, d.id AS target_id " + linkedDocument +
+                            "WHERE " + condition + " " +
+                            "ORDER BY u.id, d.id) r " +
+                            "WHERE l.id = r.link_id")
+                    .setParameter("corpusId", document.getCorpusId())
+                    .setParameter("documentId", document.getDocumentId())
+                    .executeUpdate();
+        }
+
+        // Links to annotations are resolved with one join per annotation table.
+        var resolved = 0;
+        List<String> annotationTables = session.createNativeQuery(
+                        "SELECT DISTINCT u." + linkEnd.typeTableColumn + " FROM " + linkEnd.linkTable + " u WHERE " + condition)
+                .setParameter("corpusId", document.getCorpusId())
+                .setParameter("documentId", document.getDocumentId())
+                .getResultList();
+        for (var annotationTable : annotationTables) {
+            // The table names are stored within the links, so only plain identifiers go into the sql.
+            if (annotationTable == null || !annotationTable.matches("\\w+")) continue;
+            resolved += session.createNativeQuery(
+                            "UPDATE " + linkEnd.linkTable + " l SET " + linkEnd.idColumn + " = r.target_id FROM (" +
+                            "SELECT DISTINCT ON (u.id) u.id AS link_id, a.id AS target_id " + linkedDocument +
+                            "JOIN " + annotationTable + " a ON a.document_id = d.id " +
+                            "AND a.beginn = u." + linkEnd.beginColumn + " AND a.endd = u." + linkEnd.endColumn + " " +
+                            "WHERE " + condition + " AND u." + linkEnd.typeTableColumn + " = :annotationTable " +
+                            "ORDER BY u.id, a.id) r " +
+                            "WHERE l.id = r.link_id")
+                    .setParameter("corpusId", document.getCorpusId())
+                    .setParameter("documentId", document.getDocumentId())
+                    .setParameter("annotationTable", annotationTable)
+                    .executeUpdate();
+        }
+        return resolved;
+    }
+
+    /**
+     * The unresolved ends naming the document of the :documentId parameter. The partial indexes of refresh_links
+     * cover exactly these.
+     */
+    private static String namesDocument(LinkEnd linkEnd) {
+        return "u.corpusid = :corpusId AND u." + linkEnd.documentColumn + " = :documentId AND " + isUnresolved(linkEnd);
+    }
+
+    private static String isUnresolved(LinkEnd linkEnd) {
+        return "(u." + linkEnd.idColumn + " IS NULL OR u." + linkEnd.idColumn + " = 0)";
+    }
+
+    /**
+     * The ends of the logical links that can point to a document or to one of its annotations.
+     */
+    private enum LinkEnd {
+        DOCUMENT_LINK_FROM("documentlink", "fromId", "fromm", null, null, null),
+        DOCUMENT_LINK_TO("documentlink", "toId", "too", null, null, null),
+        DOCUMENT_TO_ANNOTATION_LINK_FROM("documenttoannotationlink", "fromId", "fromm", null, null, null),
+        DOCUMENT_TO_ANNOTATION_LINK_TO("documenttoannotationlink", "toId", "too", "toannotationtypetable", "tobegin", "toend"),
+        ANNOTATION_TO_DOCUMENT_LINK_FROM("annotationtodocumentlink", "fromId", "fromm", "fromannotationtypetable", "frombegin", "fromend"),
+        ANNOTATION_TO_DOCUMENT_LINK_TO("annotationtodocumentlink", "toId", "too", null, null, null);
+
+        private final String linkTable;
+        private final String idColumn;
+        private final String documentColumn;
+        private final String typeTableColumn;
+        private final String beginColumn;
+        private final String endColumn;
+
+        LinkEnd(String linkTable, String idColumn, String documentColumn, String typeTableColumn, String beginColumn, String endColumn) {
+            this.linkTable = linkTable;
+            this.idColumn = idColumn;
+            this.documentColumn = documentColumn;
+            this.typeTableColumn = typeTableColumn;
+            this.beginColumn = beginColumn;
+            this.endColumn = endColumn;
+        }
+
+        /**
+         * The end on the other side of the same links.
+         */
+        LinkEnd getOtherEnd() {
+            return switch (this) {
+                case DOCUMENT_LINK_FROM -> DOCUMENT_LINK_TO;
+                case DOCUMENT_LINK_TO -> DOCUMENT_LINK_FROM;
+                case DOCUMENT_TO_ANNOTATION_LINK_FROM -> DOCUMENT_TO_ANNOTATION_LINK_TO;
+                case DOCUMENT_TO_ANNOTATION_LINK_TO -> DOCUMENT_TO_ANNOTATION_LINK_FROM;
+                case ANNOTATION_TO_DOCUMENT_LINK_FROM -> ANNOTATION_TO_DOCUMENT_LINK_TO;
+                case ANNOTATION_TO_DOCUMENT_LINK_TO -> ANNOTATION_TO_DOCUMENT_LINK_FROM;
+            };
+        }
+    }
+
     public int callGeonameLocationRefresh() throws DatabaseOperationException {
+        return callGeonameLocationRefresh(null);
+    }
+
+    /**
+     * @param maxDocumentId Only the geonames of the documents up to this id are located, null locates all of them.
+     */
+    public int callGeonameLocationRefresh(Long maxDocumentId) throws DatabaseOperationException {
         return executeOperationSafely((session) -> session.doReturningWork((connection) -> {
             var insertedLex = 0;
-            try (var storedProcedure = connection.prepareCall("{call update_geoname_locations()}")) {
+            try (var storedProcedure = connection.prepareCall("{call update_geoname_locations(?)}")) {
+                storedProcedure.setObject(1, maxDocumentId, Types.BIGINT);
                 var result = storedProcedure.executeQuery();
                 while (result.next()) {
                     insertedLex = result.getInt(1);
@@ -719,7 +1034,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
                                                                    OrderByColumn orderedByColumn,
                                                                    long corpusId,
                                                                    List<UCEMetadataFilterDto> filters) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> session.doReturningWork((connection) -> {
+        return executeReadOnlySafely((session) -> session.doReturningWork((connection) -> {
             HashMap<String, List<String>> tableSubstrings = new HashMap<>();
             tableSubstrings.put("cue", cue);
             tableSubstrings.put("event", event);
@@ -1000,11 +1315,42 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
                                                           boolean useTsVectorSearch,
                                                           String schema,
                                                           String sourceTable) throws DatabaseOperationException {
+        return defaultSearchForDocuments(skip, take, ogSearchQuery, searchTokens, layer, countAll, order, orderedByColumn,
+                corpusId, uceMetadataFilters, useTsVectorSearch, schema, sourceTable, 0);
+    }
 
-        return executeOperationSafely((session) -> session.doReturningWork((connection) -> {
+    /**
+     * Like the search above, but postgres cancels it once it runs longer than the timeout. 0 disables the timeout.
+     */
+    public DocumentSearchResult defaultSearchForDocuments(int skip,
+                                                          int take,
+                                                          String ogSearchQuery,
+                                                          List<String> searchTokens,
+                                                          SearchLayer layer,
+                                                          boolean countAll,
+                                                          SearchOrder order,
+                                                          OrderByColumn orderedByColumn,
+                                                          long corpusId,
+                                                          List<UCEMetadataFilterDto> uceMetadataFilters,
+                                                          boolean useTsVectorSearch,
+                                                          String schema,
+                                                          String sourceTable,
+                                                          long timeoutMs) throws DatabaseOperationException {
+
+        return executeReadOnlySafely((session) -> session.doReturningWork((connection) -> {
+            if (timeoutMs > 0) {
+                // Only for the transaction of this search, the pooled connection keeps its own timeout.
+                try (var statement = connection.createStatement()) {
+                    statement.execute("SET LOCAL statement_timeout = " + timeoutMs);
+                }
+            }
             DocumentSearchResult search = null;
+            // The fulltext search also returns the ranking of the hits up to some depth beyond the page, from which the
+            // following pages are served.
+            var returnRanking = layer == SearchLayer.FULLTEXT;
             try (var storedProcedure = connection.prepareCall("{call uce_search_layer_" + layer.name().toLowerCase() +
-                                                              "(?::bigint, ?::text[], ?::text, ?::integer, ?::integer, ?::boolean, ?::text, ?::text, ?::jsonb, ?::boolean, ?::text, ?::text)}")) {
+                                                              "(?::bigint, ?::text[], ?::text, ?::integer, ?::integer, ?::boolean, ?::text, ?::text, ?::jsonb, ?::boolean, ?::text, ?::text"
+                                                              + (returnRanking ? ", ?::boolean, ?::integer, ?::boolean" : "") + ")}")) {
                 storedProcedure.setInt(1, (int) corpusId);
                 storedProcedure.setArray(2, connection.createArrayOf("text", searchTokens.stream().map(this::escapeSql).toArray()));
                 storedProcedure.setString(3, ogSearchQuery);
@@ -1023,6 +1369,12 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
                 storedProcedure.setBoolean(10, useTsVectorSearch);
                 storedProcedure.setString(11, sourceTable);
                 storedProcedure.setString(12, schema);
+                if (returnRanking) {
+                    storedProcedure.setBoolean(13, true);
+                    storedProcedure.setInt(14, skip + take + fulltextRankingDepth);
+                    // Otherwise the snippets are built by the snippet engine of the search, for the visible hits only.
+                    storedProcedure.setBoolean(15, buildSnippetsInDatabase);
+                }
 
                 var result = storedProcedure.executeQuery();
                 while (result.next()) {
@@ -1069,6 +1421,22 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
                         while (rankResultSet.next())
                             documentRanks.put(rankResultSet.getInt(1) - 1, rankResultSet.getFloat(2));
                         search.setSearchRanks(documentRanks);
+
+                        // The ids and ranks of the hits in the order of the search.
+                        var rankedIdsResult = result.getArray("ranked_document_ids");
+                        var rankedRanksResult = result.getArray("ranked_document_ranks");
+                        if (rankedIdsResult != null && rankedRanksResult != null) {
+                            var rankedIds = (Integer[]) rankedIdsResult.getArray();
+                            var rankedRanks = (Double[]) rankedRanksResult.getArray();
+                            search.setRankedDocumentIds(new ArrayList<>(Arrays.asList(rankedIds)));
+                            var ranks = new ArrayList<Float>(rankedRanks.length);
+                            for (var rank : rankedRanks) ranks.add(rank == null ? 0f : rank.floatValue());
+                            search.setRankedDocumentRanks(ranks);
+                        } else {
+                            // No hits at all.
+                            search.setRankedDocumentIds(new ArrayList<>());
+                            search.setRankedDocumentRanks(new ArrayList<>());
+                        }
                     }
                 }
 
@@ -1077,8 +1445,131 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
         }));
     }
 
+    /**
+     * Builds the fulltext search snippets of the given documents, e.g. for a page of hits that is served from the
+     * ranking of an earlier search. The snippets are keyed by the index of the document within the given list.
+     */
+    public HashMap<Integer, ArrayList<PageSnippet>> getFulltextSnippetsOfDocuments(List<Integer> documentIds,
+                                                                                   String ogSearchQuery,
+                                                                                   boolean useTsVectorSearch) throws DatabaseOperationException {
+        return executeReadOnlySafely((session) -> session.doReturningWork((connection) -> {
+            var foundSnippets = new HashMap<Integer, ArrayList<PageSnippet>>();
+            if (documentIds.isEmpty()) return foundSnippets;
+
+            try (var statement = connection.prepareStatement("SELECT document_idx, snippets FROM uce_search_fulltext_snippets(?::integer[], ?::text, ?::boolean)")) {
+                statement.setArray(1, connection.createArrayOf("integer", documentIds.toArray()));
+                statement.setString(2, ogSearchQuery);
+                statement.setBoolean(3, useTsVectorSearch);
+
+                var result = statement.executeQuery();
+                while (result.next()) {
+                    var snippets = result.getString(2);
+                    if (snippets == null) continue;
+                    ArrayList<PageSnippet> pageSnippets = gson.fromJson(snippets, new TypeToken<ArrayList<PageSnippet>>() {
+                    }.getType());
+                    foundSnippets.put(result.getInt(1) - 1, pageSnippets);
+                }
+            }
+            return foundSnippets;
+        }));
+    }
+
+    /**
+     * The pages of the given documents that the snippets of a fulltext search are built from, along with their
+     * sentences: the best ranked matching pages of each document, or its first page if there is no search query.
+     */
+    public List<SnippetPage> getSnippetPagesOfDocuments(List<Integer> documentIds,
+                                                        String ogSearchQuery,
+                                                        boolean useTsVectorSearch,
+                                                        int pagesPerDocument) throws DatabaseOperationException {
+        return executeReadOnlySafely((session) -> session.doReturningWork((connection) -> {
+            var pages = new ArrayList<SnippetPage>();
+            if (documentIds.isEmpty()) return pages;
+
+            var hasQuery = ogSearchQuery != null && !ogSearchQuery.isEmpty();
+            var tsFunction = useTsVectorSearch ? "to_tsquery('simple', ?)" : "websearch_to_tsquery('simple', ?)";
+            var matchingPages = hasQuery
+                    ? "SELECT p.id, p.beginn, p.endd, p.coveredtext, ts_rank_cd(p.textsearch, q.query) AS rank " +
+                      "FROM page p, q WHERE p.document_id = d.id AND p.textsearch @@ q.query ORDER BY rank DESC LIMIT ?"
+                    : "SELECT p.id, p.beginn, p.endd, p.coveredtext, 0 AS rank " +
+                      "FROM page p WHERE p.document_id = d.id ORDER BY p.id ASC LIMIT 1";
+            var sql = "WITH q AS (SELECT " + (hasQuery ? tsFunction : "NULL::tsquery") + " AS query) " +
+                      """
+                      SELECT d.idx::integer, d.id, p.id, p.coveredtext, s.begins, s.ends
+                      FROM unnest(?::integer[]) WITH ORDINALITY AS d(id, idx)
+                      CROSS JOIN LATERAL (""" + matchingPages + """
+                      ) p
+                      LEFT JOIN LATERAL (
+                          SELECT ARRAY_AGG(GREATEST(s.beginn, p.beginn) - p.beginn ORDER BY s.beginn, s.id) AS begins,
+                                 ARRAY_AGG(LEAST(s.endd, p.endd) - p.beginn ORDER BY s.beginn, s.id) AS ends
+                          FROM sentence s
+                          WHERE s.document_id = d.id AND s.beginn < p.endd AND s.endd > p.beginn
+                      ) s ON true
+                      ORDER BY d.idx, p.rank DESC
+                      """;
+            try (var statement = connection.prepareStatement(sql)) {
+                var parameter = 1;
+                if (hasQuery) statement.setString(parameter++, ogSearchQuery);
+                statement.setArray(parameter++, connection.createArrayOf("integer", documentIds.toArray()));
+                if (hasQuery) statement.setInt(parameter, pagesPerDocument);
+
+                var result = statement.executeQuery();
+                while (result.next()) {
+                    pages.add(new SnippetPage(result.getInt(1) - 1,
+                            result.getLong(2),
+                            result.getInt(3),
+                            result.getString(4),
+                            toIntArray(result.getArray(5)),
+                            toIntArray(result.getArray(6))));
+                }
+            }
+            return pages;
+        }));
+    }
+
+    private static int[] toIntArray(Array array) throws SQLException {
+        if (array == null) return new int[0];
+        var values = (Integer[]) array.getArray();
+        var result = new int[values.length];
+        for (var i = 0; i < values.length; i++) result[i] = values[i] == null ? 0 : values[i];
+        return result;
+    }
+
+    /**
+     * Aggregates the named entities, times and taxa of the given documents into the search result, like the fulltext
+     * search procedure does for its page of hits. Needed by search backends that only rank the documents.
+     */
+    public void setFoundAnnotationsOfDocuments(DocumentSearchResult search, List<Integer> documentIds) throws DatabaseOperationException {
+        if (documentIds.isEmpty()) return;
+        executeReadOnlySafely((session) -> session.doReturningWork((connection) -> {
+            var sql = """
+                    SELECT
+                        ARRAY(SELECT ARRAY[ne.id::text, ne.coveredtext, COUNT(ne.id)::text, ne.typee, ne.document_id::text]
+                              FROM namedentity ne WHERE ne.document_id = ANY(?)
+                              GROUP BY ne.id, ne.coveredtext, ne.typee, ne.document_id) AS named_entities_found,
+                        ARRAY(SELECT ARRAY[t.id::text, t.coveredtext, COUNT(t.id)::text, t.valuee, t.document_id::text]
+                              FROM time t WHERE t.document_id = ANY(?)
+                              GROUP BY t.id, t.coveredtext, t.valuee, t.document_id) AS time_found,
+                        ARRAY(SELECT ARRAY[ta.id::text, ta.coveredtext, COUNT(ta.id)::text, ta.primaryname, ta.document_id::text]
+                              FROM biofidtaxon ta WHERE ta.document_id = ANY(?)
+                              GROUP BY ta.id, ta.coveredtext, ta.primaryname, ta.document_id) AS taxons_found
+                    """;
+            try (var statement = connection.prepareStatement(sql)) {
+                var ids = connection.createArrayOf("bigint", documentIds.stream().map(Integer::longValue).toArray());
+                for (var i = 1; i <= 3; i++) statement.setArray(i, ids);
+                var result = statement.executeQuery();
+                if (result.next()) {
+                    search.setFoundNamedEntities(parseAnnotationOccurrences(result.getArray("named_entities_found").getResultSet()));
+                    search.setFoundTimes(parseAnnotationOccurrences(result.getArray("time_found").getResultSet()));
+                    search.setFoundTaxons(parseAnnotationOccurrences(result.getArray("taxons_found").getResultSet()));
+                }
+            }
+            return search;
+        }));
+    }
+
     public List<Document> getDocumentsByAnnotationCoveredText(String coveredText, int limit, String annotationName) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var criteriaBuilder = session.getCriteriaBuilder();
             var criteriaQuery = criteriaBuilder.createQuery(Document.class);
             var root = criteriaQuery.from(Document.class);
@@ -1105,7 +1596,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<Lemma> getLemmasWithinBeginAndEndOfDocument(int begin, int end, long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var cb = session.getCriteriaBuilder();
             var query = cb.createQuery(Lemma.class);
             var lemmaRoot = query.from(Lemma.class);
@@ -1127,7 +1618,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<Lemma> getLemmasByValue(String covered, int limit, long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var cb = session.getCriteriaBuilder();
             var query = cb.createQuery(Lemma.class);
             var lemmaRoot = query.from(Lemma.class);
@@ -1159,12 +1650,57 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
         });
     }
 
+    public UCEImport getUceImportByImportIdAndBasePath(String importId, String basePath) throws DatabaseOperationException {
+        return executeOperationSafely((session) -> {
+            var criteria = session.createCriteria(UCEImport.class);
+            criteria.add(Restrictions.eq("importId", importId));
+            criteria.add(Restrictions.eq("basePath", basePath));
+            var imports = criteria.list();
+            return imports.isEmpty() ? null : (UCEImport) imports.getFirst();
+        });
+    }
+
+    public void removeFinishedImporter(String importId, String basePath, int importerNumber) throws DatabaseOperationException {
+        executeOperationSafely((session) -> session.createNativeQuery(
+                        "DELETE FROM uceimportfinishedimporter WHERE importid = :importId AND basepath = :basePath AND importernumber = :importerNumber")
+                .setParameter("importId", importId)
+                .setParameter("basePath", basePath)
+                .setParameter("importerNumber", importerNumber)
+                .executeUpdate());
+    }
+
+    public int addFinishedImporter(String importId, String basePath, int importerNumber) throws DatabaseOperationException {
+        return executeOperationSafely((session) -> session.doReturningWork((connection) -> {
+            // The row of the import serializes the finishing importers, so each one counts the finishes before it.
+            try (var lock = connection.prepareStatement("SELECT 1 FROM uceimport WHERE importid = ? AND basepath = ? FOR UPDATE")) {
+                lock.setString(1, importId);
+                lock.setString(2, basePath);
+                lock.executeQuery().close();
+            }
+            try (var insert = connection.prepareStatement(
+                    "INSERT INTO uceimportfinishedimporter (importid, basepath, importernumber) VALUES (?, ?, ?) ON CONFLICT DO NOTHING")) {
+                insert.setString(1, importId);
+                insert.setString(2, basePath);
+                insert.setInt(3, importerNumber);
+                if (insert.executeUpdate() == 0) return -1;
+            }
+            try (var count = connection.prepareStatement(
+                    "SELECT COUNT(*) FROM uceimportfinishedimporter WHERE importid = ? AND basepath = ?")) {
+                count.setString(1, importId);
+                count.setString(2, basePath);
+                try (var result = count.executeQuery()) {
+                    return result.next() ? result.getInt(1) : 0;
+                }
+            }
+        }));
+    }
+
     public Document getDocumentById(long id) throws DatabaseOperationException {
         return getDocumentById(id, null);
     }
 
     public Document getDocumentById(long id, Set<String> hibernateInit) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var doc = session.get(Document.class, id);
             Hibernate.initialize(doc.getPages());
             Hibernate.initialize(doc.getUceMetadata());
@@ -1175,7 +1711,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
 
     public List<Long> findDocumentIdsByMetadata(String key, String value, UCEMetadataValueType valueType) throws DatabaseOperationException {
         // Search for a document based on a metadata key/value pair
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var cb = session.getCriteriaBuilder();
             var cq = cb.createQuery(Long.class);
             var root = cq.from(UCEMetadata.class);
@@ -1193,20 +1729,32 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
         });
     }
 
-    public void deleteDocumentById(long id) throws DatabaseOperationException {
+    /**
+     * @return The id of the corpus the document was deleted from, or null if it didn't exist.
+     */
+    public Long deleteDocumentById(long id) throws DatabaseOperationException {
         // NOTE this only cleans up everything directly connected to the document
         // TODO also remove embeddings and other data
-        executeOperationSafely((session) -> {
+        return executeOperationSafely((session) -> {
             var doc = session.get(Document.class, id);
+            Long corpusId = null;
             if (doc != null) {
+                corpusId = doc.getCorpusId();
+                updateLexiconCountsOfDocument(session, id, false);
                 session.delete(doc);
             }
-            return null;
+            session.createNativeQuery("DELETE FROM pagestatistics WHERE document_id = :documentId")
+                    .setParameter("documentId", id)
+                    .executeUpdate();
+            session.createNativeQuery("DELETE FROM pagestatisticsdocuments WHERE document_id = :documentId")
+                    .setParameter("documentId", id)
+                    .executeUpdate();
+            return corpusId;
         });
     }
 
     public List<Long> findDocumentIDsByTitle(String title, boolean like) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var cb = session.getCriteriaBuilder();
             var cq = cb.createQuery(Long.class);
             var root = cq.from(Document.class);
@@ -1227,7 +1775,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public Document getFirstDocumentByTitle(String title, boolean like) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var cb = session.getCriteriaBuilder();
             var cq = cb.createQuery(Document.class);
             var root = cq.from(Document.class);
@@ -1251,7 +1799,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public Page getPageById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var page = session.get(Page.class, id);
             Hibernate.initialize(page);
             return page;
@@ -1259,7 +1807,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public Page getPageByDocumentIdAndBeginEnd(long documentId, int begin, int end, boolean initialize) throws DatabaseOperationException {
-        return executeOperationSafely(session -> {
+        return executeReadOnlySafely(session -> {
             var builder = session.getCriteriaBuilder();
             var criteria = builder.createQuery(Page.class);
             var root = criteria.from(Page.class);
@@ -1302,7 +1850,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<String> getDistinctTimesByCondition(String condition, long corpusId, int limit) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             // Construct HQL dynamically (THIS IS UNSAFE BECAUSE OF THE CONDITION INSERTION)
             String hql = "SELECT DISTINCT t.coveredText " +
                          "FROM Time t " +
@@ -1318,7 +1866,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<String> getDistinctGeonamesNamesByFeatureCode(GeoNameFeatureClass featureClass, String featureCode, long corpusId, int limit) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             // This with hibernate query builder doesn't work.
             String hql = """
                         SELECT DISTINCT g.name
@@ -1340,7 +1888,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<String> getDistinctGeonamesNamesByRadius(double longitude, double latitude, double radius, long corpusId, int limit) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             // This with hibernate query builder doesn't work since we use Postgis location queries.
             String sql = """
                         SELECT DISTINCT g.name
@@ -1381,7 +1929,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public long countLexiconEntries() throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var builder = session.getCriteriaBuilder();
             var criteria = builder.createQuery(Long.class);
             var root = criteria.from(LexiconEntry.class);
@@ -1391,11 +1939,11 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public LexiconEntry getLexiconEntryId(LexiconEntryId id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> session.get(LexiconEntry.class, id));
+        return executeReadOnlySafely((session) -> session.get(LexiconEntry.class, id));
     }
 
     public NamedEntity getNamedEntityById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var entity = session.get(NamedEntity.class, id);
             Hibernate.initialize(entity.getPage());
             return entity;
@@ -1403,7 +1951,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public GazetteerTaxon getGazetteerTaxonById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var taxon = session.get(GazetteerTaxon.class, id);
             Hibernate.initialize(taxon.getPage());
             return taxon;
@@ -1411,7 +1959,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public GnFinderTaxon getGnFinderTaxonById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var taxon = session.get(GnFinderTaxon.class, id);
             Hibernate.initialize(taxon.getPage());
             return taxon;
@@ -1419,7 +1967,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public BiofidTaxon getBiofidTaxonById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var taxon = session.get(BiofidTaxon.class, id);
             Hibernate.initialize(taxon.getPage());
             return taxon;
@@ -1427,7 +1975,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public GeoName getGeoNameAnnotationById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var geo = session.get(GeoName.class, id);
             Hibernate.initialize(geo.getPage());
             return geo;
@@ -1435,7 +1983,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public Time getTimeAnnotationById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var time = session.get(Time.class, id);
             Hibernate.initialize(time.getPage());
             return time;
@@ -1443,7 +1991,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public Sentence getSentenceAnnotationById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var sentence = session.get(Sentence.class, id);
             Hibernate.initialize(sentence.getPage());
             return sentence;
@@ -1451,7 +1999,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public Lemma getLemmaById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var lemma = session.get(Lemma.class, id);
             Hibernate.initialize(lemma.getPage());
             return lemma;
@@ -1459,7 +2007,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public CompleteNegation getCompleteNegationById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var neg = session.get(CompleteNegation.class, id);
             Hibernate.initialize(neg);
             Hibernate.initialize(neg.getPage());
@@ -1468,7 +2016,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public CompleteNegation getCompleteNegationByCueId(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             String sql = "SELECT * FROM completenegation WHERE cue_id = :id";
 
             // Create a query with the native SQL
@@ -1493,15 +2041,15 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public TopicValueBase getTopicValueBaseById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> session.get(TopicValueBase.class, id));
+        return executeReadOnlySafely((session) -> session.get(TopicValueBase.class, id));
     }
 
     public UnifiedTopic getUnifiedTopicById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> session.get(UnifiedTopic.class, id));
+        return executeReadOnlySafely((session) -> session.get(UnifiedTopic.class, id));
     }
 
     public UnifiedTopic getInitializedUnifiedTopicById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var topic = session.get(UnifiedTopic.class, id);
             Hibernate.initialize(topic.getTopics());
             Hibernate.initialize(topic.getPage());
@@ -1513,7 +2061,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public <T extends KeywordDistribution> List<T> getKeywordDistributionsByString(Class<T> clazz, String topic, int limit) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var builder = session.getCriteriaBuilder();
             var query = builder.createQuery(clazz);
             var root = query.from(clazz);
@@ -1563,7 +2111,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public <T extends KeywordDistribution> T getKeywordDistributionById(Class<T> clazz, long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var dist = session.get(clazz, id);
             // Check if the retrieved object is an instance of DocumentKeywordDistribution
             if (dist instanceof DocumentKeywordDistribution) {
@@ -1588,13 +2136,86 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public Document getCompleteDocumentById(long id, int skipPages, int pageLimit) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var doc = session.get(Document.class, id);
 
             return initializeCompleteDocument(doc, skipPages, pageLimit);
         });
     }
 
+    public Document getDocumentForReaderById(long id) throws DatabaseOperationException {
+        return executeReadOnlySafely((session) -> {
+            var doc = session.get(Document.class, id);
+            if (doc == null) return null;
+
+            Hibernate.initialize(doc.getDocumentKeywordDistribution());
+            Hibernate.initialize(doc.getUceMetadata());
+            return doc;
+        });
+    }
+
+    public DocumentPageWindow getPageWindowOfDocument(long documentId, int skipPages, int pageLimit) throws DatabaseOperationException {
+        return executeReadOnlySafely((session) -> {
+            // Only the text, so the pages the document entity fetches eagerly aren't loaded.
+            var fullText = session.createQuery("SELECT d.fullText FROM Document d WHERE d.id = :id", String.class)
+                    .setParameter("id", documentId)
+                    .uniqueResult();
+            if (fullText == null) return null;
+
+            var pageCount = session.createQuery("SELECT COUNT(p) FROM Page p WHERE p.document.id = :id", Long.class)
+                    .setParameter("id", documentId)
+                    .getSingleResult();
+            var pages = session.createQuery("FROM Page p WHERE p.document.id = :id ORDER BY p.pageNumber", Page.class)
+                    .setParameter("id", documentId)
+                    .setFirstResult(skipPages)
+                    .setMaxResults(pageLimit)
+                    .getResultList();
+            for (var page : pages) {
+                Hibernate.initialize(page.getBlocks());
+                Hibernate.initialize(page.getParagraphs());
+                Hibernate.initialize(page.getLines());
+                Hibernate.initialize(page.getPageKeywordDistribution());
+            }
+            return new DocumentPageWindow(documentId, fullText, pageCount.intValue(), pages);
+        });
+    }
+
+    public List<UIMAAnnotation> getAnnotationsOfDocumentInRange(long documentId, int begin, int end) throws DatabaseOperationException {
+        return executeReadOnlySafely((session) -> {
+            var annotations = new ArrayList<UIMAAnnotation>();
+            for (var type : List.of(GazetteerTaxon.class, GnFinderTaxon.class, NamedEntity.class, GeoName.class,
+                    Time.class, WikipediaLink.class, Lemma.class, CompleteNegation.class, Cue.class, Focus.class,
+                    Scope.class, XScope.class, Event.class, UnifiedTopic.class, Image.class)) {
+                annotations.addAll(getAnnotationsInRange(session, type, documentId, begin, end));
+            }
+            annotations.addAll(getAnnotationsInRange(session, Sentiment.class, documentId,
+                    begin - ANNOTATION_RANGE_OVERLAP, end + ANNOTATION_RANGE_OVERLAP));
+            var emotions = getAnnotationsInRange(session, Emotion.class, documentId,
+                    begin - ANNOTATION_RANGE_OVERLAP, end + ANNOTATION_RANGE_OVERLAP);
+            for (var emotion : emotions) Hibernate.initialize(emotion.getFeelings());
+            annotations.addAll(emotions);
+
+            for (var annotation : annotations) {
+                if (annotation instanceof UnifiedTopic topic) Hibernate.initialize(topic.getTopics());
+                else if (annotation instanceof WikipediaLink link) Hibernate.initialize(link.getWikiDataHyponyms());
+            }
+
+            annotations.sort(Comparator.comparingInt(UIMAAnnotation::getBegin));
+            return annotations;
+        });
+    }
+
+    private <T extends UIMAAnnotation> List<T> getAnnotationsInRange(Session session, Class<T> type, long documentId, int begin, int end) {
+        var builder = session.getCriteriaBuilder();
+        var query = builder.createQuery(type);
+        var root = query.from(type);
+        query.select(root).where(
+                builder.equal(root.get("documentId"), documentId),
+                builder.greaterThanOrEqualTo(root.get("begin"), begin),
+                builder.lessThanOrEqualTo(root.get("end"), end));
+        return session.createQuery(query).getResultList();
+    }
+
     public void saveOrUpdateCorpusTsnePlot(CorpusTsnePlot corpusTsnePlot, Corpus corpus) throws DatabaseOperationException {
         executeOperationSafely((session) -> {
             session.saveOrUpdate(corpus);
@@ -1604,6 +2225,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
             }
             return null;
         });
+        corpusCache.invalidate(corpus.getId());
     }
 
     public void saveOrUpdateManyAnnotationLinks(List<AnnotationLink> links) throws DatabaseOperationException {
@@ -1626,6 +2248,17 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
         });
     }
 
+    /**
+     * Writes new annotation links with a single COPY while consuming the iterator, so the links can be generated
+     * lazily and never have to be held in memory at once. Unlike {@link #saveOrUpdateManyAnnotationLinks(List)},
+     * this only inserts.
+     *
+     * @return The amount of written links.
+     */
+    public long copyAnnotationLinks(Iterator<AnnotationLink> links) throws DatabaseOperationException {
+        return executeOperationSafely((session) -> new AnnotationLinkCopyWriter(session).copy(links));
+    }
+
     public void saveOrUpdateManyDocumentToAnnotationLinks(List<DocumentToAnnotationLink> links) throws DatabaseOperationException {
         executeOperationSafely((session -> {
             for (var link : links) {
@@ -1667,11 +2300,38 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
         });
     }
 
+    public void saveManyImportLogs(List<ImportLog> importLogs) throws DatabaseOperationException {
+        executeOperationSafely((session) -> {
+            for (var importLog : importLogs) {
+                session.save(importLog);
+            }
+            return null;
+        });
+    }
+
+    public List<ImportFile> getImportFilesByImportId(String importId) throws DatabaseOperationException {
+        return executeOperationSafely((session) -> {
+            var criteria = session.createCriteria(ImportFile.class);
+            criteria.add(Restrictions.eq("importId", importId));
+            return (List<ImportFile>) criteria.list();
+        });
+    }
+
+    public void saveOrUpdateManyImportFiles(List<ImportFile> importFiles) throws DatabaseOperationException {
+        executeOperationSafely((session) -> {
+            for (var importFile : importFiles) {
+                session.saveOrUpdate(importFile);
+            }
+            return null;
+        });
+    }
+
     public void saveOrUpdateUCEMetadataFilter(UCEMetadataFilter filter) throws DatabaseOperationException {
         executeOperationSafely((session) -> {
             session.saveOrUpdate(filter);
             return null;
         });
+        corpusCache.invalidate(filter.getCorpusId());
     }
 
     public void saveUCEMetadataFilter(UCEMetadataFilter filter) throws DatabaseOperationException {
@@ -1679,15 +2339,53 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
             session.save(filter);
             return null;
         });
+        corpusCache.invalidate(filter.getCorpusId());
     }
 
     public void saveDocument(Document document) throws DatabaseOperationException {
         executeOperationSafely((session) -> {
-            session.save(document);
+            // The lexicon counts of the document are added in the same transaction, so its annotations are
+            // stored as lexicalized already and never have to be rewritten by the refresh_lexicon procedure.
+            LexiconService.markAsLexicalized(document);
+            // Hibernate can't batch IDENTITY inserts, so the flat annotation tables are written in bulk if enabled.
+            if (bulkInsertDocuments) new DocumentBulkWriter(session).save(document);
+            else session.save(document);
+            session.flush();
+            updateLexiconCountsOfDocument(session, document.getId(), true);
             return null;
         });
     }
 
+    /**
+     * Adds the occurrences of the lexicalized annotations of a document to the counts of their lexicon entries,
+     * or subtracts them when the document is removed. Only the document's own rows are aggregated.
+     */
+    private void updateLexiconCountsOfDocument(Session session, long documentId, boolean add) {
+        for (var table : LexiconService.getLexiconizableTables()) {
+            var occurrences = "SELECT coveredtext, COUNT(*) AS cnt FROM " + table + " " +
+                              "WHERE document_id = :documentId AND coveredtext IS NOT NULL AND isLexicalized " +
+                              "GROUP BY coveredtext ORDER BY coveredtext";
+            if (add) {
+                // Sorted, so that concurrently stored documents lock the shared entries in the same order.
+                session.createNativeQuery("INSERT INTO lexicon AS l (coveredtext, typee, count, startcharacter) " +
+                                          "SELECT o.coveredtext, :type, o.cnt, LOWER(LEFT(o.coveredtext, 1)) FROM (" + occurrences + ") o " +
+                                          "ON CONFLICT (coveredtext, typee) DO UPDATE SET count = l.count + EXCLUDED.count")
+                        .setParameter("documentId", documentId)
+                        .setParameter("type", table)
+                        .executeUpdate();
+            } else {
+                session.createNativeQuery("UPDATE lexicon l SET count = l.count - o.cnt FROM (" + occurrences + ") o " +
+                                          "WHERE l.coveredtext = o.coveredtext AND l.typee = :type")
+                        .setParameter("documentId", documentId)
+                        .setParameter("type", table)
+                        .executeUpdate();
+                session.createNativeQuery("DELETE FROM lexicon WHERE typee = :type AND count <= 0")
+                        .setParameter("type", table)
+                        .executeUpdate();
+            }
+        }
+    }
+
     public void updateDocument(Document document) throws DatabaseOperationException {
         executeOperationSafely((session) -> {
             session.update(document);
@@ -1707,6 +2405,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
             session.save(corpus);
             return null;
         });
+        corpusCache.invalidate(corpus.getId());
     }
 
     public void savePageKeywordDistribution(Page page) throws DatabaseOperationException {
@@ -1743,12 +2442,90 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public DocumentTopThreeTopics getDocumentTopThreeTopicsById(long id) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             var dist = session.get(DocumentTopThreeTopics.class, id);
             return dist;
         });
     }
 
+    /**
+     * Replaces the rows of the given document in the sentencetopics, documenttopicsraw and documenttopicwords tables.
+     * Only the document's own rows are touched, so the import of a document costs the same no matter how large the
+     * database already is. The full rebuild of all topic tables is the database/topic scripts.
+     */
+    public void updateTopicTablesOfDocument(long documentId) throws DatabaseOperationException {
+        executeOperationSafely((session) -> {
+            for (var table : List.of("documenttopicwords", "documenttopicsraw", "sentencetopics")) {
+                session.createNativeQuery("DELETE FROM " + table + " WHERE document_id = :documentId")
+                        .setParameter("documentId", documentId)
+                        .executeUpdate();
+            }
+
+            session.createNativeQuery("""
+                            INSERT INTO sentencetopics
+                            SELECT ut.id, ut.document_id, s.id, tvbws.id, tvb.value, tvbws.score
+                            FROM unifiedtopic ut
+                                     JOIN sentence s ON s.coveredtext = ut.coveredtext AND s.document_id = ut.document_id
+                                     JOIN topicvaluebase tvb ON tvb.unifiedtopic_id = ut.id
+                                     JOIN topicvaluebasewithscore tvbws ON tvbws.id = tvb.id
+                            WHERE ut.document_id = :documentId AND tvbws.score > 0.0
+                            """)
+                    .setParameter("documentId", documentId)
+                    .executeUpdate();
+
+            session.createNativeQuery("""
+                            INSERT INTO documenttopicsraw
+                            SELECT st.document_id, st.topiclabel, SUM(st.thetast),
+                                   SUM(st.thetast) / SUM(SUM(st.thetast)) OVER (PARTITION BY st.document_id)
+                            FROM sentencetopics st
+                            WHERE st.document_id = :documentId
+                            GROUP BY st.document_id, st.topiclabel
+                            """)
+                    .setParameter("documentId", documentId)
+                    .executeUpdate();
+
+            session.createNativeQuery("""
+                            INSERT INTO documenttopicwords
+                            SELECT st.document_id, tvb.value, tw.word,
+                                   SUM(tw.probability * st.thetast)
+                                       / SUM(SUM(tw.probability * st.thetast)) OVER (PARTITION BY st.document_id, tvb.value)
+                            FROM sentencetopics st
+                                     JOIN topicvaluebase tvb ON tvb.id = st.topicinstance_id
+                                     JOIN topicword tw ON tw.topic_id = tvb.id
+                            WHERE st.document_id = :documentId
+                            GROUP BY st.document_id, tvb.value, tw.word
+                            """)
+                    .setParameter("documentId", documentId)
+                    .executeUpdate();
+            return null;
+        });
+    }
+
+    /**
+     * Replaces the rows of the given corpus in the corpustopicwords table from the documenttopicwords of its documents.
+     */
+    public void updateTopicWordsOfCorpus(long corpusId) throws DatabaseOperationException {
+        executeOperationSafely((session) -> {
+            session.createNativeQuery("DELETE FROM corpustopicwords WHERE corpus_id = :corpusId")
+                    .setParameter("corpusId", corpusId)
+                    .executeUpdate();
+
+            session.createNativeQuery("""
+                            INSERT INTO corpustopicwords
+                            SELECT d.corpusid, dtw.topiclabel, dtw.word,
+                                   SUM(dtw.probability)
+                                       / SUM(SUM(dtw.probability)) OVER (PARTITION BY d.corpusid, dtw.topiclabel)
+                            FROM documenttopicwords dtw
+                                     JOIN document d ON dtw.document_id = d.id
+                            WHERE d.corpusid = :corpusId
+                            GROUP BY d.corpusid, dtw.topiclabel, dtw.word
+                            """)
+                    .setParameter("corpusId", corpusId)
+                    .executeUpdate();
+            return null;
+        });
+    }
+
     public List<Object[]> getTopTopicsByDocument(long documentId, int limit) throws DatabaseOperationException {
         return executeOperationSafely((session) -> {
             // Use native SQL to query the document_topics_raw table
@@ -1766,7 +2543,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<Object[]> getTopTopicsBySentence(long sentenceId, int limit) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             // Direct query using sentence_id
             String sql = "SELECT topiclabel, thetast FROM sentencetopics " +
                          "WHERE sentence_id = :sentenceId " +
@@ -1782,7 +2559,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<Object[]> getTopDocumentsByTopicLabel(String topicValue, long corpusId, int limit) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             String sql = "SELECT d.id, d.documentid, dtr.thetadt " +
                          "FROM document d " +
                          "JOIN documenttopicsraw dtr ON d.id = dtr.document_id " +
@@ -1801,7 +2578,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<TopicWord> getTopicWordsByTopicLabel(String topicValue, long corpusId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             String sql = "SELECT word, probability " +
                          "FROM corpustopicwords " +
                          "WHERE topiclabel = :topicValue AND corpus_id = :corpusId " +
@@ -1827,7 +2604,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<Object[]> getSimilarTopicsbyTopicLabel(String topicValue, long corpusId, int minSharedWords, int result_limit) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             String sql = "SELECT * FROM find_similar_topics(:topicValue, :minSharedWords, :result_limit, :corpusId)";
 
             var query = session.createNativeQuery(sql)
@@ -1841,7 +2618,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<TopicWord> getNormalizedTopicWordsForCorpus(long corpusId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             String sql = "SELECT word, " +
                          "AVG(probability) AS avg_probability, " +
                          "AVG(probability) / SUM(AVG(probability)) OVER () AS normalized_probability " +
@@ -1868,7 +2645,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public Map<String, Double> getTopNormalizedTopicsByCorpusId(long corpusId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             String sql = """
                         SELECT topic, normalized_score
                         FROM get_normalized_topic_scores(:corpusId)
@@ -1893,7 +2670,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<TopicWord> getDocumentWordDistribution(long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             String sql = "SELECT word, AVG(probability) AS avg_probability " +
                          "FROM documenttopicwords " +
                          "WHERE document_id = :documentId " +
@@ -1928,7 +2705,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
 
     // Similar documents based on the shared topic words
     public List<Object[]> getSimilarDocumentbyDocumentId(long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             String sql = "WITH sourcewords AS (" +
                          "    SELECT word " +
                          "    FROM documenttopicwords " +
@@ -1958,86 +2735,110 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public List<Object[]> getTaxonValuesAndCountByPageId(long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
-            List<String> taxonTypes = ReflectionUtils.getTaxonSystemTypes(Taxon.class);
-
-            StringBuilder sqlBuilder = new StringBuilder();
-            for (int i = 0; i < taxonTypes.size(); i++) {
-                String tableName = taxonTypes.get(i);
-                sqlBuilder.append("SELECT t.page_id, t.valuee ")
-                        .append("FROM ").append(tableName).append(" t ")
-                        .append("WHERE t.document_id = :documentId ");
-                if (i < taxonTypes.size() - 1) {
-                    sqlBuilder.append("UNION ALL ");
-                }
-            }
-
-            // Outer query: group by page_id, aggregate values and count
-            String finalSql = "SELECT page_id, valuee AS taxon_value " +
-                              "FROM (" + sqlBuilder.toString() + ") AS combined_taxon ";
-
-            var query = session.createNativeQuery(finalSql)
-                    .setParameter("documentId", documentId)
-                    .unwrap(org.hibernate.query.NativeQuery.class)
-                    .addScalar("page_id", LongType.INSTANCE)
-                    .addScalar("taxon_value", StandardBasicTypes.TEXT);
-
-            return query.getResultList();
-        });
+        return getPageStatistics(documentId, PageStatistic.TAXON);
     }
 
     public List<Object[]> getNamedEntityValuesAndCountByPage(long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
-            // Construct the SQL query to select page_id and coveredtext from the namedentity table
-            String sql = "SELECT ne.page_id, ne.coveredtext AS named_entity_value, ne.typee AS named_entity_type " +
-                         "FROM namedentity ne " +
-                         "WHERE ne.document_id = :documentId";
+        return getPageStatistics(documentId, PageStatistic.NAMED_ENTITY);
+    }
 
-            var query = session.createNativeQuery(sql)
-                    .setParameter("documentId", documentId);
+    public List<Object[]> getLemmaByPage(long documentId) throws DatabaseOperationException {
+        return getPageStatistics(documentId, PageStatistic.LEMMA);
+    }
 
-            return query.getResultList();
-        });
+    public List<Object[]> getGeonameByPage(long documentId) throws DatabaseOperationException {
+        return getPageStatistics(documentId, PageStatistic.GEONAME);
     }
 
-    public List<Object[]> getLemmaByPage(long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
-            // Construct the SQL query to select page_id and coveredtext from the namedentity table
-            String sql = "SELECT lemma.page_id, lemma.coveredtext AS lemma_value, lemma.coarsevalue AS coarsevalue " +
-                    "FROM lemma " +
-                    "WHERE lemma.document_id = :documentId";
+    public List<Object[]> getTopicDistributionByPageForDocument(long documentId) throws DatabaseOperationException {
+        return getPageStatistics(documentId, PageStatistic.TOPIC);
+    }
 
-            var query = session.createNativeQuery(sql)
-                    .setParameter("documentId", documentId);
+    public List<Object[]> getSentenceTopicsWithEntitiesByPageForDocument(long documentId) throws DatabaseOperationException {
+        return getPageStatistics(documentId, PageStatistic.TOPIC_ENTITY);
+    }
 
-            return query.getResultList();
+    /**
+     * Aggregates the page statistics of a document once and stores them in the pagestatistics table, where the
+     * document analytics read them from. Meant for the postprocessing of a document, after its topics are inserted.
+     */
+    public void refreshPageStatisticsOfDocument(long documentId) throws DatabaseOperationException {
+        executeOperationSafely((session) -> {
+            session.createNativeQuery("DELETE FROM pagestatistics WHERE document_id = :documentId")
+                    .setParameter("documentId", documentId)
+                    .executeUpdate();
+            for (var statistic : PageStatistic.values()) {
+                session.createNativeQuery("INSERT INTO pagestatistics (document_id, kind, page_id, value, category, count) " +
+                                          "SELECT :documentId, :kind, s.page_id, s.value, s.category, s.count " +
+                                          "FROM (" + buildPageStatisticQuery(statistic) + ") s")
+                        .setParameter("documentId", documentId)
+                        .setParameter("kind", statistic.name())
+                        .executeUpdate();
+            }
+            session.createNativeQuery("INSERT INTO pagestatisticsdocuments (document_id) VALUES (:documentId) " +
+                                      "ON CONFLICT (document_id) DO UPDATE SET created = now()")
+                    .setParameter("documentId", documentId)
+                    .executeUpdate();
+            return null;
         });
     }
 
-    public List<Object[]> getGeonameByPage(long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
-            String sql = "SELECT gn.page_id, gn.coveredtext AS geoname_value " +
-                    "FROM geoname gn " +
-                    "WHERE gn.document_id = :documentId";
+    /**
+     * The rows (page_id, value, category, count) of a page statistic of a document. They are read from the
+     * pagestatistics table if the document's statistics were aggregated already, otherwise they are aggregated now.
+     */
+    private List<Object[]> getPageStatistics(long documentId, PageStatistic statistic) throws DatabaseOperationException {
+        return executeReadOnlySafely((session) -> {
+            var isAggregated = !session.createNativeQuery("SELECT 1 FROM pagestatisticsdocuments WHERE document_id = :documentId")
+                    .setParameter("documentId", documentId)
+                    .getResultList()
+                    .isEmpty();
 
+            var sql = isAggregated
+                    ? "SELECT page_id, value, category, count FROM pagestatistics WHERE document_id = :documentId AND kind = '" + statistic.name() + "'"
+                    : buildPageStatisticQuery(statistic);
             var query = session.createNativeQuery(sql)
-                    .setParameter("documentId", documentId);
-
-            return query.getResultList();
+                    .setParameter("documentId", documentId)
+                    .unwrap(org.hibernate.query.NativeQuery.class)
+                    .addScalar("page_id", LongType.INSTANCE)
+                    .addScalar("value", StandardBasicTypes.TEXT)
+                    .addScalar("category", StandardBasicTypes.TEXT)
+                    .addScalar("count", StandardBasicTypes.INTEGER);
+            return (List<Object[]>) query.getResultList();
         });
     }
 
-
-    public List<Object[]> getTopicDistributionByPageForDocument(long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
-            String sql = """
+    /**
+     * The aggregation of a page statistic of the document :documentId, selecting page_id, value, category and count.
+     */
+    private String buildPageStatisticQuery(PageStatistic statistic) {
+        return switch (statistic) {
+            case TAXON -> {
+                var taxonTables = ReflectionUtils.getTaxonSystemTypes(Taxon.class)
+                        .stream()
+                        .map(table -> "SELECT t.page_id, t.valuee FROM " + table + " t WHERE t.document_id = :documentId")
+                        .collect(Collectors.joining(" UNION ALL "));
+                yield "SELECT page_id, valuee AS value, CAST(NULL AS text) AS category, COUNT(*) AS count " +
+                      "FROM (" + taxonTables + ") AS combined_taxon " +
+                      "GROUP BY page_id, valuee";
+            }
+            case NAMED_ENTITY -> "SELECT ne.page_id, ne.coveredtext AS value, ne.typee AS category, COUNT(*) AS count " +
+                                 "FROM namedentity ne " +
+                                 "WHERE ne.document_id = :documentId " +
+                                 "GROUP BY ne.page_id, ne.coveredtext, ne.typee";
+            case LEMMA -> "SELECT lemma.page_id, lemma.coveredtext AS value, lemma.coarsevalue AS category, COUNT(*) AS count " +
+                          "FROM lemma " +
+                          "WHERE lemma.document_id = :documentId " +
+                          "GROUP BY lemma.page_id, lemma.coveredtext, lemma.coarsevalue";
+            case GEONAME -> "SELECT gn.page_id, gn.coveredtext AS value, CAST(NULL AS text) AS category, COUNT(*) AS count " +
+                            "FROM geoname gn " +
+                            "WHERE gn.document_id = :documentId " +
+                            "GROUP BY gn.page_id, gn.coveredtext";
+            case TOPIC -> """
                     WITH best_topic_per_sentence AS (
                         SELECT DISTINCT ON (st.document_id, st.sentence_id)
                             st.unifiedtopic_id,
-                            st.document_id,
-                            st.sentence_id,
-                            st.topiclabel,
-                            st.thetast
+                            st.topiclabel
                         FROM 
                             sentencetopics st
                         WHERE 
@@ -2047,27 +2848,20 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
                     )
                     SELECT 
                         ut.page_id,
-                        btp.topiclabel
+                        btp.topiclabel AS value,
+                        CAST(NULL AS text) AS category,
+                        COUNT(*) AS count
                     FROM 
                         best_topic_per_sentence btp
                     JOIN 
                         unifiedtopic ut ON btp.unifiedtopic_id = ut.id
                     WHERE 
                         ut.document_id = :documentId
-                    ORDER BY 
+                    GROUP BY 
                         ut.page_id, btp.topiclabel
                     """;
-
-            var query = session.createNativeQuery(sql)
-                    .setParameter("documentId", documentId);
-
-            return query.getResultList();
-        });
-    }
-
-    public List<Object[]> getSentenceTopicsWithEntitiesByPageForDocument(long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
-            String sql = """
+            // The relation of the topics to the entities is document-wide, so there is no page.
+            case TOPIC_ENTITY -> """
                     WITH best_topic_per_sentence AS (
                         SELECT DISTINCT ON (st.document_id, st.sentence_id)
                             st.sentence_id,
@@ -2075,7 +2869,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
                         FROM 
                             sentencetopics st
                         WHERE 
-                            st.document_id = :document_id
+                            st.document_id = :documentId
                         ORDER BY 
                             st.document_id, st.sentence_id, st.thetast DESC
                     ),
@@ -2090,27 +2884,31 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
                                 ne.beginn >= s.beginn AND 
                                 ne.endd <= s.endd
                         WHERE
-                            s.document_id = :document_id
+                            s.document_id = :documentId
                     )
                     SELECT
-                        btps.topiclabel,
-                        eis.entity_type
+                        CAST(NULL AS bigint) AS page_id,
+                        btps.topiclabel AS value,
+                        eis.entity_type AS category,
+                        COUNT(*) AS count
                     FROM
                         best_topic_per_sentence btps
                         JOIN entities_in_sentences eis ON btps.sentence_id = eis.sentence_id
-                    ORDER BY
-                        btps.sentence_id, eis.entity_type
+                    GROUP BY
+                        btps.topiclabel, eis.entity_type
                     """;
+        };
+    }
 
-            Query<Object[]> query = session.createNativeQuery(sql)
-                    .setParameter("document_id", documentId);
-
-            return query.getResultList();
-        });
+    /**
+     * The statistics of the document analytics that are aggregated per page, see the pagestatistics table.
+     */
+    private enum PageStatistic {
+        TAXON, NAMED_ENTITY, LEMMA, GEONAME, TOPIC, TOPIC_ENTITY
     }
 
     public List<Object[]> getTopicWordsByDocumentId(long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             String sql = "SELECT topiclabel, word, AVG(probability) AS avg_probability " +
                          "FROM documenttopicwords " +
                          "WHERE document_id = :documentId " +
@@ -2127,7 +2925,7 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
     }
 
     public Map<Long, Long> getUnifiedTopicToSentenceMap(long documentId) throws DatabaseOperationException {
-        return executeOperationSafely((session) -> {
+        return executeReadOnlySafely((session) -> {
             String sql = "SELECT unifiedtopic_id, sentence_id FROM sentencetopics WHERE document_id = :documentId";
 
             var query = session.createNativeQuery(sql)
@@ -2183,23 +2981,8 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
      * @return
      */
     private Document initializeCompleteDocument(Document doc, int skipPages, int pageLimit) {
-        Hibernate.initialize(doc.getPages());
+        initializeDocumentPageWindow(doc, skipPages, pageLimit);
 
-        // The documents are too large to fetch all pages and all annotations at once, it would take to long.
-        // So we initialize only through a window.
-        for (var page : doc.getPages()
-                .stream()
-                .sorted(Comparator.comparing(Page::getPageNumber))
-                .skip(skipPages)
-                .limit(pageLimit)
-                .toList()) {
-            Hibernate.initialize(page.getBlocks());
-            Hibernate.initialize(page.getParagraphs());
-            Hibernate.initialize(page.getLines());
-            Hibernate.initialize(page.getPageKeywordDistribution());
-        }
-
-        Hibernate.initialize(doc.getDocumentKeywordDistribution());
         Hibernate.initialize(doc.getSentences());
         Hibernate.initialize(doc.getNamedEntities());
         Hibernate.initialize(doc.getGeoNames());
@@ -2212,7 +2995,6 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
         Hibernate.initialize(doc.getTimes());
         Hibernate.initialize(doc.getWikipediaLinks());
         Hibernate.initialize(doc.getLemmas());
-        Hibernate.initialize(doc.getUceMetadata());
         Hibernate.initialize(doc.getImages());
         // init negations
         Hibernate.initialize(doc.getCompleteNegations());
@@ -2236,6 +3018,33 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
         return doc;
     }
 
+    /**
+     * Initializes the pages of a document, but the structure only of the given window of pages, together with
+     * the document-wide properties the reader shows.
+     */
+    private Document initializeDocumentPageWindow(Document doc, int skipPages, int pageLimit) {
+        Hibernate.initialize(doc.getPages());
+
+        // The documents are too large to fetch all pages and all annotations at once, it would take to long.
+        // So we initialize only through a window.
+        for (var page : doc.getPages()
+                .stream()
+                .sorted(Comparator.comparing(Page::getPageNumber))
+                .skip(skipPages)
+                .limit(pageLimit)
+                .toList()) {
+            Hibernate.initialize(page.getBlocks());
+            Hibernate.initialize(page.getParagraphs());
+            Hibernate.initialize(page.getLines());
+            Hibernate.initialize(page.getPageKeywordDistribution());
+        }
+
+        Hibernate.initialize(doc.getDocumentKeywordDistribution());
+        Hibernate.initialize(doc.getUceMetadata());
+
+        return doc;
+    }
+
     /**
      * Since we need to handle exceptions, closing the session properly, rollback etc., we write a generic function
      * which is to be used whenever we call the database.
@@ -2244,11 +3053,57 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
      * @return
      */
     private <T> T executeOperationSafely(Function<Session, T> operation) throws DatabaseOperationException {
+        return executeInTransaction(operation, null, false);
+    }
+
+    /**
+     * Executes an operation that only reads within a read-only transaction, on one of the replicas if there are any.
+     * The operation must not write at all - not even into temporary tables. If the replica fails with a connection
+     * error or a recovery conflict, the operation is retried once on the primary.
+     */
+    private <T> T executeReadOnlySafely(Function<Session, T> operation) throws DatabaseOperationException {
+        var replicaConnection = DataSourceConf.getReplicaConnection();
+        if (replicaConnection != null) {
+            try {
+                return executeInTransaction(operation, replicaConnection, true);
+            } catch (DatabaseOperationException ex) {
+                if (!isReplicaFailure(ex)) throw ex;
+                logger.warn("A read on the replica failed, retrying it on the primary.", ex);
+            } finally {
+                try {
+                    replicaConnection.close();
+                } catch (SQLException ex) {
+                    logger.warn("Couldn't return a replica connection to its pool.", ex);
+                }
+            }
+        }
+        return executeInTransaction(operation, null, true);
+    }
+
+    /**
+     * Runs the operation in its own session and transaction. Without a connection, the session takes one from the
+     * primary's pool.
+     */
+    private <T> T executeInTransaction(Function<Session, T> operation, Connection connection, boolean readOnly) throws DatabaseOperationException {
         Session session = null;
         Transaction transaction = null;
         try {
-            session = sessionFactory.openSession();
+            session = connection == null
+                    ? sessionFactory.openSession()
+                    : sessionFactory.withOptions().connection(connection).openSession();
+            if (readOnly) {
+                // No dirty checking and snapshots of the loaded entities, we never flush them anyway.
+                session.setDefaultReadOnly(true);
+                session.setHibernateFlushMode(FlushMode.MANUAL);
+            }
             transaction = session.beginTransaction();
+            if (readOnly) {
+                session.doWork(conn -> {
+                    try (var statement = conn.createStatement()) {
+                        statement.execute("SET TRANSACTION READ ONLY");
+                    }
+                });
+            }
             T result = operation.apply(session);
             transaction.commit();
             return result;
@@ -2266,6 +3121,20 @@ public class PostgresqlDataInterface_Impl implements DataInterface {
         }
     }
 
+    /**
+     * Connection errors (08xxx), shutdowns (57Pxx) and queries canceled by a conflict with the replication (40001)
+     * are worth another try on the primary. Any other error would fail there just the same.
+     */
+    private static boolean isReplicaFailure(Throwable ex) {
+        for (var cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null) {
+                var state = sqlException.getSQLState();
+                if (state.startsWith("08") || state.startsWith("57P") || state.equals("40001")) return true;
+            }
+        }
+        return false;
+    }
+
     private String escapeSql(String input) {
         return input.replace("(", "\\(").replace(")", "\\)").replace(":", "\\:").replace("|", "\\|");
     }
@@ -6,6 +6,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jsoup.HttpStatusException;
 import org.texttechnologylab.uce.common.config.CommonConfig;
+import org.texttechnologylab.uce.common.config.DataSourceConf;
 import org.texttechnologylab.uce.common.config.uceConfig.RAGModelConfig;
 import org.texttechnologylab.uce.common.exceptions.DatabaseOperationException;
 import org.texttechnologylab.uce.common.exceptions.ExceptionUtils;
@@ -17,6 +18,7 @@ import org.texttechnologylab.uce.common.models.rag.*;
 import org.texttechnologylab.uce.common.models.util.HealthStatus;
 import org.texttechnologylab.uce.common.utils.SystemStatus;
 
+import javax.sql.DataSource;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -28,7 +30,6 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Duration;
@@ -46,7 +47,7 @@ public class RAGService {
     private static final Logger logger = LogManager.getLogger(RAGService.class);
 
     private PostgresqlDataInterface_Impl postgresqlDataInterfaceImpl = null;
-    private Connection vectorDbConnection = null;
+    private DataSource dataSource = null;
     private CommonConfig config;
 
     static final Pattern patternAmount = Pattern.compile("\\d+");
@@ -59,7 +60,7 @@ public class RAGService {
     public void TestConnection(){
         try {
             this.config = new CommonConfig();
-            this.vectorDbConnection = setupVectorDbConnection();
+            this.dataSource = setupVectorDbDataSource();
 
             var test = ExceptionUtils.tryCatchLog(
                     () -> getEmbeddingForText("This is an embedding test."),
@@ -546,12 +547,14 @@ public class RAGService {
                 + "WHERE d.corpusid = ? "
                 + "ORDER BY e.tsne3d <-> ? "
                 + "LIMIT ?";
-        var statement = vectorDbConnection.prepareStatement(query);
-        statement.setObject(1, corpusId);
-        statement.setObject(2, new PGvector(tsne3d));
-        statement.setInt(3, range);
-        var resultSet = statement.executeQuery();
-        return buildDocumentEmbeddingsFromResultSet(resultSet);
+        try (var connection = getReadConnection(); var statement = connection.prepareStatement(query)) {
+            statement.setObject(1, corpusId);
+            statement.setObject(2, new PGvector(tsne3d));
+            statement.setInt(3, range);
+            try (var resultSet = statement.executeQuery()) {
+                return buildDocumentEmbeddingsFromResultSet(resultSet);
+            }
+        }
     }
 
     /**
@@ -561,13 +564,15 @@ public class RAGService {
      */
     public DocumentEmbedding getDocumentEmbeddingOfDocument(long documentId) throws SQLException {
         var query = "SELECT * FROM documentembeddings WHERE document_id = ?";
-        var statement = vectorDbConnection.prepareStatement(query);
-        statement.setLong(1, documentId);
-        var resultSet = statement.executeQuery();
-        // We return the first found docucment embedding as there should be only one.
-        var embeddings = buildDocumentEmbeddingsFromResultSet(resultSet);
-        if (!embeddings.isEmpty()) return embeddings.stream().findFirst().get();
-        return null;
+        try (var connection = getReadConnection(); var statement = connection.prepareStatement(query)) {
+            statement.setLong(1, documentId);
+            try (var resultSet = statement.executeQuery()) {
+                // We return the first found docucment embedding as there should be only one.
+                var embeddings = buildDocumentEmbeddingsFromResultSet(resultSet);
+                if (!embeddings.isEmpty()) return embeddings.stream().findFirst().get();
+                return null;
+            }
+        }
     }
 
     /**
@@ -589,15 +594,16 @@ public class RAGService {
         queryBuilder.append(placeholders).append(")");
 
         var query = queryBuilder.toString();
-        var statement = vectorDbConnection.prepareStatement(query);
+        try (var connection = getReadConnection(); var statement = connection.prepareStatement(query)) {
+            // Set the document IDs in the prepared statement
+            for (int i = 0; i < documentIds.size(); i++) {
+                statement.setLong(i + 1, documentIds.get(i));
+            }
 
-        // Set the document IDs in the prepared statement
-        for (int i = 0; i < documentIds.size(); i++) {
-            statement.setLong(i + 1, documentIds.get(i));
+            try (var resultSet = statement.executeQuery()) {
+                embeddings = buildDocumentEmbeddingsFromResultSet(resultSet);
+            }
         }
-
-        var resultSet = statement.executeQuery();
-        embeddings = buildDocumentEmbeddingsFromResultSet(resultSet);
         return embeddings;
     }
 
@@ -623,10 +629,12 @@ public class RAGService {
      */
     public ArrayList<DocumentChunkEmbedding> getDocumentChunkEmbeddingsOfDocument(long documentId) throws SQLException {
         var query = "SELECT * FROM documentchunkembeddings WHERE document_id = ?";
-        var statement = vectorDbConnection.prepareStatement(query);
-        statement.setLong(1, documentId);
-        var resultSet = statement.executeQuery();
-        return buildDocumentChunkEmbeddingsFromResultSet(resultSet);
+        try (var connection = getReadConnection(); var statement = connection.prepareStatement(query)) {
+            statement.setLong(1, documentId);
+            try (var resultSet = statement.executeQuery()) {
+                return buildDocumentChunkEmbeddingsFromResultSet(resultSet);
+            }
+        }
     }
 
     /**
@@ -638,6 +646,15 @@ public class RAGService {
      */
     public List<DocumentChunkEmbedding> getClosestDocumentChunkEmbeddings(String text, int range, long corpusId)
             throws SQLException, IOException, URISyntaxException, InterruptedException {
+        return getClosestDocumentChunkEmbeddings(text, range, corpusId, 0);
+    }
+
+    /**
+     * Like {@link #getClosestDocumentChunkEmbeddings(String, int, long)}, but the database cancels the query once
+     * it runs longer than the timeout, rounded up to whole seconds. 0 disables the timeout.
+     */
+    public List<DocumentChunkEmbedding> getClosestDocumentChunkEmbeddings(String text, int range, long corpusId, long timeoutMs)
+            throws SQLException, IOException, URISyntaxException, InterruptedException {
         // If the corpusid = -1, then we look at ANY document. Otherwise, only at those documentchunkembeddings from
         // a document that is in the corpus.
         var query = "";
@@ -654,17 +671,22 @@ public class RAGService {
                     + "ORDER BY e.embedding <-> ? "
                     + "LIMIT ?";
         }
-        var statement = vectorDbConnection.prepareStatement(query);
-        if (corpusId == -1) {
-            statement.setObject(1, new PGvector(getEmbeddingForText(text)));
-            statement.setInt(2, range);
-        } else {
-            statement.setLong(1, corpusId);
-            statement.setObject(2, new PGvector(getEmbeddingForText(text)));
-            statement.setInt(3, range);
+        // Embed the text first, so we don't hold a pooled connection during the http request.
+        var embedding = new PGvector(getEmbeddingForText(text));
+        try (var connection = getReadConnection(); var statement = connection.prepareStatement(query)) {
+            if (timeoutMs > 0) statement.setQueryTimeout((int) Math.ceil(timeoutMs / 1000.0));
+            if (corpusId == -1) {
+                statement.setObject(1, embedding);
+                statement.setInt(2, range);
+            } else {
+                statement.setLong(1, corpusId);
+                statement.setObject(2, embedding);
+                statement.setInt(3, range);
+            }
+            try (var resultSet = statement.executeQuery()) {
+                return buildDocumentChunkEmbeddingsFromResultSet(resultSet);
+            }
         }
-        var resultSet = statement.executeQuery();
-        return buildDocumentChunkEmbeddingsFromResultSet(resultSet);
     }
 
     private ArrayList<DocumentChunkEmbedding> buildDocumentChunkEmbeddingsFromResultSet(ResultSet resultSet) throws SQLException {
@@ -690,10 +712,12 @@ public class RAGService {
      */
     public ArrayList<DocumentSentenceEmbedding> getDocumentSentenceEmbeddingsOfDocument(long documentId) throws SQLException {
         var query = "SELECT * FROM documentsentenceembeddings WHERE document_id = ?";
-        var statement = vectorDbConnection.prepareStatement(query);
-        statement.setLong(1, documentId);
-        var resultSet = statement.executeQuery();
-        return buildDocumentSentenceEmbeddingsFromResultSet(resultSet);
+        try (var connection = getReadConnection(); var statement = connection.prepareStatement(query)) {
+            statement.setLong(1, documentId);
+            try (var resultSet = statement.executeQuery()) {
+                return buildDocumentSentenceEmbeddingsFromResultSet(resultSet);
+            }
+        }
     }
 
 
@@ -718,7 +742,7 @@ public class RAGService {
      */
     public boolean documentHasDocumentEmbedding(long documentId) throws SQLException {
         String query = "SELECT COUNT(*) FROM documentembeddings WHERE document_id = ?";
-        try (var statement = vectorDbConnection.prepareStatement(query)) {
+        try (var connection = getConnection(); var statement = connection.prepareStatement(query)) {
             statement.setLong(1, documentId);
             try (var resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
@@ -759,7 +783,7 @@ public class RAGService {
      */
     public boolean documentHasDocumentChunkEmbeddings(long documentId) throws SQLException {
         String query = "SELECT COUNT(*) FROM documentchunkembeddings WHERE document_id = ?";
-        try (var statement = vectorDbConnection.prepareStatement(query)) {
+        try (var connection = getConnection(); var statement = connection.prepareStatement(query)) {
             statement.setLong(1, documentId);
             try (var resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
@@ -806,20 +830,21 @@ public class RAGService {
      *
      */
     private void executeUpdate(String query, Object... params) throws SQLException {
-        var statement = vectorDbConnection.prepareStatement(query);
-        for (int i = 0; i < params.length; i++) {
-            if (params[i] instanceof PGvector) {
-                statement.setObject(i + 1, params[i]);
-            } else if (params[i] instanceof String) {
-                statement.setString(i + 1, (String) params[i]);
-            } else if (params[i] instanceof Integer) {
-                statement.setInt(i + 1, (Integer) params[i]);
-            } else if (params[i] instanceof Long) {
-                statement.setLong(i + 1, (Long) params[i]);
+        try (var connection = getConnection(); var statement = connection.prepareStatement(query)) {
+            for (int i = 0; i < params.length; i++) {
+                if (params[i] instanceof PGvector) {
+                    statement.setObject(i + 1, params[i]);
+                } else if (params[i] instanceof String) {
+                    statement.setString(i + 1, (String) params[i]);
+                } else if (params[i] instanceof Integer) {
+                    statement.setInt(i + 1, (Integer) params[i]);
+                } else if (params[i] instanceof Long) {
+                    statement.setLong(i + 1, (Long) params[i]);
+                }
+                // Add other types as needed
             }
-            // Add other types as needed
+            statement.executeUpdate();
         }
-        statement.executeUpdate();
     }
 
     /**
@@ -877,7 +902,7 @@ public class RAGService {
      */
     public boolean documentHasDocumentSentenceEmbeddings(long documentId) throws SQLException {
         String query = "SELECT COUNT(*) FROM documentsentenceembeddings WHERE document_id = ?";
-        try (var statement = vectorDbConnection.prepareStatement(query)) {
+        try (var connection = getConnection(); var statement = connection.prepareStatement(query)) {
             statement.setLong(1, documentId);
             try (var resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
@@ -996,12 +1021,162 @@ public class RAGService {
         return ragEmbedDto.getMessage();
     }
 
+    /**
+     * Like {@link #getEmbeddingForText(String)}, but embeds many texts with a single request to our python webserver.
+     * The embeddings are returned in the order of the texts.
+     */
+    public List<float[]> getEmbeddingsForTexts(List<String> texts) throws IOException, InterruptedException, URISyntaxException {
+        if (texts.isEmpty()) return new ArrayList<>();
+        var httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .build();
+
+        var url = config.getRAGWebserverBaseUrl() + "embed/batch";
+
+        // Prepare workload
+        var gson = new Gson();
+        var params = new HashMap<String, Object>();
+        params.put("texts", texts);
+        params.put("backend", config.getEmbeddingBackend());
+        params.put("config", config.getEmbeddingParameters());
+        var jsonData = gson.toJson(params);
+
+        // Create request. The timeout is meant for a single text, so it grows with the batch.
+        var request = HttpRequest
+                .newBuilder()
+                .uri(new URI(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonData))
+                .timeout(Duration.ofSeconds(config.getEmbeddingTimeout() * texts.size()))
+                .build();
+
+        // Send request and get response
+        var response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        var statusCode = response.statusCode();
+        if (statusCode != 200) throw new HttpStatusException("Request returned invalid status code: " + statusCode, statusCode, url);
+
+        var ragEmbedDto = gson.fromJson(response.body(), RAGEmbedBatchDto.class);
+        if (ragEmbedDto.getStatus() != 200) throw new HttpStatusException(
+                "Webservice replied with an internally wrong status code, something went wrong there: " + ragEmbedDto.getStatus(), statusCode, url);
+        if (ragEmbedDto.getMessage() == null || ragEmbedDto.getMessage().length != texts.size())
+            throw new IOException("Webservice returned a different amount of embeddings than texts were sent.");
+
+        return Arrays.asList(ragEmbedDto.getMessage());
+    }
+
+    /**
+     * Saves many document chunk embeddings with a single batched statement.
+     */
+    public void saveManyDocumentChunkEmbeddings(List<DocumentChunkEmbedding> documentChunkEmbeddings) throws SQLException {
+        if (documentChunkEmbeddings.isEmpty()) return;
+        String query = "INSERT INTO documentchunkembeddings (document_id, embedding, coveredtext, beginn, endd, tsne2d, tsne3d) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (var connection = getConnection(); var statement = connection.prepareStatement(query)) {
+            for (var chunk : documentChunkEmbeddings) {
+                statement.setLong(1, chunk.getDocument_id());
+                statement.setObject(2, new PGvector(chunk.getEmbedding()));
+                statement.setString(3, chunk.getCoveredText());
+                statement.setInt(4, chunk.getBegin());
+                statement.setInt(5, chunk.getEnd());
+                statement.setObject(6, chunk.getTsne2D() == null ? null : new PGvector(chunk.getTsne2D()));
+                statement.setObject(7, chunk.getTsne3D() == null ? null : new PGvector(chunk.getTsne3D()));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Puts a document into the embedding job queue, the embedding workers then calculate its embeddings.
+     * Documents that are queued already are ignored.
+     */
+    public void enqueueEmbeddingJob(long documentId) throws SQLException {
+        executeUpdate("INSERT INTO embeddingjobs (document_id) VALUES (?) ON CONFLICT (document_id) DO NOTHING", documentId);
+    }
+
+    /**
+     * Claims up to limit pending embedding jobs and returns their document ids. Concurrent workers, also of other
+     * importers, never claim the same job.
+     */
+    public List<Long> claimEmbeddingJobs(int limit) throws SQLException {
+        var query = "UPDATE embeddingjobs SET status = 'running', claimed = now() WHERE document_id IN ("
+                + "SELECT document_id FROM embeddingjobs WHERE status = 'pending' ORDER BY document_id LIMIT ? FOR UPDATE SKIP LOCKED"
+                + ") RETURNING document_id";
+        var documentIds = new ArrayList<Long>();
+        try (var connection = getConnection(); var statement = connection.prepareStatement(query)) {
+            statement.setInt(1, limit);
+            try (var resultSet = statement.executeQuery()) {
+                while (resultSet.next()) documentIds.add(resultSet.getLong(1));
+            }
+        }
+        return documentIds;
+    }
+
+    /**
+     * Removes a finished job from the embedding job queue.
+     */
+    public void finishEmbeddingJob(long documentId) throws SQLException {
+        executeUpdate("DELETE FROM embeddingjobs WHERE document_id = ?", documentId);
+    }
+
+    /**
+     * Puts a failed job back into the queue, or marks it as failed for good after maxAttempts.
+     */
+    public void failEmbeddingJob(long documentId, String error, int maxAttempts) throws SQLException {
+        executeUpdate("UPDATE embeddingjobs SET attempts = attempts + 1, error = ?, claimed = NULL, "
+                        + "status = CASE WHEN attempts + 1 >= ? THEN 'failed' ELSE 'pending' END WHERE document_id = ?",
+                error == null ? "" : error, maxAttempts, documentId);
+    }
+
+    /**
+     * Puts jobs back into the queue that were claimed longer than the given amount of minutes ago, e.g. by a crashed importer.
+     */
+    public void resetStaleEmbeddingJobs(int minutes) throws SQLException {
+        executeUpdate("UPDATE embeddingjobs SET status = 'pending', claimed = NULL "
+                + "WHERE status = 'running' AND claimed < now() - make_interval(mins => ?)", minutes);
+    }
+
+    /**
+     * The amount of embedding jobs of the documents of the given corpus that are still pending or being worked on.
+     */
+    public int countOpenEmbeddingJobs(long corpusId) throws SQLException {
+        var query = "SELECT COUNT(*) FROM embeddingjobs j JOIN document d ON d.id = j.document_id "
+                + "WHERE d.corpusid = ? AND j.status IN ('pending', 'running')";
+        try (var connection = getConnection(); var statement = connection.prepareStatement(query)) {
+            statement.setLong(1, corpusId);
+            try (var resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Gets the title and full text of the given documents, which is all we need to embed them.
+     */
+    public Map<Long, Document> getDocumentTextsOfDocuments(List<Long> documentIds) throws SQLException {
+        var documents = new HashMap<Long, Document>();
+        if (documentIds.isEmpty()) return documents;
+        try (var connection = getConnection();
+             var statement = connection.prepareStatement("SELECT id, documenttitle, fulltext FROM document WHERE id = ANY(?)")) {
+            statement.setArray(1, connection.createArrayOf("bigint", documentIds.toArray()));
+            try (var resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    var document = new Document();
+                    document.setId(resultSet.getLong("id"));
+                    document.setDocumentTitle(resultSet.getString("documenttitle"));
+                    document.setFullText(resultSet.getString("fulltext"));
+                    documents.put(document.getId(), document);
+                }
+            }
+        }
+        return documents;
+    }
+
     /**
      * Gets a list of empty DocumentChunkEmbeddings with proper text splitting
      *
      * @param chunkSize Good size would be 1.200 for example
      */
-    public List<DocumentChunkEmbedding> getEmptyEmbeddingChunksFromText(String text, int chunkSize) {
+    public static List<DocumentChunkEmbedding> getEmptyEmbeddingChunksFromText(String text, int chunkSize) {
         // Calculate the number of chunks needed
         // We want a cleaned single text without linebreaks or whatnot.
         text = text.replaceAll("\\s+", " ");
@@ -1021,20 +1196,46 @@ public class RAGService {
     }
 
     /**
-     * We are using postgresql vector extension, which won't work with hibernate. Hence, we open a different connection
-     * solely for the RAG service.
+     * We are using postgresql vector extension, which won't work with hibernate. Hence, we work with plain jdbc
+     * connections for the RAG service - borrowed from the same pool that hibernate uses.
      */
-    private Connection setupVectorDbConnection() throws ClassNotFoundException, SQLException {
-        Class.forName(config.getPostgresqlProperty("connection.driver_class"));
-        var connection = DriverManager.getConnection(config.getPostgresqlProperty("hibernate.connection.url"),
-                config.getPostgresqlProperty("hibernate.connection.username"),
-                config.getPostgresqlProperty("hibernate.connection.password"));
+    private DataSource setupVectorDbDataSource() throws SQLException {
+        var pooledDataSource = DataSourceConf.getDataSource();
 
-        // After we have the connection, we set up some vector extension requirements.
-        var setupStmt = connection.createStatement();
-        setupStmt.executeUpdate("CREATE EXTENSION IF NOT EXISTS vector");
-        PGvector.addVectorType(connection);
+        // Once we have the pool, we set up some vector extension requirements.
+        try (var connection = pooledDataSource.getConnection(); var setupStmt = connection.createStatement()) {
+            setupStmt.executeUpdate("CREATE EXTENSION IF NOT EXISTS vector");
+        }
+        return pooledDataSource;
+    }
 
+    /**
+     * Like {@link #getConnection()}, but from one of the read replicas if there are any. Only for reads that
+     * can live with a small replication lag, like the search and the visualizations of the portal.
+     */
+    private Connection getReadConnection() throws SQLException {
+        var connection = DataSourceConf.getReplicaConnection();
+        if (connection == null) return getConnection();
+        try {
+            PGvector.addVectorType(connection);
+        } catch (SQLException ex) {
+            connection.close();
+            throw ex;
+        }
+        return connection;
+    }
+
+    /**
+     * Borrows a connection from the pool that knows the vector type. Has to be closed to return it.
+     */
+    private Connection getConnection() throws SQLException {
+        var connection = dataSource.getConnection();
+        try {
+            PGvector.addVectorType(connection);
+        } catch (SQLException ex) {
+            connection.close();
+            throw ex;
+        }
         return connection;
     }
 
@@ -31,7 +31,7 @@ public class WikiService {
         viewModel.setWikiModel(corpus);
         viewModel.setCoveredText(coveredText);
         viewModel.setAnnotationType("Corpus");
-        viewModel.setCorpus(corpus.getViewModel());
+        viewModel.setCorpus(db.getCorpusViewModelById(corpusId));
         viewModel.setDocumentsCount(db.countDocumentsInCorpus(corpusId));
         viewModel.setPagesCount(db.countPagesInCorpus(corpusId));
         viewModel.setNormalizedTopicWords(db.getNormalizedTopicWordsForCorpus(corpusId));
@@ -57,7 +57,7 @@ public class WikiService {
         var lemma = db.getLemmaById(id);
         viewModel.setWikiModel(lemma);
         viewModel.setDocument(db.getDocumentById(lemma.getDocumentId()));
-        viewModel.setCorpus(db.getCorpusById(viewModel.getDocument().getCorpusId()).getViewModel());
+        viewModel.setCorpus(db.getCorpusViewModelById(viewModel.getDocument().getCorpusId()));
         viewModel.setCoveredText(coveredText);
         viewModel.setPage(lemma.getPage());
         viewModel.setAnnotationType("Lemma");
@@ -80,7 +80,7 @@ public class WikiService {
         viewModel.setWikiModel(cue);
         viewModel.setPage(cue.getPage());
         viewModel.setDocument(db.getDocumentById(negation.getDocument().getId()));
-        viewModel.setCorpus(db.getCorpusById(viewModel.getDocument().getCorpusId()).getViewModel());
+        viewModel.setCorpus(db.getCorpusViewModelById(viewModel.getDocument().getCorpusId()));
         viewModel.setCoveredText(coveredText);
         //viewModel.setCoveredText("lol");
         viewModel.setAnnotationType("Cue");
@@ -105,7 +105,7 @@ public class WikiService {
         viewModel.setWikiModel(unifiedTopic);
         viewModel.setPage(unifiedTopic.getPage());
         viewModel.setDocument(db.getDocumentById(unifiedTopic.getDocument().getId()));
-        viewModel.setCorpus(db.getCorpusById(viewModel.getDocument().getCorpusId()).getViewModel());
+        viewModel.setCorpus(db.getCorpusViewModelById(viewModel.getDocument().getCorpusId()));
         viewModel.setCoveredText(coveredText);
         viewModel.setAnnotationType("UnifiedTopic");
         viewModel.setTopics(unifiedTopic.getOrderedTopics("desc"));
@@ -122,7 +122,7 @@ public class WikiService {
         viewModel.setWikiModel(documentTopThreeTopics);
         viewModel.setDocument(db.getDocumentById(documentTopThreeTopics.getDocumentId()));
         var corpusId = viewModel.getDocument().getCorpusId();
-        viewModel.setCorpus(db.getCorpusById(corpusId).getViewModel());
+        viewModel.setCorpus(db.getCorpusViewModelById(corpusId));
         viewModel.setCoveredText(coveredText);
         viewModel.setAnnotationType("Topic");
         viewModel.setDocumentTopicDistribution(documentTopThreeTopics);
@@ -151,7 +151,7 @@ public class WikiService {
         var doc = db.getDocumentById(id);
         viewModel.setDocument(doc);
         viewModel.setWikiModel(doc);
-        viewModel.setCorpus(db.getCorpusById(viewModel.getDocument().getCorpusId()).getViewModel());
+        viewModel.setCorpus(db.getCorpusViewModelById(viewModel.getDocument().getCorpusId()));
         viewModel.setCoveredText("Document");
         viewModel.setAnnotationType("Document");
         if(viewModel.getCorpus().getCorpusConfig().getAnnotations().isUceMetadata())
@@ -185,7 +185,7 @@ public class WikiService {
         viewModel.setGbifOccurrences(new ArrayList<>());
         viewModel.setDocument(db.getDocumentById(taxon.getDocumentId()));
         viewModel.setAnnotationType("Taxon");
-        viewModel.setCorpus(db.getCorpusById(viewModel.getDocument().getCorpusId()).getViewModel());
+        viewModel.setCorpus(db.getCorpusViewModelById(viewModel.getDocument().getCorpusId()));
         viewModel.setSimilarDocuments(
                 db.getDocumentsByAnnotationCoveredText(taxon.getCoveredText(), 10, "namedEntities")
                         .stream()
@@ -215,7 +215,7 @@ public class WikiService {
         viewModel.setPage(sentence.getPage());
         viewModel.setDocument(db.getDocumentById(sentence.getDocumentId()));
         viewModel.setAnnotationType("Sentence");
-        viewModel.setCorpus(db.getCorpusById(viewModel.getDocument().getCorpusId()).getViewModel());
+        viewModel.setCorpus(db.getCorpusViewModelById(viewModel.getDocument().getCorpusId()));
         viewModel.setSimilarDocuments(
                 db.getDocumentsByAnnotationCoveredText(sentence.getCoveredText(), 10, "sentences")
                         .stream()
@@ -238,7 +238,7 @@ public class WikiService {
         viewModel.setPage(geoName.getPage());
         viewModel.setDocument(db.getDocumentById(geoName.getDocumentId()));
         viewModel.setAnnotationType("GeoName");
-        viewModel.setCorpus(db.getCorpusById(viewModel.getDocument().getCorpusId()).getViewModel());
+        viewModel.setCorpus(db.getCorpusViewModelById(viewModel.getDocument().getCorpusId()));
         viewModel.setSimilarDocuments(
                 db.getDocumentsByAnnotationCoveredText(geoName.getCoveredText(), 10, "geoNames")
                         .stream()
@@ -265,7 +265,7 @@ public class WikiService {
         viewModel.setWikiModel(time);
         viewModel.setDocument(db.getDocumentById(time.getDocumentId()));
         viewModel.setAnnotationType("Named-Entity");
-        viewModel.setCorpus(db.getCorpusById(viewModel.getDocument().getCorpusId()).getViewModel());
+        viewModel.setCorpus(db.getCorpusViewModelById(viewModel.getDocument().getCorpusId()));
         viewModel.setSimilarDocuments(
                 db.getDocumentsByAnnotationCoveredText(time.getCoveredText(), 10, "times")
                         .stream()
@@ -291,7 +291,7 @@ public class WikiService {
         viewModel.setPage(ner.getPage());
         viewModel.setDocument(db.getDocumentById(ner.getDocumentId()));
         viewModel.setAnnotationType("Named-Entity");
-        viewModel.setCorpus(db.getCorpusById(viewModel.getDocument().getCorpusId()).getViewModel());
+        viewModel.setCorpus(db.getCorpusViewModelById(viewModel.getDocument().getCorpusId()));
         viewModel.setSimilarDocuments(
                 db.getDocumentsByAnnotationCoveredText(ner.getCoveredText(), 10, "namedEntities")
                         .stream()
@@ -333,7 +333,7 @@ public class WikiService {
 
         // Search for similar topic annotations, get them and visualize those.
         viewModel.setSimilarKeywordDistributions(db.getKeywordDistributionsByString(clazz, coveredText, 10).stream().filter(d -> d.getId() != id).toList());
-        viewModel.setCorpus(db.getCorpusById(viewModel.getDocument().getCorpusId()).getViewModel());
+        viewModel.setCorpus(db.getCorpusViewModelById(viewModel.getDocument().getCorpusId()));
 
         // Search if this keyword is a lemma somewhere
         // TODO: Decide if and how this will be used.
@@ -0,0 +1,102 @@
+package org.texttechnologylab.uce.common.models.search;
+
+import org.texttechnologylab.uce.common.config.CommonConfig;
+import org.texttechnologylab.uce.common.models.corpus.Document;
+import org.texttechnologylab.uce.common.services.PostgresqlDataInterface_Impl;
+
+import java.lang.management.ManagementFactory;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares loading the pages of a search result as {@link DocumentSummary} projections with loading them as full
+ * {@link Document} entities, in time and in the bytes the loading allocates on the heap. It reads an imported corpus
+ * of the database of the common.conf, page by page of its documents, the way the search does.
+ * <p>
+ * Usage: {@code DocumentSummaryBenchmark corpusId [documents=1000] [pageSize=10] [runs=5]}
+ */
+public class DocumentSummaryBenchmark {
+
+    private static final int WARMUP_RUNS = 1;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: DocumentSummaryBenchmark corpusId [documents=1000] [pageSize=10] [runs=5]");
+            return;
+        }
+        var corpusId = Long.parseLong(args[0]);
+        var documents = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        var pageSize = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        var runs = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        var pages = getPagesOfDocumentIds(corpusId, documents, pageSize);
+        if (pages.isEmpty()) {
+            System.out.println("Corpus " + corpusId + " has no documents.");
+            return;
+        }
+        var db = new PostgresqlDataInterface_Impl();
+
+        System.out.printf("Corpus %d: %d pages of %d documents%n", corpusId, pages.size(), pageSize);
+        System.out.printf("%-10s %10s %10s %10s %14s%n", "load", "p50 ms", "p95 ms", "mean ms", "MB per page");
+        report("summaries", runs, pages, db::getManyDocumentSummariesByIds);
+        report("documents", runs, pages, db::getManyDocumentsByIds);
+    }
+
+    private static List<List<Integer>> getPagesOfDocumentIds(long corpusId, int documents, int pageSize) throws Exception {
+        var config = new CommonConfig();
+        var documentIds = new ArrayList<Integer>();
+        try (var connection = DriverManager.getConnection(
+                config.getPostgresqlProperty("hibernate.connection.url"),
+                config.getPostgresqlProperty("hibernate.connection.username"),
+                config.getPostgresqlProperty("hibernate.connection.password"));
+             var statement = connection.prepareStatement("SELECT id FROM document WHERE corpusid = ? ORDER BY id LIMIT ?")) {
+            statement.setLong(1, corpusId);
+            statement.setInt(2, documents);
+            try (var result = statement.executeQuery()) {
+                while (result.next()) documentIds.add((int) result.getLong(1));
+            }
+        }
+
+        var pages = new ArrayList<List<Integer>>();
+        for (var i = 0; i < documentIds.size(); i += pageSize) {
+            pages.add(documentIds.subList(i, Math.min(i + pageSize, documentIds.size())));
+        }
+        return pages;
+    }
+
+    /**
+     * Times the loading of each page. The allocated bytes are those of the loading thread, which runs the queries
+     * and builds the results.
+     */
+    private static void report(String load, int runs, List<List<Integer>> pages, Load loader) throws Exception {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (var i = 0; i < WARMUP_RUNS; i++) {
+            for (var page : pages) loader.load(page);
+        }
+
+        var timings = new long[runs * pages.size()];
+        var allocated = 0L;
+        var t = 0;
+        for (var i = 0; i < runs; i++) {
+            for (var page : pages) {
+                var bytes = threads.getCurrentThreadAllocatedBytes();
+                var start = System.nanoTime();
+                loader.load(page);
+                timings[t++] = System.nanoTime() - start;
+                allocated += threads.getCurrentThreadAllocatedBytes() - bytes;
+            }
+        }
+        Arrays.sort(timings);
+        var mean = Arrays.stream(timings).average().orElse(0);
+        System.out.printf("%-10s %10.2f %10.2f %10.2f %14.2f%n", load,
+                timings[timings.length / 2] / 1e6, timings[Math.min(timings.length - 1, (int) Math.ceil(timings.length * 0.95) - 1)] / 1e6,
+                mean / 1e6, allocated / (double) timings.length / (1024 * 1024));
+    }
+
+    @FunctionalInterface
+    private interface Load {
+        List<?> load(List<Integer> documentIds) throws Exception;
+    }
+}
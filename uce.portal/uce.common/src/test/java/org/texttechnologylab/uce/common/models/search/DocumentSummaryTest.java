@@ -0,0 +1,119 @@
+package org.texttechnologylab.uce.common.models.search;
+
+import junit.framework.TestCase;
+import org.texttechnologylab.uce.common.models.corpus.Document;
+import org.texttechnologylab.uce.common.models.corpus.UCEMetadata;
+import org.texttechnologylab.uce.common.models.corpus.UCEMetadataValueType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that a result card shows the same for a {@link DocumentSummary} as for the {@link Document} it summarizes.
+ */
+public class DocumentSummaryTest extends TestCase {
+
+    // Like DOCUMENT_SUMMARY_EXCERPT_LENGTH of the PostgresqlDataInterface_Impl.
+    private static final int EXCERPT_LENGTH = 2000;
+
+    public void testPosesAsTheDocument() {
+        var document = new Document();
+        document.setId(42);
+        var summary = new DocumentSummary();
+        summary.setId(42);
+
+        assertEquals(Document.class, summary.getLinkableType());
+        assertEquals(document.getClassName(), summary.getClassName());
+        assertEquals(document.getWikiId(), summary.getWikiId());
+        assertEquals(document.getPrimaryDbIdentifier(), summary.getPrimaryDbIdentifier());
+        assertEquals(document.getCompatibleLinkTypes(), summary.getCompatibleLinkTypes());
+    }
+
+    public void testTitleAndLanguage() {
+        var document = new Document();
+        var summary = new DocumentSummary();
+        assertEquals(document.getDocumentTitle(), summary.getDocumentTitle());
+        assertEquals(document.getLanguage(), summary.getLanguage());
+
+        document.setDocumentTitle("Title");
+        summary.setDocumentTitle("Title");
+        document.setLanguage("de");
+        summary.setLanguage("de");
+        assertEquals(document.getDocumentTitle(), summary.getDocumentTitle());
+        assertEquals(document.getLanguage(), summary.getLanguage());
+
+        // The title of the metadata wins over the one of the document.
+        document.getMetadataTitleInfo().setTitle("Metadata title");
+        summary.getMetadataTitleInfo().setTitle("Metadata title");
+        assertEquals("Metadata title", summary.getDocumentTitle());
+        assertEquals(document.getDocumentTitle(), summary.getDocumentTitle());
+    }
+
+    public void testMetadataWithoutJsonInDisplayOrder() {
+        var document = new Document();
+        document.setUceMetadata(metadata());
+        var summary = new DocumentSummary();
+        summary.setUceMetadata(metadata());
+
+        var expected = document.getUceMetadataWithoutJson().stream().map(UCEMetadata::getKey).toList();
+        var actual = summary.getUceMetadataWithoutJson().stream().map(UCEMetadata::getKey).toList();
+        assertEquals(List.of("2: b", "10: a", "title", "1999"), expected);
+        assertEquals(expected, actual);
+    }
+
+    public void testFullTextSnippetFromTheExcerpt() {
+        var words = new ArrayList<String>();
+        for (var i = 0; i < 3000; i++) words.add((i % 50 == 0 ? "<w" : "w") + i);
+        var fullText = String.join(" ", words);
+        var summary = new DocumentSummary();
+        summary.setFullTextLength(fullText.length());
+        summary.setFullTextExcerpt(excerpt(fullText));
+
+        var snippet = summary.getFullTextSnippet(30);
+        var snippetWords = Arrays.asList(snippet.split(" "));
+        assertEquals(30, snippetWords.size());
+        assertFalse(snippet.contains("<"));
+        // Whole words only, in the order of the text, starting after its first third like the snippet of the Document.
+        var cleanedWords = Arrays.asList(fullText.replace("<", "").split(" "));
+        var first = cleanedWords.indexOf(snippetWords.getFirst());
+        assertTrue(first >= cleanedWords.size() / 3 - EXCERPT_LENGTH / 5);
+        assertEquals(cleanedWords.subList(first, first + 30), snippetWords);
+    }
+
+    public void testFullTextSnippetOfAShortText() {
+        var summary = new DocumentSummary();
+        assertEquals("", summary.getFullTextSnippet(30));
+
+        var fullText = "Ein kurzer Text mit wenigen Worten";
+        summary.setFullTextExcerpt(excerpt(fullText));
+        // Shorter than what is taken: the first, likely cut word of the excerpt is kept.
+        assertEquals(excerpt(fullText).trim(), summary.getFullTextSnippet(30));
+    }
+
+    /**
+     * The excerpt as the summary query cuts it: substring(fulltext FROM greatest(length / 3, 1) FOR 2000).
+     */
+    private static String excerpt(String fullText) {
+        var from = Math.max(fullText.length() / 3, 1) - 1;
+        return fullText.substring(from, Math.min(fullText.length(), from + EXCERPT_LENGTH));
+    }
+
+    private static List<UCEMetadata> metadata() {
+        var metadata = new ArrayList<UCEMetadata>();
+        metadata.add(metadata("1999", UCEMetadataValueType.DATE));
+        metadata.add(metadata("json", UCEMetadataValueType.JSON));
+        metadata.add(metadata("title", UCEMetadataValueType.STRING));
+        metadata.add(metadata("10: a", UCEMetadataValueType.STRING));
+        metadata.add(metadata("2: b", UCEMetadataValueType.STRING));
+        return metadata;
+    }
+
+    private static UCEMetadata metadata(String key, UCEMetadataValueType valueType) {
+        var metadata = new UCEMetadata();
+        metadata.setKey(key);
+        metadata.setValue("value of " + key);
+        metadata.setValueType(valueType);
+        return metadata;
+    }
+}
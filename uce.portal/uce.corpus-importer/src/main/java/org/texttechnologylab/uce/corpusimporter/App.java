@@ -11,15 +11,23 @@ import org.texttechnologylab.uce.common.config.CommonConfig;
 import org.texttechnologylab.uce.common.config.SpringConfig;
 import org.texttechnologylab.uce.common.exceptions.DatabaseOperationException;
 import org.texttechnologylab.uce.common.exceptions.ExceptionUtils;
+import org.texttechnologylab.uce.common.models.corpus.Document;
 import org.texttechnologylab.uce.common.models.imp.ImportStatus;
 import org.texttechnologylab.uce.common.models.imp.UCEImport;
 import org.texttechnologylab.uce.common.services.PostgresqlDataInterface_Impl;
 import org.texttechnologylab.uce.common.utils.SystemStatus;
+import org.texttechnologylab.uce.search.backend.CorpusIndexWriter;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -29,6 +37,7 @@ import java.util.logging.Level;
  */
 public class App {
     private static final Logger logger = LogManager.getLogger(App.class);
+    private static final int REBUILD_BATCH_SIZE = 100;
 
     public static void main(String[] args) throws DatabaseOperationException, ParseException, FileNotFoundException {
         // Disable the warning and other junk logs from the UIMA project.
@@ -50,17 +59,45 @@ public class App {
         var parser = new DefaultParser();
         var cmd = parser.parse(options, args);
 
+        // The topic tables are maintained per document during the import. Rebuilding all of them is a one time repair.
+        if (cmd.hasOption("rebuildTopics")) {
+            rebuildTopicTables(commonConfig, context.getBean(PostgresqlDataInterface_Impl.class));
+            return;
+        }
+
+        // The import builds the search index of its corpus. Corpora imported before need it built once.
+        if (cmd.hasOption("rebuildSearchIndex")) {
+            rebuildSearchIndex(commonConfig, context.getBean(PostgresqlDataInterface_Impl.class),
+                    Long.parseLong(cmd.getOptionValue("rebuildSearchIndex")));
+            return;
+        }
+
         var importSrcPath = cmd.getOptionValue("importSrc");
         var importDirPath = cmd.getOptionValue("importDir");
-        var importId = UUID.randomUUID().toString();
+        // A resumed import keeps its importId, so it finds its manifest and UCEImport again.
+        var resumeImportId = cmd.getOptionValue("resume");
+        var importId = resumeImportId != null ? resumeImportId : cmd.getOptionValue("importId", UUID.randomUUID().toString());
         var importerNumber = Integer.parseInt(cmd.getOptionValue("importerNumber"));
+        var importerCount = Integer.parseInt(cmd.getOptionValue("importerCount", "1"));
         var numThreadsStr = cmd.getOptionValue("numThreads");
         var casView = cmd.getOptionValue("casView");
         var numThreads = 1;
         if (numThreadsStr != null) numThreads = Integer.parseInt(numThreadsStr);
 
-        if (importerNumber != 1) {
-            throw new InvalidParameterException("For now, the -importerNumber must always be 1, since this will be the only instance. Canceling.");
+        // Each stage of the import pipeline can be sized on its own, otherwise it uses -numThreads.
+        var pipelineConfig = new ImportPipelineConfig(numThreads);
+        if (cmd.hasOption("casThreads")) pipelineConfig.setDeserializeWorkers(Integer.parseInt(cmd.getOptionValue("casThreads")));
+        if (cmd.hasOption("mapThreads")) pipelineConfig.setMappingWorkers(Integer.parseInt(cmd.getOptionValue("mapThreads")));
+        if (cmd.hasOption("dbThreads")) pipelineConfig.setPersistWorkers(Integer.parseInt(cmd.getOptionValue("dbThreads")));
+        if (cmd.hasOption("postThreads")) pipelineConfig.setPostProcessWorkers(Integer.parseInt(cmd.getOptionValue("postThreads")));
+        if (cmd.hasOption("queueSize")) pipelineConfig.setQueueCapacity(Integer.parseInt(cmd.getOptionValue("queueSize")));
+        if (cmd.hasOption("noPrescan")) pipelineConfig.setPrescanDocumentIds(false);
+
+        if (importerNumber < 1 || importerNumber > importerCount) {
+            throw new InvalidParameterException("The -importerNumber must be between 1 and -importerCount. Canceling.");
+        }
+        if (importerCount > 1 && resumeImportId == null && !cmd.hasOption("importId")) {
+            throw new InvalidParameterException("Multiple importers have to share the same -importId. Canceling.");
         }
 
         var importablePaths = new ArrayList<String>();
@@ -75,23 +112,71 @@ public class App {
         }
 
         for (var path : importablePaths) {
-            var importer = new Importer(context, path, importerNumber, importId, casView);
+            var importer = new Importer(context, path, importerNumber, importerCount, importId, casView);
 
             // If this is the number 1 importer, he will create a Database entry for this import. The other importers will wait for that db entry.
-            if (importerNumber == 1) {
+            if (importerNumber == 1 && resumeImportId != null) {
+                // The UCEImport and the file count exist from the first run, the progress now comes from the manifest.
+                logger.info("Resuming the import " + importId + " of " + path);
+            } else if (importerNumber == 1) {
                 var uceImport = new UCEImport(importId, path, ImportStatus.STARTING);
                 var fileCount = ExceptionUtils.tryCatchLog(importer::getXMICountInPath,
                         (ex) -> logger.warn("There was an IO error counting the importable UIMA files - the import will probably fail at some point.", ex));
                 uceImport.setTotalDocuments(fileCount == null ? -1 : fileCount);
                 context.getBean(PostgresqlDataInterface_Impl.class).saveOrUpdateUceImport(uceImport);
             } else {
-                // TODO: This was meant to be prepared for the incorporation into DUUI, but this isn't decided yet.
-                ;
+                // The other importers wait within the import until the main importer created the UCEImport and the corpus.
+                logger.info("Importer " + importerNumber + " of " + importerCount + " joins the import " + importId + " of " + path);
             }
 
-            importer.start(numThreads);
+            importer.start(pipelineConfig);
+        }
+
+    }
+
+    /**
+     * Truncates and rebuilds the sentencetopics, documenttopicsraw, documenttopicwords and corpustopicwords tables of
+     * the whole database through the database/topic scripts, in their order.
+     */
+    private static void rebuildTopicTables(CommonConfig commonConfig, PostgresqlDataInterface_Impl db) {
+        var topicScriptsPath = Paths.get(commonConfig.getDatabaseScriptsLocation(), "topic");
+        logger.info("Rebuilding the topic tables with the scripts in " + topicScriptsPath);
+        try (var fileStream = Files.list(topicScriptsPath)) {
+            var scripts = fileStream
+                    .filter(file -> file.toString().endsWith(".sql"))
+                    .sorted(Comparator.comparing(file -> file.getFileName().toString()))
+                    .toList();
+            for (var script : scripts) {
+                var sql = Files.readString(script);
+                logger.info("Executing " + script.getFileName() + "...");
+                db.executeSqlWithoutReturn(sql);
+            }
+            logger.info("Finished rebuilding the topic tables.");
+        } catch (IOException | DatabaseOperationException ex) {
+            logger.error("Error rebuilding the topic tables.", ex);
         }
+    }
 
+    private static void rebuildSearchIndex(CommonConfig commonConfig, PostgresqlDataInterface_Impl db, long corpusId) {
+        var location = Path.of(commonConfig.getSearchIndexLocation());
+        logger.info("Rebuilding the search index of corpus " + corpusId + " in " + location);
+        try {
+            // All segments are emptied, the one of the first importer receives all documents.
+            CorpusIndexWriter.clearCorpus(location, corpusId);
+            try (var indexWriter = new CorpusIndexWriter(location, corpusId, 1, commonConfig.getSearchIndexCommitInterval(), false)) {
+                var skip = 0;
+                List<Document> documents;
+                do {
+                    documents = db.getDocumentsByCorpusId(corpusId, skip, REBUILD_BATCH_SIZE);
+                    for (var document : documents) indexWriter.indexDocument(document);
+                    skip += documents.size();
+                    logger.info("Indexed " + skip + " documents...");
+                } while (documents.size() == REBUILD_BATCH_SIZE);
+            }
+            logger.info("Finished rebuilding the search index of corpus " + corpusId + ".");
+        } catch (IOException | DatabaseOperationException ex) {
+            logger.error("Error rebuilding the search index of corpus " + corpusId + ".", ex);
+        }
     }
 
     private static Options getOptions() {
@@ -100,8 +185,23 @@ public class App {
                 "The importer will check for folders within this directory, where each folder should be an importable corpus with a corpusConfig.json and its input UIMA-files. Those are then imported.");
         options.addOption("src", "importSrc", true, "The path to the import source where the UIMA-annotated files are stored.");
         options.addOption("num", "importerNumber", true, "When starting multiple importers, assign an id to each instance by counting up from 1 to n.");
+        options.addOption("count", "importerCount", true, "The amount n of importer instances that share the import, e.g. on several machines. " +
+                "Each instance only imports its partition of the files, the last one to finish postprocesses the corpus. Defaults to 1.");
+        options.addOption("id", "importId", true, "The id of the import. All instances of a multi importer setup have to be started with the same id. Defaults to a random UUID.");
         options.addOption("t", "numThreads", true, "We do the import asynchronous. Decide with how many threads, e.g. 4-8. By default, this is single threaded.");
+        options.addOption("casThreads", "casDeserializeThreads", true, "Number of threads that deserialize the UIMA files into CAS objects. Defaults to -numThreads.");
+        options.addOption("mapThreads", "mappingThreads", true, "Number of threads that map the CAS objects onto UCE documents. Defaults to -numThreads.");
+        options.addOption("dbThreads", "persistThreads", true, "Number of threads that store the mapped documents in the database. Defaults to -numThreads.");
+        options.addOption("postThreads", "postProcessThreads", true, "Number of threads that postprocess the stored documents (links, embeddings, topics). Defaults to -numThreads.");
+        options.addOption("queueSize", "pipelineQueueSize", true, "Capacity of the queues between the import stages. Each queued file may hold a whole CAS, so keep this small. Defaults to twice -numThreads.");
+        options.addOption("noPrescan", "noPrescanDocumentIds", false, "Disables the pre-scan of the documentIds, which otherwise skips already imported files before their CAS is built.");
+        options.addOption("resume", "resumeImportId", true, "The importId of an earlier, unfinished import. Instead of walking the input folders again, " +
+                "the import continues from its manifest and only imports the files that didn't finish.");
         options.addOption("view", "casView", true, "Name of the CAS view to import from. If not set, the default view (initial view) is used.");
+        options.addOption("rebuildTopics", "rebuildTopicTables", false, "Instead of importing, rebuilds the topic tables of all documents and corpora from scratch. " +
+                "Only needed to repair them, the import keeps them up to date per document.");
+        options.addOption("rebuildSearchIndex", "rebuildSearchIndexOfCorpus", true, "Instead of importing, builds the search index of the corpus with the given id " +
+                "from the documents in the database. Only needed for corpora that were imported without search.index.build.");
         return options;
     }
 }
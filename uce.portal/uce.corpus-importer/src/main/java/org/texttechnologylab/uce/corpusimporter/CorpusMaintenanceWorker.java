@@ -0,0 +1,167 @@
+package org.texttechnologylab.uce.corpusimporter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the corpus wide maintenance (geoname locations, corpus postprocessing) on its
+ * own scheduled thread next to the import. The document workers only report finished documents and never wait
+ * for a maintenance cycle. A cycle covers everything up to the watermark it was started with, and the distance
+ * between the imported documents and that watermark is reported as the lag, in the log and as a JMX bean.
+ */
+public class CorpusMaintenanceWorker implements CorpusMaintenanceWorkerMXBean {
+    private static final Logger logger = LogManager.getLogger(CorpusMaintenanceWorker.class);
+
+    private final String name;
+    private final int batchSize;
+    private final long maxIntervalMillis;
+    private final Maintenance maintenance;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong finishedDocuments = new AtomicLong(0);
+    private final AtomicLong highestDocumentId = new AtomicLong(0);
+    private final AtomicLong oldestPendingSince = new AtomicLong(0);
+    private final AtomicLong failedCycles = new AtomicLong(0);
+    private ObjectName objectName;
+    private volatile long watermarkDocuments = 0;
+    private volatile long watermarkDocumentId = 0;
+    private volatile long lastCycleMillis = System.currentTimeMillis();
+    private volatile long lastCycleDuration = 0;
+
+    /**
+     * @param batchSize         Amount of finished documents after which a cycle is started.
+     * @param maxIntervalMillis A cycle is started after this time as well, if there is anything pending at all.
+     * @param maintenance       The actual maintenance, receives the document id watermark of the cycle. If it throws,
+     *                          the watermark stays where it is and the next cycle covers the same documents again.
+     */
+    public CorpusMaintenanceWorker(String name, int batchSize, long maxIntervalMillis, Maintenance maintenance) {
+        this.name = name;
+        this.batchSize = batchSize;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.maintenance = maintenance;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, name + "-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(long checkIntervalMillis) {
+        try {
+            objectName = new ObjectName("org.texttechnologylab.uce:type=CorpusMaintenance,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (Exception ex) {
+            objectName = null;
+            logger.warn("Couldn't register the corpus maintenance of " + name + " as a JMX bean.", ex);
+        }
+        scheduler.scheduleWithFixedDelay(this::runIfDue, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called by the import workers once a document is stored and postprocessed. Never blocks.
+     */
+    public void documentFinished(long documentId) {
+        oldestPendingSince.compareAndSet(0, System.currentTimeMillis());
+        highestDocumentId.accumulateAndGet(documentId, Math::max);
+        finishedDocuments.incrementAndGet();
+    }
+
+    /**
+     * Amount of finished documents that no maintenance cycle has covered yet.
+     */
+    @Override
+    public long getLagDocuments() {
+        return finishedDocuments.get() - watermarkDocuments;
+    }
+
+    /**
+     * How long the oldest document not covered by a maintenance cycle is waiting already.
+     */
+    @Override
+    public long getLagMillis() {
+        var since = oldestPendingSince.get();
+        return since == 0 ? 0 : System.currentTimeMillis() - since;
+    }
+
+    @Override
+    public long getWatermarkDocumentId() {
+        return watermarkDocumentId;
+    }
+
+    @Override
+    public long getLastCycleDurationMillis() {
+        return lastCycleDuration;
+    }
+
+    /**
+     * Amount of cycles that threw, their documents were covered again by a later cycle.
+     */
+    @Override
+    public long getFailedCycles() {
+        return failedCycles.get();
+    }
+
+    public String getStatus() {
+        return "lag=" + getLagDocuments() + " documents / " + getLagMillis() + "ms"
+                + ", watermark=" + watermarkDocumentId
+                + ", lastCycle=" + lastCycleDuration + "ms"
+                + ", failedCycles=" + failedCycles.get();
+    }
+
+    /**
+     * Stops the scheduler and waits for a running cycle. Pending documents are left to the caller,
+     * which usually runs a final maintenance after the import anyway.
+     */
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception ex) {
+                logger.warn("Couldn't unregister the JMX bean of the corpus maintenance of " + name + ".", ex);
+            }
+            objectName = null;
+        }
+        logger.info("Stopped the corpus maintenance of " + name + ": " + getStatus());
+    }
+
+    private void runIfDue() {
+        var lag = getLagDocuments();
+        if (lag == 0) return;
+        logger.info("Corpus maintenance of " + name + ": " + getStatus());
+        if (lag < batchSize && System.currentTimeMillis() - lastCycleMillis < maxIntervalMillis) return;
+
+        // Everything that was finished up until now is covered by this cycle. Documents finishing while the
+        // cycle runs stay pending for the next one.
+        oldestPendingSince.set(0);
+        var coveredDocuments = finishedDocuments.get();
+        var coveredDocumentId = highestDocumentId.get();
+        var start = System.currentTimeMillis();
+        try {
+            maintenance.run(coveredDocumentId);
+            watermarkDocuments = coveredDocuments;
+            watermarkDocumentId = coveredDocumentId;
+        } catch (Exception ex) {
+            // Keep the old watermark, the next cycle covers these documents again.
+            failedCycles.incrementAndGet();
+            logger.error("Error in the corpus maintenance of " + name + " - retrying with the next cycle.", ex);
+            oldestPendingSince.compareAndSet(0, start);
+        } finally {
+            lastCycleMillis = System.currentTimeMillis();
+            lastCycleDuration = lastCycleMillis - start;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Maintenance {
+        void run(long watermarkDocumentId) throws Exception;
+    }
+}
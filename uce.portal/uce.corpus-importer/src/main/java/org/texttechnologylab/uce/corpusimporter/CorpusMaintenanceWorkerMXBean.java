@@ -0,0 +1,17 @@
+package org.texttechnologylab.uce.corpusimporter;
+
+/**
+ * The lag of a {@link CorpusMaintenanceWorker} as JMX attributes, next to the pool metrics of the data sources.
+ */
+public interface CorpusMaintenanceWorkerMXBean {
+
+    long getLagDocuments();
+
+    long getLagMillis();
+
+    long getWatermarkDocumentId();
+
+    long getLastCycleDurationMillis();
+
+    long getFailedCycles();
+}
@@ -0,0 +1,297 @@
+package org.texttechnologylab.uce.corpusimporter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.texttechnologylab.uce.common.models.corpus.Document;
+import org.texttechnologylab.uce.common.models.rag.DocumentChunkEmbedding;
+import org.texttechnologylab.uce.common.models.rag.DocumentEmbedding;
+import org.texttechnologylab.uce.common.services.RAGService;
+import org.texttechnologylab.uce.common.utils.ListUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Calculates the chunk and document embeddings of the documents in the embedding job queue. The importer only
+ * enqueues its stored documents, so they are searchable right away while their embeddings fill in behind.
+ * Each worker claims several documents at once and sends their texts to the embedder in batches.
+ */
+public class EmbeddingJobWorker {
+    private static final Logger logger = LogManager.getLogger(EmbeddingJobWorker.class);
+    private static final int CHUNK_SIZE = 900;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long POLL_INTERVAL_MS = 2000;
+    private static final int STALE_JOB_MINUTES = 60;
+
+    /**
+     * Embeds many texts at once and returns the embeddings in the same order. In production, that is the
+     * batch endpoint of our python webserver, but any stub can be plugged in.
+     */
+    @FunctionalInterface
+    public interface TextEmbedder {
+        List<float[]> embed(List<String> texts) throws Exception;
+    }
+
+    /**
+     * The embedding job queue and the stored embeddings, the database for a real import.
+     */
+    public interface JobStore {
+        List<Long> claimJobs(int limit) throws Exception;
+
+        void finishJob(long documentId) throws Exception;
+
+        void failJob(long documentId, String error, int maxAttempts) throws Exception;
+
+        void resetStaleJobs(int minutes) throws Exception;
+
+        int countOpenJobs(long corpusId) throws Exception;
+
+        /**
+         * The title and full text of the given documents, the deleted ones are missing.
+         */
+        Map<Long, Document> getDocumentTexts(List<Long> documentIds) throws Exception;
+
+        /**
+         * Stores the embeddings of a document, but only those a retried job didn't store before.
+         */
+        void saveEmbeddings(long documentId, List<DocumentChunkEmbedding> chunkEmbeddings, DocumentEmbedding documentEmbedding) throws Exception;
+    }
+
+    private final JobStore store;
+    private final TextEmbedder embedder;
+    private final long corpusId;
+    private final int workers;
+    private final int documentsPerClaim;
+    private final int textsPerRequest;
+    private final long pollIntervalMs;
+    private ExecutorService executor;
+    private volatile boolean running = false;
+
+    private final AtomicLong embeddedDocuments = new AtomicLong(0);
+    private final AtomicLong embeddedTexts = new AtomicLong(0);
+    private final AtomicLong embedRequests = new AtomicLong(0);
+    private final AtomicLong failedDocuments = new AtomicLong(0);
+
+    public EmbeddingJobWorker(RAGService ragService, long corpusId, int workers, int textsPerRequest) {
+        this(createJobStore(ragService), ragService::getEmbeddingsForTexts, corpusId, workers, textsPerRequest, POLL_INTERVAL_MS);
+    }
+
+    public EmbeddingJobWorker(JobStore store, TextEmbedder embedder, long corpusId, int workers, int textsPerRequest, long pollIntervalMs) {
+        this.store = store;
+        this.embedder = embedder;
+        this.corpusId = corpusId;
+        this.workers = Math.max(1, workers);
+        this.textsPerRequest = Math.max(1, textsPerRequest);
+        this.pollIntervalMs = pollIntervalMs;
+        // A 900 character chunk per text, so a claim fills a few requests.
+        this.documentsPerClaim = Math.max(1, this.textsPerRequest / 4);
+    }
+
+    public void start() {
+        resetStaleJobs();
+
+        running = true;
+        var threadCount = new AtomicInteger(0);
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            var thread = new Thread(runnable, "embedding-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (var i = 0; i < workers; i++) executor.submit(this::runWorker);
+    }
+
+    /**
+     * Blocks until the documents of our corpus have no open embedding jobs anymore. Jobs whose claim went stale in
+     * the meantime, e.g. because another importer crashed, are put back into the queue while we wait.
+     *
+     * @return false if the jobs weren't done after the timeout. They stay in the queue for the next import.
+     */
+    public boolean awaitDrained(long timeoutMs) throws InterruptedException {
+        var deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            Integer open = null;
+            try {
+                open = store.countOpenJobs(corpusId);
+            } catch (Exception ex) {
+                logger.warn("Couldn't count the open embedding jobs of corpus " + corpusId + ".", ex);
+            }
+            if (open != null && open == 0) return true;
+            if (System.currentTimeMillis() >= deadline) {
+                logger.warn("Stopped waiting for the embedding jobs of corpus " + corpusId + " after " + timeoutMs / 1000
+                        + "s, " + (open == null ? "?" : open) + " jobs are still open and stay in the queue: " + getStatus());
+                return false;
+            }
+            logger.info("Waiting for " + (open == null ? "?" : open) + " embedding jobs of corpus " + corpusId + ": " + getStatus());
+            Thread.sleep(Math.max(0, Math.min(pollIntervalMs * 5, deadline - System.currentTimeMillis())));
+            resetStaleJobs();
+        }
+    }
+
+    /**
+     * Lets the workers finish their current claim and stops them.
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        if (executor == null) return;
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        logger.info("Stopped the embedding workers: " + getStatus());
+    }
+
+    public String getStatus() {
+        return "documents=" + embeddedDocuments.get() + ", texts=" + embeddedTexts.get()
+                + ", requests=" + embedRequests.get() + ", failed=" + failedDocuments.get();
+    }
+
+    private void runWorker() {
+        while (running) {
+            try {
+                var documentIds = store.claimJobs(documentsPerClaim);
+                if (documentIds.isEmpty()) {
+                    Thread.sleep(pollIntervalMs);
+                    continue;
+                }
+                embedDocuments(documentIds);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                logger.error("Unhandled error in an embedding worker - continuing with the next jobs.", ex);
+            }
+        }
+    }
+
+    private void embedDocuments(List<Long> documentIds) throws Exception {
+        var documents = store.getDocumentTexts(documentIds);
+
+        // Every document contributes its chunks and its full text for the single document embedding.
+        var jobs = new ArrayList<DocumentJob>();
+        var texts = new ArrayList<String>();
+        for (var documentId : documentIds) {
+            var document = documents.get(documentId);
+            if (document == null) {
+                // The document was deleted in the meantime, there is nothing to embed anymore.
+                store.finishJob(documentId);
+                continue;
+            }
+            var job = new DocumentJob(document, RAGService.getEmptyEmbeddingChunksFromText(
+                    document.getDocumentTitle() + " " + document.getFullText(), CHUNK_SIZE));
+            job.firstText = texts.size();
+            job.chunks.forEach(chunk -> texts.add(chunk.getCoveredText()));
+            texts.add(document.getFullText());
+            jobs.add(job);
+        }
+
+        List<float[]> embeddings;
+        try {
+            embeddings = new ArrayList<>(texts.size());
+            for (var batch : ListUtils.partitionList(texts, textsPerRequest)) {
+                embeddings.addAll(embedder.embed(batch));
+                embedRequests.incrementAndGet();
+            }
+        } catch (Exception ex) {
+            logger.error("Error embedding the texts of " + jobs.size() + " documents.", ex);
+            for (var job : jobs) failJob(job.document.getId(), ex);
+            return;
+        }
+        embeddedTexts.addAndGet(texts.size());
+
+        for (var job : jobs) {
+            var documentId = job.document.getId();
+            try {
+                for (var i = 0; i < job.chunks.size(); i++) {
+                    job.chunks.get(i).setEmbedding(embeddings.get(job.firstText + i));
+                    job.chunks.get(i).setDocument_id(documentId);
+                }
+                var documentEmbedding = new DocumentEmbedding();
+                documentEmbedding.setDocument_id(documentId);
+                documentEmbedding.setEmbedding(embeddings.get(job.firstText + job.chunks.size()));
+                store.saveEmbeddings(documentId, job.chunks, documentEmbedding);
+                store.finishJob(documentId);
+                embeddedDocuments.incrementAndGet();
+            } catch (Exception ex) {
+                logger.error("Error storing the embeddings of document " + documentId, ex);
+                failJob(documentId, ex);
+            }
+        }
+    }
+
+    private void failJob(long documentId, Exception cause) {
+        failedDocuments.incrementAndGet();
+        try {
+            store.failJob(documentId, cause.getMessage(), MAX_ATTEMPTS);
+        } catch (Exception ex) {
+            logger.error("Couldn't mark the embedding job of document " + documentId + " as failed.", ex);
+        }
+    }
+
+    private void resetStaleJobs() {
+        try {
+            store.resetStaleJobs(STALE_JOB_MINUTES);
+        } catch (Exception ex) {
+            logger.warn("Couldn't reset the stale embedding jobs.", ex);
+        }
+    }
+
+    private static JobStore createJobStore(RAGService ragService) {
+        return new JobStore() {
+            @Override
+            public List<Long> claimJobs(int limit) throws SQLException {
+                return ragService.claimEmbeddingJobs(limit);
+            }
+
+            @Override
+            public void finishJob(long documentId) throws SQLException {
+                ragService.finishEmbeddingJob(documentId);
+            }
+
+            @Override
+            public void failJob(long documentId, String error, int maxAttempts) throws SQLException {
+                ragService.failEmbeddingJob(documentId, error, maxAttempts);
+            }
+
+            @Override
+            public void resetStaleJobs(int minutes) throws SQLException {
+                ragService.resetStaleEmbeddingJobs(minutes);
+            }
+
+            @Override
+            public int countOpenJobs(long corpusId) throws SQLException {
+                return ragService.countOpenEmbeddingJobs(corpusId);
+            }
+
+            @Override
+            public Map<Long, Document> getDocumentTexts(List<Long> documentIds) throws SQLException {
+                return ragService.getDocumentTextsOfDocuments(documentIds);
+            }
+
+            @Override
+            public void saveEmbeddings(long documentId, List<DocumentChunkEmbedding> chunkEmbeddings,
+                                       DocumentEmbedding documentEmbedding) throws SQLException {
+                // A retried job may have stored some of its embeddings before.
+                if (!ragService.documentHasDocumentChunkEmbeddings(documentId))
+                    ragService.saveManyDocumentChunkEmbeddings(chunkEmbeddings);
+                if (!ragService.documentHasDocumentEmbedding(documentId))
+                    ragService.saveDocumentEmbedding(documentEmbedding);
+            }
+        };
+    }
+
+    private static class DocumentJob {
+        private final Document document;
+        private final List<DocumentChunkEmbedding> chunks;
+        private int firstText;
+
+        private DocumentJob(Document document, List<DocumentChunkEmbedding> chunks) {
+            this.document = document;
+            this.chunks = chunks;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.texttechnologylab.uce.corpusimporter;
+
+import org.texttechnologylab.uce.common.exceptions.DatabaseOperationException;
+import org.texttechnologylab.uce.common.services.PostgresqlDataInterface_Impl;
+
+/**
+ * Decides which of the importer instances sharing an import postprocesses the corpus: the one that finishes the last
+ * partition. The finishes are recorded per importer number. An importer withdraws its finish when it starts, also
+ * when it resumes, and records it again once its partition is done. So an importer finishing twice is counted once,
+ * and a resumed run doesn't take the finishes of the importers it restarts from the run before.
+ */
+public class FinishedImporters {
+
+    /**
+     * Where the finishes are recorded, the database for a real import.
+     */
+    public interface Store {
+        void removeFinishedImporter(String importId, String basePath, int importerNumber) throws DatabaseOperationException;
+
+        /**
+         * @return The amount of distinct finished importers, or -1 if this one was recorded before.
+         */
+        int addFinishedImporter(String importId, String basePath, int importerNumber) throws DatabaseOperationException;
+    }
+
+    private final Store store;
+    private final String importId;
+    private final String basePath;
+    private final int importerNumber;
+    private final int importerCount;
+
+    public FinishedImporters(Store store, String importId, String basePath, int importerNumber, int importerCount) {
+        this.store = store;
+        this.importId = importId;
+        this.basePath = basePath;
+        this.importerNumber = importerNumber;
+        this.importerCount = importerCount;
+    }
+
+    public FinishedImporters(PostgresqlDataInterface_Impl db, String importId, String basePath, int importerNumber, int importerCount) {
+        this(new Store() {
+            @Override
+            public void removeFinishedImporter(String importId, String basePath, int importerNumber) throws DatabaseOperationException {
+                db.removeFinishedImporter(importId, basePath, importerNumber);
+            }
+
+            @Override
+            public int addFinishedImporter(String importId, String basePath, int importerNumber) throws DatabaseOperationException {
+                return db.addFinishedImporter(importId, basePath, importerNumber);
+            }
+        }, importId, basePath, importerNumber, importerCount);
+    }
+
+    /**
+     * Withdraws the finish of this importer from an earlier run, before it imports its partition.
+     */
+    public void started() throws DatabaseOperationException {
+        store.removeFinishedImporter(importId, basePath, importerNumber);
+    }
+
+    /**
+     * Records this importer as finished.
+     *
+     * @return The amount of finished importers, or -1 if this importer was recorded as finished before.
+     */
+    public int finished() throws DatabaseOperationException {
+        return store.addFinishedImporter(importId, basePath, importerNumber);
+    }
+
+    /**
+     * Whether the given result of {@link #finished()} makes this importer the one that finished the last partition.
+     */
+    public boolean isLast(int finishedImporters) {
+        return finishedImporters == importerCount;
+    }
+}
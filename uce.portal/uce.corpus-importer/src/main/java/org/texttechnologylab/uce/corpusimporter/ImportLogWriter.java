@@ -0,0 +1,101 @@
+package org.texttechnologylab.uce.corpusimporter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.texttechnologylab.uce.common.models.imp.ImportLog;
+import org.texttechnologylab.uce.common.services.PostgresqlDataInterface_Impl;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers the ImportLogs of the importers and stores them in batches on a background thread, so logging
+ * doesn't cost a database transaction on the import threads. The queue is bounded: if the database can't
+ * keep up, further logs are dropped and counted instead of blocking the import.
+ */
+public class ImportLogWriter {
+    private static final Logger logger = LogManager.getLogger(ImportLogWriter.class);
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int BATCH_SIZE = 500;
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private final PostgresqlDataInterface_Impl db;
+    private final BlockingQueue<ImportLog> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong written = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final Object flushLock = new Object();
+    private final Thread thread;
+
+    public ImportLogWriter(PostgresqlDataInterface_Impl db) {
+        this.db = db;
+        this.thread = new Thread(this::run, "import-log-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        // Whatever is still buffered when the importer exits is written before the JVM goes down.
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "import-log-writer-shutdown"));
+    }
+
+    /**
+     * Queues the log for the next batch. Never blocks; if the queue is full, the log is dropped.
+     */
+    public void write(ImportLog importLog) {
+        if (!queue.offer(importLog)) {
+            var count = dropped.incrementAndGet();
+            // Don't flood the file log with a line per dropped entry.
+            if (count == 1 || count % 1000 == 0)
+                logger.warn("The ImportLog queue is full, dropped " + count + " logs so far.");
+        }
+    }
+
+    /**
+     * Writes everything that is queued right now. Called at the end of an import so its logs are complete.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            var batch = new ArrayList<ImportLog>(BATCH_SIZE);
+            while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    public String getStatus() {
+        return "queued=" + queue.size() + ", written=" + written.get()
+                + ", dropped=" + dropped.get() + ", failed=" + failed.get();
+    }
+
+    private void run() {
+        var batch = new ArrayList<ImportLog>(BATCH_SIZE);
+        while (true) {
+            try {
+                // Wait for the first log, then take whatever else has piled up in the meantime.
+                var first = queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                synchronized (flushLock) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void writeBatch(ArrayList<ImportLog> batch) {
+        try {
+            db.saveManyImportLogs(batch);
+            written.addAndGet(batch.size());
+        } catch (Exception ex) {
+            failed.addAndGet(batch.size());
+            logger.warn("Couldn't store a batch of " + batch.size() + " UCEImport logs... operation continues.", ex);
+        }
+    }
+}
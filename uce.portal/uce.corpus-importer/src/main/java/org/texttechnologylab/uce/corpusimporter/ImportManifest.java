@@ -0,0 +1,203 @@
+package org.texttechnologylab.uce.corpusimporter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.texttechnologylab.uce.common.exceptions.ExceptionUtils;
+import org.texttechnologylab.uce.common.models.imp.ImportFile;
+import org.texttechnologylab.uce.common.models.imp.ImportFileState;
+import org.texttechnologylab.uce.common.services.PostgresqlDataInterface_Impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The durable per-file state of an import, stored as {@link ImportFile} rows next to the UCEImport.
+ * Every file is registered with its size and modification time and then moves through the states of the pipeline.
+ * A restarted import with the same importId takes the files that didn't reach the end from here instead of walking
+ * the folder. Of those, a file whose size or modification time differs is hashed, and reset if its content changed.
+ * Files that were finished before aren't looked at again.
+ * <p>
+ * The states are only buffered by the import threads and stored in batches on a background thread, like the
+ * {@link ImportLogWriter} does with the logs. The manifest only helps with resuming and progress, so database
+ * errors are logged and never cancel the import.
+ */
+public class ImportManifest {
+    private static final Logger logger = LogManager.getLogger(ImportManifest.class);
+    private static final int BATCH_SIZE = 500;
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private final PostgresqlDataInterface_Impl db;
+    private final String importId;
+    private final Map<String, ImportFile> files = new ConcurrentHashMap<>();
+    // The entries changed since they were last stored. An entry changing again before that is stored only once.
+    private final Set<ImportFile> dirty = ConcurrentHashMap.newKeySet();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService writer;
+
+    public ImportManifest(PostgresqlDataInterface_Impl db, String importId) {
+        this.db = db;
+        this.importId = importId;
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "import-manifest-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Loads the existing entries of this import, if there are any.
+     */
+    public void load() {
+        var existing = ExceptionUtils.tryCatchLog(
+                () -> db.getImportFilesByImportId(importId),
+                (ex) -> logger.warn("Couldn't load the manifest of the import " + importId + " - starting without it.", ex));
+        if (existing == null) return;
+        for (var file : existing) files.put(file.getPath(), file);
+        logger.info("Loaded the manifest of the import " + importId + " with " + existing.size() + " files.");
+    }
+
+    /**
+     * True if files of the given folder were registered by an earlier run of this import.
+     */
+    public boolean hasFilesIn(Path folder) {
+        var prefix = folderPrefix(folder);
+        return files.keySet().stream().anyMatch(path -> path.startsWith(prefix));
+    }
+
+    /**
+     * The files of the given folder that haven't been postprocessed yet, failed ones included.
+     */
+    public List<Path> getUnfinishedPaths(Path folder) {
+        var prefix = folderPrefix(folder);
+        return files.values().stream()
+                .filter(file -> file.getPath().startsWith(prefix))
+                .filter(file -> file.getState() != ImportFileState.POSTPROCESSED)
+                .map(file -> Path.of(file.getPath()))
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Registers the given files with their size and modification time. Files that are known already are only
+     * reset if these differ and the hash of their content has changed as well; the content is never read otherwise.
+     */
+    public void register(List<Path> paths) {
+        for (var path : paths) {
+            var key = path.toAbsolutePath().toString();
+            var attributes = ExceptionUtils.tryCatchLog(
+                    () -> Files.readAttributes(path, BasicFileAttributes.class),
+                    (ex) -> logger.warn("Couldn't read the size of " + key + " for the import manifest.", ex));
+            var size = attributes == null ? null : attributes.size();
+            var modified = attributes == null ? null : attributes.lastModifiedTime().toMillis();
+
+            var file = files.get(key);
+            if (file == null) {
+                file = new ImportFile(importId, key, size, modified);
+                files.put(key, file);
+                dirty.add(file);
+                continue;
+            }
+            if (attributes == null || (Objects.equals(size, file.getSize()) && Objects.equals(modified, file.getModified()))) continue;
+
+            // Only now is the content read: a file that was merely touched or copied isn't imported again.
+            var hash = ExceptionUtils.tryCatchLog(
+                    () -> hashContent(path),
+                    (ex) -> logger.warn("Couldn't hash the content of " + key + " for the import manifest.", ex));
+            synchronized (file) {
+                if (hash == null || !hash.equals(file.getContentHash())) {
+                    logger.info("The content of " + key + " has changed since the last run - importing it again.");
+                    file.setState(ImportFileState.DISCOVERED);
+                }
+                file.setContentHash(hash);
+                file.setSize(size);
+                file.setModified(modified);
+            }
+            dirty.add(file);
+        }
+    }
+
+    /**
+     * Moves a registered file into the given state. It is stored with the next batch.
+     */
+    public void mark(Path path, ImportFileState state, String message) {
+        var file = files.get(path.toAbsolutePath().toString());
+        if (file == null) return;
+        synchronized (file) {
+            file.setState(state);
+            file.setMessage(message);
+            if (state == ImportFileState.PARSED) file.setAttempts(file.getAttempts() + 1);
+        }
+        dirty.add(file);
+    }
+
+    /**
+     * The amount of registered files per state.
+     */
+    public Map<ImportFileState, Integer> getProgress() {
+        var progress = new EnumMap<ImportFileState, Integer>(ImportFileState.class);
+        for (var file : files.values()) progress.merge(file.getState(), 1, Integer::sum);
+        return progress;
+    }
+
+    /**
+     * Stores every changed entry right now.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            var batch = new ArrayList<ImportFile>(BATCH_SIZE);
+            for (var iterator = dirty.iterator(); iterator.hasNext(); ) {
+                // Removed before it is stored, so a change in the meantime queues the entry again.
+                batch.add(iterator.next());
+                iterator.remove();
+                if (batch.size() == BATCH_SIZE) {
+                    save(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            save(batch);
+        }
+    }
+
+    /**
+     * Stops the background writer and stores what is left.
+     */
+    public void close() {
+        writer.shutdown();
+        ExceptionUtils.tryCatchLog(
+                () -> writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS),
+                (ex) -> logger.warn("Interrupted while waiting for the manifest writer of the import " + importId, ex));
+        flush();
+    }
+
+    private void save(List<ImportFile> changed) {
+        if (changed.isEmpty()) return;
+        ExceptionUtils.tryCatchLog(
+                () -> db.saveOrUpdateManyImportFiles(changed),
+                (ex) -> logger.warn("Couldn't store " + changed.size() + " entries of the import manifest... operation continues.", ex));
+    }
+
+    private static String folderPrefix(Path folder) {
+        return folder.toAbsolutePath() + File.separator;
+    }
+
+    private static String hashContent(Path path) throws IOException, NoSuchAlgorithmException {
+        var digest = MessageDigest.getInstance("SHA-256");
+        try (var inputStream = new DigestInputStream(Files.newInputStream(path), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,168 @@
+package org.texttechnologylab.uce.corpusimporter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A bounded, staged producer/consumer pipeline. Each stage owns its own workers and hands its results
+ * to the next stage through a bounded queue. A slow stage therefore blocks the ones before it instead of
+ * letting work pile up in memory, no matter how many items are submitted.
+ */
+public class ImportPipeline<T> {
+    private static final Logger logger = LogManager.getLogger(ImportPipeline.class);
+    private static final Object END_OF_STREAM = new Object();
+
+    private final String name;
+    private final int queueCapacity;
+    private final List<Stage> stages = new ArrayList<>();
+    private boolean started = false;
+
+    public ImportPipeline(String name, int queueCapacity) {
+        this.name = name;
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * Appends a stage to the pipeline. If the work function returns null, the item is dropped and not
+     * handed to the next stage. Exceptions are logged and drop the item as well.
+     */
+    public ImportPipeline<T> addStage(String stageName, int workers, Function<T, T> work) {
+        if (started) throw new IllegalStateException("Stages can't be added to a running pipeline.");
+        stages.add(new Stage(stageName, Math.max(1, workers), work, new ArrayBlockingQueue<>(queueCapacity)));
+        return this;
+    }
+
+    public void start() {
+        if (stages.isEmpty()) throw new IllegalStateException("The pipeline " + name + " has no stages.");
+        started = true;
+        for (var i = 0; i < stages.size(); i++) {
+            var next = i + 1 < stages.size() ? stages.get(i + 1).input : null;
+            stages.get(i).start(next);
+        }
+    }
+
+    /**
+     * Hands an item to the first stage. Blocks while the first queue is full.
+     */
+    public void submit(T item) throws InterruptedException {
+        stages.getFirst().input.put(item);
+    }
+
+    /**
+     * Signals that no more items will be submitted and waits until every stage has drained.
+     */
+    public void finish() throws InterruptedException {
+        stages.getFirst().input.put(END_OF_STREAM);
+        for (var stage : stages) {
+            stage.executor.shutdown();
+            stage.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Pipeline " + name + " finished: " + getStatus());
+    }
+
+    /**
+     * Stops all workers without draining the queues.
+     */
+    public void cancel() {
+        for (var stage : stages) {
+            if (stage.executor != null) stage.executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A short summary of the processed items and the current queue fill per stage.
+     */
+    public String getStatus() {
+        var builder = new StringBuilder();
+        for (var stage : stages) {
+            if (!builder.isEmpty()) builder.append(" -> ");
+            builder.append(stage.name)
+                    .append("[queued=").append(stage.input.size())
+                    .append(", done=").append(stage.processed.get())
+                    .append(", dropped=").append(stage.dropped.get())
+                    .append("]");
+        }
+        return builder.toString();
+    }
+
+    private class Stage {
+        private final String name;
+        private final int workers;
+        private final Function<T, T> work;
+        private final BlockingQueue<Object> input;
+        private final AtomicInteger runningWorkers;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private ExecutorService executor;
+
+        private Stage(String name, int workers, Function<T, T> work, BlockingQueue<Object> input) {
+            this.name = name;
+            this.workers = workers;
+            this.work = work;
+            this.input = input;
+            this.runningWorkers = new AtomicInteger(workers);
+        }
+
+        private void start(BlockingQueue<Object> output) {
+            var threadCount = new AtomicInteger(0);
+            executor = Executors.newFixedThreadPool(workers, runnable -> {
+                var thread = new Thread(runnable, ImportPipeline.this.name + "-" + name + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (var i = 0; i < workers; i++) {
+                executor.submit(() -> runWorker(output));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void runWorker(BlockingQueue<Object> output) {
+            try {
+                while (true) {
+                    var next = input.take();
+                    if (next == END_OF_STREAM) {
+                        // Leave the marker for the sibling workers of this stage.
+                        input.put(END_OF_STREAM);
+                        break;
+                    }
+
+                    T result = null;
+                    try {
+                        result = work.apply((T) next);
+                    } catch (Exception ex) {
+                        logger.error("Unhandled error in the " + name + " stage of the pipeline " + ImportPipeline.this.name + ".", ex);
+                    }
+
+                    if (result == null) {
+                        dropped.incrementAndGet();
+                        continue;
+                    }
+                    processed.incrementAndGet();
+                    if (output != null) output.put(result);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // The last worker of a stage tells the next stage that nothing more is coming.
+                if (runningWorkers.decrementAndGet() == 0 && output != null) {
+                    try {
+                        output.put(END_OF_STREAM);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+    }
+}
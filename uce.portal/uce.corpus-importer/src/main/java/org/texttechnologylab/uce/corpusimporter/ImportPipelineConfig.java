@@ -0,0 +1,86 @@
+package org.texttechnologylab.uce.corpusimporter;
+
+/**
+ * Worker counts and queue capacity of the staged import pipeline. Every stage that isn't set
+ * explicitly falls back to the general thread count of the importer.
+ */
+public class ImportPipelineConfig {
+    private int deserializeWorkers;
+    private int mappingWorkers;
+    private int persistWorkers;
+    private int postProcessWorkers;
+    private int queueCapacity;
+    private boolean prescanDocumentIds = true;
+
+    public ImportPipelineConfig(int numThreads) {
+        var threads = Math.max(1, numThreads);
+        this.deserializeWorkers = threads;
+        this.mappingWorkers = threads;
+        this.persistWorkers = threads;
+        this.postProcessWorkers = threads;
+        // Every queued item may hold a whole CAS, so we keep the buffers between the stages small.
+        this.queueCapacity = threads * 2;
+    }
+
+    public int getDeserializeWorkers() {
+        return deserializeWorkers;
+    }
+
+    public void setDeserializeWorkers(int deserializeWorkers) {
+        this.deserializeWorkers = Math.max(1, deserializeWorkers);
+    }
+
+    public int getMappingWorkers() {
+        return mappingWorkers;
+    }
+
+    public void setMappingWorkers(int mappingWorkers) {
+        this.mappingWorkers = Math.max(1, mappingWorkers);
+    }
+
+    public int getPersistWorkers() {
+        return persistWorkers;
+    }
+
+    public void setPersistWorkers(int persistWorkers) {
+        this.persistWorkers = Math.max(1, persistWorkers);
+    }
+
+    public int getPostProcessWorkers() {
+        return postProcessWorkers;
+    }
+
+    public void setPostProcessWorkers(int postProcessWorkers) {
+        this.postProcessWorkers = Math.max(1, postProcessWorkers);
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    public boolean isPrescanDocumentIds() {
+        return prescanDocumentIds;
+    }
+
+    /**
+     * If set, the documentIds of the input files are read in a streaming manner first, and files that were
+     * already imported completely are skipped before any CAS is built.
+     */
+    public void setPrescanDocumentIds(boolean prescanDocumentIds) {
+        this.prescanDocumentIds = prescanDocumentIds;
+    }
+
+    @Override
+    public String toString() {
+        return "deserialize=" + deserializeWorkers
+                + ", mapping=" + mappingWorkers
+                + ", persist=" + persistWorkers
+                + ", postprocess=" + postProcessWorkers
+                + ", queueCapacity=" + queueCapacity
+                + ", prescan=" + prescanDocumentIds;
+    }
+}
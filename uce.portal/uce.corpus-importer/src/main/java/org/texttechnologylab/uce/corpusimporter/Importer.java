@@ -48,6 +48,7 @@ import org.texttechnologylab.uce.common.models.corpus.links.DocumentToAnnotation
 import org.texttechnologylab.uce.common.models.corpus.ocr.OCRPageAdapterImpl;
 import org.texttechnologylab.uce.common.models.corpus.ocr.PageAdapter;
 import org.texttechnologylab.uce.common.models.corpus.ocr.PageAdapterImpl;
+import org.texttechnologylab.uce.common.models.imp.ImportFileState;
 import org.texttechnologylab.uce.common.models.imp.ImportLog;
 import org.texttechnologylab.uce.common.models.imp.ImportStatus;
 import org.texttechnologylab.uce.common.models.imp.LogStatus;
@@ -60,6 +61,7 @@ import org.texttechnologylab.uce.common.models.topic.TopicWord;
 import org.texttechnologylab.uce.common.models.topic.UnifiedTopic;
 import org.texttechnologylab.uce.common.services.*;
 import org.texttechnologylab.uce.common.utils.*;
+import org.texttechnologylab.uce.search.backend.CorpusIndexWriter;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
@@ -69,13 +71,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -85,6 +84,10 @@ public class Importer {
     private static final Gson gson = new Gson();
     private static final Logger logger = LogManager.getLogger(Importer.class);
     private static final int BATCH_SIZE = 2000;
+    private static final long MAINTENANCE_CHECK_INTERVAL_MS = 10_000;
+    private static final long MAINTENANCE_MAX_INTERVAL_MS = 10 * 60_000;
+    private static final int SUBMIT_BATCH_SIZE = 500;
+    private static final long IMPORTER_WAIT_INTERVAL_MS = 5000;
     private static final Set<String> WANTED_NE_TYPES = Set.of(
             "LOCATION", "MISC", "PERSON", "ORGANIZATION"
     );
@@ -101,17 +104,38 @@ public class Importer {
     private String path;
     private String importId;
     private Integer importerNumber;
+    private int importerCount = 1;
     private List<UCEMetadataFilter> uceMetadataFilters = new CopyOnWriteArrayList<>(); // need thread safety.
     private LexiconService lexiconService;
     private CommonConfig commonConfig = new CommonConfig();
     private String casView;
+    // One writer for all importers of this process, the logs are only buffered there.
+    private static ImportLogWriter importLogWriter;
+    // Only set while a folder is imported; then the embeddings are calculated from the job queue.
+    private volatile EmbeddingJobWorker embeddingJobWorker;
+    // Only set while a folder is imported with search.index.build; the segment of this importer in the search index.
+    private volatile CorpusIndexWriter searchIndexWriter;
 
     public Importer(ApplicationContext serviceContext,
                     String foldername,
                     int importerNumber,
                     String importId,
                     String casView) {
+        this(serviceContext, foldername, importerNumber, 1, importId, casView);
+    }
+
+    /**
+     * An importer that is one of importerCount instances sharing the same import. Each instance only imports
+     * its own partition of the files, decided by a hash of their path.
+     */
+    public Importer(ApplicationContext serviceContext,
+                    String foldername,
+                    int importerNumber,
+                    int importerCount,
+                    String importId,
+                    String casView) {
         initServices(serviceContext);
+        this.importerCount = Math.max(1, importerCount);
         this.importerNumber = importerNumber;
         this.importId = importId;
         this.path = foldername;
@@ -140,6 +164,9 @@ public class Importer {
         this.lexiconService = serviceContext.getBean(LexiconService.class);
         this.jenaSparqlService = serviceContext.getBean(JenaSparqlService.class);
         this.s3StorageService = serviceContext.getBean(S3StorageService.class);
+        synchronized (Importer.class) {
+            if (importLogWriter == null) importLogWriter = new ImportLogWriter(this.db);
+        }
     }
 
     /**
@@ -163,6 +190,15 @@ public class Importer {
      * @throws DatabaseOperationException
      */
     public void start(int numThreads) throws DatabaseOperationException {
+        start(new ImportPipelineConfig(numThreads));
+    }
+
+    /**
+     * Starts the importing processing of this instance with a worker count per pipeline stage.
+     *
+     * @throws DatabaseOperationException
+     */
+    public void start(ImportPipelineConfig pipelineConfig) throws DatabaseOperationException {
         logger.info(
                 "\n _   _ _____  _____   _____                           _   \n" +
                         "| | | /  __ \\|  ___| |_   _|                         | |  \n" +
@@ -174,12 +210,12 @@ public class Importer {
                         "                                    |_|"
         );
         logger.info("===========> Global Import Id: " + importId);
-        logger.info("===========> Importer Number: " + importerNumber);
-        logger.info("===========> Used Threads: " + numThreads);
+        logger.info("===========> Importer Number: " + importerNumber + " of " + importerCount);
+        logger.info("===========> Pipeline Workers: " + pipelineConfig);
         logger.info("===========> Importing from path: " + path);
         logger.info("===========> Reading view: " + casView + "\n\n");
 
-        storeCorpusFromFolderAsync(path, numThreads);
+        storeCorpusFromFolderAsync(path, pipelineConfig);
     }
 
     /**
@@ -189,7 +225,7 @@ public class Importer {
         logger.info("Trying to store an uploaded UIMA file...");
 
         // Before we try to parse the document, we need to check if we have UCEMetadata filters for this corpus.
-        if (CorpusConfig.fromJson(corpus.getCorpusJsonConfig()).getAnnotations().isUceMetadata())
+        if (db.getCorpusConfigById(corpus.getId()).getAnnotations().isUceMetadata())
             this.uceMetadataFilters = ExceptionUtils.tryCatchLog(
                     () -> new CopyOnWriteArrayList<>(db.getUCEMetadataFiltersByCorpusId(corpus.getId())),
                     (ex) -> logger.error("Couldn't fetch UCEMetadataFilters to a corpus - this shouldn't happen. The process continues without filters.", ex));
@@ -208,23 +244,33 @@ public class Importer {
     /**
      * Imports all UIMA xmi files in a folder
      */
-    public void storeCorpusFromFolderAsync(String folderName, int numThreads) throws DatabaseOperationException {
-        var executor = Executors.newFixedThreadPool(numThreads);
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
-
+    public void storeCorpusFromFolderAsync(String folderName, ImportPipelineConfig pipelineConfig) throws DatabaseOperationException {
         var corpus = new Corpus();
         CorpusConfig corpusConfig = null;
 
         if (!SystemStatus.PostgresqlDbStatus.isAlive())
             throw new DatabaseOperationException("Postgresql DB is not alive - cancelling import.");
 
+        // The other instances wait until the main importer has created the import and its corpus, and then import
+        // into that corpus. Only the main importer ever creates one, and a resumed import keeps the one of its first run.
+        Long targetCorpusId;
+        if (this.importerNumber != 1) targetCorpusId = waitForMainImporter(folderName);
+        else {
+            var uceImport = db.getUceImportByImportIdAndBasePath(this.importId, folderName);
+            targetCorpusId = uceImport == null ? null : uceImport.getTargetCorpusId();
+        }
+
         // Read the corpus config. If this doesn't exist, we cannot import the corpus
         // NOTE the config is not updated if the corpus already exists!
         // TODO compare configs and show a warning if they differ (except name, ...)
         try (var reader = new FileReader(Paths.get(folderName, "corpusConfig.json").toString(), StandardCharsets.UTF_8)) {
             corpusConfig = gson.fromJson(reader, CorpusConfig.class);
             try {
-                Corpus existingCorpus = CreateDBCorpus(corpus, corpusConfig, db);
+                Corpus existingCorpus = targetCorpusId != null
+                        ? db.getCorpusById(targetCorpusId)
+                        : CreateDBCorpus(corpus, corpusConfig, db);
+                if (targetCorpusId != null && existingCorpus == null)
+                    throw new DatabaseOperationException("The corpus " + targetCorpusId + " of the main importer doesn't exist.");
                 if (existingCorpus != null) {
                     corpus = existingCorpus;
                     if (corpusConfig.getAnnotations().isUceMetadata()) {
@@ -241,113 +287,188 @@ public class Importer {
 
         // Store some corpus information in the UCEImport logging if this is the main importer
         if (this.importerNumber == 1) {
-            var uceImport = db.getUceImportByImportId(this.importId);
+            var uceImport = db.getUceImportByImportIdAndBasePath(this.importId, folderName);
             uceImport.setTargetCorpusName(corpus.getName());
             uceImport.setTargetCorpusId(corpus.getId());
             uceImport.setStatus(ImportStatus.RUNNING);
             db.saveOrUpdateUceImport(uceImport);
         }
 
+        // A finish of this importer from an earlier run doesn't count for this one.
+        var finishedImporters = new FinishedImporters(db, importId, folderName, importerNumber, importerCount);
+        ExceptionUtils.tryCatchLog(finishedImporters::started,
+                (ex) -> logger.error("Error withdrawing the earlier finish of the importer " + importerNumber + " of the import " + importId, ex));
+
         var inputFolderName = Path.of(folderName, "input");
         final var corpusConfigFinal = corpusConfig;
         final var corpus1 = corpus;
 
-        // Needed for parallel processing
-        var docInBatch = new AtomicInteger(0);
-        var lock = new Object();
-        var batchLatch = new AtomicReference<>(new CountDownLatch(0));
+        // If this import ran before, we continue from its manifest instead of walking the folder again.
+        var manifest = new ImportManifest(db, importId);
+        manifest.load();
+        var resumed = manifest.hasFilesIn(inputFolderName);
+        if (resumed) logger.info("Resuming the import of " + inputFolderName + " from its manifest: " + manifest.getProgress());
+
+        // The corpus wide refreshes run next to the import and never halt the document workers.
+        // They cover the whole corpus, so with many importer instances only the main one runs them.
+        var maintenanceWorker = new CorpusMaintenanceWorker("import-" + importerNumber, BATCH_SIZE, MAINTENANCE_MAX_INTERVAL_MS,
+                (watermark) -> refreshCorpus(corpus1, corpusConfigFinal, watermark));
+        if (this.importerNumber == 1) maintenanceWorker.start(MAINTENANCE_CHECK_INTERVAL_MS);
+
+        // The documents only enqueue their embeddings, these workers calculate them in batches.
+        if (corpusConfig.getOther().isEnableEmbeddings() && commonConfig.getEmbeddingJobWorkers() > 0) {
+            embeddingJobWorker = new EmbeddingJobWorker(ragService, corpus1.getId(), commonConfig.getEmbeddingJobWorkers(), commonConfig.getEmbeddingBatchSize());
+            embeddingJobWorker.start();
+        }
 
-        try (var fileStream = Files.walk(inputFolderName)) {
-            fileStream.filter(Files::isRegularFile)
-                    .filter(path -> StringUtils.checkIfFileHasExtension(path.toString().toLowerCase(), COMATIBLE_CAS_FILE_ENDINGS))
-                    .forEach(filePath -> {
-                        var docFuture = CompletableFuture.supplyAsync(() -> {
-                                    try {
-                                        batchLatch.get().await(); // wait if a batch is being postprocessed
-                                    } catch (InterruptedException e) {
-                                        Thread.currentThread().interrupt();
-                                    }
-
-                                    return XMIToDocument(filePath.toString(), corpus1);
-                                }, executor)
-                                .thenApply(doc -> {
-                                    if (doc == null) return null;
-
-                                    logger.info("Trying to store document with document id " + doc.getDocumentId() + "...");
-                                    ExceptionUtils.tryCatchLog(
-                                            () -> db.saveDocument(doc),
-                                            (ex) -> logImportError("Error saving document with id " + doc.getId(), ex, filePath.toString()));
-                                    return doc;
-                                })
-                                .thenAcceptAsync(doc -> {
-                                    if (doc != null) {
-                                        logImportInfo("Stored document " + filePath.getFileName(), LogStatus.SAVED, filePath.toString(), 0);
-                                        logger.info("Finished with the UIMA annotations - postprocessing the doc now.");
-
-                                        ExceptionUtils.tryCatchLog(
-                                                () -> postProccessDocument(doc, corpus1, filePath.toString()),
-                                                (ex) -> logImportError("Error postprocessing a saved document with id " + doc.getId(), ex, filePath.toString()));
-                                        logImportInfo("Finished with import.", LogStatus.FINISHED, filePath.toString(), 0);
-                                    }
-
-                                    int local = docInBatch.incrementAndGet();
-                                    if (local == BATCH_SIZE) {
-                                        synchronized (lock) {
-                                            // Double-check to avoid race
-                                            if (docInBatch.get() == BATCH_SIZE) {
-                                                docInBatch.set(0);
-                                                batchLatch.set(new CountDownLatch(1));
-                                            }
-                                        }
-
-                                        // Block other threads by not releasing the latch yet. We want the postprocessing being done by a single thread,
-                                        // while all the others wait.
-                                        logImportInfo("=========== UPDATING THE LOGICAL LINKS...", LogStatus.POST_PROCESSING, "LINKS", 0);
-                                        var logicalLinksResult = ExceptionUtils.tryCatchLog(
-                                                () -> db.callLogicalLinksRefresh(),
-                                                (ex) -> logImportError("Error updating the logical links while postprocessing a batch.", ex, filePath.toString()));
-                                        if (logicalLinksResult != null)
-                                            logImportInfo("=========== Finished updating the logical links. Inserted new links: " + logicalLinksResult, LogStatus.SAVED, "LINKS", 0);
-
-                                        logImportInfo("=========== UPDATING THE LEXICON...", LogStatus.POST_PROCESSING, "LEXICON", 0);
-                                        var lexiconResult = ExceptionUtils.tryCatchLog(
-                                                () -> lexiconService.updateLexicon(false),
-                                                (ex) -> logImportError("Error updating the lexicon while postprocessing a batch.", ex, filePath.toString()));
-                                        if (lexiconResult != null)
-                                            logImportInfo("=========== Finished updating the lexicon. Inserted new lex: " + lexiconResult, LogStatus.SAVED, "LEXICON", 0);
-
-                                        logImportInfo("=========== UPDATING THE GEONAME LOCATIONS...", LogStatus.POST_PROCESSING, "GEONAME_LOCATION", 0);
-                                        var geonameLocationResult = ExceptionUtils.tryCatchLog(
-                                                () -> db.callGeonameLocationRefresh(),
-                                                (ex) -> logImportError("Error updating the geoname locations while postprocessing a batch.", ex, filePath.toString()));
-                                        if (geonameLocationResult != null)
-                                            logImportInfo("=========== Finished updating the geoname locations. Inserted new locations: " + geonameLocationResult, LogStatus.SAVED, "GEONAME_LOCATION", 0);
-
-                                        logImportInfo("=========== POSTPROCESSING THE CORPUS...", LogStatus.POST_PROCESSING, "CORPUS", 0);
-                                        postProccessCorpus(corpus1, corpusConfigFinal);
-                                        logImportInfo("=========== FINISHED POSTPROCESSING THE CORPUS...", LogStatus.POST_PROCESSING, "CORPUS", 0);
-
-                                        // Allow all others to continue
-                                        batchLatch.get().countDown();
-                                    }
-                                });
-
-                        futures.add(docFuture);
-                    });
+        if (commonConfig.getSearchIndexBuild()) {
+            searchIndexWriter = ExceptionUtils.tryCatchLog(
+                    () -> new CorpusIndexWriter(Path.of(commonConfig.getSearchIndexLocation()), corpus1.getId(), importerNumber,
+                            commonConfig.getSearchIndexCommitInterval(), false),
+                    (ex) -> logger.error("Couldn't open the search index of corpus " + corpus1.getId() + ", the documents aren't indexed.", ex));
+        }
 
+        // scan -> deserialize -> map -> persist -> postprocess. The scan runs on this thread and every other
+        // stage has its own workers, connected through bounded queues so memory stays flat for any corpus size.
+        var pipeline = new ImportPipeline<ImportTask>("import-" + importerNumber, pipelineConfig.getQueueCapacity())
+                .addStage("deserialize", pipelineConfig.getDeserializeWorkers(), task -> {
+                    task.jCas = deserializeCas(task.getFileName());
+                    if (task.jCas == null) {
+                        manifest.mark(task.filePath, ImportFileState.FAILED, "Couldn't deserialize the file into a CAS.");
+                        return null;
+                    }
+                    manifest.mark(task.filePath, ImportFileState.PARSED, null);
+                    return task;
+                })
+                .addStage("map", pipelineConfig.getMappingWorkers(), task -> {
+                    task.document = XMIToDocument(task.jCas, corpus1, task.getFileName());
+                    if (task.document == null) {
+                        // No document is also returned for documents that were imported before, which isn't a failure.
+                        if (isFinishedDocument(task.jCas, corpus1))
+                            manifest.mark(task.filePath, ImportFileState.POSTPROCESSED, "Already imported.");
+                        else manifest.mark(task.filePath, ImportFileState.FAILED, "Couldn't map the CAS onto a document.");
+                    }
+                    // The CAS isn't needed anymore, free it before the task waits in the next queue.
+                    task.jCas = null;
+                    return task.document == null ? null : task;
+                })
+                .addStage("persist", pipelineConfig.getPersistWorkers(), task -> {
+                    var doc = task.document;
+                    logger.info("Trying to store document with document id " + doc.getDocumentId() + "...");
+                    var saved = ExceptionUtils.tryCatchLog(
+                            () -> {
+                                db.saveDocument(doc);
+                                return true;
+                            },
+                            (ex) -> logImportError("Error saving document with id " + doc.getId(), ex, task.getFileName()));
+                    if (saved == null) {
+                        manifest.mark(task.filePath, ImportFileState.FAILED, "Couldn't store the document.");
+                        return null;
+                    }
+                    manifest.mark(task.filePath, ImportFileState.PERSISTED, null);
+                    return task;
+                })
+                .addStage("postprocess", pipelineConfig.getPostProcessWorkers(), task -> {
+                    var doc = task.document;
+                    logImportInfo("Stored document " + task.filePath.getFileName(), LogStatus.SAVED, task.getFileName(), 0);
+                    logger.info("Finished with the UIMA annotations - postprocessing the doc now.");
+
+                    var postProcessed = ExceptionUtils.tryCatchLog(
+                            () -> {
+                                postProccessDocument(doc, corpus1, task.getFileName());
+                                return true;
+                            },
+                            (ex) -> logImportError("Error postprocessing a saved document with id " + doc.getId(), ex, task.getFileName()));
+                    logImportInfo("Finished with import.", LogStatus.FINISHED, task.getFileName(), 0);
+                    if (postProcessed == null)
+                        manifest.mark(task.filePath, ImportFileState.FAILED, "Couldn't postprocess the stored document.");
+                    else manifest.mark(task.filePath, ImportFileState.POSTPROCESSED, null);
+
+                    maintenanceWorker.documentFinished(doc.getId());
+                    return task;
+                });
+        pipeline.start();
+
+        try (var fileStream = resumed
+                ? manifest.getUnfinishedPaths(inputFolderName).stream()
+                : Files.walk(inputFolderName)) {
+            var files = fileStream.filter(Files::isRegularFile)
+                    .filter(path -> StringUtils.checkIfFileHasExtension(path.toString().toLowerCase(), COMATIBLE_CAS_FILE_ENDINGS))
+                    .filter(path -> isInPartition(inputFolderName, path))
+                    .iterator();
+            // With a view, the first DocumentMetaData of the XMI may belong to another view, so we can't pre-scan.
+            var prescan = pipelineConfig.isPrescanDocumentIds() && casView == null;
+            var pending = new ArrayList<ImportTask>();
+            // Blocks as soon as the deserialization queue is full, so we never hold more than a few paths in memory.
+            while (files.hasNext()) {
+                pending.add(new ImportTask(files.next()));
+                if (pending.size() == SUBMIT_BATCH_SIZE) submitTasks(pipeline, pending, corpus1, manifest, prescan);
+            }
+            if (!pending.isEmpty()) submitTasks(pipeline, pending, corpus1, manifest, prescan);
         } catch (IOException ex) {
             logger.error("Error walking the import path: " + inputFolderName, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.error("The import of " + inputFolderName + " was interrupted - cancelling the pipeline.", ex);
+            pipeline.cancel();
+            ExceptionUtils.tryCatchLog(maintenanceWorker::stop,
+                    (e) -> logger.error("Error stopping the corpus maintenance.", e));
+            // Open embedding jobs stay in the queue for the next run.
+            if (embeddingJobWorker != null) ExceptionUtils.tryCatchLog(embeddingJobWorker::stop,
+                    (e) -> logger.error("Error stopping the embedding workers.", e));
+            closeSearchIndexWriter();
+            manifest.close();
+            return;
         }
 
         // Wait for all tasks to complete
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        try {
+            pipeline.finish();
+            maintenanceWorker.stop();
+            // The corpus postprocessing needs the embeddings of all documents.
+            if (embeddingJobWorker != null) {
+                embeddingJobWorker.awaitDrained(commonConfig.getEmbeddingJobDrainTimeoutMinutes() * 60_000L);
+                embeddingJobWorker.stop();
+                embeddingJobWorker = null;
+            }
+            closeSearchIndexWriter();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while waiting for the import pipeline to drain.", ex);
+            pipeline.cancel();
+            ExceptionUtils.tryCatchLog(maintenanceWorker::stop,
+                    (e) -> logger.error("Error stopping the corpus maintenance.", e));
+            // Open embedding jobs stay in the queue for the next run.
+            if (embeddingJobWorker != null) ExceptionUtils.tryCatchLog(embeddingJobWorker::stop,
+                    (e) -> logger.error("Error stopping the embedding workers.", e));
+            closeSearchIndexWriter();
+            manifest.close();
+            return;
+        }
+
+        // The states of the last files are only buffered so far.
+        manifest.close();
+        logger.info("Import manifest of " + inputFolderName + ": " + manifest.getProgress());
+
+        // The corpus wide steps run exactly once: by whichever importer instance finishes its partition last.
+        var finished = ExceptionUtils.tryCatchLog(
+                finishedImporters::finished,
+                (ex) -> logger.error("Error recording the finish of the importer " + importerNumber + " of the import " + importId, ex));
+        if (finished == null ? importerCount > 1 : !finishedImporters.isLast(finished)) {
+            logger.info("Finished the partition " + importerNumber + " - " + (finished == null || finished < 0 ? "?" : finished)
+                    + " of " + importerCount + " importers are done, the last one postprocesses the corpus.");
+            importLogWriter.flush();
+            return;
+        }
 
-        // Final links updating
+        // Final links updating. The links are resolved when their documents are stored, this only catches up
+        // with links whose other end was stored by another importer.
         ExceptionUtils.tryCatchLog(
                 () -> db.callLogicalLinksRefresh(),
                 (ex) -> logger.error("Error in the final logical links update of the current corpus with id " + corpus1.getId()));
 
-        // Final lexicon updating
+        // Final lexicon updating. The imported documents are counted when they are stored, this only catches up
+        // with annotations that weren't lexicalized yet.
         ExceptionUtils.tryCatchLog(
                 () -> lexiconService.updateLexicon(false),
                 (ex) -> logger.error("Error in the final lexicon update of the current corpus with id " + corpus1.getId()));
@@ -359,11 +480,148 @@ public class Importer {
 
         // Final corpus postprocessing
         ExceptionUtils.tryCatchLog(
-                () -> postProccessCorpus(corpus1, corpusConfigFinal),
+                () -> postProccessCorpus(corpus1, corpusConfigFinal, null),
                 (ex) -> logger.error("Error in the final postprocessing of the current corpus with id " + corpus1.getId()));
 
+        ExceptionUtils.tryCatchLog(
+                () -> {
+                    var uceImport = db.getUceImportByImportIdAndBasePath(importId, folderName);
+                    if (uceImport == null) return;
+                    uceImport.setStatus(ImportStatus.FINISHED);
+                    db.saveOrUpdateUceImport(uceImport);
+                },
+                (ex) -> logger.warn("Couldn't set the UCEImport " + importId + " to finished.", ex));
+
+        // The logs of this import should be complete once the import is reported as done.
+        importLogWriter.flush();
+        logger.info("Import logs: " + importLogWriter.getStatus());
         logger.info("\n\n=================================\n Done with the corpus import.");
-        executor.shutdown();
+    }
+
+    /**
+     * Commits the documents that are left and releases the segment of this importer in the search index.
+     */
+    private void closeSearchIndexWriter() {
+        var indexWriter = searchIndexWriter;
+        searchIndexWriter = null;
+        if (indexWriter != null) ExceptionUtils.tryCatchLog(indexWriter::close,
+                (ex) -> logger.error("Error closing the search index of the import.", ex));
+    }
+
+    /**
+     * Refreshes the geoname locations and postprocesses the corpus with everything that was imported up
+     * to the given document id watermark. The logical links and the lexicon counts are handled with each
+     * stored document already. Errors are thrown, so the maintenance worker retries the watermark.
+     */
+    private void refreshCorpus(Corpus corpus, CorpusConfig corpusConfig, long watermark) throws DatabaseOperationException {
+        logImportInfo("=========== UPDATING THE GEONAME LOCATIONS UP TO DOCUMENT " + watermark + "...", LogStatus.POST_PROCESSING, "GEONAME_LOCATION", 0);
+        var geonameLocationResult = db.callGeonameLocationRefresh(watermark);
+        logImportInfo("=========== Finished updating the geoname locations. Inserted new locations: " + geonameLocationResult, LogStatus.SAVED, "GEONAME_LOCATION", 0);
+
+        logImportInfo("=========== POSTPROCESSING THE CORPUS UP TO DOCUMENT " + watermark + "...", LogStatus.POST_PROCESSING, "CORPUS", 0);
+        postProccessCorpus(corpus, corpusConfig, watermark);
+        logImportInfo("=========== FINISHED POSTPROCESSING THE CORPUS...", LogStatus.POST_PROCESSING, "CORPUS", 0);
+    }
+
+    /**
+     * Whether the given file belongs to the partition of this importer instance. The hash is built from the path
+     * relative to the input folder, so all instances agree even if they mount the corpus at different places.
+     */
+    private boolean isInPartition(Path inputFolder, Path file) {
+        if (importerCount <= 1) return true;
+        var relativePath = inputFolder.toAbsolutePath().relativize(file.toAbsolutePath()).toString().replace('\\', '/');
+        return Math.floorMod(relativePath.hashCode(), importerCount) == importerNumber - 1;
+    }
+
+    /**
+     * Blocks until the main importer has registered the import of the given folder and set its target corpus.
+     *
+     * @return The id of the target corpus.
+     */
+    private long waitForMainImporter(String folderName) throws DatabaseOperationException {
+        logger.info("Waiting for the main importer to start the import " + importId + " of " + folderName + "...");
+        while (true) {
+            var uceImport = ExceptionUtils.tryCatchLog(
+                    () -> db.getUceImportByImportIdAndBasePath(importId, folderName),
+                    (ex) -> logger.warn("Couldn't fetch the UCEImport while waiting for the main importer.", ex));
+            if (uceImport != null && uceImport.getTargetCorpusId() != null) return uceImport.getTargetCorpusId();
+            try {
+                Thread.sleep(IMPORTER_WAIT_INTERVAL_MS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new DatabaseOperationException("Interrupted while waiting for the main importer - cancelling import.", ex);
+            }
+        }
+    }
+
+    /**
+     * Registers the given files in the manifest and hands them to the pipeline. With the pre-scan, only the
+     * documentIds of the files are read first and checked against the corpus in one query, so files that were
+     * already imported completely never reach the pipeline. The list is cleared afterwards.
+     */
+    private void submitTasks(ImportPipeline<ImportTask> pipeline, List<ImportTask> tasks, Corpus corpus,
+                             ImportManifest manifest, boolean prescan) throws InterruptedException {
+        manifest.register(tasks.stream().map(task -> task.filePath).toList());
+
+        var documentIds = new HashMap<ImportTask, String>();
+        for (var task : prescan ? tasks : List.<ImportTask>of()) {
+            var documentId = ExceptionUtils.tryCatchLog(
+                    () -> {
+                        try (var inputStream = openInputStreamBasedOnExtension(task.getFileName())) {
+                            return inputStream == null ? null : XmiDocumentIdScanner.scanDocumentId(inputStream);
+                        }
+                    },
+                    (ex) -> logger.warn("Couldn't pre-scan the documentId of " + task.getFileName() + " - importing it fully.", ex));
+            // Same normalization as the Document does with its id.
+            if (documentId != null) documentIds.put(task, documentId.replaceAll("%20", " "));
+        }
+
+        var finished = documentIds.isEmpty() ? null : ExceptionUtils.tryCatchLog(
+                () -> db.getFinishedDocumentIds(corpus.getId(), new HashSet<>(documentIds.values())),
+                (ex) -> logger.warn("Couldn't check the pre-scanned documentIds against the corpus - importing all of them fully.", ex));
+
+        var skipped = 0;
+        for (var task : tasks) {
+            var documentId = documentIds.get(task);
+            if (finished != null && documentId != null && finished.contains(documentId)) {
+                manifest.mark(task.filePath, ImportFileState.POSTPROCESSED, "Already imported.");
+                skipped++;
+                continue;
+            }
+            pipeline.submit(task);
+        }
+        if (skipped > 0) logger.info("Pre-scan skipped " + skipped + " of " + tasks.size() + " files that are already imported.");
+        tasks.clear();
+    }
+
+    /**
+     * Checks if the document of the given CAS already exists in the corpus and is post-processed.
+     */
+    private boolean isFinishedDocument(JCas jCas, Corpus corpus) {
+        var finished = ExceptionUtils.tryCatchLog(
+                () -> {
+                    var documentId = JCasUtil.selectSingle(jCas, DocumentMetaData.class).getDocumentId().replaceAll("%20", " ");
+                    return db.getFinishedDocumentIds(corpus.getId(), Set.of(documentId)).contains(documentId);
+                },
+                (ex) -> logger.warn("Couldn't check if the document of a CAS was imported already.", ex));
+        return finished != null && finished;
+    }
+
+    /**
+     * A single importable file as it travels through the stages of the import pipeline.
+     */
+    private static class ImportTask {
+        private final Path filePath;
+        private JCas jCas;
+        private Document document;
+
+        private ImportTask(Path filePath) {
+            this.filePath = filePath;
+        }
+
+        private String getFileName() {
+            return filePath.toString();
+        }
     }
 
     /**
@@ -419,6 +677,15 @@ public class Importer {
      * Converts an XMI to a Document by path
      */
     public Document XMIToDocument(String filename, Corpus corpus) {
+        var jCas = deserializeCas(filename);
+        if (jCas == null) return null;
+        return XMIToDocument(jCas, corpus, filename);
+    }
+
+    /**
+     * Reads an annotated UIMA file by path into a cas, in the configured view. Returns null if that fails.
+     */
+    private JCas deserializeCas(String filename) {
         try {
             var jCas = JCasFactory.createJCas();
             try (InputStream inputStream = openInputStreamBasedOnExtension(filename)) {
@@ -435,10 +702,9 @@ public class Importer {
                     jCas = jCas.getView(casView);
                 }
             }
-
-            return XMIToDocument(jCas, corpus, filename);
+            return jCas;
         } catch (Exception ex) {
-            logger.error("Error while reading the annotated xmi file " + filename + " to a cas and transforming it into a document:", ex);
+            logger.error("Error while reading the annotated xmi file " + filename + " to a cas:", ex);
             return null;
         }
     }
@@ -499,7 +765,7 @@ public class Importer {
 
         try {
             // Corpus config so we know what do look for
-            var corpusConfig = gson.fromJson(corpus.getCorpusJsonConfig(), CorpusConfig.class);
+            var corpusConfig = db.getCorpusConfigById(corpus.getId());
 
             // First, metadata
             var metadata = JCasUtil.selectSingle(jCas, DocumentMetaData.class);
@@ -1008,7 +1274,6 @@ public class Importer {
                 //if (corpusConfig.getAnnotations().isOCRLine() && p.getOriginal() instanceof org.texttechnologylab.annotation.ocr.abbyy.Page)
                 //    page.setLines(getCoveredLines((org.texttechnologylab.annotation.ocr.abbyy.Page) p.getOriginal()));
 
-                updateAnnotationsWithPageId(document, page, false);
                 pages.add(page);
             }
 
@@ -1029,7 +1294,6 @@ public class Importer {
                 page.setCoveredText(fullText.substring(i, pageEnd));
                 page.setDocument(document);
                 pageNumber += 1;
-                updateAnnotationsWithPageId(document, page, false);
 
                 pages.add(page);
             }
@@ -1037,112 +1301,73 @@ public class Importer {
             logger.info("Setting synthetic pages done.");
         }
 
-        // Since we have some errors in the annotation (mainly we have an offset in begin and end sometimes),
-        // we need to cleanup at the end so that every annotation that doesn't have a page (because of the error offset)
-        // is assigned to the last page.
-        updateAnnotationsWithPageId(document, document.getPages().getLast(), true);
+        updateAnnotationsWithPageIds(document);
     }
 
-    private void updateAnnotationsWithPageId(Document document, Page page, boolean isLastPage) {
-        // Set the pages for the different annotations - this is freaking horrible, but I cant be bothered right now.
-        // Update: Someone please release me from this horror that is this code.
-        if (document.getSentences() != null) {
-            for (var anno : document.getSentences().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        if (document.getEmotions() != null) {
-            for (var anno : document.getEmotions().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        if (document.getSentiments() != null) {
-            for (var anno : document.getSentiments().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        if (document.getLemmas() != null) {
-            for (var anno : document.getLemmas().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        if (document.getGazetteerTaxons() != null) {
-            for (var anno : document.getGazetteerTaxons().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        if (document.getGnFinderTaxons() != null) {
-            for (var anno : document.getGnFinderTaxons().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        if (document.getBiofidTaxons() != null) {
-            for (var anno : document.getBiofidTaxons().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        if (document.getNamedEntities() != null) {
-            for (var anno : document.getNamedEntities().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        if (document.getGeoNames() != null) {
-            for (var anno : document.getGeoNames().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        if (document.getTimes() != null) {
-            for (var anno : document.getTimes().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        // negations
-        if (document.getCues() != null) {
-            for (var anno : document.getCues().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        if (document.getEvents() != null) {
-            for (var anno : document.getEvents().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        if (document.getFocuses() != null) {
-            for (var anno : document.getFocuses().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        if (document.getScopes() != null) {
-            for (var anno : document.getScopes().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
-        }
-        if (document.getXscopes() != null) {
-            for (var anno : document.getXscopes().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
+    /**
+     * Assigns each annotation of the document to the page that contains it. The pages are sorted once and each
+     * annotation finds its page by a binary search over the page begins, so this is O(n log p) instead of testing
+     * every annotation against every page.
+     * Since we have some errors in the annotation (mainly we have an offset in begin and end sometimes),
+     * every annotation that doesn't fit into a page (because of the error offset) is assigned to the last page.
+     */
+    private void updateAnnotationsWithPageIds(Document document) {
+        var pages = document.getPages();
+        if (pages == null || pages.isEmpty()) return;
+
+        assignPages(pages, Stream.<List<? extends UIMAAnnotation>>of(
+                document.getSentences(),
+                document.getEmotions(),
+                document.getSentiments(),
+                document.getLemmas(),
+                document.getGazetteerTaxons(),
+                document.getGnFinderTaxons(),
+                document.getBiofidTaxons(),
+                document.getNamedEntities(),
+                document.getGeoNames(),
+                document.getTimes(),
+                // negations
+                document.getCues(),
+                document.getEvents(),
+                document.getFocuses(),
+                document.getScopes(),
+                document.getXscopes(),
+                document.getUnifiedTopics()
+        ).filter(Objects::nonNull).toList());
+    }
+
+    /**
+     * Sets the page containing it on each annotation. Annotations that fit no page, e.g. because of an offset
+     * error, are assigned to the last page.
+     */
+    static void assignPages(List<Page> pages, List<? extends List<? extends UIMAAnnotation>> annotationLists) {
+        var sortedPages = pages.stream().sorted(Comparator.comparingInt(Page::getBegin)).toList();
+        var pageBegins = sortedPages.stream().mapToInt(Page::getBegin).toArray();
+        var lastPage = pages.getLast();
+
+        for (var annotations : annotationLists) {
+            for (UIMAAnnotation anno : annotations) {
+                var page = findContainingPage(sortedPages, pageBegins, anno.getBegin(), anno.getEnd());
+                anno.setPage(page == null ? lastPage : page);
             }
         }
-        if (document.getUnifiedTopics() != null) {
-            for (var anno : document.getUnifiedTopics().stream().filter(t ->
-                    (t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()) || (t.getPage() == null && isLastPage)).toList()) {
-                anno.setPage(page);
-            }
+    }
+
+    /**
+     * Binary searches the last page that begins at or before the given begin and returns it, if it also contains
+     * the end. Returns null otherwise.
+     */
+    private static Page findContainingPage(List<Page> sortedPages, int[] pageBegins, int begin, int end) {
+        var index = Arrays.binarySearch(pageBegins, begin);
+        if (index < 0) index = -index - 2; // the insertion point - 1 is the last page beginning before
+        else {
+            // Equal begins are possible with empty pages, we want the last one of them.
+            while (index + 1 < pageBegins.length && pageBegins[index + 1] == begin) index++;
         }
+        if (index < 0) return null;
+
+        var page = sortedPages.get(index);
+        return end <= page.getEnd() ? page : null;
     }
 
     /**
@@ -1171,6 +1396,7 @@ public class Importer {
      */
     private void setTaxonomy(Document document, JCas jCas, CorpusConfig corpusConfig) {
         var biofidTaxa = new ArrayList<BiofidTaxon>();
+        var taxonRequests = new ArrayList<BiofidTaxonRequest>();
 
         // Handle Verified GNFinder taxa (verified and not)
         var gnFinderTaxa = new ArrayList<GnFinderTaxon>();
@@ -1211,20 +1437,7 @@ public class Importer {
             taxon.setMatchedCanonical(t.getMatchedCanonicalFull());
 
             var biofidUrl = StringUtils.BIOFID_URL_BASE + taxon.getRecordId();
-            var newBiofidTaxons = ExceptionUtils.tryCatchLog(
-                    () -> jenaSparqlService.queryBiofidTaxon(biofidUrl),
-                    (ex) -> logger.error("Error building a BiofidTaxon object from a potential id.", ex));
-            if (newBiofidTaxons != null) {
-                for (var biofidTaxon : newBiofidTaxons) {
-                    biofidTaxon.setCoveredText(t.getCoveredText());
-                    biofidTaxon.setBegin(t.getBegin());
-                    biofidTaxon.setEnd(t.getEnd());
-                    biofidTaxon.setDocument(document);
-                    biofidTaxon.setBiofidUrl(biofidUrl);
-                    biofidTaxon.setOriginalAnnotatedTaxonTable(ReflectionUtils.getTableAnnotationName(GnFinderTaxon.class));
-                    biofidTaxa.add(biofidTaxon);
-                }
-            }
+            taxonRequests.add(new BiofidTaxonRequest(t.getCoveredText(), t.getBegin(), t.getEnd(), biofidUrl, GnFinderTaxon.class));
             gnFinderTaxa.add(taxon);
         });
 
@@ -1263,29 +1476,48 @@ public class Importer {
                     if (potentialBiofidId.contains("gbif.org"))
                         potentialBiofidId = StringUtils.gbifToBIOfidUrl(potentialBiofidId);
 
-                    final var biofidId = potentialBiofidId;
                     // Before we do GbifOccurence stuff, we build specific BiofidTaxon objects if we can.
-                    var newBiofidTaxons = ExceptionUtils.tryCatchLog(
-                            () -> jenaSparqlService.queryBiofidTaxon(biofidId),
-                            (ex) -> logger.error("Error building a BiofidTaxon object from a potential id.", ex));
-                    if (newBiofidTaxons != null) {
-                        for (var biofidTaxon : newBiofidTaxons) {
-                            biofidTaxon.setCoveredText(t.getCoveredText());
-                            biofidTaxon.setBegin(t.getBegin());
-                            biofidTaxon.setEnd(t.getEnd());
-                            biofidTaxon.setDocument(document);
-                            biofidTaxon.setBiofidUrl(biofidId);
-                            biofidTaxon.setOriginalAnnotatedTaxonTable(ReflectionUtils.getTableAnnotationName(GazetteerTaxon.class));
-                            biofidTaxa.add(biofidTaxon);
-                        }
-                    }
+                    taxonRequests.add(new BiofidTaxonRequest(t.getCoveredText(), t.getBegin(), t.getEnd(), potentialBiofidId, GazetteerTaxon.class));
                 }
             }
             gazetteerTaxa.add(taxon);
         });
         document.setGazetteerTaxons(gazetteerTaxa);
+
+        // Resolve all collected biofid urls of this document at once. The service caches them across documents.
+        var taxaByUrl = ExceptionUtils.tryCatchLog(
+                () -> jenaSparqlService.queryBiofidTaxa(taxonRequests.stream().map(BiofidTaxonRequest::biofidUrl).toList()),
+                (ex) -> logger.error("Error building BiofidTaxon objects from the potential ids of a document.", ex));
+        if (taxaByUrl != null) {
+            var consumedUrls = new HashSet<String>();
+            for (var request : taxonRequests) {
+                // Every occurrence needs its own entities, so a repeated url is built again from the now warm cache.
+                var newBiofidTaxons = consumedUrls.add(request.biofidUrl())
+                        ? taxaByUrl.get(request.biofidUrl())
+                        : ExceptionUtils.tryCatchLog(
+                        () -> jenaSparqlService.queryBiofidTaxa(List.of(request.biofidUrl())).get(request.biofidUrl()),
+                        (ex) -> logger.error("Error building a BiofidTaxon object from a potential id.", ex));
+                if (newBiofidTaxons == null) continue;
+                for (var biofidTaxon : newBiofidTaxons) {
+                    biofidTaxon.setCoveredText(request.coveredText());
+                    biofidTaxon.setBegin(request.begin());
+                    biofidTaxon.setEnd(request.end());
+                    biofidTaxon.setDocument(document);
+                    biofidTaxon.setBiofidUrl(request.biofidUrl());
+                    biofidTaxon.setOriginalAnnotatedTaxonTable(ReflectionUtils.getTableAnnotationName(request.annotatedTaxonClass()));
+                    biofidTaxa.add(biofidTaxon);
+                }
+            }
+        }
         document.setBiofidTaxons(biofidTaxa);
-        logger.info("Setting Taxa done.");
+        logger.info("Setting Taxa done. Taxon cache: " + jenaSparqlService.getTaxonCacheStatus());
+    }
+
+    /**
+     * A biofid url found at a taxon annotation, which is resolved together with the others of the document.
+     */
+    private record BiofidTaxonRequest(String coveredText, int begin, int end, String biofidUrl,
+                                      Class<? extends UIMAAnnotation> annotatedTaxonClass) {
     }
 
     /**
@@ -1658,9 +1890,13 @@ public class Importer {
     /**
      * Apply any postprocessing once the corpus is finished calculating. This will be called even
      * when the corpus import didn't finish due to an error. We still postprocess what we have.
+     *
+     * @param maxDocumentId Only the documents up to this id are postprocessed, null postprocesses all of them.
+     * @throws IllegalStateException if documents are left unprocessed, after all others were postprocessed.
      */
-    private void postProccessCorpus(Corpus corpus, CorpusConfig corpusConfig) {
+    private void postProccessCorpus(Corpus corpus, CorpusConfig corpusConfig, Long maxDocumentId) throws DatabaseOperationException {
         logger.info("Postprocessing the Corpus " + corpus.getName());
+        var failedDocuments = 0;
 
         // Calculate the tsne reductions of the whole corpus and finally the tsne plot
         if (corpusConfig.getOther().isEnableEmbeddings()) {
@@ -1668,9 +1904,7 @@ public class Importer {
 
             // The corpus can be gigantic and we cant pass hundreds of thousand of embeddings into
             // a rest API and perform reductions on them. Instead, we sample them.
-            var corpusDocuments = ExceptionUtils.tryCatchLog(() -> db.getNonePostprocessedDocumentsByCorpusId(corpus.getId()),
-                    (ex) -> logger.error("Error while fetching none postprocessed documents of corpus with id " + corpus.getId(), ex));
-            if (corpusDocuments == null) return;
+            var corpusDocuments = db.getNonePostprocessedDocumentsByCorpusId(corpus.getId(), maxDocumentId);
 
             Collections.shuffle(corpusDocuments); // We want random samples of size CHUNKSIZE
             var chunked = ListUtils.partitionList(corpusDocuments, 100);
@@ -1718,7 +1952,11 @@ public class Importer {
                                 docChunkEmbeddings.stream().map(DocumentChunkEmbedding::getEmbedding).toList()),
                         (ex) -> logger.error("Error getting embedding dimension reductions in post processing a corpus.", ex));
 
-                if (reducedEmbeddingDto == null || reducedEmbeddingDto.getTsne2D() == null) continue;
+                if (reducedEmbeddingDto == null || reducedEmbeddingDto.getTsne2D() == null) {
+                    // These stay unprocessed and are picked up again by the next postprocessing.
+                    failedDocuments += documents.size();
+                    continue;
+                }
                 // Store the tsne reduction in each chunk - this is basically now a 2D and 3D coordinate
                 for (var i = 0; i < reducedEmbeddingDto.getTsne2D().length; i++) {
                     docChunkEmbeddings.get(i).setTsne2D(reducedEmbeddingDto.getTsne2D()[i]);
@@ -1789,32 +2027,66 @@ public class Importer {
         }
 
         if (corpusConfig.getAnnotations().isUnifiedTopic()) {
-            logger.info("Inserting into Document and Corpus Topic word tables...");
-
-            try {
-                Path insertDocumentTopicWordFilePath = Paths.get(commonConfig.getDatabaseScriptsLocation(), "topic/3_updateDocumentTopicWord.sql");
-                var insertDocumentTopicWordScript = Files.readString(insertDocumentTopicWordFilePath);
-
-                ExceptionUtils.tryCatchLog(
-                        () -> db.executeSqlWithoutReturn(insertDocumentTopicWordScript),
-                        (ex) -> logger.error("Error executing SQL script to populate documenttopicword table", ex)
-                );
-
-                Path insertCorpusTopicWordFilePath = Paths.get(commonConfig.getDatabaseScriptsLocation(), "topic/4_updateCorpusTopicWord.sql");
-                var insertCorpusTopicWordScript = Files.readString(insertCorpusTopicWordFilePath);
-
-                ExceptionUtils.tryCatchLog(
-                        () -> db.executeSqlWithoutReturn(insertCorpusTopicWordScript),
-                        (ex) -> logger.error("Error executing SQL script to populate corpustopicword table", ex)
-                );
+            // The documenttopicwords are inserted with each document already, here we only aggregate them per corpus.
+            logger.info("Updating the corpus topic words...");
+            db.updateTopicWordsOfCorpus(corpus.getId());
+        }
+        if (failedDocuments > 0)
+            throw new IllegalStateException(failedDocuments + " documents of the corpus " + corpus.getId() + " couldn't be postprocessed.");
+        logger.info("Done with the corpus postprocessing.");
+    }
 
-                logger.info("Successfully created and populated word based topic tables");
-            } catch (Exception e) {
-                logger.error("Error reading or executing SQL script for topic distribution", e);
-            }
+    /**
+     * Lazily builds the links FROM the annotations (taxa, named entities) TO their context (geonames, times) on the
+     * given page, at most maxLinks of them if that is greater than 0.
+     */
+    private Stream<AnnotationLink> buildContextLinksOfPage(Document document, Page page, long corpusId, CorpusConfig corpusConfig, int maxLinks) {
+        // Geonames and Times
+        var contextAnnotations = new ArrayList<UIMAAnnotation>();
+        if (corpusConfig.getAnnotations().isGeoNames())
+            contextAnnotations.addAll(document.getGeoNames().stream().filter(g -> g.getBegin() >= page.getBegin() && g.getEnd() <= page.getEnd()).toList());
+        if (corpusConfig.getAnnotations().isTime())
+            contextAnnotations.addAll(document.getTimes().stream().filter(g -> g.getBegin() >= page.getBegin() && g.getEnd() <= page.getEnd()).toList());
+
+        // Link them to other annotations, such as Taxa, NamedEntity (e.g. PERSON)
+        var linkedAnnotations = new ArrayList<UIMAAnnotation>();
+        if (corpusConfig.getAnnotations().isNamedEntity() && document.getNamedEntities() != null)
+            linkedAnnotations.addAll(document.getNamedEntities().stream().filter(g -> !g.getType().equals("LOCATION") && g.getBegin() >= page.getBegin() && g.getEnd() <= page.getEnd()).toList());
+        if (corpusConfig.getAnnotations().getTaxon().isAnnotated() && document.getAllTaxa() != null) {
+            linkedAnnotations.addAll(document.getGazetteerTaxons().stream().filter(g -> g.getBegin() >= page.getBegin() && g.getEnd() <= page.getEnd()).toList());
+            linkedAnnotations.addAll(document.getGnFinderTaxons().stream().filter(g -> g.getBegin() >= page.getBegin() && g.getEnd() <= page.getEnd()).toList());
+        }
 
+        var linkCount = (long) contextAnnotations.size() * linkedAnnotations.size();
+        if (maxLinks > 0 && linkCount > maxLinks) {
+            logger.info("Page " + page.getId() + " of document " + document.getId() + " would have " + linkCount
+                        + " contextual annotation links, only the first " + maxLinks + " are stored.");
         }
-        logger.info("Done with the corpus postprocessing.");
+
+        // We link FROM the ANNOTATION TO the CONTEXT
+        return contextAnnotations.stream()
+                .flatMap(context -> linkedAnnotations.stream().map(anno -> {
+                    var annoLink = new AnnotationLink();
+                    annoLink.setCorpusId(corpusId);
+                    annoLink.setFrom(document.getDocumentId());
+                    annoLink.setTo(document.getDocumentId());
+                    annoLink.setType(context instanceof Time ? "time" : "location");
+                    annoLink.setLinkId("context");
+                    annoLink.setFromId(anno.getId());
+                    annoLink.setToId(context.getId());
+                    annoLink.setFromAnnotationTypeTable(ReflectionUtils.getTableAnnotationName(anno.getClass()));
+                    annoLink.setToAnnotationTypeTable(ReflectionUtils.getTableAnnotationName(context.getClass()));
+                    annoLink.setFromAnnotationType(anno.getClass().getName());
+                    annoLink.setToAnnotationType(context.getClass().getName());
+                    annoLink.setFromCoveredText(anno.getCoveredText());
+                    annoLink.setToCoveredText(context.getCoveredText());
+                    annoLink.setFromBegin(anno.getBegin());
+                    annoLink.setToBegin(context.getBegin());
+                    annoLink.setFromEnd(anno.getEnd());
+                    annoLink.setToEnd(context.getEnd());
+                    return annoLink;
+                }))
+                .limit(maxLinks > 0 ? maxLinks : Long.MAX_VALUE);
     }
 
     /**
@@ -1824,7 +2096,25 @@ public class Importer {
     private void postProccessDocument(Document document, Corpus corpus, String filePath) {
         logImportInfo("Postprocessing " + filePath, LogStatus.POST_PROCESSING, filePath, 0);
         var start = System.currentTimeMillis();
-        var corpusConfig = corpus.getViewModel().getCorpusConfig();
+        var cachedCorpusConfig = ExceptionUtils.tryCatchLog(
+                () -> db.getCorpusConfigById(corpus.getId()),
+                (ex) -> logger.warn("Couldn't fetch the cached config of corpus " + corpus.getId() + ", parsing it instead.", ex));
+        var corpusConfig = cachedCorpusConfig != null ? cachedCorpusConfig : corpus.getViewModel().getCorpusConfig();
+
+        // The document is stored, so the logical links from and to it and its annotations can be resolved now.
+        if (corpusConfig.getAnnotations().isLogicalLinks()) {
+            ExceptionUtils.tryCatchLog(
+                    () -> db.resolveLogicalLinksOfDocument(document),
+                    (ex) -> logImportError("Error resolving the logical links of document " + document.getId(), ex, filePath));
+        }
+
+        // The document becomes searchable with the next commit of the search index.
+        var indexWriter = searchIndexWriter;
+        if (indexWriter != null) {
+            ExceptionUtils.tryCatchLog(
+                    () -> indexWriter.indexDocument(document),
+                    (ex) -> logImportError("Error adding document " + document.getId() + " to the search index.", ex, filePath));
+        }
 
         // Store simple connections between Time, Geonames and Annotation to approximate the question:
         // This annotation occurred in context with this location at this time.
@@ -1832,58 +2122,24 @@ public class Importer {
         if (corpusConfig.getAnnotations().isGeoNames() || corpusConfig.getAnnotations().isTime()) {
             logger.info("Doing contextualized Links between Annotations...");
             // For now we assume that, IF the annotations are on the same page, they are somewhat linked.
-            // For now, we link NamedEntities and taxa to Geonames and/or Time
-            for (var page : document.getPages()) {
-
-                // Geonames and Times
-                var contextAnnotations = new ArrayList<UIMAAnnotation>();
-                if (corpusConfig.getAnnotations().isGeoNames())
-                    contextAnnotations.addAll(document.getGeoNames().stream().filter(g -> g.getBegin() >= page.getBegin() && g.getEnd() <= page.getEnd()).toList());
-                if (corpusConfig.getAnnotations().isTime())
-                    contextAnnotations.addAll(document.getTimes().stream().filter(g -> g.getBegin() >= page.getBegin() && g.getEnd() <= page.getEnd()).toList());
-
-                // Link them to other annotations, such as Taxa, NamedEntity (e.g. PERSON)
-                var linkedAnnotations = new ArrayList<UIMAAnnotation>();
-                if (corpusConfig.getAnnotations().isNamedEntity() && document.getNamedEntities() != null)
-                    linkedAnnotations.addAll(document.getNamedEntities().stream().filter(g -> !g.getType().equals("LOCATION") && g.getBegin() >= page.getBegin() && g.getEnd() <= page.getEnd()).toList());
-                if (corpusConfig.getAnnotations().getTaxon().isAnnotated() && document.getAllTaxa() != null) {
-                    linkedAnnotations.addAll(document.getGazetteerTaxons().stream().filter(g -> g.getBegin() >= page.getBegin() && g.getEnd() <= page.getEnd()).toList());
-                    linkedAnnotations.addAll(document.getGnFinderTaxons().stream().filter(g -> g.getBegin() >= page.getBegin() && g.getEnd() <= page.getEnd()).toList());
-                }
-
-                // We link FROM the ANNOTATION TO the CONTEXT
-                var links = new ArrayList<AnnotationLink>();
-                for (var context : contextAnnotations) {
-                    for (var anno : linkedAnnotations) {
-                        var annoLink = new AnnotationLink();
-                        annoLink.setCorpusId(corpus.getId());
-                        annoLink.setFrom(document.getDocumentId());
-                        annoLink.setTo(document.getDocumentId());
-                        annoLink.setType(context instanceof Time ? "time" : "location");
-                        annoLink.setLinkId("context");
-                        annoLink.setFromId(anno.getId());
-                        annoLink.setToId(context.getId());
-                        annoLink.setFromAnnotationTypeTable(ReflectionUtils.getTableAnnotationName(anno.getClass()));
-                        annoLink.setToAnnotationTypeTable(ReflectionUtils.getTableAnnotationName(context.getClass()));
-                        annoLink.setFromAnnotationType(anno.getClass().getName());
-                        annoLink.setToAnnotationType(context.getClass().getName());
-                        annoLink.setFromCoveredText(anno.getCoveredText());
-                        annoLink.setToCoveredText(context.getCoveredText());
-                        annoLink.setFromBegin(anno.getBegin());
-                        annoLink.setToBegin(context.getBegin());
-                        annoLink.setFromEnd(anno.getEnd());
-                        annoLink.setToEnd(context.getEnd());
-
-                        links.add(annoLink);
-                    }
-                }
-                ExceptionUtils.tryCatchLog(() -> db.saveOrUpdateManyAnnotationLinks(links),
-                        (ex) -> logImportError("Couldn't build contextual annotation links while postprocessing.", ex, filePath));
-            }
+            // The links are a cross product that reaches the hundreds of millions, so they are generated page by page
+            // while they are copied into the database and never collected in a list.
+            var maxLinksPerPage = commonConfig.getContextLinksMaxPerPage();
+            var links = document.getPages().stream()
+                    .flatMap(page -> buildContextLinksOfPage(document, page, corpus.getId(), corpusConfig, maxLinksPerPage))
+                    .iterator();
+            var writtenLinks = ExceptionUtils.tryCatchLog(() -> db.copyAnnotationLinks(links),
+                    (ex) -> logImportError("Couldn't build contextual annotation links while postprocessing.", ex, filePath));
+            if (writtenLinks != null) logger.info("Stored " + writtenLinks + " contextual annotation links.");
         }
 
-        // Calculate embeddings if they are activated
-        if (corpusConfig.getOther().isEnableEmbeddings()) {
+        // Calculate embeddings if they are activated. While a folder is imported, the embedding workers do that.
+        var jobWorker = embeddingJobWorker;
+        if (corpusConfig.getOther().isEnableEmbeddings() && jobWorker != null) {
+            ExceptionUtils.tryCatchLog(
+                    () -> ragService.enqueueEmbeddingJob(document.getId()),
+                    (ex) -> logImportError("Error enqueueing the embedding job of document: " + document.getId(), ex, filePath));
+        } else if (corpusConfig.getOther().isEnableEmbeddings()) {
             logger.info("Embeddings...");
 
             // Sentence Embeddings
@@ -1988,27 +2244,10 @@ public class Importer {
 
             logger.info("Inserting Sentence and Document Topics...");
 
-            try {
-                Path insertSentenceTopicsFilePath = Paths.get(commonConfig.getDatabaseScriptsLocation(), "topic/1_updateSentenceTopics.sql");
-                var insertSentenceTopicsScript = Files.readString(insertSentenceTopicsFilePath);
-
-                ExceptionUtils.tryCatchLog(
-                        () -> db.executeSqlWithoutReturn(insertSentenceTopicsScript),
-                        (ex) -> logImportError("Error executing SQL script to populate sentencetopics table", ex, filePath)
-                );
-
-                Path insertDocumentTopicsFilePath = Paths.get(commonConfig.getDatabaseScriptsLocation(), "topic/2_updateDocumentTopics.sql");
-                var insertDocumentTopicsScript = Files.readString(insertDocumentTopicsFilePath);
-
-                ExceptionUtils.tryCatchLog(
-                        () -> db.executeSqlWithoutReturn(insertDocumentTopicsScript),
-                        (ex) -> logImportError("Error executing SQL script to populate documenttopicsraw table", ex, filePath)
-                );
-
-                logger.info("Successfully created and populated sentencetopics and documenttopicsraw tables");
-            } catch (Exception e) {
-                logger.error("Error reading or executing SQL script for topic distribution", e);
-            }
+            // Only the rows of this document are replaced, a full rebuild is the -rebuildTopics command.
+            ExceptionUtils.tryCatchLog(
+                    () -> db.updateTopicTablesOfDocument(document.getId()),
+                    (ex) -> logImportError("Error updating the topic tables of document " + document.getId(), ex, filePath));
 
             logger.info("Topic Three Topics...");
 
@@ -2049,6 +2288,11 @@ public class Importer {
             }
         }
 
+        // The analytics of the document reader read these instead of aggregating the annotations on every request.
+        ExceptionUtils.tryCatchLog(
+                () -> db.refreshPageStatisticsOfDocument(document.getId()),
+                (ex) -> logImportError("Error aggregating the page statistics of the document, they are aggregated on demand instead.", ex, filePath));
+
         logImportInfo("Successfully post processed document " + filePath, LogStatus.SAVED, filePath, System.currentTimeMillis() - start);
         document.setPostProcessed(true);
         ExceptionUtils.tryCatchLog(() -> db.updateDocument(document), (ex) -> logImportError("Couldn't save the document postprocessing flag", ex, filePath));
@@ -2123,12 +2367,10 @@ public class Importer {
     }
 
     /**
-     * Tries to store a import log; if fails, gives a warning but otherwise keeps running.
+     * Hands a import log to the background writer; if that fails later, it gives a warning but otherwise keeps running.
      */
     private void tryStoreUCEImportLog(ImportLog importLog) {
-        ExceptionUtils.tryCatchLog(
-                () -> db.saveOrUpdateImportLog(importLog),
-                (ex) -> logger.warn("Couldn't store a UCEImport log... operation continues.", ex));
+        importLogWriter.write(importLog);
     }
 
     /**
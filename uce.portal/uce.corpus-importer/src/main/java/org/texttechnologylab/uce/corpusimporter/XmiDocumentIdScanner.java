@@ -0,0 +1,49 @@
+package org.texttechnologylab.uce.corpusimporter;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import java.io.InputStream;
+
+/**
+ * Reads the documentId of the DocumentMetaData annotation from a XMI stream without building a CAS.
+ * The XMI is only streamed until that element, which usually sits right at the start of the file.
+ */
+public class XmiDocumentIdScanner {
+    private static final String METADATA_ELEMENT = "DocumentMetaData";
+    private static final String DOCUMENT_ID_ATTRIBUTE = "documentId";
+    // If the metadata isn't found within these many elements, we rather let the full import handle the file.
+    private static final int MAX_SCANNED_ELEMENTS = 10_000;
+
+    private static final XMLInputFactory factory = createFactory();
+
+    private static XMLInputFactory createFactory() {
+        var xmlInputFactory = XMLInputFactory.newFactory();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return xmlInputFactory;
+    }
+
+    /**
+     * Returns the documentId of the first DocumentMetaData element or null, if there is none within the head of the XMI.
+     */
+    public static String scanDocumentId(InputStream inputStream) throws XMLStreamException {
+        var reader = factory.createXMLStreamReader(inputStream);
+        try {
+            var scanned = 0;
+            while (reader.hasNext() && scanned < MAX_SCANNED_ELEMENTS) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) continue;
+                scanned++;
+                if (!METADATA_ELEMENT.equals(reader.getLocalName())) continue;
+
+                for (var i = 0; i < reader.getAttributeCount(); i++) {
+                    if (DOCUMENT_ID_ATTRIBUTE.equals(reader.getAttributeLocalName(i))) return reader.getAttributeValue(i);
+                }
+                return null;
+            }
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+}
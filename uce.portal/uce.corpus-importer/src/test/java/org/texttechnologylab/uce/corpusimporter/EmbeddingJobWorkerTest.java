@@ -0,0 +1,187 @@
+package org.texttechnologylab.uce.corpusimporter;
+
+import junit.framework.TestCase;
+import org.texttechnologylab.uce.common.models.corpus.Document;
+import org.texttechnologylab.uce.common.models.rag.DocumentChunkEmbedding;
+import org.texttechnologylab.uce.common.models.rag.DocumentEmbedding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the {@link EmbeddingJobWorker} against a queue in memory and a stub embedder.
+ */
+public class EmbeddingJobWorkerTest extends TestCase {
+
+    private static final long CORPUS_ID = 1;
+    private static final long OTHER_CORPUS_ID = 2;
+    private static final long POLL_INTERVAL_MS = 5;
+    private static final long TIMEOUT_MS = 10_000;
+
+    public void testEmbedsAllJobsInBatches() throws Exception {
+        var store = new MemoryJobStore();
+        for (var id = 1; id <= 10; id++) store.enqueue(id, CORPUS_ID, "Text of document " + id);
+        var requests = new AtomicInteger(0);
+        var worker = new EmbeddingJobWorker(store, texts -> {
+            requests.incrementAndGet();
+            assertTrue(texts.size() <= 8);
+            return embed(texts);
+        }, CORPUS_ID, 2, 8, POLL_INTERVAL_MS);
+
+        worker.start();
+        assertTrue(worker.awaitDrained(TIMEOUT_MS));
+        worker.stop();
+
+        assertEquals(10, store.documentEmbeddings.size());
+        for (var id = 1L; id <= 10; id++) {
+            assertEquals(1, store.chunkEmbeddings.get(id).size());
+            assertEquals(id, store.chunkEmbeddings.get(id).getFirst().getDocument_id());
+            // Each document's own full text is embedded as its document embedding.
+            assertEquals((float) ("Text of document " + id).length(), store.documentEmbeddings.get(id).getEmbedding()[0]);
+        }
+        // A claim is two documents of a chunk and a full text each, so each claim is sent with one request.
+        assertEquals(5, requests.get());
+    }
+
+    public void testFailedJobsEndAfterTheirAttempts() throws Exception {
+        var store = new MemoryJobStore();
+        store.enqueue(1, CORPUS_ID, "Text");
+        var worker = new EmbeddingJobWorker(store, texts -> {
+            throw new IllegalStateException("The webserver is down.");
+        }, CORPUS_ID, 1, 4, POLL_INTERVAL_MS);
+
+        worker.start();
+        // A job that failed for good isn't open anymore, so the wait doesn't hang on it.
+        assertTrue(worker.awaitDrained(TIMEOUT_MS));
+        worker.stop();
+
+        assertEquals("failed", store.status.get(1L));
+        assertEquals(3, (int) store.attempts.get(1L));
+        assertTrue(store.documentEmbeddings.isEmpty());
+    }
+
+    public void testOnlyTheJobsOfTheCorpusAreAwaited() throws Exception {
+        var store = new MemoryJobStore();
+        store.enqueue(1, OTHER_CORPUS_ID, "Text of another import");
+        // Without running workers, the job of the other corpus stays open.
+        var worker = new EmbeddingJobWorker(store, EmbeddingJobWorkerTest::embed, CORPUS_ID, 1, 4, POLL_INTERVAL_MS);
+        assertTrue(worker.awaitDrained(0));
+        assertEquals("pending", store.status.get(1L));
+    }
+
+    public void testStaleClaimsAreResetWhileWaiting() throws Exception {
+        var store = new MemoryJobStore();
+        var worker = new EmbeddingJobWorker(store, EmbeddingJobWorkerTest::embed, CORPUS_ID, 1, 4, POLL_INTERVAL_MS);
+        worker.start();
+        // Another importer claimed the job and crashed after the workers reset the stale jobs on their start.
+        store.claimedByACrashedImporter(1, CORPUS_ID, "Text");
+
+        assertTrue(worker.awaitDrained(TIMEOUT_MS));
+        worker.stop();
+        assertEquals(1, store.documentEmbeddings.size());
+    }
+
+    public void testTheWaitTimesOut() throws Exception {
+        var store = new MemoryJobStore();
+        store.enqueue(1, CORPUS_ID, "Text");
+        var worker = new EmbeddingJobWorker(store, EmbeddingJobWorkerTest::embed, CORPUS_ID, 1, 4, POLL_INTERVAL_MS);
+
+        var start = System.currentTimeMillis();
+        assertFalse(worker.awaitDrained(50));
+        assertTrue(System.currentTimeMillis() - start < TIMEOUT_MS);
+        // The job stays in the queue for the next import.
+        assertEquals("pending", store.status.get(1L));
+    }
+
+    private static List<float[]> embed(List<String> texts) {
+        var embeddings = new ArrayList<float[]>();
+        for (var text : texts) embeddings.add(new float[]{text.length()});
+        return embeddings;
+    }
+
+    /**
+     * The embedding job queue of the database, claims that crashed become stale at the next reset.
+     */
+    private static class MemoryJobStore implements EmbeddingJobWorker.JobStore {
+        private final Map<Long, Long> corpusIds = new HashMap<>();
+        private final Map<Long, String> texts = new HashMap<>();
+        private final Map<Long, String> status = new HashMap<>();
+        private final Map<Long, Integer> attempts = new HashMap<>();
+        private final List<Long> crashedClaims = new ArrayList<>();
+        private final Map<Long, List<DocumentChunkEmbedding>> chunkEmbeddings = new HashMap<>();
+        private final Map<Long, DocumentEmbedding> documentEmbeddings = new HashMap<>();
+
+        synchronized void enqueue(long documentId, long corpusId, String text) {
+            corpusIds.put(documentId, corpusId);
+            texts.put(documentId, text);
+            status.put(documentId, "pending");
+            attempts.put(documentId, 0);
+        }
+
+        synchronized void claimedByACrashedImporter(long documentId, long corpusId, String text) {
+            enqueue(documentId, corpusId, text);
+            status.put(documentId, "running");
+            crashedClaims.add(documentId);
+        }
+
+        @Override
+        public synchronized List<Long> claimJobs(int limit) {
+            var documentIds = new ArrayList<Long>();
+            for (var entry : status.entrySet()) {
+                if (documentIds.size() == limit) break;
+                if (entry.getValue().equals("pending")) documentIds.add(entry.getKey());
+            }
+            for (var documentId : documentIds) status.put(documentId, "running");
+            return documentIds;
+        }
+
+        @Override
+        public synchronized void finishJob(long documentId) {
+            status.remove(documentId);
+        }
+
+        @Override
+        public synchronized void failJob(long documentId, String error, int maxAttempts) {
+            var attempt = attempts.merge(documentId, 1, Integer::sum);
+            status.put(documentId, attempt >= maxAttempts ? "failed" : "pending");
+        }
+
+        @Override
+        public synchronized void resetStaleJobs(int minutes) {
+            for (var documentId : crashedClaims) status.put(documentId, "pending");
+            crashedClaims.clear();
+        }
+
+        @Override
+        public synchronized int countOpenJobs(long corpusId) {
+            var open = 0;
+            for (var entry : status.entrySet()) {
+                if (corpusIds.get(entry.getKey()) == corpusId && !entry.getValue().equals("failed")) open++;
+            }
+            return open;
+        }
+
+        @Override
+        public synchronized Map<Long, Document> getDocumentTexts(List<Long> documentIds) {
+            var documents = new HashMap<Long, Document>();
+            for (var documentId : documentIds) {
+                var document = new Document();
+                document.setId(documentId);
+                document.setDocumentTitle("");
+                document.setFullText(texts.get(documentId));
+                documents.put(documentId, document);
+            }
+            return documents;
+        }
+
+        @Override
+        public synchronized void saveEmbeddings(long documentId, List<DocumentChunkEmbedding> chunkEmbeddings,
+                                                DocumentEmbedding documentEmbedding) {
+            this.chunkEmbeddings.put(documentId, chunkEmbeddings);
+            this.documentEmbeddings.put(documentId, documentEmbedding);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.texttechnologylab.uce.corpusimporter;
+
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Checks that exactly one importer of a run postprocesses the corpus, also when the run resumes an earlier one.
+ */
+public class FinishedImportersTest extends TestCase {
+
+    private static final String IMPORT_ID = "import";
+    private static final String BASE_PATH = "/corpus";
+
+    public void testTheLastImporterPostprocesses() throws Exception {
+        var store = new MemoryStore();
+        var importers = importers(store, 3);
+        for (var importer : importers) importer.started();
+
+        assertFalse(finish(importers[1]));
+        assertFalse(finish(importers[0]));
+        assertTrue(finish(importers[2]));
+    }
+
+    public void testResumeAfterAPartialRun() throws Exception {
+        var store = new MemoryStore();
+        var firstRun = importers(store, 3);
+        for (var importer : firstRun) importer.started();
+        // The main importer crashes, the others finish their partitions.
+        assertFalse(finish(firstRun[1]));
+        assertFalse(finish(firstRun[2]));
+
+        // All importers resume. Their finishes of the first run don't count, so the main importer finishing first
+        // doesn't postprocess while the others still import.
+        var resumed = importers(store, 3);
+        for (var importer : resumed) importer.started();
+        assertFalse(finish(resumed[0]));
+        assertFalse(finish(resumed[2]));
+        assertTrue(finish(resumed[1]));
+    }
+
+    public void testResumeOfTheUnfinishedImporterOnly() throws Exception {
+        var store = new MemoryStore();
+        var firstRun = importers(store, 3);
+        for (var importer : firstRun) importer.started();
+        assertFalse(finish(firstRun[1]));
+        assertFalse(finish(firstRun[2]));
+
+        // Only the importer that didn't finish runs again, the others are done already.
+        var resumed = importers(store, 3)[0];
+        resumed.started();
+        assertTrue(finish(resumed));
+    }
+
+    public void testAnImporterFinishingTwiceIsCountedOnce() throws Exception {
+        var store = new MemoryStore();
+        var importers = importers(store, 2);
+        for (var importer : importers) importer.started();
+
+        assertFalse(finish(importers[0]));
+        assertFalse(finish(importers[0]));
+        assertTrue(finish(importers[1]));
+        // The corpus is postprocessed only once.
+        assertFalse(finish(importers[1]));
+        assertFalse(finish(importers[0]));
+    }
+
+    public void testASingleImporter() throws Exception {
+        var importer = importers(new MemoryStore(), 1)[0];
+        importer.started();
+        assertTrue(finish(importer));
+
+        // Resuming it postprocesses the corpus again, as the run may have imported more files.
+        importer.started();
+        assertTrue(finish(importer));
+    }
+
+    private static boolean finish(FinishedImporters importer) throws Exception {
+        return importer.isLast(importer.finished());
+    }
+
+    private static FinishedImporters[] importers(MemoryStore store, int importerCount) {
+        var importers = new FinishedImporters[importerCount];
+        for (var i = 0; i < importerCount; i++) {
+            importers[i] = new FinishedImporters(store, IMPORT_ID, BASE_PATH, i + 1, importerCount);
+        }
+        return importers;
+    }
+
+    /**
+     * Like the uceimportfinishedimporter table: one row per importer number.
+     */
+    private static class MemoryStore implements FinishedImporters.Store {
+        private final Set<String> finished = new HashSet<>();
+
+        @Override
+        public synchronized void removeFinishedImporter(String importId, String basePath, int importerNumber) {
+            finished.remove(importId + basePath + "#" + importerNumber);
+        }
+
+        @Override
+        public synchronized int addFinishedImporter(String importId, String basePath, int importerNumber) {
+            if (!finished.add(importId + basePath + "#" + importerNumber)) return -1;
+            return (int) finished.stream().filter(key -> key.startsWith(importId + basePath + "#")).count();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.texttechnologylab.uce.corpusimporter;
+
+import org.texttechnologylab.uce.common.models.UIMAAnnotation;
+import org.texttechnologylab.uce.common.models.corpus.Lemma;
+import org.texttechnologylab.uce.common.models.corpus.Page;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the binary search page assignment of {@link Importer#assignPages} with the filter over every page that it
+ * replaced, on a synthetic document. The annotations are spread evenly over the pages, some outside of all of them.
+ * <p>
+ * Usage: {@code PageAssignmentBenchmark [pages=500] [annotationsPerPage=400] [runs=10]}
+ */
+public class PageAssignmentBenchmark {
+
+    private static final int WARMUP_RUNS = 2;
+    private static final int PAGE_LENGTH = 3000;
+
+    public static void main(String[] args) throws Exception {
+        var pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        var annotationsPerPage = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        var runs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        var random = new Random(42);
+        var pages = new ArrayList<Page>(pageCount);
+        for (var i = 0; i < pageCount; i++) pages.add(new Page(i * PAGE_LENGTH, (i + 1) * PAGE_LENGTH, i + 1, String.valueOf(i + 1)));
+        var annotations = new ArrayList<Lemma>(pageCount * annotationsPerPage);
+        for (var i = 0; i < pageCount * annotationsPerPage; i++) {
+            // A few of them reach over the end of the text, like those with an offset error.
+            var begin = random.nextInt(pageCount * PAGE_LENGTH + 100);
+            annotations.add(new Lemma(begin, begin + 1 + random.nextInt(20)));
+        }
+
+        System.out.printf("%d pages, %d annotations%n", pageCount, annotations.size());
+        System.out.printf("%-16s %10s %10s %10s%n", "assignment", "p50 ms", "p95 ms", "mean ms");
+        report("binary search", runs, () -> {
+            clearPages(annotations);
+            Importer.assignPages(pages, List.of(annotations));
+        });
+        report("filter per page", runs, () -> {
+            clearPages(annotations);
+            assignPagesLikeBefore(pages, annotations);
+        });
+    }
+
+    private static void clearPages(List<? extends UIMAAnnotation> annotations) {
+        for (var annotation : annotations) annotation.setPage(null);
+    }
+
+    /**
+     * The former assignment: every page takes all annotations within it in the order the pages were built, and
+     * what is left without a page goes to the last one.
+     */
+    private static void assignPagesLikeBefore(List<Page> pages, List<? extends UIMAAnnotation> annotations) {
+        for (var page : pages) {
+            for (var anno : annotations.stream().filter(t -> t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()).toList()) {
+                anno.setPage(page);
+            }
+        }
+        var lastPage = pages.getLast();
+        for (var anno : annotations.stream().filter(t -> t.getPage() == null).toList()) {
+            anno.setPage(lastPage);
+        }
+    }
+
+    private static void report(String assignment, int runs, Run run) throws Exception {
+        for (var i = 0; i < WARMUP_RUNS; i++) run.run();
+        var timings = new long[runs];
+        for (var i = 0; i < runs; i++) {
+            var start = System.nanoTime();
+            run.run();
+            timings[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(timings);
+        var mean = Arrays.stream(timings).average().orElse(0);
+        System.out.printf("%-16s %10.2f %10.2f %10.2f%n", assignment,
+                timings[runs / 2] / 1e6, timings[Math.min(runs - 1, (int) Math.ceil(runs * 0.95) - 1)] / 1e6, mean / 1e6);
+    }
+
+    @FunctionalInterface
+    private interface Run {
+        void run() throws Exception;
+    }
+}
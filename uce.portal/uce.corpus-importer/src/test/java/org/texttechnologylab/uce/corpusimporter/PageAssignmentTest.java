@@ -0,0 +1,129 @@
+package org.texttechnologylab.uce.corpusimporter;
+
+import junit.framework.TestCase;
+import org.texttechnologylab.uce.common.models.UIMAAnnotation;
+import org.texttechnologylab.uce.common.models.corpus.Lemma;
+import org.texttechnologylab.uce.common.models.corpus.Page;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the binary search page assignment of {@link Importer#assignPages} against the filter over every page that
+ * it replaced.
+ */
+public class PageAssignmentTest extends TestCase {
+
+    public void testAnnotationWithinAPage() {
+        var pages = pages(0, 100, 200, 250);
+        var annotation = new Lemma(120, 130);
+        Importer.assignPages(pages, List.of(List.of(annotation)));
+        assertSame(pages.get(1), annotation.getPage());
+    }
+
+    public void testBoundaryOffsets() {
+        var pages = pages(0, 100, 200, 250);
+        var annotations = List.of(
+                new Lemma(0, 0),
+                new Lemma(0, 100),
+                new Lemma(100, 100),
+                new Lemma(100, 200),
+                new Lemma(199, 200),
+                new Lemma(200, 250),
+                new Lemma(250, 250));
+        assertSameAssignment(pages, annotations);
+        // An annotation ending where the next page begins belongs to the page it starts on.
+        assertSame(pages.get(0), annotations.get(1).getPage());
+        // An empty annotation on the border is contained by both pages, the later one wins.
+        assertSame(pages.get(1), annotations.get(2).getPage());
+    }
+
+    public void testAnnotationsOutsideOfEveryPageGoToTheLastPage() {
+        var pages = pages(10, 100, 200);
+        var annotations = List.of(
+                new Lemma(0, 5),
+                new Lemma(5, 20),
+                new Lemma(95, 105),
+                new Lemma(190, 210),
+                new Lemma(300, 310),
+                new Lemma(-5, -1));
+        assertSameAssignment(pages, annotations);
+        for (var annotation : annotations) assertSame(pages.getLast(), annotation.getPage());
+    }
+
+    public void testEmptyPagesWithEqualBegins() {
+        var pages = new ArrayList<Page>();
+        pages.add(new Page(0, 100, 1, "1"));
+        pages.add(new Page(100, 100, 2, "2"));
+        pages.add(new Page(100, 100, 3, "3"));
+        pages.add(new Page(100, 200, 4, "4"));
+        assertSameAssignment(pages, List.of(
+                new Lemma(100, 100),
+                new Lemma(100, 150),
+                new Lemma(50, 100)));
+    }
+
+    public void testRandomDocuments() {
+        var random = new Random(42);
+        for (var run = 0; run < 200; run++) {
+            var pages = new ArrayList<Page>();
+            var begin = random.nextInt(3) == 0 ? random.nextInt(50) : 0;
+            var pageCount = 1 + random.nextInt(30);
+            for (var p = 0; p < pageCount; p++) {
+                // Some pages are empty, like the synthetic pages of an empty text.
+                var end = begin + (random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(500));
+                pages.add(new Page(begin, end, p + 1, String.valueOf(p + 1)));
+                begin = end;
+            }
+
+            var annotations = new ArrayList<Lemma>();
+            for (var a = 0; a < 300; a++) {
+                // Including offsets before the first and after the last page.
+                var annotationBegin = random.nextInt(begin + 100) - 50;
+                annotations.add(new Lemma(annotationBegin, annotationBegin + random.nextInt(40)));
+            }
+            assertSameAssignment(pages, annotations);
+        }
+    }
+
+    /**
+     * Pages that follow each other, each from one of the given offsets to the next.
+     */
+    private static List<Page> pages(int... offsets) {
+        var pages = new ArrayList<Page>();
+        for (var i = 0; i + 1 < offsets.length; i++) {
+            pages.add(new Page(offsets[i], offsets[i + 1], i + 1, String.valueOf(i + 1)));
+        }
+        return pages;
+    }
+
+    private static void assertSameAssignment(List<Page> pages, List<? extends UIMAAnnotation> annotations) {
+        assignPagesLikeBefore(pages, annotations);
+        var expected = annotations.stream().map(UIMAAnnotation::getPage).toList();
+        annotations.forEach(annotation -> annotation.setPage(null));
+
+        Importer.assignPages(pages, List.of(annotations));
+        for (var i = 0; i < annotations.size(); i++) {
+            var annotation = annotations.get(i);
+            assertSame("Annotation [" + annotation.getBegin() + ", " + annotation.getEnd() + "]",
+                    expected.get(i), annotation.getPage());
+        }
+    }
+
+    /**
+     * The former assignment: every page takes all annotations within it in the order the pages were built, and
+     * what is left without a page goes to the last one.
+     */
+    private static void assignPagesLikeBefore(List<Page> pages, List<? extends UIMAAnnotation> annotations) {
+        for (var page : pages) {
+            for (var anno : annotations.stream().filter(t -> t.getBegin() >= page.getBegin() && t.getEnd() <= page.getEnd()).toList()) {
+                anno.setPage(page);
+            }
+        }
+        var lastPage = pages.getLast();
+        for (var anno : annotations.stream().filter(t -> t.getPage() == null).toList()) {
+            anno.setPage(lastPage);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.texttechnologylab.uce.search;
+
+import org.texttechnologylab.uce.common.models.search.SearchLayer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Merges the rankings of several search layers into a single ranking of documents, e.g. for the hybrid search of
+ * the fulltext and the embeddings.
+ */
+public class RankFusion {
+
+    public enum Method {
+        /**
+         * Reciprocal rank fusion: every layer adds weight / (k + position) of a document. Only the positions are
+         * compared, so the layers don't need comparable scores.
+         */
+        RRF,
+        /**
+         * Every layer adds its weighted score of a document, normalized to [0, 1] within that layer. Layers without
+         * scores are scored by position.
+         */
+        WEIGHTED,
+        /**
+         * No fusion, the layers are shown separately.
+         */
+        NONE;
+
+        public static Method parse(String value) {
+            if (value == null || value.isBlank()) return NONE;
+            return Method.valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    /**
+     * The hits of a single layer in their order. The scores may be null if the layer only returns an order.
+     */
+    public record LayerRanking(SearchLayer layer, List<Integer> documentIds, List<Float> scores, double weight) {
+    }
+
+    public record Hit(int documentId, float score) {
+    }
+
+    /**
+     * @return The hits of all layers with their fused score, the best first. Ties keep the order in which the
+     * documents were first found.
+     */
+    public static List<Hit> fuse(Method method, int rrfK, List<LayerRanking> rankings) {
+        var scores = new LinkedHashMap<Integer, Double>();
+        for (var ranking : rankings) {
+            var ids = ranking.documentIds();
+            var normalized = method == Method.WEIGHTED ? normalizedScores(ranking) : null;
+            for (var position = 0; position < ids.size(); position++) {
+                var score = method == Method.WEIGHTED
+                        ? ranking.weight() * normalized[position]
+                        : ranking.weight() / (rrfK + position + 1);
+                scores.merge(ids.get(position), score, Double::sum);
+            }
+        }
+
+        var hits = new ArrayList<Hit>(scores.size());
+        scores.forEach((id, score) -> hits.add(new Hit(id, score.floatValue())));
+        // The sort is stable, which keeps the ties in order.
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+        return hits;
+    }
+
+    private static double[] normalizedScores(LayerRanking ranking) {
+        var size = ranking.documentIds().size();
+        var normalized = new double[size];
+        if (ranking.scores() == null || ranking.scores().size() != size) {
+            for (var i = 0; i < size; i++) normalized[i] = 1.0 - (double) i / size;
+            return normalized;
+        }
+
+        var min = Double.MAX_VALUE;
+        var max = -Double.MAX_VALUE;
+        for (var score : ranking.scores()) {
+            min = Math.min(min, score);
+            max = Math.max(max, score);
+        }
+        for (var i = 0; i < size; i++)
+            normalized[i] = max > min ? (ranking.scores().get(i) - min) / (max - min) : 1.0;
+        return normalized;
+    }
+}
@@ -3,7 +3,6 @@ package org.texttechnologylab.uce.search;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.context.ApplicationContext;
-import org.texttechnologylab.uce.common.config.CorpusConfig;
 import org.texttechnologylab.uce.common.exceptions.ExceptionUtils;
 import org.texttechnologylab.uce.common.models.dto.UCEMetadataFilterDto;
 import org.texttechnologylab.uce.common.models.search.DocumentSearchResult;
@@ -44,7 +43,7 @@ public class SearchCompleteNegation implements Search {
         this.db = serviceContext.getBean(PostgresqlDataInterface_Impl.class);
         this.searchState.setCorpusId(corpusId);
         this.searchState.setCorpusConfig(ExceptionUtils.tryCatchLog(
-                () -> CorpusConfig.fromJson(db.getCorpusById(corpusId).getCorpusJsonConfig()),
+                () -> db.getCorpusConfigById(corpusId),
                 (ex) -> logger.error("Error fetching the corpus and corpus config of corpus: " + corpusId, ex)));
     }
 
@@ -63,7 +63,7 @@ public class SearchState extends CacheItem {
     /**
      * These are the current, paginated list of documents
      */
-    private List<Document> currentDocuments;
+    private List<? extends SearchResultDocument> currentDocuments;
     /**
      * This is currently not used.
      */
@@ -71,6 +71,17 @@ public class SearchState extends CacheItem {
     private HashMap<Integer, ArrayList<PageSnippet>> documentIdxToSnippet;
     private HashMap<Long, ArrayList<PageSnippet>> documentIdToSnippet;
     private HashMap<Integer, Float> documentIdxToRank;
+    /**
+     * The ids and ranks of all hits in the order of the search. The following pages are served from these instead of
+     * executing the search again. They are dropped when the order changes.
+     */
+    private int[] rankedDocumentIds;
+    private float[] rankedDocumentRanks;
+    /**
+     * Whether the ranking is the fusion of the fulltext and the embeddings layer. The hits are only fused when they
+     * are ordered by their rank, in any other order they are those of the fulltext.
+     */
+    private boolean rankFused;
 
     public SearchState(SearchType searchType) {
         this.searchType = searchType;
@@ -144,6 +155,13 @@ public class SearchState extends CacheItem {
         return searchQuery;
     }
 
+    /**
+     * The query the fulltext search runs with: the enriched search query if there is one, the raw one otherwise.
+     */
+    public String getFulltextSearchQuery() {
+        return enrichedSearchQuery == null ? searchQuery : enrichedSearchQuery;
+    }
+
     public float getPossibleRankOfDocumentIdx(Integer idx) {
         if (this.documentIdxToRank != null && this.documentIdxToRank.containsKey(idx))
             return this.documentIdxToRank.get(idx);
@@ -192,8 +210,10 @@ public class SearchState extends CacheItem {
                 var currentDoc = this.currentDocuments.get(i);
                 var pageSnippets = this.getPossibleSnippetsOfDocumentIdx(i);
                 if(pageSnippets == null) continue;
+                // Summaries come without their pages, the search loads the pages of their snippets itself.
+                if(!(currentDoc instanceof Document document)) continue;
                 for(var page:pageSnippets){
-                    var potentialPage = currentDoc.getPages().stream().filter(p -> p.getId() == page.getPageId()).findFirst();
+                    var potentialPage = document.getPages().stream().filter(p -> p.getId() == page.getPageId()).findFirst();
                     potentialPage.ifPresent(page::setPage);
                 }
             }
@@ -210,8 +230,10 @@ public class SearchState extends CacheItem {
                 var currentDoc = this.currentDocuments.get(i);
                 var pageSnippets = this.getPossibleSnippetsOfDocumentIdx(i);
                 if(pageSnippets == null) continue;
+                // Summaries come without their pages, the search loads the pages of their snippets itself.
+                if(!(currentDoc instanceof Document document)) continue;
                 for(var page:pageSnippets){
-                    var potentialPage = currentDoc.getPages().stream().filter(p -> p.getId() == page.getPageId()).findFirst();
+                    var potentialPage = document.getPages().stream().filter(p -> p.getId() == page.getPageId()).findFirst();
                     potentialPage.ifPresent(page::setPage);
                 }
             }
@@ -283,6 +305,7 @@ public class SearchState extends CacheItem {
     }
 
     public void setOrder(SearchOrder order) {
+        if (this.order != order) clearRankedDocuments();
         this.order = order;
     }
 
@@ -291,9 +314,78 @@ public class SearchState extends CacheItem {
     }
 
     public void setOrderBy(OrderByColumn orderBy) {
+        if (this.orderBy != orderBy) clearRankedDocuments();
         this.orderBy = orderBy;
     }
 
+    public boolean isRankFused() {
+        return rankFused;
+    }
+
+    public void setRankFused(boolean rankFused) {
+        this.rankFused = rankFused;
+    }
+
+    public boolean hasRankedDocuments() {
+        return rankedDocumentIds != null;
+    }
+
+    /**
+     * Whether the current page can be served from the ranking. The ranking of a search may only reach some depth
+     * beyond the page it was made for; the pages behind it need to be searched again.
+     */
+    public boolean hasRankedDocumentsOfCurrentPage() {
+        if (rankedDocumentIds == null) return false;
+        if (totalHits != null && rankedDocumentIds.length >= totalHits) return true;
+        return (long) currentPage * take <= rankedDocumentIds.length;
+    }
+
+    public int getRankedDocumentCount() {
+        return rankedDocumentIds == null ? 0 : rankedDocumentIds.length;
+    }
+
+    /**
+     * Stores the ranking of the hits of the search. Nothing is stored if the search layer didn't return one.
+     */
+    public void setRankedDocuments(List<Integer> documentIds, List<Float> ranks) {
+        if (documentIds == null || ranks == null || documentIds.size() != ranks.size()) {
+            clearRankedDocuments();
+            return;
+        }
+        this.rankedDocumentIds = documentIds.stream().mapToInt(Integer::intValue).toArray();
+        this.rankedDocumentRanks = new float[ranks.size()];
+        for (var i = 0; i < ranks.size(); i++) this.rankedDocumentRanks[i] = ranks.get(i);
+    }
+
+    public void clearRankedDocuments() {
+        this.rankedDocumentIds = null;
+        this.rankedDocumentRanks = null;
+    }
+
+    /**
+     * The ids of the hits on the current page, taken from the ranking of the search.
+     */
+    public List<Integer> getRankedDocumentIdsOfCurrentPage() {
+        var ids = new ArrayList<Integer>();
+        if (rankedDocumentIds == null) return ids;
+        var from = Math.min((currentPage - 1) * take, rankedDocumentIds.length);
+        var to = Math.min(from + take, rankedDocumentIds.length);
+        for (var i = from; i < to; i++) ids.add(rankedDocumentIds[i]);
+        return ids;
+    }
+
+    /**
+     * The ranks of the hits on the current page, keyed by their index within the page.
+     */
+    public HashMap<Integer, Float> getRankedDocumentRanksOfCurrentPage() {
+        var ranks = new HashMap<Integer, Float>();
+        if (rankedDocumentRanks == null) return ranks;
+        var from = Math.min((currentPage - 1) * take, rankedDocumentRanks.length);
+        var to = Math.min(from + take, rankedDocumentRanks.length);
+        for (var i = from; i < to; i++) ranks.put(i - from, rankedDocumentRanks[i]);
+        return ranks;
+    }
+
     public Integer getTotalPages() {
         if (totalHits < take) return 1;
         return (int) Math.ceil((double) totalHits / take);
@@ -382,17 +474,21 @@ public class SearchState extends CacheItem {
         this.foundTaxons = new ArrayList<>(foundTaxons.stream().filter(e -> e.getCoveredText().length() > 2).sorted(Comparator.comparingInt(AnnotationSearchResult::getOccurrences).reversed()).toList());
     }
 
-    public void setCurrentDocuments(List<Document> currentDocuments) {
+    public void setCurrentDocuments(List<? extends SearchResultDocument> currentDocuments) {
         this.currentDocuments = currentDocuments;
 
         if (searchLayers != null && searchLayers.contains(SearchLayer.KEYWORDINCONTEXT)) {
-            // Whenever we set new current documents, recalculate the context state
+            // Whenever we set new current documents, recalculate the context state. It needs the full texts,
+            // hence the search loads full documents instead of summaries with this layer.
             if (keywordInContextState == null) keywordInContextState = new KeywordInContextState();
-            keywordInContextState.recalculate(this.currentDocuments, this.searchTokens);
+            keywordInContextState.recalculate(this.currentDocuments.stream()
+                    .filter(Document.class::isInstance)
+                    .map(Document.class::cast)
+                    .toList(), this.searchTokens);
         }
     }
 
-    public List<Document> getCurrentDocuments() {
+    public List<? extends SearchResultDocument> getCurrentDocuments() {
         return currentDocuments;
     }
 
@@ -503,7 +599,7 @@ public class SearchState extends CacheItem {
         Map<String, List<UCEMetadata>> visualizationData = this
                 .getCurrentDocuments()
                 .stream()
-                .map(Document::getUceMetadataWithoutJson)
+                .map(SearchResultDocument::getUceMetadataWithoutJson)
                 .flatMap(Collection::stream)
                 .filter(m -> m.getValueType() == UCEMetadataValueType.NUMBER || m.getValueType() == UCEMetadataValueType.DATE)
                 .collect(groupingBy(UCEMetadata::getKey));
@@ -4,9 +4,12 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.exception.SQLGrammarException;
 import org.springframework.context.ApplicationContext;
-import org.texttechnologylab.uce.common.config.CorpusConfig;
+import org.texttechnologylab.uce.common.config.CommonConfig;
+import org.texttechnologylab.uce.common.exceptions.DatabaseOperationException;
 import org.texttechnologylab.uce.common.exceptions.ExceptionUtils;
+import org.texttechnologylab.uce.common.models.corpus.Page;
 import org.texttechnologylab.uce.common.models.dto.UCEMetadataFilterDto;
+import org.texttechnologylab.uce.common.models.rag.DocumentChunkEmbedding;
 import org.texttechnologylab.uce.common.models.search.*;
 import org.texttechnologylab.uce.common.services.JenaSparqlService;
 import org.texttechnologylab.uce.common.services.PostgresqlDataInterface_Impl;
@@ -14,24 +17,49 @@ import org.texttechnologylab.uce.common.services.RAGService;
 import org.texttechnologylab.uce.common.utils.Pair;
 import org.texttechnologylab.uce.common.utils.StringUtils;
 import org.texttechnologylab.uce.common.utils.SystemStatus;
+import org.texttechnologylab.uce.search.backend.InvertedIndexSearchBackend;
+import org.texttechnologylab.uce.search.backend.PostgresSearchBackend;
+import org.texttechnologylab.uce.search.backend.SearchBackend;
+import org.texttechnologylab.uce.search.snippets.SnippetEngine;
 import org.texttechnologylab.uce.search.utils.Stopwords;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 /**
  * Class that encapsulates all search layers within the biofid class
  */
 public class Search_DefaultImpl implements Search {
     private static final Logger logger = LogManager.getLogger(Search_DefaultImpl.class);
+    /**
+     * The layers of a hybrid search run concurrently on these threads, each with its own connection. There are only
+     * so many of them and only so many layers wait for one; beyond that, the searching thread runs the layer itself.
+     */
+    private static ExecutorService layerExecutor;
+    private static final int EMBEDDING_RESULTS = 20;
+    private CommonConfig config;
     private SearchState searchState;
     private List<String> stopwords;
     private PostgresqlDataInterface_Impl db;
+    private SnippetEngine snippetEngine;
     private RAGService ragService;
     private JenaSparqlService jenaSparqlService;
     public static final String[] QUERY_OPERATORS = {"&", "|", "!", "<->", "(", ")"};
@@ -58,7 +86,7 @@ public class Search_DefaultImpl implements Search {
 
         this.searchState.setCorpusId(corpusId);
         this.searchState.setCorpusConfig(ExceptionUtils.tryCatchLog(
-                () -> CorpusConfig.fromJson(db.getCorpusById(corpusId).getCorpusJsonConfig()),
+                () -> db.getCorpusConfigById(corpusId),
                 (ex) -> logger.error("Error fetching the corpus and corpus config of corpus: " + corpusId, ex)));
 
         // First: enrich if wanted (and we can; we need the graph database for it)
@@ -118,12 +146,14 @@ public class Search_DefaultImpl implements Search {
      * @return
      */
     public SearchState initSearch() throws SQLGrammarException {
+        if (isHybridSearch()) return initHybridSearch();
+
         //var countAll = !this.searchState.getSearchQuery().isEmpty();
         DocumentSearchResult documentSearchResult = executeSearchOnDatabases(true);
         if (documentSearchResult == null)
             throw new NullPointerException("Document Init Search returned null - not empty.");
 
-        var documents = ExceptionUtils.tryCatchLog(() -> db.getManyDocumentsByIds(documentSearchResult.getDocumentIds()),
+        var documents = ExceptionUtils.tryCatchLog(() -> getResultDocuments(documentSearchResult.getDocumentIds()),
                 (ex) -> logger.error("Error getting many documents by a list of ids in the search init. " +
                         "Search can't be created hence.", ex));
 
@@ -131,7 +161,10 @@ public class Search_DefaultImpl implements Search {
         searchState.setCurrentDocuments(documents);
         searchState.setCurrentDocumentHits(documentSearchResult.getDocumentHits());
         searchState.setDocumentIdxToSnippets(documentSearchResult.getSearchSnippets());
+        setMissingSnippetPages();
         searchState.setDocumentIdxToRank(documentSearchResult.getSearchRanks());
+        searchState.setRankedDocuments(documentSearchResult.getRankedDocumentIds(), documentSearchResult.getRankedDocumentRanks());
+        searchState.setRankFused(false);
         searchState.setTotalHits(documentSearchResult.getDocumentCount());
         searchState.setFoundNamedEntities(documentSearchResult.getFoundNamedEntities());
         searchState.setFoundTaxons(documentSearchResult.getFoundTaxons());
@@ -143,49 +176,239 @@ public class Search_DefaultImpl implements Search {
             var closestDocumentsEmbeddings = ExceptionUtils.tryCatchLog(
                     () -> ragService.getClosestDocumentChunkEmbeddings(
                             this.searchState.getSearchQuery(),
-                            20,
+                            EMBEDDING_RESULTS,
                             this.searchState.getCorpusId()),
                     (ex) -> logger.error("Error getting the closest document chunk embeddings of the searchphrase: " + this.searchState.getSearchQuery(), ex));
 
             if (closestDocumentsEmbeddings == null) return searchState;
-            var foundDocumentChunkEmbeddings = new ArrayList<DocumentChunkEmbeddingSearchResult>();
-            for (var embedding : closestDocumentsEmbeddings) {
-                var document = ExceptionUtils.tryCatchLog(() -> db.getDocumentById(embedding.getDocument_id()),
-                        (ex) -> logger.error("Error fetching a document by its id for the search init with embeddings.", ex));
-                if (document == null) continue;
-                var documentChunkEmbedding = new DocumentChunkEmbeddingSearchResult();
-                documentChunkEmbedding.setDocument(document);
-                documentChunkEmbedding.setDocumentChunkEmbedding(embedding);
-
-                foundDocumentChunkEmbeddings.add(documentChunkEmbedding);
-            }
-            searchState.setFoundDocumentChunkEmbeddings(foundDocumentChunkEmbeddings);
+            setFoundDocumentChunkEmbeddings(closestDocumentsEmbeddings);
         }
 
         return searchState;
     }
 
+    private void setFoundDocumentChunkEmbeddings(List<DocumentChunkEmbedding> closestDocumentsEmbeddings) {
+        var foundDocumentChunkEmbeddings = new ArrayList<DocumentChunkEmbeddingSearchResult>();
+        for (var embedding : closestDocumentsEmbeddings) {
+            var document = ExceptionUtils.tryCatchLog(() -> db.getDocumentById(embedding.getDocument_id()),
+                    (ex) -> logger.error("Error fetching a document by its id for the search init with embeddings.", ex));
+            if (document == null) continue;
+            var documentChunkEmbedding = new DocumentChunkEmbeddingSearchResult();
+            documentChunkEmbedding.setDocument(document);
+            documentChunkEmbedding.setDocumentChunkEmbedding(embedding);
+
+            foundDocumentChunkEmbeddings.add(documentChunkEmbedding);
+        }
+        searchState.setFoundDocumentChunkEmbeddings(foundDocumentChunkEmbeddings);
+    }
+
+    /**
+     * With the fulltext and the embeddings selected, the search is hybrid: both layers run concurrently and their
+     * hits are merged into one ranking, unless the fusion is turned off in the config. The fusion works on the
+     * positions of the hits by their relevance, so the hits ordered by their title or date aren't fused; they are
+     * those of the fulltext, with the closest embeddings listed separately.
+     */
+    private boolean isHybridSearch() {
+        return searchState.getSearchLayers().contains(SearchLayer.FULLTEXT)
+               && searchState.getSearchLayers().contains(SearchLayer.EMBEDDINGS)
+               && searchState.getOrderBy() == OrderByColumn.RANK
+               && RankFusion.Method.parse(config.getSearchHybridFusion()) != RankFusion.Method.NONE;
+    }
+
+    private SearchState initHybridSearch() throws SQLGrammarException {
+        executeHybridSearch(true);
+        return getRankedSearchHitsForPage(searchState.getCurrentPage());
+    }
+
+    /**
+     * Runs the layers of the hybrid search concurrently and stores their fused ranking, from which the pages are
+     * served. A layer that fails or doesn't answer within the timeout is left out, so the others still make up a
+     * (partial) result. The hybrid ranking is ordered by the fused score only.
+     *
+     * @param countAll whether the hits are counted and the found annotations and the closest chunks of the embeddings
+     *                 are collected as well, which is only needed for the initial search
+     */
+    private void executeHybridSearch(boolean countAll) throws SQLGrammarException {
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getSearchHybridLayerTimeoutMs());
+        // The futures can't interrupt their layers, so the database cancels the queries of the layers at the timeout.
+        var timeoutMs = config.getSearchHybridLayerTimeoutMs();
+        var executor = getLayerExecutor(config);
+        var fulltextLayer = CompletableFuture.supplyAsync(() -> executeSearchOnDatabases(countAll, timeoutMs), executor);
+        var embeddingsLayer = CompletableFuture.supplyAsync(() -> {
+            try {
+                return ragService.getClosestDocumentChunkEmbeddings(
+                        searchState.getSearchQuery(),
+                        Math.max(config.getSearchHybridEmbeddingCandidates(), EMBEDDING_RESULTS),
+                        searchState.getCorpusId(),
+                        timeoutMs);
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        }, executor);
+
+        var documentSearchResult = awaitLayer(fulltextLayer, SearchLayer.FULLTEXT, deadline);
+        var chunkEmbeddings = awaitLayer(embeddingsLayer, SearchLayer.EMBEDDINGS, deadline);
+
+        var rankings = new ArrayList<RankFusion.LayerRanking>();
+        if (documentSearchResult != null && documentSearchResult.getRankedDocumentIds() != null) {
+            rankings.add(new RankFusion.LayerRanking(SearchLayer.FULLTEXT,
+                    documentSearchResult.getRankedDocumentIds(),
+                    documentSearchResult.getRankedDocumentRanks(),
+                    config.getSearchHybridWeight("fulltext")));
+            if (countAll) {
+                searchState.setFoundNamedEntities(documentSearchResult.getFoundNamedEntities());
+                searchState.setFoundTaxons(documentSearchResult.getFoundTaxons());
+                searchState.setFoundTimes(documentSearchResult.getFoundTimes());
+            }
+        }
+        if (chunkEmbeddings != null) {
+            // The chunks are ordered by their distance, a document ranks by its closest chunk.
+            rankings.add(new RankFusion.LayerRanking(SearchLayer.EMBEDDINGS,
+                    chunkEmbeddings.stream().map(e -> (int) e.getDocument_id()).distinct().toList(),
+                    null,
+                    config.getSearchHybridWeight("embeddings")));
+            if (countAll) setFoundDocumentChunkEmbeddings(chunkEmbeddings.stream().limit(EMBEDDING_RESULTS).toList());
+        }
+        if (rankings.isEmpty()) throw new NullPointerException("Hybrid Search returned null in all of its layers - not empty.");
+
+        var hits = new ArrayList<>(RankFusion.fuse(RankFusion.Method.parse(config.getSearchHybridFusion()), config.getSearchHybridRrfK(), rankings));
+        if (searchState.getOrder() == SearchOrder.ASC) Collections.reverse(hits);
+        searchState.setRankedDocuments(
+                hits.stream().map(RankFusion.Hit::documentId).toList(),
+                hits.stream().map(RankFusion.Hit::score).toList());
+        searchState.setRankFused(true);
+
+        if (countAll) {
+            // The fused ranking only reaches some depth, the hits are those the fulltext counted. Without the
+            // fulltext, or with more documents found by the embeddings only, the fused hits are all we know of.
+            var fulltextHits = documentSearchResult == null ? 0 : documentSearchResult.getDocumentCount();
+            searchState.setTotalHits(Math.max(fulltextHits, hits.size()));
+        }
+    }
+
+    private static synchronized ExecutorService getLayerExecutor(CommonConfig config) {
+        if (layerExecutor == null) {
+            var threads = config.getSearchHybridLayerThreads();
+            var executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(threads * 4),
+                    runnable -> {
+                        var thread = new Thread(runnable, "search-layer");
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            layerExecutor = executor;
+        }
+        return layerExecutor;
+    }
+
+    /**
+     * Waits for a layer of the hybrid search until the deadline.
+     *
+     * @return The result of the layer or null, if it failed or didn't answer in time.
+     */
+    private <T> T awaitLayer(Future<T> layer, SearchLayer searchLayer, long deadline) throws SQLGrammarException {
+        try {
+            return layer.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            // The layer keeps running until the database cancels its query, its result is just ignored.
+            layer.cancel(false);
+            logger.warn("The search layer " + searchLayer + " didn't answer in time, the hybrid search continues without it.");
+        } catch (ExecutionException ex) {
+            // We only want to rethrow grammar exceptions for the pro mode.
+            if (ex.getCause() instanceof SQLGrammarException grammarException) throw grammarException;
+            logger.error("Error executing the search layer " + searchLayer + ", the hybrid search continues without it.", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
     /**
      * Returns the next X documents from the paginated search. Determine the page offset in the variable.
      *
      * @return
      */
     public SearchState getSearchHitsForPage(int page) {
-        // Adjust the current page and execute the search again
         this.searchState.setCurrentPage(page);
+        if (searchState.hasRankedDocumentsOfCurrentPage()) return getRankedSearchHitsForPage(page);
+        if (isHybridSearch()) {
+            executeHybridSearch(false);
+            return getRankedSearchHitsForPage(page);
+        }
+
+        // Without a ranking of the page, e.g. after the order has changed or behind its depth, the search is executed
+        // again. It returns the ranking anew, so the following pages are served from it.
         var documentSearchResult = executeSearchOnDatabases(false);
         if (documentSearchResult == null) throw new NullPointerException("Document Search returned null - not empty.");
-        var documents = ExceptionUtils.tryCatchLog(() -> db.getManyDocumentsByIds(documentSearchResult.getDocumentIds()),
+        var documents = ExceptionUtils.tryCatchLog(() -> getResultDocuments(documentSearchResult.getDocumentIds()),
                 (ex) -> logger.error("Error getting many documents by a list of ids while getting hits for page " + page +
                         " hence returning the last state.", ex));
         if (documents == null) return searchState;
         searchState.setCurrentDocuments(documents);
         searchState.setCurrentDocumentHits(documentSearchResult.getDocumentHits());
         searchState.setDocumentIdxToSnippets(documentSearchResult.getSearchSnippets());
+        setMissingSnippetPages();
         searchState.setDocumentIdxToRank(documentSearchResult.getSearchRanks());
+        searchState.setRankedDocuments(documentSearchResult.getRankedDocumentIds(), documentSearchResult.getRankedDocumentRanks());
+        searchState.setRankFused(false);
         return searchState;
     }
 
+    /**
+     * Serves a page from the ranking of the search, so only the documents and the snippets of that page are fetched.
+     */
+    private SearchState getRankedSearchHitsForPage(int page) {
+        var documentIds = searchState.getRankedDocumentIdsOfCurrentPage();
+        var documents = ExceptionUtils.tryCatchLog(() -> getResultDocuments(documentIds),
+                (ex) -> logger.error("Error getting many documents by a list of ids while getting hits for page " + page +
+                        " hence returning the last state.", ex));
+        if (documents == null) return searchState;
+
+        var snippets = ExceptionUtils.tryCatchLog(
+                () -> snippetEngine.getSnippetsOfDocuments(documentIds,
+                        searchState.getFulltextSearchQuery(),
+                        searchState.isProModeActivated()),
+                (ex) -> logger.error("Error getting the search snippets of the documents on page " + page + ".", ex));
+
+        searchState.setCurrentDocuments(documents);
+        searchState.setCurrentDocumentHits(null);
+        searchState.setDocumentIdxToSnippets(snippets == null ? new HashMap<>() : snippets);
+        setMissingSnippetPages();
+        searchState.setDocumentIdxToRank(searchState.getRankedDocumentRanksOfCurrentPage());
+        return searchState;
+    }
+
+    /**
+     * The documents of a result page. Usually their summaries suffice, only the keyword in context view needs
+     * the full texts and hence the full documents.
+     */
+    private List<? extends SearchResultDocument> getResultDocuments(List<Integer> documentIds) throws DatabaseOperationException {
+        if (searchState.getSearchLayers().contains(SearchLayer.KEYWORDINCONTEXT)) return db.getManyDocumentsByIds(documentIds);
+        return db.getManyDocumentSummariesByIds(documentIds);
+    }
+
+    /**
+     * Summaries don't carry their pages, so we load the pages of the found snippets with a single query.
+     */
+    private void setMissingSnippetPages() {
+        var missing = new ArrayList<PageSnippet>();
+        for (var i = 0; i < searchState.getCurrentDocuments().size(); i++) {
+            var snippets = searchState.getPossibleSnippetsOfDocumentIdx(i);
+            if (snippets == null) continue;
+            snippets.stream().filter(snippet -> snippet.getPage() == null).forEach(missing::add);
+        }
+        if (missing.isEmpty()) return;
+
+        var pages = ExceptionUtils.tryCatchLog(
+                () -> db.getManyPagesByIds(missing.stream().map(snippet -> (long) snippet.getPageId()).collect(Collectors.toSet())),
+                (ex) -> logger.error("Error getting the pages of the search snippets.", ex));
+        if (pages == null) return;
+        var pagesById = pages.stream().collect(Collectors.toMap(Page::getId, p -> p));
+        for (var snippet : missing) snippet.setPage(pagesById.get((long) snippet.getPageId()));
+    }
+
     /**
      * Executes a search request on the databases and returns a result object
      *
@@ -193,21 +416,16 @@ public class Search_DefaultImpl implements Search {
      * @return
      */
     private DocumentSearchResult executeSearchOnDatabases(boolean countAll) throws SQLGrammarException {
+        return executeSearchOnDatabases(countAll, 0);
+    }
+
+    /**
+     * @param timeoutMs after which the database cancels the fulltext search, 0 for none
+     */
+    private DocumentSearchResult executeSearchOnDatabases(boolean countAll, long timeoutMs) throws SQLGrammarException {
         if (searchState.getSearchLayers().contains(SearchLayer.FULLTEXT)) {
             try {
-                return db.defaultSearchForDocuments((searchState.getCurrentPage() - 1) * searchState.getTake(),
-                        searchState.getTake(),
-                        searchState.getEnrichedSearchQuery() == null ? searchState.getSearchQuery() : searchState.getEnrichedSearchQuery(),
-                        searchState.getSearchTokens(),
-                        SearchLayer.FULLTEXT,
-                        countAll,
-                        searchState.getOrder(),
-                        searchState.getOrderBy(),
-                        searchState.getCorpusId(),
-                        searchState.getUceMetadataFilters(),
-                        searchState.isProModeActivated(),
-                        searchState.getDbSchema(),
-                        searchState.getSourceTable());
+                return getFulltextBackend().searchForDocuments(searchState, countAll, timeoutMs);
             } catch (Exception ex) {
                 logger.error("Error executing a search on the database with search layer FULLTEXT. Search can't be executed.", ex);
                 // We only want to rethrow grammar exceptions for the pro mode.
@@ -237,6 +455,22 @@ public class Search_DefaultImpl implements Search {
         return null;
     }
 
+    /**
+     * The backend of the fulltext layer. The inverted index only knows the texts of the documents, so searches with
+     * metadata filters and corpora that weren't indexed run on postgres.
+     */
+    private SearchBackend getFulltextBackend() throws IOException {
+        // The search menu sends the filters of a corpus even if they are left empty.
+        var isFiltered = searchState.hasUceMetadataFilters() && searchState.getUceMetadataFilters().stream()
+                .anyMatch(f -> !(f.getValue().isEmpty() || f.getValue().equals("{ANY}")) || f.getMax() != null || f.getMin() != null);
+        if ("index".equalsIgnoreCase(config.getSearchBackend()) && !isFiltered) {
+            var indexBackend = InvertedIndexSearchBackend.getInstance(
+                    Path.of(config.getSearchIndexLocation()), config.getSearchIndexMaxHits(), db, snippetEngine);
+            if (indexBackend.hasIndex(searchState.getCorpusId())) return indexBackend;
+        }
+        return new PostgresSearchBackend(db, snippetEngine);
+    }
+
     /**
      * Loads the appropriate stopwords from the resources. Loads them once and then caches them in RAM
      *
@@ -388,7 +622,9 @@ public class Search_DefaultImpl implements Search {
     }
 
     private void initServices(ApplicationContext serviceContext, String languageCode) throws URISyntaxException, IOException {
+        this.config = new CommonConfig();
         this.db = serviceContext.getBean(PostgresqlDataInterface_Impl.class);
+        this.snippetEngine = SnippetEngine.getInstance(db, config);
         this.ragService = serviceContext.getBean(RAGService.class);
         this.jenaSparqlService = serviceContext.getBean(JenaSparqlService.class);
         this.stopwords = loadStopwords(languageCode);
@@ -0,0 +1,69 @@
+package org.texttechnologylab.uce.search.backend;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The layout of the inverted search index on disk. Every corpus has its own folder, which holds one segment per
+ * importer instance, so several importers can write to the index of a corpus at the same time:
+ * <pre>
+ * {location}/corpus-{corpusId}/importer-{importerNumber}/
+ * </pre>
+ * A segment is a lucene index with one entry per document. The searches read all segments of a corpus together.
+ */
+public final class CorpusIndex {
+
+    static final String FIELD_ID = "id";
+    static final String FIELD_DOCUMENT_ID = "documentId";
+    static final String FIELD_TITLE = "title";
+    static final String FIELD_TEXT = "text";
+
+    private CorpusIndex() {
+    }
+
+    /**
+     * Like the 'simple' text search configuration of postgres: the text is split into words and lowercased, without
+     * stemming and without dropping stopwords.
+     */
+    static Analyzer createAnalyzer() {
+        return new StandardAnalyzer(CharArraySet.EMPTY_SET);
+    }
+
+    static Path getCorpusDirectory(Path location, long corpusId) {
+        return location.resolve("corpus-" + corpusId);
+    }
+
+    static Path getSegmentDirectory(Path location, long corpusId, int importerNumber) {
+        return getCorpusDirectory(location, corpusId).resolve("importer-" + importerNumber);
+    }
+
+    static List<Path> getSegmentDirectories(Path location, long corpusId) throws IOException {
+        var corpusDirectory = getCorpusDirectory(location, corpusId);
+        if (!Files.isDirectory(corpusDirectory)) return List.of();
+        try (var directories = Files.list(corpusDirectory)) {
+            return directories.filter(Files::isDirectory).sorted().toList();
+        }
+    }
+
+    /**
+     * Splits a text into the terms of the index.
+     */
+    static List<String> analyze(Analyzer analyzer, String text) throws IOException {
+        var terms = new ArrayList<String>();
+        try (var tokenStream = analyzer.tokenStream(FIELD_TEXT, text)) {
+            var term = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) terms.add(term.toString());
+            tokenStream.end();
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,119 @@
+package org.texttechnologylab.uce.search.backend;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.LockObtainFailedException;
+import org.apache.lucene.util.BytesRef;
+import org.texttechnologylab.uce.common.models.corpus.Document;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the documents of a corpus into one segment of its inverted search index, see {@link CorpusIndex}. The
+ * importer adds each document once it is stored, so the index grows with the import. Documents that are indexed
+ * again replace their old entry. The writer is thread safe.
+ */
+public class CorpusIndexWriter implements Closeable {
+    private static final Logger logger = LogManager.getLogger(CorpusIndexWriter.class);
+
+    private final IndexWriter indexWriter;
+    private final int commitInterval;
+    private final AtomicLong uncommitted = new AtomicLong(0);
+
+    /**
+     * @param commitInterval after how many documents the segment is committed and becomes visible to the searches
+     * @param recreate       whether the segment is cleared first, e.g. to rebuild it
+     */
+    public CorpusIndexWriter(Path location, long corpusId, int importerNumber, int commitInterval, boolean recreate) throws IOException {
+        var segmentDirectory = CorpusIndex.getSegmentDirectory(location, corpusId, importerNumber);
+        Files.createDirectories(segmentDirectory);
+        var config = new IndexWriterConfig(CorpusIndex.createAnalyzer())
+                .setSimilarity(new BM25Similarity())
+                .setOpenMode(recreate ? IndexWriterConfig.OpenMode.CREATE : IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        this.indexWriter = new IndexWriter(FSDirectory.open(segmentDirectory), config);
+        this.commitInterval = Math.max(1, commitInterval);
+    }
+
+    /**
+     * Empties all segments of a corpus, e.g. before it is indexed anew. Open searches see the change with their
+     * next refresh.
+     */
+    public static void clearCorpus(Path location, long corpusId) throws IOException {
+        for (var segmentDirectory : CorpusIndex.getSegmentDirectories(location, corpusId)) {
+            var config = new IndexWriterConfig(CorpusIndex.createAnalyzer()).setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+            try (var indexWriter = new IndexWriter(FSDirectory.open(segmentDirectory), config)) {
+                indexWriter.commit();
+            }
+        }
+    }
+
+    /**
+     * Removes a document from all segments of its corpus, e.g. once it was deleted from the database. A segment
+     * an importer is writing to right now is locked, the document stays in it and a warning is logged.
+     */
+    public static void deleteDocument(Path location, long corpusId, long documentId) throws IOException {
+        for (var segmentDirectory : CorpusIndex.getSegmentDirectories(location, corpusId)) {
+            var config = new IndexWriterConfig(CorpusIndex.createAnalyzer()).setOpenMode(IndexWriterConfig.OpenMode.APPEND);
+            try (var indexWriter = new IndexWriter(FSDirectory.open(segmentDirectory), config)) {
+                indexWriter.deleteDocuments(new Term(CorpusIndex.FIELD_ID, String.valueOf(documentId)));
+                indexWriter.commit();
+            } catch (LockObtainFailedException ex) {
+                logger.warn("Couldn't delete document " + documentId + " from the search index segment " + segmentDirectory
+                        + ", it is locked by a running import.", ex);
+            }
+        }
+    }
+
+    public void indexDocument(Document document) throws IOException {
+        indexDocument(document.getId(), document.getDocumentTitle(), document.getFullText());
+    }
+
+    public void indexDocument(long documentId, String title, String fullText) throws IOException {
+        var entry = new org.apache.lucene.document.Document();
+        var id = String.valueOf(documentId);
+        entry.add(new StringField(CorpusIndex.FIELD_ID, id, Field.Store.NO));
+        entry.add(new StoredField(CorpusIndex.FIELD_DOCUMENT_ID, documentId));
+        // The ids of all hits of a search are read from the doc values.
+        entry.add(new NumericDocValuesField(CorpusIndex.FIELD_DOCUMENT_ID, documentId));
+        if (title != null) entry.add(new SortedDocValuesField(CorpusIndex.FIELD_TITLE, new BytesRef(title.toLowerCase())));
+        if (fullText != null) entry.add(new TextField(CorpusIndex.FIELD_TEXT, fullText, Field.Store.NO));
+        indexWriter.updateDocument(new Term(CorpusIndex.FIELD_ID, id), entry);
+
+        if (uncommitted.incrementAndGet() >= commitInterval) commit();
+    }
+
+    public void deleteDocument(long documentId) throws IOException {
+        indexWriter.deleteDocuments(new Term(CorpusIndex.FIELD_ID, String.valueOf(documentId)));
+    }
+
+    public void commit() throws IOException {
+        var documents = uncommitted.getAndSet(0);
+        if (documents == 0) return;
+        indexWriter.commit();
+        logger.debug("Committed " + documents + " documents to the search index segment " + indexWriter.getDirectory());
+    }
+
+    /**
+     * Commits what is left and releases the segment.
+     */
+    @Override
+    public void close() throws IOException {
+        commit();
+        indexWriter.close();
+    }
+}
@@ -0,0 +1,243 @@
+package org.texttechnologylab.uce.search.backend;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Translates a search phrase into a query of the inverted index. It understands the same phrases as the postgres
+ * fulltext search, so the backends can be swapped:
+ * <ul>
+ *     <li>default mode, like websearch_to_tsquery: words are and-ed, {@code or} between them, {@code -word} excludes
+ *     and {@code "a few words"} is a phrase</li>
+ *     <li>pro mode, like to_tsquery: {@code &}, {@code |}, {@code !}, parentheses, {@code word:*} as a prefix and
+ *     {@code a <-> b} or {@code a <N> b} for words that follow each other within N positions</li>
+ * </ul>
+ * In both modes, {@code "a few words"~N} finds the words within N positions of each other in any order.
+ */
+class IndexQueryParser {
+
+    private enum TokenType {WORD, PHRASE, AND, OR, NOT, OPEN, CLOSE, FOLLOWED_BY}
+
+    private record Token(TokenType type, String value, int distance) {
+    }
+
+    private final Analyzer analyzer;
+    private final boolean proMode;
+    private List<Token> tokens;
+    private int position;
+
+    IndexQueryParser(Analyzer analyzer, boolean proMode) {
+        this.analyzer = analyzer;
+        this.proMode = proMode;
+    }
+
+    Query parse(String searchPhrase) throws IOException {
+        if (searchPhrase == null || searchPhrase.isBlank()) return new MatchAllDocsQuery();
+        tokens = tokenize(searchPhrase);
+        position = 0;
+        var query = parseOr();
+        // Whatever is left, e.g. after an unbalanced parenthesis, is and-ed like the rest.
+        while (position < tokens.size()) {
+            if (peek(TokenType.CLOSE)) {
+                position++;
+                continue;
+            }
+            query = and(query, parseOr());
+        }
+        return query == null ? new MatchNoDocsQuery() : withPositiveClause(query);
+    }
+
+    private Query parseOr() throws IOException {
+        var clauses = new ArrayList<Query>();
+        clauses.add(parseAnd());
+        while (peek(TokenType.OR)) {
+            position++;
+            clauses.add(parseAnd());
+        }
+        var present = clauses.stream().filter(c -> c != null).toList();
+        if (present.isEmpty()) return null;
+        if (present.size() == 1) return present.getFirst();
+        var builder = new BooleanQuery.Builder();
+        for (var clause : present) builder.add(withPositiveClause(clause), BooleanClause.Occur.SHOULD);
+        return builder.build();
+    }
+
+    private Query parseAnd() throws IOException {
+        Query query = null;
+        while (position < tokens.size() && !peek(TokenType.OR) && !peek(TokenType.CLOSE)) {
+            if (peek(TokenType.AND)) {
+                position++;
+                continue;
+            }
+            query = and(query, parseUnary());
+        }
+        return query;
+    }
+
+    private Query parseUnary() throws IOException {
+        var token = tokens.get(position++);
+        return switch (token.type()) {
+            case NOT -> {
+                if (position >= tokens.size()) yield null;
+                var negated = parseUnary();
+                yield negated == null ? null : new BooleanQuery.Builder().add(negated, BooleanClause.Occur.MUST_NOT).build();
+            }
+            case OPEN -> {
+                var inner = parseOr();
+                if (peek(TokenType.CLOSE)) position++;
+                yield inner;
+            }
+            case WORD, PHRASE -> parseSequence(token);
+            // Operators without operands are ignored, like the websearch syntax does.
+            default -> null;
+        };
+    }
+
+    /**
+     * A word or phrase, possibly followed by others with {@code <->} or {@code <N>}.
+     */
+    private Query parseSequence(Token first) throws IOException {
+        var terms = new ArrayList<>(CorpusIndex.analyze(analyzer, first.value()));
+        var slop = first.type() == TokenType.PHRASE ? first.distance() : 0;
+        var isPrefix = first.type() == TokenType.WORD && proMode && first.value().endsWith(":*");
+
+        while (peek(TokenType.FOLLOWED_BY) && position + 1 < tokens.size()
+               && (tokens.get(position + 1).type() == TokenType.WORD || tokens.get(position + 1).type() == TokenType.PHRASE)) {
+            var distance = tokens.get(position).distance();
+            var next = tokens.get(position + 1);
+            position += 2;
+            slop += distance - 1;
+            terms.addAll(CorpusIndex.analyze(analyzer, next.value()));
+            isPrefix = false;
+        }
+
+        if (terms.isEmpty()) return null;
+        if (terms.size() == 1) {
+            var term = new Term(CorpusIndex.FIELD_TEXT, terms.getFirst());
+            return isPrefix ? new PrefixQuery(term) : new TermQuery(term);
+        }
+        var phrase = new PhraseQuery.Builder().setSlop(slop);
+        for (var i = 0; i < terms.size(); i++) phrase.add(new Term(CorpusIndex.FIELD_TEXT, terms.get(i)), i);
+        return phrase.build();
+    }
+
+    private List<Token> tokenize(String searchPhrase) {
+        var result = new ArrayList<Token>();
+        var i = 0;
+        while (i < searchPhrase.length()) {
+            var c = searchPhrase.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"' || (c == '\'' && proMode)) {
+                var end = searchPhrase.indexOf(c, i + 1);
+                if (end < 0) end = searchPhrase.length();
+                var value = searchPhrase.substring(i + 1, end);
+                i = end + 1;
+                // An optional ~N allows the words of the phrase to be N positions apart.
+                var distance = 0;
+                if (i < searchPhrase.length() && searchPhrase.charAt(i) == '~') {
+                    var digitsEnd = i + 1;
+                    while (digitsEnd < searchPhrase.length() && Character.isDigit(searchPhrase.charAt(digitsEnd))) digitsEnd++;
+                    if (digitsEnd > i + 1) distance = Integer.parseInt(searchPhrase.substring(i + 1, digitsEnd));
+                    i = digitsEnd;
+                }
+                result.add(new Token(TokenType.PHRASE, value, distance));
+            } else if (c == '(' && proMode) {
+                result.add(new Token(TokenType.OPEN, "(", 0));
+                i++;
+            } else if (c == ')' && proMode) {
+                result.add(new Token(TokenType.CLOSE, ")", 0));
+                i++;
+            } else if (c == '&' && proMode) {
+                result.add(new Token(TokenType.AND, "&", 0));
+                i++;
+            } else if (c == '|' && proMode) {
+                result.add(new Token(TokenType.OR, "|", 0));
+                i++;
+            } else if (c == '!' && proMode) {
+                result.add(new Token(TokenType.NOT, "!", 0));
+                i++;
+            } else if (c == '-' && !proMode && (i == 0 || Character.isWhitespace(searchPhrase.charAt(i - 1)))) {
+                result.add(new Token(TokenType.NOT, "-", 0));
+                i++;
+            } else if (c == '<' && proMode && searchPhrase.indexOf('>', i) > i) {
+                var end = searchPhrase.indexOf('>', i);
+                var inner = searchPhrase.substring(i + 1, end).trim();
+                var distance = inner.equals("-") ? 1 : parseDistance(inner);
+                result.add(new Token(TokenType.FOLLOWED_BY, inner, distance));
+                i = end + 1;
+            } else {
+                var end = i;
+                while (end < searchPhrase.length() && !Character.isWhitespace(searchPhrase.charAt(end))
+                       && !(proMode && "()&|!<'\"".indexOf(searchPhrase.charAt(end)) >= 0)
+                       && searchPhrase.charAt(end) != '"') end++;
+                // A lone operator character, e.g. a '<' that isn't closed, is a word of its own.
+                if (end == i) end++;
+                var word = searchPhrase.substring(i, end);
+                i = end;
+                if (!proMode && word.equalsIgnoreCase("or")) result.add(new Token(TokenType.OR, word, 0));
+                else result.add(new Token(TokenType.WORD, word, 0));
+            }
+        }
+        return result;
+    }
+
+    private static int parseDistance(String value) {
+        try {
+            return Math.max(1, Integer.parseInt(value));
+        } catch (NumberFormatException ex) {
+            return 1;
+        }
+    }
+
+    private boolean peek(TokenType type) {
+        return position < tokens.size() && tokens.get(position).type() == type;
+    }
+
+    private static Query and(Query left, Query right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        var builder = new BooleanQuery.Builder();
+        addAnded(builder, left);
+        addAnded(builder, right);
+        return builder.build();
+    }
+
+    /**
+     * Adds a query to a conjunction. Negations are added as they are, so "a -b" doesn't nest the exclusion.
+     */
+    private static void addAnded(BooleanQuery.Builder builder, Query query) {
+        if (query instanceof BooleanQuery booleanQuery && isConjunction(booleanQuery)) {
+            for (var clause : booleanQuery.clauses()) builder.add(clause);
+        } else {
+            builder.add(query, BooleanClause.Occur.MUST);
+        }
+    }
+
+    private static boolean isConjunction(BooleanQuery query) {
+        return query.clauses().stream().allMatch(c -> c.getOccur() == BooleanClause.Occur.MUST || c.getOccur() == BooleanClause.Occur.MUST_NOT);
+    }
+
+    /**
+     * A query of exclusions only would match nothing, so it excludes from all documents instead.
+     */
+    private static Query withPositiveClause(Query query) {
+        if (!(query instanceof BooleanQuery booleanQuery)) return query;
+        if (booleanQuery.clauses().stream().anyMatch(c -> c.getOccur() != BooleanClause.Occur.MUST_NOT)) return query;
+        var builder = new BooleanQuery.Builder().add(new MatchAllDocsQuery(), BooleanClause.Occur.FILTER);
+        for (var clause : booleanQuery.clauses()) builder.add(clause);
+        return builder.build();
+    }
+}
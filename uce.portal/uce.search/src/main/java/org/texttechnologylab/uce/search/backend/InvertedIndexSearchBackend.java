@@ -0,0 +1,225 @@
+package org.texttechnologylab.uce.search.backend;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.FSDirectory;
+import org.texttechnologylab.uce.common.exceptions.ExceptionUtils;
+import org.texttechnologylab.uce.common.models.search.DocumentSearchResult;
+import org.texttechnologylab.uce.common.models.search.OrderByColumn;
+import org.texttechnologylab.uce.common.models.search.SearchOrder;
+import org.texttechnologylab.uce.common.services.PostgresqlDataInterface_Impl;
+import org.texttechnologylab.uce.search.SearchState;
+import org.texttechnologylab.uce.search.snippets.SnippetEngine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The fulltext search on the inverted index the importer builds, see {@link CorpusIndex}. The documents are ranked
+ * with BM25 over all segments of a corpus; the snippets of the current page come from the {@link SnippetEngine} and
+ * its annotations from postgres.
+ * <p>
+ * The segments are opened once and refreshed whenever an importer has committed to them since.
+ */
+public class InvertedIndexSearchBackend implements SearchBackend {
+    private static final Logger logger = LogManager.getLogger(InvertedIndexSearchBackend.class);
+    private static final Map<Path, InvertedIndexSearchBackend> instances = new ConcurrentHashMap<>();
+
+    private final Path location;
+    private final int maxHits;
+    private final PostgresqlDataInterface_Impl db;
+    private final SnippetEngine snippetEngine;
+    private final Analyzer analyzer = CorpusIndex.createAnalyzer();
+    private final Map<Long, Map<Path, SearcherManager>> segments = new ConcurrentHashMap<>();
+
+    private InvertedIndexSearchBackend(Path location, int maxHits, PostgresqlDataInterface_Impl db, SnippetEngine snippetEngine) {
+        this.location = location;
+        this.maxHits = maxHits;
+        this.db = db;
+        this.snippetEngine = snippetEngine;
+    }
+
+    /**
+     * The backend of the index at the given location. It is shared, so the segments are only opened once.
+     */
+    public static InvertedIndexSearchBackend getInstance(Path location, int maxHits, PostgresqlDataInterface_Impl db, SnippetEngine snippetEngine) {
+        return instances.computeIfAbsent(location.toAbsolutePath().normalize(), l -> new InvertedIndexSearchBackend(l, maxHits, db, snippetEngine));
+    }
+
+    /**
+     * Whether the corpus has been indexed at all. Corpora imported without the index are searched on postgres.
+     */
+    public boolean hasIndex(long corpusId) throws IOException {
+        return !getSegments(corpusId).isEmpty();
+    }
+
+    @Override
+    public DocumentSearchResult searchForDocuments(SearchState searchState, boolean countAll) throws IOException {
+        var searchQuery = searchState.getFulltextSearchQuery();
+        var query = new IndexQueryParser(analyzer, searchState.isProModeActivated()).parse(searchQuery);
+        var ranking = rank(searchState.getCorpusId(), query, searchState.getOrderBy(), searchState.getOrder());
+
+        var skip = Math.min((searchState.getCurrentPage() - 1) * searchState.getTake(), ranking.documentIds().size());
+        var pageIds = new ArrayList<>(ranking.documentIds().subList(skip, Math.min(skip + searchState.getTake(), ranking.documentIds().size())));
+        var pageRanks = new HashMap<Integer, Float>();
+        for (var i = 0; i < pageIds.size(); i++) pageRanks.put(i, ranking.ranks().get(skip + i));
+
+        // The ranking stops after the max hits, the count is taken over all matching documents.
+        var search = new DocumentSearchResult(ranking.matchingDocumentIds().size(), pageIds);
+        search.setRankedDocumentIds(ranking.documentIds());
+        search.setRankedDocumentRanks(ranking.ranks());
+        search.setSearchRanks(pageRanks);
+
+        // A query with the syntax of the index only, e.g. a proximity phrase, isn't always understood by postgres.
+        // The hits are shown without snippets then.
+        var snippets = ExceptionUtils.tryCatchLog(
+                () -> snippetEngine.getSnippetsOfDocuments(pageIds, searchQuery, searchState.isProModeActivated()),
+                (ex) -> logger.warn("Couldn't build the snippets of the index search for: " + searchQuery, ex));
+        search.setSearchSnippets(snippets == null ? new HashMap<>() : snippets);
+
+        // Like in the postgres procedure, the annotations are those of the documents of the page.
+        if (countAll) {
+            ExceptionUtils.tryCatchLog(
+                    () -> db.setFoundAnnotationsOfDocuments(search, pageIds),
+                    (ex) -> logger.warn("Couldn't aggregate the annotations of the index search for: " + searchQuery, ex));
+        }
+        return search;
+    }
+
+    private Ranking rank(long corpusId, Query query, OrderByColumn orderBy, SearchOrder order) throws IOException {
+        var managers = getSegments(corpusId);
+        var acquired = new ArrayList<IndexSearcher>(managers.size());
+        var documentIds = new ArrayList<Integer>();
+        var ranks = new ArrayList<Float>();
+        Set<Integer> matchingDocumentIds = new HashSet<>();
+        try {
+            for (var manager : managers) {
+                manager.maybeRefresh();
+                acquired.add(manager.acquire());
+            }
+            if (acquired.isEmpty()) return new Ranking(documentIds, ranks, matchingDocumentIds);
+
+            var readers = acquired.stream().map(IndexSearcher::getIndexReader).toArray(IndexReader[]::new);
+            try (var reader = new MultiReader(readers, false)) {
+                // The statistics of BM25 are taken over all segments of the corpus together.
+                var searcher = new IndexSearcher(reader);
+                searcher.setSimilarity(new BM25Similarity());
+                TopDocs topDocs;
+                if (orderBy == OrderByColumn.DOCUMENTTITLE) {
+                    topDocs = searcher.search(query, maxHits, new Sort(
+                            new SortField(CorpusIndex.FIELD_TITLE, SortField.Type.STRING, order == SearchOrder.DESC),
+                            SortField.FIELD_SCORE), true);
+                } else if (order == SearchOrder.ASC) {
+                    // The least relevant documents of all hits first, not the top hits reversed.
+                    topDocs = searcher.search(query, maxHits, new Sort(new SortField(null, SortField.Type.SCORE, true)), true);
+                } else {
+                    topDocs = searcher.search(query, maxHits);
+                }
+                matchingDocumentIds = searcher.search(query, new DocumentIdCollectorManager());
+
+                var storedFields = searcher.storedFields();
+                var fields = Set.of(CorpusIndex.FIELD_DOCUMENT_ID);
+                // A document that was imported by several importers is in several segments.
+                var seen = new HashSet<Integer>();
+                for (var scoreDoc : topDocs.scoreDocs) {
+                    var id = storedFields.document(scoreDoc.doc, fields).getField(CorpusIndex.FIELD_DOCUMENT_ID).numericValue().intValue();
+                    if (!seen.add(id)) continue;
+                    documentIds.add(id);
+                    ranks.add(Float.isNaN(scoreDoc.score) ? 0f : scoreDoc.score);
+                }
+            }
+        } finally {
+            for (var i = 0; i < acquired.size(); i++) managers.get(i).release(acquired.get(i));
+        }
+        return new Ranking(documentIds, ranks, matchingDocumentIds);
+    }
+
+    /**
+     * The segments of a corpus. Segments that were created since, e.g. by another importer instance, are opened.
+     */
+    private synchronized List<SearcherManager> getSegments(long corpusId) throws IOException {
+        var managers = segments.computeIfAbsent(corpusId, id -> new ConcurrentHashMap<>());
+        for (var segmentDirectory : CorpusIndex.getSegmentDirectories(location, corpusId)) {
+            if (managers.containsKey(segmentDirectory)) continue;
+            var directory = FSDirectory.open(segmentDirectory);
+            if (!DirectoryReader.indexExists(directory)) {
+                // Nothing committed yet.
+                directory.close();
+                continue;
+            }
+            managers.put(segmentDirectory, new SearcherManager(directory, null));
+            logger.info("Opened the search index segment " + segmentDirectory);
+        }
+        return new ArrayList<>(managers.values());
+    }
+
+    /**
+     * @param documentIds         the ranked documents, at most the max hits
+     * @param matchingDocumentIds all documents matching the query
+     */
+    private record Ranking(ArrayList<Integer> documentIds, ArrayList<Float> ranks, Set<Integer> matchingDocumentIds) {
+    }
+
+    /**
+     * Collects the distinct ids of all documents matching a query, without scoring them. A document that is in
+     * several segments is only collected once.
+     */
+    private static class DocumentIdCollectorManager implements CollectorManager<DocumentIdCollector, Set<Integer>> {
+
+        @Override
+        public DocumentIdCollector newCollector() {
+            return new DocumentIdCollector();
+        }
+
+        @Override
+        public Set<Integer> reduce(Collection<DocumentIdCollector> collectors) {
+            var documentIds = new HashSet<Integer>();
+            for (var collector : collectors) documentIds.addAll(collector.documentIds);
+            return documentIds;
+        }
+    }
+
+    private static class DocumentIdCollector extends SimpleCollector {
+        private final Set<Integer> documentIds = new HashSet<>();
+        private NumericDocValues docValues;
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            docValues = context.reader().getNumericDocValues(CorpusIndex.FIELD_DOCUMENT_ID);
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            if (docValues != null && docValues.advanceExact(doc)) documentIds.add((int) docValues.longValue());
+        }
+
+        @Override
+        public ScoreMode scoreMode() {
+            return ScoreMode.COMPLETE_NO_SCORES;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.texttechnologylab.uce.search.backend;
+
+import org.texttechnologylab.uce.common.exceptions.DatabaseOperationException;
+import org.texttechnologylab.uce.common.models.search.DocumentSearchResult;
+import org.texttechnologylab.uce.common.models.search.SearchLayer;
+import org.texttechnologylab.uce.common.services.PostgresqlDataInterface_Impl;
+import org.texttechnologylab.uce.search.SearchState;
+import org.texttechnologylab.uce.search.snippets.SnippetEngine;
+
+/**
+ * The fulltext search of the uce_search_layer_fulltext procedure on the tsvectors of the pages.
+ */
+public class PostgresSearchBackend implements SearchBackend {
+
+    private final PostgresqlDataInterface_Impl db;
+    private final SnippetEngine snippetEngine;
+
+    public PostgresSearchBackend(PostgresqlDataInterface_Impl db, SnippetEngine snippetEngine) {
+        this.db = db;
+        this.snippetEngine = snippetEngine;
+    }
+
+    @Override
+    public DocumentSearchResult searchForDocuments(SearchState searchState, boolean countAll) throws DatabaseOperationException {
+        return searchForDocuments(searchState, countAll, 0);
+    }
+
+    @Override
+    public DocumentSearchResult searchForDocuments(SearchState searchState, boolean countAll, long timeoutMs) throws DatabaseOperationException {
+        var search = db.defaultSearchForDocuments((searchState.getCurrentPage() - 1) * searchState.getTake(),
+                searchState.getTake(),
+                searchState.getFulltextSearchQuery(),
+                searchState.getSearchTokens(),
+                SearchLayer.FULLTEXT,
+                countAll,
+                searchState.getOrder(),
+                searchState.getOrderBy(),
+                searchState.getCorpusId(),
+                searchState.getUceMetadataFilters(),
+                searchState.isProModeActivated(),
+                searchState.getDbSchema(),
+                searchState.getSourceTable(),
+                timeoutMs);
+        // Unless the procedure built them, the snippets of the page are built by the engine.
+        if (search != null && !snippetEngine.isBuiltInDatabase()) {
+            search.setSearchSnippets(snippetEngine.getSnippetsOfDocuments(search.getDocumentIds(),
+                    searchState.getFulltextSearchQuery(),
+                    searchState.isProModeActivated()));
+        }
+        return search;
+    }
+}
@@ -0,0 +1,28 @@
+package org.texttechnologylab.uce.search.backend;
+
+import org.texttechnologylab.uce.common.exceptions.DatabaseOperationException;
+import org.texttechnologylab.uce.common.models.search.DocumentSearchResult;
+import org.texttechnologylab.uce.search.SearchState;
+
+import java.io.IOException;
+
+/**
+ * Executes the fulltext layer of a search. The result holds the documents, snippets and ranks of the current page
+ * of the search state and the ranking of all hits, from which the following pages are served.
+ */
+public interface SearchBackend {
+
+    /**
+     * @param countAll whether the hits are counted and their annotations are aggregated as well, which is only
+     *                 needed for the initial search
+     */
+    DocumentSearchResult searchForDocuments(SearchState searchState, boolean countAll) throws DatabaseOperationException, IOException;
+
+    /**
+     * Like {@link #searchForDocuments(SearchState, boolean)}, but a search on the database is cancelled there once it
+     * runs longer than the timeout. 0 disables the timeout. Backends that don't search on the database ignore it.
+     */
+    default DocumentSearchResult searchForDocuments(SearchState searchState, boolean countAll, long timeoutMs) throws DatabaseOperationException, IOException {
+        return searchForDocuments(searchState, countAll);
+    }
+}
@@ -0,0 +1,72 @@
+package org.texttechnologylab.uce.search.snippets;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The words of a search phrase that are highlighted in the snippets, lowercased like the 'simple' text search
+ * configuration of postgres does. Excluded words, e.g. {@code -word} or {@code !word}, and the operators aren't
+ * highlighted; in pro mode {@code word:*} highlights every word starting with it.
+ */
+class HighlightTerms {
+
+    private final Set<String> words = new HashSet<>();
+    private final Set<String> prefixes = new HashSet<>();
+
+    HighlightTerms(String searchPhrase, boolean proMode) {
+        if (searchPhrase == null) return;
+        var i = 0;
+        var excluded = false;
+        while (i < searchPhrase.length()) {
+            var c = searchPhrase.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                var end = i;
+                while (end < searchPhrase.length() && Character.isLetterOrDigit(searchPhrase.charAt(end))) end++;
+                var word = searchPhrase.substring(i, end).toLowerCase(Locale.ROOT);
+                // A weight or prefix marker, e.g. word:A or word:*, belongs to the word before it.
+                var isPrefix = proMode && searchPhrase.startsWith(":*", end);
+                if (proMode && end < searchPhrase.length() && searchPhrase.charAt(end) == ':') {
+                    end++;
+                    while (end < searchPhrase.length() && "*ABCDabcd".indexOf(searchPhrase.charAt(end)) >= 0) end++;
+                }
+                if (!excluded && !(!proMode && word.equals("or"))) {
+                    if (isPrefix) prefixes.add(word);
+                    else words.add(word);
+                }
+                i = end;
+                continue;
+            }
+            if (c == '<' && proMode) {
+                // The distance operators <-> and <N>.
+                var end = searchPhrase.indexOf('>', i);
+                if (end > i) {
+                    i = end + 1;
+                    continue;
+                }
+            }
+            if (c == '!' && proMode) excluded = true;
+            else if (c == '-' && !proMode && (i == 0 || Character.isWhitespace(searchPhrase.charAt(i - 1)))) excluded = true;
+            else if (Character.isWhitespace(c) || "&|()\"'".indexOf(c) >= 0) {
+                // An exclusion covers the next word only; within a word, e.g. "a-b", the parts stay searched.
+                if (!(c == '(' && excluded)) excluded = false;
+            }
+            i++;
+        }
+    }
+
+    boolean isEmpty() {
+        return words.isEmpty() && prefixes.isEmpty();
+    }
+
+    /**
+     * @param token a lowercased word of the text
+     */
+    boolean matches(String token) {
+        if (words.contains(token)) return true;
+        for (var prefix : prefixes) {
+            if (token.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,43 @@
+package org.texttechnologylab.uce.search.snippets;
+
+import org.texttechnologylab.uce.common.models.search.PageSnippet;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The snippets of documents per search phrase, shared by all searches. Beyond its size, the least recently used
+ * documents are dropped. A document without a matching page is cached with no snippets.
+ */
+final class SnippetCache {
+
+    private final Map<Key, ArrayList<PageSnippet>> entries;
+
+    SnippetCache(int size) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ArrayList<PageSnippet>> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     * @return The cached snippets or null, if the document isn't cached for the search phrase.
+     */
+    synchronized ArrayList<PageSnippet> get(String searchPhrase, boolean proMode, int documentId) {
+        return entries.get(new Key(searchPhrase, proMode, documentId));
+    }
+
+    synchronized void put(String searchPhrase, boolean proMode, int documentId, ArrayList<PageSnippet> snippets) {
+        entries.put(new Key(searchPhrase, proMode, documentId), snippets);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private record Key(String searchPhrase, boolean proMode, int documentId) {
+    }
+}
@@ -0,0 +1,115 @@
+package org.texttechnologylab.uce.search.snippets;
+
+import org.texttechnologylab.uce.common.config.CommonConfig;
+import org.texttechnologylab.uce.common.exceptions.DatabaseOperationException;
+import org.texttechnologylab.uce.common.models.search.PageSnippet;
+import org.texttechnologylab.uce.common.services.PostgresqlDataInterface_Impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Builds the snippets of the fulltext hits that are shown, i.e. of a single page of hits at a time. The matching pages
+ * and their sentences come from postgres, the highlighting is done here, see {@link SnippetHighlighter}. The snippets
+ * are cached per search phrase and document, see {@link SnippetCache}, so going back to a page of hits doesn't build
+ * them again.
+ * <p>
+ * This is used with search.snippets.engine = java. With postgres, the default, the snippets are built by ts_headline
+ * instead and not cached.
+ */
+public class SnippetEngine {
+
+    // Like the fulltext search, a document shows the snippets of its 5 best matching pages.
+    private static final int PAGES_PER_DOCUMENT = 5;
+    // Without a search phrase, the snippet is the beginning of the first page.
+    private static final int PREVIEW_LENGTH = 400;
+    private static volatile SnippetEngine instance;
+
+    private final PostgresqlDataInterface_Impl db;
+    private final boolean buildInDatabase;
+    private final SnippetCache cache;
+
+    private SnippetEngine(PostgresqlDataInterface_Impl db, CommonConfig config) {
+        this.db = db;
+        this.buildInDatabase = config.isSearchSnippetsBuiltInDatabase();
+        this.cache = new SnippetCache(config.getSearchSnippetsCacheSize());
+    }
+
+    /**
+     * The engine is shared by all searches, so they share its cache as well.
+     */
+    public static SnippetEngine getInstance(PostgresqlDataInterface_Impl db, CommonConfig config) {
+        if (instance == null) {
+            synchronized (SnippetEngine.class) {
+                if (instance == null) instance = new SnippetEngine(db, config);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Whether the fulltext search procedure already returns the snippets of its page of hits.
+     */
+    public boolean isBuiltInDatabase() {
+        return buildInDatabase;
+    }
+
+    /**
+     * The snippets of the given documents, keyed by the index of the document within the list. Documents without a
+     * matching page have none.
+     */
+    public HashMap<Integer, ArrayList<PageSnippet>> getSnippetsOfDocuments(List<Integer> documentIds,
+                                                                          String searchPhrase,
+                                                                          boolean proMode) throws DatabaseOperationException {
+        if (buildInDatabase) return db.getFulltextSnippetsOfDocuments(documentIds, searchPhrase, proMode);
+
+        var snippets = new HashMap<Integer, ArrayList<PageSnippet>>();
+        var missingIds = new ArrayList<Integer>();
+        var missingIdxs = new ArrayList<Integer>();
+        for (var i = 0; i < documentIds.size(); i++) {
+            var cached = cache.get(searchPhrase, proMode, documentIds.get(i));
+            if (cached != null) {
+                if (!cached.isEmpty()) snippets.put(i, copy(cached));
+                continue;
+            }
+            missingIds.add(documentIds.get(i));
+            missingIdxs.add(i);
+        }
+        if (missingIds.isEmpty()) return snippets;
+
+        var built = new HashMap<Integer, ArrayList<PageSnippet>>();
+        var terms = new HighlightTerms(searchPhrase, proMode);
+        var hasPhrase = searchPhrase != null && !searchPhrase.isEmpty();
+        for (var page : db.getSnippetPagesOfDocuments(missingIds, searchPhrase, proMode, PAGES_PER_DOCUMENT)) {
+            var text = page.getCoveredText() == null ? "" : page.getCoveredText();
+            var snippet = new PageSnippet();
+            snippet.setPageId(page.getPageId());
+            snippet.setSnippet(hasPhrase
+                    ? SnippetHighlighter.highlight(text, page.getSentenceBegins(), page.getSentenceEnds(), terms)
+                    : text.substring(0, Math.min(PREVIEW_LENGTH, text.length())));
+            built.computeIfAbsent(page.getDocumentIdx(), idx -> new ArrayList<>()).add(snippet);
+        }
+
+        for (var i = 0; i < missingIds.size(); i++) {
+            var documentSnippets = built.getOrDefault(i, new ArrayList<>());
+            cache.put(searchPhrase, proMode, missingIds.get(i), documentSnippets);
+            if (!documentSnippets.isEmpty()) snippets.put(missingIdxs.get(i), copy(documentSnippets));
+        }
+        return snippets;
+    }
+
+    /**
+     * The searches attach the pages to their snippets, so they get their own copies of the cached ones.
+     */
+    private static ArrayList<PageSnippet> copy(List<PageSnippet> snippets) {
+        var copies = new ArrayList<PageSnippet>(snippets.size());
+        for (var snippet : snippets) {
+            var copy = new PageSnippet();
+            copy.setPageId(snippet.getPageId());
+            copy.setSnippet(snippet.getSnippet());
+            copies.add(copy);
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,164 @@
+package org.texttechnologylab.uce.search.snippets;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Builds the snippet of a page like ts_headline with the options the fulltext search used: up to 3 fragments of 35 to
+ * 60 words, the matching words in {@code <b>} and the fragments joined by {@code [...]}. The fragments are the
+ * sentences of the page with the most distinct matching words; pages without sentences are cut into windows around
+ * their matches.
+ */
+final class SnippetHighlighter {
+
+    static final int MAX_FRAGMENTS = 3;
+    static final int MIN_WORDS = 35;
+    static final int MAX_WORDS = 60;
+    static final String START_SELECTION = "<b>";
+    static final String STOP_SELECTION = "</b>";
+    static final String FRAGMENT_DELIMITER = " [...] ";
+
+    private SnippetHighlighter() {
+    }
+
+    /**
+     * @param sentenceBegins the offsets of the sentences on the page, relative to its beginning
+     */
+    static String highlight(String text, int[] sentenceBegins, int[] sentenceEnds, HighlightTerms terms) {
+        if (text == null || text.isEmpty()) return "";
+
+        // The words of the page: runs of letters and digits, like the tokens of the 'simple' configuration.
+        var maxTokens = text.length() / 2 + 1;
+        var begins = new int[maxTokens];
+        var ends = new int[maxTokens];
+        // The lowercased word of each matching token, null for the others.
+        var matched = new String[maxTokens];
+        var tokens = 0;
+        var i = 0;
+        while (i < text.length()) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            var end = i;
+            while (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) end++;
+            var token = text.substring(i, end).toLowerCase(Locale.ROOT);
+            begins[tokens] = i;
+            ends[tokens] = end;
+            matched[tokens] = terms.matches(token) ? token : null;
+            tokens++;
+            i = end;
+        }
+        if (tokens == 0) return "";
+
+        var fragments = new ArrayList<Fragment>();
+        if (sentenceBegins != null && sentenceBegins.length > 0) {
+            var token = 0;
+            for (var s = 0; s < sentenceBegins.length && s < sentenceEnds.length; s++) {
+                while (token < tokens && begins[token] < sentenceBegins[s]) token++;
+                var last = token;
+                while (last < tokens && ends[last] <= sentenceEnds[s]) last++;
+                if (last > token) fragments.add(new Fragment(token, last - 1));
+            }
+        } else {
+            for (var t = 0; t < tokens; t++) {
+                // A match within the previous window doesn't open another one.
+                if (matched[t] == null || (!fragments.isEmpty() && t <= fragments.getLast().to)) continue;
+                var from = Math.max(0, t - MIN_WORDS / 2);
+                fragments.add(new Fragment(from, Math.min(tokens - 1, from + MIN_WORDS - 1)));
+            }
+        }
+        fragments.forEach(f -> f.score(matched));
+        fragments.removeIf(f -> f.distinctMatches == 0);
+
+        // Without a match on the page, e.g. one in the title only, the snippet is the beginning of the page.
+        if (fragments.isEmpty()) return build(text, begins, ends, matched, List.of(new Fragment(0, Math.min(tokens, MIN_WORDS) - 1)));
+
+        fragments.sort(Comparator.comparingInt((Fragment f) -> f.distinctMatches).reversed()
+                .thenComparing(Comparator.comparingInt((Fragment f) -> f.matches).reversed())
+                .thenComparingInt(f -> f.from));
+        var chosen = new ArrayList<Fragment>();
+        for (var fragment : fragments) {
+            if (chosen.size() == MAX_FRAGMENTS) break;
+            if (chosen.stream().anyMatch(c -> c.overlaps(fragment))) continue;
+            chosen.add(fragment);
+        }
+
+        for (var fragment : chosen) fragment.fit(matched, tokens);
+        chosen.sort(Comparator.comparingInt(f -> f.from));
+        // Fitting may have let neighbouring fragments grow into each other.
+        var merged = new ArrayList<Fragment>();
+        for (var fragment : chosen) {
+            var previous = merged.isEmpty() ? null : merged.getLast();
+            if (previous != null && fragment.from <= previous.to + 1) previous.to = Math.max(previous.to, fragment.to);
+            else merged.add(fragment);
+        }
+        return build(text, begins, ends, matched, merged);
+    }
+
+    private static String build(String text, int[] begins, int[] ends, String[] matched, List<Fragment> fragments) {
+        var snippet = new StringBuilder();
+        for (var fragment : fragments) {
+            if (!snippet.isEmpty()) snippet.append(FRAGMENT_DELIMITER);
+            var position = begins[fragment.from];
+            for (var t = fragment.from; t <= fragment.to; t++) {
+                snippet.append(text, position, begins[t]);
+                if (matched[t] != null) {
+                    snippet.append(START_SELECTION).append(text, begins[t], ends[t]).append(STOP_SELECTION);
+                } else {
+                    snippet.append(text, begins[t], ends[t]);
+                }
+                position = ends[t];
+            }
+        }
+        return snippet.toString();
+    }
+
+    /**
+     * A range of words of the page, both ends inclusive.
+     */
+    private static class Fragment {
+        private int from;
+        private int to;
+        private int distinctMatches;
+        private int matches;
+
+        Fragment(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        void score(String[] matched) {
+            var distinct = new HashSet<String>();
+            for (var t = from; t <= to; t++) {
+                if (matched[t] == null) continue;
+                distinct.add(matched[t]);
+                matches++;
+            }
+            distinctMatches = distinct.size();
+        }
+
+        boolean overlaps(Fragment other) {
+            return from <= other.to && other.from <= to;
+        }
+
+        /**
+         * Cuts a long sentence down to the words around its matches and lets a short one grow into its neighbours.
+         */
+        void fit(String[] matched, int words) {
+            if (to - from + 1 > MAX_WORDS) {
+                var firstMatch = from;
+                while (firstMatch < to && matched[firstMatch] == null) firstMatch++;
+                from = Math.max(from, Math.min(firstMatch - MAX_WORDS / 4, to - MAX_WORDS + 1));
+                to = from + MAX_WORDS - 1;
+            }
+            while (to - from + 1 < MIN_WORDS && (to < words - 1 || from > 0)) {
+                if (to < words - 1) to++;
+                if (to - from + 1 < MIN_WORDS && from > 0) from--;
+            }
+        }
+    }
+}
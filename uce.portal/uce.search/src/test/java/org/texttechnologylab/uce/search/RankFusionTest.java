@@ -0,0 +1,120 @@
+package org.texttechnologylab.uce.search;
+
+import junit.framework.TestCase;
+import org.texttechnologylab.uce.common.models.search.SearchLayer;
+
+import java.util.List;
+
+/**
+ * Checks how {@link RankFusion} merges the rankings of the hybrid search.
+ */
+public class RankFusionTest extends TestCase {
+
+    private static final int K = 60;
+
+    public void testRrfRanksDocumentsOfBothLayersFirst() {
+        var hits = RankFusion.fuse(RankFusion.Method.RRF, K, List.of(
+                fulltext(List.of(1, 2, 3), null, 1.0),
+                embeddings(List.of(3, 4), 1.0)));
+
+        assertEquals(List.of(3, 1, 2, 4), documentIds(hits));
+        assertEquals((float) (1.0 / 63 + 1.0 / 61), hits.get(0).score(), 1e-7f);
+        assertEquals((float) (1.0 / 61), hits.get(1).score(), 1e-7f);
+    }
+
+    public void testRrfTiesKeepTheOrderTheDocumentsWereFoundIn() {
+        var hits = RankFusion.fuse(RankFusion.Method.RRF, K, List.of(
+                fulltext(List.of(1, 2), null, 1.0),
+                embeddings(List.of(2, 1), 1.0)));
+        assertEquals(List.of(1, 2), documentIds(hits));
+        assertEquals(hits.get(0).score(), hits.get(1).score());
+
+        // 2 and 4 are both second within their layer.
+        hits = RankFusion.fuse(RankFusion.Method.RRF, K, List.of(
+                fulltext(List.of(1, 2), null, 1.0),
+                embeddings(List.of(3, 4), 1.0)));
+        assertEquals(List.of(1, 3, 2, 4), documentIds(hits));
+    }
+
+    public void testRrfWeights() {
+        var hits = RankFusion.fuse(RankFusion.Method.RRF, K, List.of(
+                fulltext(List.of(1, 2), null, 1.0),
+                embeddings(List.of(2), 2.0)));
+        assertEquals(List.of(2, 1), documentIds(hits));
+        assertEquals((float) (1.0 / 62 + 2.0 / 61), hits.get(0).score(), 1e-7f);
+
+        // A layer without weight only adds the documents the others haven't found, behind them.
+        hits = RankFusion.fuse(RankFusion.Method.RRF, K, List.of(
+                fulltext(List.of(1, 2), null, 1.0),
+                embeddings(List.of(3, 2), 0.0)));
+        assertEquals(List.of(1, 2, 3), documentIds(hits));
+        assertEquals(0f, hits.get(2).score());
+    }
+
+    public void testWeightedNormalizesTheScoresOfEachLayer() {
+        // The fulltext scores become 1, 0.5 and 0, the embeddings are scored by their position.
+        var hits = RankFusion.fuse(RankFusion.Method.WEIGHTED, K, List.of(
+                fulltext(List.of(1, 2, 3), List.of(30f, 20f, 10f), 1.0),
+                embeddings(List.of(3), 1.0)));
+        assertEquals(List.of(1, 3, 2), documentIds(hits));
+        assertEquals(1f, hits.get(0).score());
+        assertEquals(1f, hits.get(1).score());
+        assertEquals(0.5f, hits.get(2).score());
+
+        hits = RankFusion.fuse(RankFusion.Method.WEIGHTED, K, List.of(
+                fulltext(List.of(1, 2, 3), List.of(30f, 20f, 10f), 0.5),
+                embeddings(List.of(3), 1.0)));
+        assertEquals(List.of(3, 1, 2), documentIds(hits));
+    }
+
+    public void testWeightedWithEqualOrMissingScores() {
+        var hits = RankFusion.fuse(RankFusion.Method.WEIGHTED, K, List.of(
+                fulltext(List.of(1, 2), List.of(5f, 5f), 1.0)));
+        assertEquals(List.of(1, 2), documentIds(hits));
+        assertEquals(1f, hits.get(1).score());
+
+        // Scores that don't fit the documents are ignored like missing ones.
+        hits = RankFusion.fuse(RankFusion.Method.WEIGHTED, K, List.of(
+                fulltext(List.of(1, 2, 3, 4), List.of(5f), 1.0)));
+        assertEquals(List.of(1, 2, 3, 4), documentIds(hits));
+        assertEquals(0.25f, hits.get(3).score());
+    }
+
+    public void testMissingLayer() {
+        // A layer that failed or timed out is left out of the rankings, the other one keeps its order.
+        var hits = RankFusion.fuse(RankFusion.Method.RRF, K, List.of(embeddings(List.of(7, 5, 9), 1.0)));
+        assertEquals(List.of(7, 5, 9), documentIds(hits));
+
+        hits = RankFusion.fuse(RankFusion.Method.RRF, K, List.of(
+                fulltext(List.of(), List.of(), 1.0),
+                embeddings(List.of(7, 5), 1.0)));
+        assertEquals(List.of(7, 5), documentIds(hits));
+
+        assertTrue(RankFusion.fuse(RankFusion.Method.WEIGHTED, K, List.of()).isEmpty());
+    }
+
+    public void testParseMethod() {
+        assertEquals(RankFusion.Method.NONE, RankFusion.Method.parse(null));
+        assertEquals(RankFusion.Method.NONE, RankFusion.Method.parse(" "));
+        assertEquals(RankFusion.Method.RRF, RankFusion.Method.parse("rrf"));
+        assertEquals(RankFusion.Method.WEIGHTED, RankFusion.Method.parse(" Weighted "));
+        try {
+            RankFusion.Method.parse("sum");
+            fail("An unknown fusion must not be taken for another one.");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    private static RankFusion.LayerRanking fulltext(List<Integer> documentIds, List<Float> scores, double weight) {
+        return new RankFusion.LayerRanking(SearchLayer.FULLTEXT, documentIds, scores, weight);
+    }
+
+    private static RankFusion.LayerRanking embeddings(List<Integer> documentIds, double weight) {
+        return new RankFusion.LayerRanking(SearchLayer.EMBEDDINGS, documentIds, null, weight);
+    }
+
+    private static List<Integer> documentIds(List<RankFusion.Hit> hits) {
+        return hits.stream().map(RankFusion.Hit::documentId).toList();
+    }
+}
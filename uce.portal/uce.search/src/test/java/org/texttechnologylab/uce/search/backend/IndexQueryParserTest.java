@@ -0,0 +1,87 @@
+package org.texttechnologylab.uce.search.backend;
+
+import junit.framework.TestCase;
+import org.apache.lucene.search.MatchNoDocsQuery;
+
+import java.io.IOException;
+
+/**
+ * Checks that the {@link IndexQueryParser} understands the phrases of the postgres fulltext search.
+ */
+public class IndexQueryParserTest extends TestCase {
+
+    public void testWebsearchWords() throws IOException {
+        assertEquals("+apfel +birne", parse("Apfel Birne", false));
+        assertEquals("apfel birne", parse("apfel or birne", false));
+        assertEquals("apfel birne", parse("apfel OR birne", false));
+        // Like websearch_to_tsquery, the words around an or are and-ed first.
+        assertEquals("(+apfel +birne) kirsche", parse("apfel birne or kirsche", false));
+    }
+
+    public void testWebsearchExclusions() throws IOException {
+        assertEquals("+apfel -birne", parse("apfel -birne", false));
+        // An exclusion alone excludes from all documents.
+        assertEquals("#*:* -birne", parse("-birne", false));
+        // A hyphen within a word doesn't exclude, the parts of the word follow each other.
+        assertEquals("+apfel +\"birne kirsche\"", parse("apfel birne-kirsche", false));
+    }
+
+    public void testWebsearchIgnoresTheOperatorsOfThePromode() throws IOException {
+        assertEquals("+apfel +birne", parse("apfel & birne", false));
+        assertEquals("+apfel +birne", parse("apfel | birne", false));
+    }
+
+    public void testPhrases() throws IOException {
+        assertEquals("\"der alte baum\"", parse("\"der alte Baum\"", false));
+        assertEquals("+\"der alte baum\" +wald", parse("\"der alte baum\" wald", false));
+        assertEquals("\"der alte baum\"", parse("\"der alte baum\"", true));
+        // A phrase of a single word is that word.
+        assertEquals("baum", parse("\"baum\"", false));
+    }
+
+    public void testPhrasesWithDistance() throws IOException {
+        assertEquals("\"alte baum\"~3", parse("\"alte baum\"~3", false));
+        assertEquals("\"alte baum\"~3", parse("\"alte baum\"~3", true));
+        assertEquals("+\"alte baum\"~10 -wald", parse("\"alte baum\"~10 -wald", false));
+        // Without a number the words must follow each other.
+        assertEquals("+\"alte baum\" +wald", parse("\"alte baum\"~ wald", false));
+    }
+
+    public void testPromodeOperators() throws IOException {
+        assertEquals("+apfel +birne", parse("apfel & birne", true));
+        assertEquals("apfel birne", parse("apfel | birne", true));
+        assertEquals("+apfel +(birne kirsche)", parse("apfel & (birne | kirsche)", true));
+        assertEquals("-apfel +birne", parse("!apfel & birne", true));
+        assertEquals("#*:* -apfel", parse("!apfel", true));
+        // The words of the websearch syntax are just words in the pro mode.
+        assertEquals("+apfel +or +birne", parse("apfel or birne", true));
+    }
+
+    public void testPromodePrefixAndFollowedBy() throws IOException {
+        assertEquals("baum*", parse("baum:*", true));
+        assertEquals("\"alte baum\"", parse("alte <-> baum", true));
+        assertEquals("\"alte baum\"~2", parse("alte <3> baum", true));
+        assertEquals("\"der alte baum\"~1", parse("der <-> alte <2> baum", true));
+        // A sequence is a phrase, so it can't end with a prefix.
+        assertEquals("\"alte baum\"", parse("alte <-> baum:*", true));
+        // Outside of the pro mode, the prefix is just the word.
+        assertEquals("baum", parse("baum:*", false));
+    }
+
+    public void testUnbalancedPhrases() throws IOException {
+        assertEquals("apfel birne", parse("(apfel | birne", true));
+        assertEquals("+apfel +birne", parse("apfel) birne", true));
+        assertEquals("\"alte baum\"", parse("\"alte baum", false));
+    }
+
+    public void testEmptyPhrases() throws IOException {
+        assertEquals("*:*", parse("", false));
+        assertEquals("*:*", parse("  ", true));
+        assertTrue(new IndexQueryParser(CorpusIndex.createAnalyzer(), false).parse("or") instanceof MatchNoDocsQuery);
+        assertTrue(new IndexQueryParser(CorpusIndex.createAnalyzer(), true).parse("& |") instanceof MatchNoDocsQuery);
+    }
+
+    private static String parse(String searchPhrase, boolean proMode) throws IOException {
+        return new IndexQueryParser(CorpusIndex.createAnalyzer(), proMode).parse(searchPhrase).toString(CorpusIndex.FIELD_TEXT);
+    }
+}
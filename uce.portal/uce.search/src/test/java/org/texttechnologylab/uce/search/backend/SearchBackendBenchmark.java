@@ -0,0 +1,201 @@
+package org.texttechnologylab.uce.search.backend;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.FSDirectory;
+import org.texttechnologylab.uce.common.config.CommonConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Compares the fulltext search of postgres with the inverted index on a synthetic corpus, so the backends can be
+ * weighed for the size of a corpus before it is imported.
+ * <p>
+ * The words of the corpus follow a Zipf distribution, like natural language does. Postgres searches the pages the
+ * way the uce_search_layer_fulltext procedure does, in a temporary table of the database of the common.conf.
+ * <p>
+ * Usage: {@code SearchBackendBenchmark [documents=2000] [wordsPerDocument=3000] [runs=20]}
+ */
+public class SearchBackendBenchmark {
+
+    private static final int VOCABULARY_SIZE = 50000;
+    private static final int WORDS_PER_PAGE = 300;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MAX_HITS = 20000;
+
+    public static void main(String[] args) throws Exception {
+        var documents = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        var wordsPerDocument = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+        var runs = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        var vocabulary = new Vocabulary(VOCABULARY_SIZE, new Random(42));
+        var corpus = new ArrayList<String>(documents);
+        for (var i = 0; i < documents; i++) corpus.add(vocabulary.text(wordsPerDocument));
+
+        // Frequent and rare words, by the rank of the Zipf distribution.
+        var frequent = vocabulary.word(5);
+        var common = vocabulary.word(50);
+        var rare = vocabulary.word(5000);
+        var queries = List.of(
+                frequent,
+                rare,
+                frequent + " " + rare,
+                "\"" + frequent + " " + common + "\"",
+                common + " or " + rare);
+
+        System.out.printf("Corpus: %d documents, %d words each, %d distinct words%n", documents, wordsPerDocument, VOCABULARY_SIZE);
+        var indexDirectory = Files.createTempDirectory("uce-search-benchmark");
+        try {
+            var start = System.nanoTime();
+            try (var writer = new CorpusIndexWriter(indexDirectory, 1, 1, Integer.MAX_VALUE, true)) {
+                for (var i = 0; i < corpus.size(); i++) writer.indexDocument(i + 1, "Document " + (i + 1), corpus.get(i));
+            }
+            System.out.printf("Built the inverted index in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+
+            var config = new CommonConfig();
+            try (var connection = DriverManager.getConnection(
+                    config.getPostgresqlProperty("hibernate.connection.url"),
+                    config.getPostgresqlProperty("hibernate.connection.username"),
+                    config.getPostgresqlProperty("hibernate.connection.password"));
+                 var directory = FSDirectory.open(CorpusIndex.getSegmentDirectory(indexDirectory, 1, 1));
+                 var reader = DirectoryReader.open(directory)) {
+                start = System.nanoTime();
+                loadPages(connection, corpus);
+                System.out.printf("Loaded the pages into postgres in %d ms%n%n", (System.nanoTime() - start) / 1_000_000);
+
+                var searcher = new IndexSearcher(reader);
+                searcher.setSimilarity(new BM25Similarity());
+                var parser = new IndexQueryParser(CorpusIndex.createAnalyzer(), false);
+
+                System.out.printf("%-40s %-8s %10s %10s %10s %8s%n", "query", "backend", "p50 ms", "p95 ms", "mean ms", "hits");
+                for (var query : queries) {
+                    var luceneQuery = parser.parse(query);
+                    report(query, "index", runs, () -> searcher.search(luceneQuery, MAX_HITS).scoreDocs.length);
+                    report(query, "postgres", runs, () -> searchPostgres(connection, query));
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(indexDirectory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Splits the documents into pages like the importer does and indexes them like the page table.
+     */
+    private static void loadPages(Connection connection, List<String> corpus) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute("CREATE TEMP TABLE benchmark_page (document_id bigint, coveredtext text, textsearch tsvector)");
+        }
+        try (var insert = connection.prepareStatement(
+                "INSERT INTO benchmark_page (document_id, coveredtext, textsearch) VALUES (?, ?, to_tsvector('simple', ?))")) {
+            for (var i = 0; i < corpus.size(); i++) {
+                var words = corpus.get(i).split(" ");
+                for (var from = 0; from < words.length; from += WORDS_PER_PAGE) {
+                    var page = String.join(" ", Arrays.copyOfRange(words, from, Math.min(from + WORDS_PER_PAGE, words.length)));
+                    insert.setLong(1, i + 1);
+                    insert.setString(2, page);
+                    insert.setString(3, page);
+                    insert.addBatch();
+                }
+                if (i % 100 == 99) insert.executeBatch();
+            }
+            insert.executeBatch();
+        }
+        try (var statement = connection.createStatement()) {
+            statement.execute("CREATE INDEX ON benchmark_page USING GIN (textsearch)");
+            statement.execute("ANALYZE benchmark_page");
+        }
+    }
+
+    /**
+     * The ranking of the fulltext procedure without its pruning: all matching pages are ranked, then averaged per
+     * document.
+     */
+    private static int searchPostgres(Connection connection, String query) throws SQLException {
+        try (var statement = connection.prepareStatement("""
+                WITH ranked_pages AS (
+                    SELECT p.document_id, ts_rank_cd(p.textsearch, websearch_to_tsquery('simple', ?)) AS rank
+                    FROM benchmark_page p
+                    WHERE p.textsearch @@ websearch_to_tsquery('simple', ?))
+                SELECT document_id, AVG(rank) AS rank
+                FROM ranked_pages
+                GROUP BY document_id
+                ORDER BY rank DESC""")) {
+            statement.setString(1, query);
+            statement.setString(2, query);
+            try (var result = statement.executeQuery()) {
+                var hits = 0;
+                while (result.next()) hits++;
+                return hits;
+            }
+        }
+    }
+
+    private static void report(String query, String backend, int runs, Search search) throws Exception {
+        for (var i = 0; i < WARMUP_RUNS; i++) search.run();
+        var timings = new long[runs];
+        var hits = 0;
+        for (var i = 0; i < runs; i++) {
+            var start = System.nanoTime();
+            hits = search.run();
+            timings[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(timings);
+        var mean = Arrays.stream(timings).average().orElse(0);
+        System.out.printf("%-40s %-8s %10.2f %10.2f %10.2f %8d%n", query, backend,
+                timings[runs / 2] / 1e6, timings[Math.min(runs - 1, (int) Math.ceil(runs * 0.95) - 1)] / 1e6, mean / 1e6, hits);
+    }
+
+    @FunctionalInterface
+    private interface Search {
+        int run() throws IOException, SQLException;
+    }
+
+    /**
+     * Words drawn by a Zipf distribution: the word of rank r is drawn proportionally to 1/r.
+     */
+    private static class Vocabulary {
+        private final double[] cumulative;
+        private final Random random;
+
+        Vocabulary(int size, Random random) {
+            this.random = random;
+            this.cumulative = new double[size];
+            var sum = 0.0;
+            for (var i = 0; i < size; i++) {
+                sum += 1.0 / (i + 1);
+                cumulative[i] = sum;
+            }
+            for (var i = 0; i < size; i++) cumulative[i] /= sum;
+        }
+
+        String word(int rank) {
+            return "w" + Integer.toString(rank, 36);
+        }
+
+        String text(int words) {
+            var builder = new StringBuilder(words * 6);
+            for (var i = 0; i < words; i++) {
+                var index = Arrays.binarySearch(cumulative, random.nextDouble());
+                if (index < 0) index = -index - 1;
+                if (i > 0) builder.append(' ');
+                builder.append(word(Math.min(index, cumulative.length - 1) + 1));
+            }
+            return builder.toString();
+        }
+    }
+}
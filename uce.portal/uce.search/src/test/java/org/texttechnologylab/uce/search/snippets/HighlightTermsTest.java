@@ -0,0 +1,78 @@
+package org.texttechnologylab.uce.search.snippets;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks which words of a search phrase {@link HighlightTerms} highlights.
+ */
+public class HighlightTermsTest extends TestCase {
+
+    public void testWords() {
+        var terms = new HighlightTerms("Apfel \"alte Birne\"", false);
+        assertTrue(terms.matches("apfel"));
+        assertTrue(terms.matches("alte"));
+        assertTrue(terms.matches("birne"));
+        assertFalse(terms.matches("apfelbaum"));
+        assertFalse(terms.matches("Apfel"));
+    }
+
+    public void testExcludedTerms() {
+        var terms = new HighlightTerms("apfel -birne kirsche", false);
+        assertTrue(terms.matches("apfel"));
+        assertFalse(terms.matches("birne"));
+        assertTrue(terms.matches("kirsche"));
+
+        // Only a hyphen in front of a word excludes it.
+        terms = new HighlightTerms("apfel birne-kirsche", false);
+        assertTrue(terms.matches("birne"));
+        assertTrue(terms.matches("kirsche"));
+
+        terms = new HighlightTerms("!birne & apfel", true);
+        assertFalse(terms.matches("birne"));
+        assertTrue(terms.matches("apfel"));
+
+        assertTrue(new HighlightTerms("-birne", false).isEmpty());
+    }
+
+    public void testOperatorsAreNoTerms() {
+        var terms = new HighlightTerms("apfel or birne", false);
+        assertFalse(terms.matches("or"));
+        assertTrue(terms.matches("birne"));
+        // In the pro mode, the or of the websearch syntax is a word.
+        assertTrue(new HighlightTerms("apfel or birne", true).matches("or"));
+
+        terms = new HighlightTerms("alte <2> baum | (apfel & birne)", true);
+        assertFalse(terms.matches("2"));
+        assertTrue(terms.matches("alte"));
+        assertTrue(terms.matches("baum"));
+        assertTrue(terms.matches("apfel"));
+        assertTrue(terms.matches("birne"));
+    }
+
+    public void testPrefixTerms() {
+        var terms = new HighlightTerms("baum:* & apfel", true);
+        assertTrue(terms.matches("baum"));
+        assertTrue(terms.matches("baumhaus"));
+        assertFalse(terms.matches("apfelbaum"));
+        assertTrue(terms.matches("apfel"));
+        assertFalse(terms.matches("apfelbaum"));
+
+        // A weight isn't a prefix.
+        terms = new HighlightTerms("baum:A", true);
+        assertTrue(terms.matches("baum"));
+        assertFalse(terms.matches("baumhaus"));
+
+        // Outside of the pro mode, the marker is no prefix either.
+        terms = new HighlightTerms("baum:*", false);
+        assertTrue(terms.matches("baum"));
+        assertFalse(terms.matches("baumhaus"));
+
+        assertTrue(new HighlightTerms("!baum:*", true).isEmpty());
+    }
+
+    public void testWithoutSearchPhrase() {
+        assertTrue(new HighlightTerms(null, false).isEmpty());
+        assertTrue(new HighlightTerms("", true).isEmpty());
+        assertTrue(new HighlightTerms("& | !", true).isEmpty());
+    }
+}
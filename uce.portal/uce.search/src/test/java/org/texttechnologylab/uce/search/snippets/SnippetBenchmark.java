@@ -0,0 +1,143 @@
+package org.texttechnologylab.uce.search.snippets;
+
+import org.texttechnologylab.uce.common.config.CommonConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the snippets of the {@link SnippetHighlighter} with ts_headline on large synthetic pages. Postgres builds
+ * its headlines from a temporary table of the database of the common.conf, with the options the fulltext search used.
+ * The java side is timed without fetching the page, which the search does once per page of hits for both.
+ * <p>
+ * Usage: {@code SnippetBenchmark [pages=50] [wordsPerPage=20000] [runs=10]}
+ */
+public class SnippetBenchmark {
+
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final int WARMUP_RUNS = 2;
+    private static final String HEADLINE_OPTIONS = "StartSel=<b>, StopSel=</b>, MaxWords=60, MinWords=35, MaxFragments=3, FragmentDelimiter=\" [...] \"";
+
+    public static void main(String[] args) throws Exception {
+        var pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        var wordsPerPage = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        var runs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        var random = new Random(42);
+        var pages = new ArrayList<Page>(pageCount);
+        for (var i = 0; i < pageCount; i++) pages.add(Page.generate(wordsPerPage, random));
+        // A frequent, a medium and a rare word of the Zipf distribution, alone and together.
+        var queries = List.of(word(3), word(300), word(3000), word(300) + " " + word(3000));
+
+        var config = new CommonConfig();
+        try (var connection = DriverManager.getConnection(
+                config.getPostgresqlProperty("hibernate.connection.url"),
+                config.getPostgresqlProperty("hibernate.connection.username"),
+                config.getPostgresqlProperty("hibernate.connection.password"))) {
+            loadPages(connection, pages);
+
+            System.out.printf("%d pages of %d words%n", pageCount, wordsPerPage);
+            System.out.printf("%-24s %-11s %10s %10s %10s%n", "query", "engine", "p50 ms", "p95 ms", "mean ms");
+            for (var query : queries) {
+                var terms = new HighlightTerms(query, false);
+                report(query, "java", runs, () -> {
+                    for (var page : pages) SnippetHighlighter.highlight(page.text(), page.sentenceBegins(), page.sentenceEnds(), terms);
+                });
+                report(query, "ts_headline", runs, () -> headlines(connection, query, pages.size()));
+            }
+        }
+    }
+
+    private static void loadPages(Connection connection, List<Page> pages) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute("CREATE TEMP TABLE benchmark_snippet_page (id integer PRIMARY KEY, coveredtext text)");
+        }
+        try (var insert = connection.prepareStatement("INSERT INTO benchmark_snippet_page (id, coveredtext) VALUES (?, ?)")) {
+            for (var i = 0; i < pages.size(); i++) {
+                insert.setInt(1, i + 1);
+                insert.setString(2, pages.get(i).text());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private static void headlines(Connection connection, String query, int pageCount) throws SQLException {
+        try (var statement = connection.prepareStatement(
+                "SELECT ts_headline('simple', p.coveredtext, websearch_to_tsquery('simple', ?), ?) FROM benchmark_snippet_page p WHERE p.id = ?")) {
+            for (var id = 1; id <= pageCount; id++) {
+                statement.setString(1, query);
+                statement.setString(2, HEADLINE_OPTIONS);
+                statement.setInt(3, id);
+                try (var result = statement.executeQuery()) {
+                    while (result.next()) result.getString(1);
+                }
+            }
+        }
+    }
+
+    private static void report(String query, String engine, int runs, Run run) throws Exception {
+        for (var i = 0; i < WARMUP_RUNS; i++) run.run();
+        var timings = new long[runs];
+        for (var i = 0; i < runs; i++) {
+            var start = System.nanoTime();
+            run.run();
+            timings[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(timings);
+        var mean = Arrays.stream(timings).average().orElse(0);
+        System.out.printf("%-24s %-11s %10.2f %10.2f %10.2f%n", query, engine,
+                timings[runs / 2] / 1e6, timings[Math.min(runs - 1, (int) Math.ceil(runs * 0.95) - 1)] / 1e6, mean / 1e6);
+    }
+
+    private static String word(int rank) {
+        return "w" + Integer.toString(rank, 36);
+    }
+
+    @FunctionalInterface
+    private interface Run {
+        void run() throws Exception;
+    }
+
+    /**
+     * A page of words drawn by a Zipf distribution, in sentences of 8 to 30 words.
+     */
+    private record Page(String text, int[] sentenceBegins, int[] sentenceEnds) {
+
+        static Page generate(int words, Random random) {
+            var cumulative = new double[VOCABULARY_SIZE];
+            var sum = 0.0;
+            for (var i = 0; i < VOCABULARY_SIZE; i++) {
+                sum += 1.0 / (i + 1);
+                cumulative[i] = sum;
+            }
+
+            var text = new StringBuilder(words * 6);
+            var begins = new ArrayList<Integer>();
+            var ends = new ArrayList<Integer>();
+            var written = 0;
+            while (written < words) {
+                var length = Math.min(words - written, 8 + random.nextInt(23));
+                if (!text.isEmpty()) text.append(' ');
+                begins.add(text.length());
+                for (var i = 0; i < length; i++) {
+                    var index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                    if (index < 0) index = -index - 1;
+                    if (i > 0) text.append(' ');
+                    text.append(word(Math.min(index, VOCABULARY_SIZE - 1) + 1));
+                }
+                text.append('.');
+                ends.add(text.length());
+                written += length;
+            }
+            return new Page(text.toString(),
+                    begins.stream().mapToInt(Integer::intValue).toArray(),
+                    ends.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+}
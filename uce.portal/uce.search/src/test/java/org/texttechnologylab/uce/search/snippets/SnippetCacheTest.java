@@ -0,0 +1,66 @@
+package org.texttechnologylab.uce.search.snippets;
+
+import junit.framework.TestCase;
+import org.texttechnologylab.uce.common.models.search.PageSnippet;
+
+import java.util.ArrayList;
+
+/**
+ * Checks that the {@link SnippetCache} drops the least recently used documents.
+ */
+public class SnippetCacheTest extends TestCase {
+
+    public void testEvictsTheLeastRecentlyUsed() {
+        var cache = new SnippetCache(2);
+        cache.put("baum", false, 1, snippets(1));
+        cache.put("baum", false, 2, snippets(2));
+        // Reading the first document makes the second the least recently used.
+        assertNotNull(cache.get("baum", false, 1));
+        cache.put("baum", false, 3, snippets(3));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("baum", false, 2));
+        assertEquals(1, cache.get("baum", false, 1).getFirst().getPageId());
+        assertEquals(3, cache.get("baum", false, 3).getFirst().getPageId());
+    }
+
+    public void testUpdatingAnEntryDoesNotGrowTheCache() {
+        var cache = new SnippetCache(2);
+        cache.put("baum", false, 1, snippets(1));
+        cache.put("baum", false, 1, snippets(11));
+        cache.put("baum", false, 2, snippets(2));
+
+        assertEquals(2, cache.size());
+        assertEquals(11, cache.get("baum", false, 1).getFirst().getPageId());
+    }
+
+    public void testEntriesPerSearchPhraseAndMode() {
+        var cache = new SnippetCache(10);
+        cache.put("baum", false, 1, snippets(1));
+
+        assertNull(cache.get("wald", false, 1));
+        assertNull(cache.get("baum", true, 1));
+        assertNull(cache.get("baum", false, 2));
+        assertNotNull(cache.get("baum", false, 1));
+
+        cache.put(null, false, 1, snippets(5));
+        assertEquals(5, cache.get(null, false, 1).getFirst().getPageId());
+    }
+
+    public void testDocumentsWithoutSnippetsAreCached() {
+        var cache = new SnippetCache(10);
+        cache.put("baum", false, 1, new ArrayList<>());
+
+        assertNotNull(cache.get("baum", false, 1));
+        assertTrue(cache.get("baum", false, 1).isEmpty());
+    }
+
+    private static ArrayList<PageSnippet> snippets(int pageId) {
+        var snippet = new PageSnippet();
+        snippet.setPageId(pageId);
+        snippet.setSnippet("snippet of page " + pageId);
+        var snippets = new ArrayList<PageSnippet>();
+        snippets.add(snippet);
+        return snippets;
+    }
+}
@@ -0,0 +1,153 @@
+package org.texttechnologylab.uce.search.snippets;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Checks which fragments of a page the {@link SnippetHighlighter} chooses and how it highlights them.
+ */
+public class SnippetHighlighterTest extends TestCase {
+
+    public void testHighlightsTheMatchesOfAShortPage() {
+        var text = "Der alte Baum steht im Wald.";
+        var snippet = SnippetHighlighter.highlight(text, new int[]{0}, new int[]{text.length()}, new HighlightTerms("baum wald", false));
+        assertEquals("Der alte <b>Baum</b> steht im <b>Wald</b>", snippet);
+    }
+
+    public void testExcludedAndPrefixTerms() {
+        var text = "Das Baumhaus steht neben der Birne im Baum.";
+        var snippet = SnippetHighlighter.highlight(text, null, null, new HighlightTerms("baum:* & !birne", true));
+        assertEquals("Das <b>Baumhaus</b> steht neben der Birne im <b>Baum</b>", snippet);
+    }
+
+    public void testWithoutAMatchTheSnippetIsTheBeginningOfThePage() {
+        var page = new PageBuilder();
+        page.sentence(100);
+        var snippet = page.highlight(new HighlightTerms("baum", false));
+        assertEquals(SnippetHighlighter.MIN_WORDS, words(snippet).size());
+        assertTrue(snippet.startsWith("s0w0 "));
+        assertFalse(snippet.contains(SnippetHighlighter.START_SELECTION));
+
+        assertEquals("", SnippetHighlighter.highlight("", null, null, new HighlightTerms("baum", false)));
+        assertEquals("", SnippetHighlighter.highlight(" ... ", null, null, new HighlightTerms("baum", false)));
+    }
+
+    public void testChoosesTheSentencesWithTheMostDistinctMatches() {
+        var page = new PageBuilder();
+        page.sentence(40, "apfel");
+        page.sentence(40, "apfel", "birne");
+        page.sentence(40);
+        page.sentence(40, "birne", "birne");
+        page.sentence(40);
+        page.sentence(40, "apfel", "apfel", "apfel");
+        var snippet = page.highlight(new HighlightTerms("apfel birne", false));
+
+        // Both words first, then the most matches; the first sentence is left out and the rest shown in order.
+        var fragments = snippet.split(Pattern.quote(SnippetHighlighter.FRAGMENT_DELIMITER));
+        assertEquals(SnippetHighlighter.MAX_FRAGMENTS, fragments.length);
+        assertTrue(fragments[0].startsWith("s1w0 "));
+        assertTrue(fragments[1].startsWith("s3w0 "));
+        assertTrue(fragments[2].startsWith("s5w0 "));
+        for (var fragment : fragments) assertEquals(40, words(fragment).size());
+        assertEquals(7, count(snippet, SnippetHighlighter.START_SELECTION));
+        assertEquals(7, count(snippet, SnippetHighlighter.STOP_SELECTION));
+    }
+
+    public void testCutsALongSentenceAroundItsMatch() {
+        var page = new PageBuilder();
+        page.sentence(200, 150, "apfel");
+        var snippet = page.highlight(new HighlightTerms("apfel", false));
+
+        var words = words(snippet);
+        assertEquals(SnippetHighlighter.MAX_WORDS, words.size());
+        // A quarter of the fragment before the match.
+        assertEquals("s0w135", words.getFirst());
+        assertEquals("<b>apfel</b>", words.get(SnippetHighlighter.MAX_WORDS / 4));
+    }
+
+    public void testShortSentencesGrowIntoTheirNeighbours() {
+        var page = new PageBuilder();
+        page.sentence(30);
+        page.sentence(10, "apfel");
+        page.sentence(30);
+        var snippet = page.highlight(new HighlightTerms("apfel", false));
+
+        // The words are added on both sides in turn, across the ends of the sentences.
+        var words = words(snippet);
+        assertEquals(SnippetHighlighter.MIN_WORDS, words.size());
+        assertEquals("s0w18", words.getFirst());
+        assertEquals("s2w12", words.getLast());
+        assertTrue(snippet.contains("s0w29. s1w0"));
+        assertTrue(snippet.contains("s1w4 <b>apfel</b> s1w6"));
+    }
+
+    public void testPagesWithoutSentencesAreCutIntoWindows() {
+        var page = new PageBuilder();
+        page.sentence(100, 50, "apfel");
+        page.sentence(100, 50, "birne");
+        // Without the sentences of the page, every match opens a window around it.
+        var snippet = SnippetHighlighter.highlight(page.text.toString(), null, null, new HighlightTerms("apfel birne", false));
+
+        var fragments = snippet.split(Pattern.quote(SnippetHighlighter.FRAGMENT_DELIMITER));
+        assertEquals(2, fragments.length);
+        for (var fragment : fragments) assertEquals(SnippetHighlighter.MIN_WORDS, words(fragment).size());
+        assertTrue(fragments[0].startsWith("s0w33 "));
+        assertTrue(fragments[1].startsWith("s1w33 "));
+    }
+
+    private static List<String> words(String snippet) {
+        return List.of(snippet.trim().split("\\s+"));
+    }
+
+    private static int count(String text, String part) {
+        var count = 0;
+        for (var i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) count++;
+        return count;
+    }
+
+    /**
+     * A page of numbered filler words, e.g. s2w7 for the eighth word of the third sentence, with some words of the
+     * search in between.
+     */
+    private static class PageBuilder {
+        private final StringBuilder text = new StringBuilder();
+        private final List<Integer> begins = new ArrayList<>();
+        private final List<Integer> ends = new ArrayList<>();
+
+        /**
+         * A sentence with the given words spread over it.
+         */
+        void sentence(int words, String... matches) {
+            var positions = new int[matches.length];
+            for (var i = 0; i < matches.length; i++) positions[i] = (i + 1) * words / (matches.length + 1);
+            sentence(words, positions, matches);
+        }
+
+        void sentence(int words, int position, String match) {
+            sentence(words, new int[]{position}, new String[]{match});
+        }
+
+        private void sentence(int words, int[] positions, String[] matches) {
+            if (!text.isEmpty()) text.append(' ');
+            begins.add(text.length());
+            for (var w = 0; w < words; w++) {
+                if (w > 0) text.append(' ');
+                var match = -1;
+                for (var i = 0; i < positions.length; i++) if (positions[i] == w) match = i;
+                text.append(match >= 0 ? matches[match] : "s" + (begins.size() - 1) + "w" + w);
+            }
+            text.append('.');
+            ends.add(text.length());
+        }
+
+        String highlight(HighlightTerms terms) {
+            return SnippetHighlighter.highlight(text.toString(),
+                    begins.stream().mapToInt(Integer::intValue).toArray(),
+                    ends.stream().mapToInt(Integer::intValue).toArray(),
+                    terms);
+        }
+    }
+}
@@ -31,7 +31,6 @@ import org.texttechnologylab.uce.common.config.CommonConfig;
 import org.texttechnologylab.uce.common.config.SpringConfig;
 import org.texttechnologylab.uce.common.config.UceConfig;
 import org.texttechnologylab.uce.common.exceptions.ExceptionUtils;
-import org.texttechnologylab.uce.common.models.corpus.Corpus;
 import org.texttechnologylab.uce.common.models.corpus.UCELog;
 import org.texttechnologylab.uce.common.services.LexiconService;
 import org.texttechnologylab.uce.common.services.MapService;
@@ -392,10 +391,7 @@ public class App {
                     get("/", ctx -> {
                         var model = new HashMap<String, Object>();
                         model.put("title", SystemStatus.UceConfig.getMeta().getName());
-                        model.put("corpora", context.getBean(PostgresqlDataInterface_Impl.class)
-                                .getAllCorpora()
-                                .stream().map(Corpus::getViewModel)
-                                .toList());
+                        model.put("corpora", context.getBean(PostgresqlDataInterface_Impl.class).getAllCorpusViewModels());
                         model.put("commonConf", commonConfig);
                         model.put("isSparqlAlive", SystemStatus.JenaSparqlStatus.isAlive());
                         model.put("isAuthAlive", SystemStatus.AuthenticationService.isAlive());
@@ -3,7 +3,7 @@ package org.texttechnologylab.uce.web.freeMarker;
 import freemarker.template.Configuration;
 import org.texttechnologylab.uce.common.models.Linkable;
 import org.texttechnologylab.uce.common.models.UIMAAnnotation;
-import org.texttechnologylab.uce.common.models.corpus.Document;
+import org.texttechnologylab.uce.common.models.search.SearchResultDocument;
 import org.texttechnologylab.uce.web.CustomFreeMarkerEngine;
 
 import java.util.HashMap;
@@ -23,7 +23,7 @@ public final class Renderer {
     public static String renderLinkable(Linkable linkable, Linkable from){
         String path = "defaultError.ftl";
         var uiModel = new HashMap<String, Object>();
-        if(linkable instanceof Document doc){
+        if(linkable instanceof SearchResultDocument doc){
             uiModel.put("document", doc);
             uiModel.put("searchId", "");
             uiModel.put("reduced",true);
@@ -7,9 +7,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.context.ApplicationContext;
 import org.texttechnologylab.uce.common.exceptions.ExceptionUtils;
-import org.texttechnologylab.uce.common.models.ModelBase;
-import org.texttechnologylab.uce.common.models.corpus.Document;
 import org.texttechnologylab.uce.common.models.rag.DocumentEmbedding;
+import org.texttechnologylab.uce.common.models.search.SearchResultDocument;
 import org.texttechnologylab.uce.common.models.universe.CorpusUniverseNode;
 import org.texttechnologylab.uce.common.models.universe.UniverseLayer;
 import org.texttechnologylab.uce.common.services.PostgresqlDataInterface_Impl;
@@ -169,7 +168,7 @@ public class CorpusUniverseApi implements UceApi {
             case DOCUMENTS:
                 var docEmbeddings = ExceptionUtils.tryCatchLog(
                         () -> ragService.getManyDocumentEmbeddingsOfDocuments(
-                                search.getSearchState().getCurrentDocuments().stream().map(ModelBase::getId).toList()),
+                                search.getSearchState().getCurrentDocuments().stream().map(SearchResultDocument::getId).toList()),
                         (ex) -> logger.error("Error fetching document embeddings of many documents.", ex));
                 if (docEmbeddings == null) {
                     result.replace("status", 500);
@@ -190,7 +189,7 @@ public class CorpusUniverseApi implements UceApi {
         ctx.json(result);
     }
 
-    private static CorpusUniverseNode getCorpusUniverseNode(Document doc, DocumentEmbedding docEmbedding) {
+    private static CorpusUniverseNode getCorpusUniverseNode(SearchResultDocument doc, DocumentEmbedding docEmbedding) {
         var node = new CorpusUniverseNode();
         node.setDocumentId(doc.getId());
         if (doc.getDocumentKeywordDistribution() != null)
@@ -198,7 +197,7 @@ public class CorpusUniverseApi implements UceApi {
         node.setTsne2d(docEmbedding.getTsne2d());
         node.setTsne3d(docEmbedding.getTsne3d());
         node.setTitle(doc.getDocumentTitle());
-        node.setDocumentLength(doc.getFullText().length());
+        node.setDocumentLength(doc.getFullTextLength());
         return node;
     }
 
@@ -7,18 +7,21 @@ import io.javalin.http.Context;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.context.ApplicationContext;
-import org.texttechnologylab.uce.common.config.CorpusConfig;
+import org.texttechnologylab.uce.common.config.CommonConfig;
 import org.texttechnologylab.uce.common.exceptions.DatabaseOperationException;
 import org.texttechnologylab.uce.common.exceptions.ExceptionUtils;
+import org.texttechnologylab.uce.common.models.UIMAAnnotation;
 import org.texttechnologylab.uce.common.models.corpus.UCEMetadataValueType;
 import org.texttechnologylab.uce.common.models.search.SearchType;
 import org.texttechnologylab.uce.common.services.PostgresqlDataInterface_Impl;
 import org.texttechnologylab.uce.common.services.S3StorageService;
 import org.texttechnologylab.uce.search.SearchState;
+import org.texttechnologylab.uce.search.backend.CorpusIndexWriter;
 import org.texttechnologylab.uce.web.LanguageResources;
 import org.texttechnologylab.uce.web.SessionManager;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -115,7 +118,7 @@ public class DocumentApi implements UceApi {
 
         try {
             var corpus = db.getCorpusById(corpusId);
-            var corpusConfig = CorpusConfig.fromJson(corpus.getCorpusJsonConfig());
+            var corpusConfig = db.getCorpusConfigById(corpusId);
             var documentsCount = db.countDocumentsInCorpus(corpusId);
             var pagesCount = db.countPagesInCorpus(corpusId);
 
@@ -180,7 +183,8 @@ public class DocumentApi implements UceApi {
                 (ex) -> logger.warn("Opening a document view but no searchId parameter was provided. Currently, this shouldn't happen, but it didn't stop the procedure."));
 
         try {
-            var doc = db.getCompleteDocumentById(Long.parseLong(id), 0, 10);
+            // The pages and their annotations are lazy loaded through the pages list view afterwards.
+            var doc = db.getDocumentForReaderById(Long.parseLong(id));
             model.put("document", doc);
 
             var corpus = db.getCorpusById(doc.getCorpusId());
@@ -278,7 +282,14 @@ public class DocumentApi implements UceApi {
             return;
         }
 
-        db.deleteDocumentById(Long.parseLong(id));
+        var documentId = Long.parseLong(id);
+        var corpusId = db.deleteDocumentById(documentId);
+        // The inverted index search mustn't find the document anymore.
+        if (corpusId != null) {
+            ExceptionUtils.tryCatchLog(
+                    () -> CorpusIndexWriter.deleteDocument(Path.of(new CommonConfig().getSearchIndexLocation()), corpusId, documentId),
+                    (ex) -> logger.error("Couldn't delete document " + documentId + " from the search index.", ex));
+        }
 
         Map<String, Object> result = new HashMap<>();
         result.put("status", "success");
@@ -300,11 +311,15 @@ public class DocumentApi implements UceApi {
 
         try {
             var skip = Integer.parseInt(ctx.queryParam("skip"));
-            var doc = db.getCompleteDocumentById(Long.parseLong(id), skip, 10);
-            var annotations = doc.getAllAnnotations(skip, 10);
+            var pageWindow = db.getPageWindowOfDocument(Long.parseLong(id), skip, 10);
+            var pages = pageWindow.getPages();
+            // Only the visible pages and their annotations are fetched, no matter how large the whole document is.
+            var annotations = pages.isEmpty()
+                    ? new ArrayList<UIMAAnnotation>()
+                    : db.getAnnotationsOfDocumentInRange(pageWindow.getDocumentId(), pages.getFirst().getBegin(), pages.getLast().getEnd());
             model.put("documentAnnotations", annotations);
-            model.put("documentText", doc.getFullText());
-            model.put("documentPages", doc.getPages(10, skip));
+            model.put("documentText", pageWindow.getFullText());
+            model.put("documentPages", pages);
         } catch (Exception ex) {
             logger.error("Error getting the pages list view - either the document couldn't be fetched (id=" + id + ") or its annotations.", ex);
             ctx.render("defaultError.ftl");
@@ -362,9 +377,7 @@ public class DocumentApi implements UceApi {
                 var pageMap = new HashMap<String, Object>();
                 pageMap.put("pageId", row[0]);
                 pageMap.put("taxonValue", row[1]);
-                //var taxonValues = row[1].toString().replaceAll("[\\{\\}]", "").split(",");
-                //pageMap.put("taxon_values", taxonValues);
-                //pageMap.put("taxon_count", row[2]);
+                pageMap.put("count", row[3]);
                 result.add(pageMap);
             }
 
@@ -393,6 +406,7 @@ public class DocumentApi implements UceApi {
                 var pageMap = new HashMap<String, Object>();
                 pageMap.put("pageId", row[0]);
                 pageMap.put("topicLabel", row[1]);
+                pageMap.put("count", row[3]);
                 result.add(pageMap);
             }
 
@@ -423,6 +437,7 @@ public class DocumentApi implements UceApi {
                 pageMap.put("pageId", row[0]);
                 pageMap.put("entityValue", row[1]);
                 pageMap.put("entityType", row[2]);
+                pageMap.put("count", row[3]);
                 result.add(pageMap);
             }
 
@@ -453,6 +468,7 @@ public class DocumentApi implements UceApi {
                 pageMap.put("pageId", row[0]);
                 pageMap.put("lemmaValue", row[1]);
                 pageMap.put("coarseValue", row[2]);
+                pageMap.put("count", row[3]);
                 result.add(pageMap);
             }
 
@@ -482,6 +498,7 @@ public class DocumentApi implements UceApi {
                 var pageMap = new HashMap<String, Object>();
                 pageMap.put("pageId", row[0]);
                 pageMap.put("geonameValue", row[1]);
+                pageMap.put("count", row[3]);
                 result.add(pageMap);
             }
 
@@ -510,8 +527,9 @@ public class DocumentApi implements UceApi {
 
             for (Object[] row : topicsWithEntities) {
                 var topicEntityMap = new HashMap<String, Object>();
-                topicEntityMap.put("topicLabel", row[0]);
-                topicEntityMap.put("entityType", row[1]);
+                topicEntityMap.put("topicLabel", row[1]);
+                topicEntityMap.put("entityType", row[2]);
+                topicEntityMap.put("count", row[3]);
                 result.add(topicEntityMap);
             }
 
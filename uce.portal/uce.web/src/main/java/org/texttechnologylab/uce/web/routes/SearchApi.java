@@ -139,7 +139,7 @@ public class SearchApi implements UceApi {
         try {
             var searchInput = requestBody.get("searchInput").toString();
             var corpusId = Long.parseLong(requestBody.get("corpusId").toString());
-            model.put("corpusVm", db.getCorpusById(corpusId).getViewModel());
+            model.put("corpusVm", db.getCorpusViewModelById(corpusId));
             var fulltextOrNeLayer = requestBody.get("fulltextOrNeLayer").toString();
             var useEmbeddings = Boolean.parseBoolean(requestBody.get("useEmbeddings").toString());
             var includeKeywordInContext = Boolean.parseBoolean(requestBody.get("kwic").toString());
@@ -262,7 +262,7 @@ public class SearchApi implements UceApi {
 
         try {
             var corpusId = Long.parseLong(requestBody.get("corpusId").toString());
-            model.put("corpusVm", db.getCorpusById(corpusId).getViewModel());
+            model.put("corpusVm", db.getCorpusViewModelById(corpusId));
             var arg0 = (ArrayList<String>) requestBody.get("arg0");
             var arg1 = (ArrayList<String>) requestBody.get("arg1");
             var argm = (ArrayList<String>) requestBody.get("argm");